@@ -0,0 +1,32 @@
+package com.jesusLuna.gestor_banco.config;
+
+import java.text.ParseException;
+import java.util.Locale;
+
+import org.springframework.format.Formatter;
+import org.springframework.stereotype.Component;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+
+/**
+ * Permite enlazar los campos de importe de los formularios (por ejemplo
+ * {@code "12.50"}) con atributos de tipo {@link Dinero}, y mostrarlos con dos
+ * decimales en las plantillas.
+ */
+@Component
+public class DineroFormatter implements Formatter<Dinero> {
+
+	@Override
+	public Dinero parse(String texto, Locale locale) throws ParseException {
+		try {
+			return Dinero.parse(texto);
+		} catch (IllegalArgumentException e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+	}
+
+	@Override
+	public String print(Dinero dinero, Locale locale) {
+		return dinero.toString();
+	}
+}
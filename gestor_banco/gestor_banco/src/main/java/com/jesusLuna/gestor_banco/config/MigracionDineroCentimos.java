@@ -0,0 +1,74 @@
+package com.jesusLuna.gestor_banco.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Migra al arrancar los importes guardados como {@code FLOAT} (columnas
+ * {@code Saldo} y {@code Cantidad}) a las columnas de céntimos
+ * ({@code Saldo_Centimos} y {@code Cantidad_Centimos}) que usa
+ * {@link com.jesusLuna.gestor_banco.entity.Dinero}.
+ * 
+ * Hibernate crea las columnas nuevas con {@code ddl-auto=update}; este proceso
+ * copia los valores redondeados al céntimo y elimina la columna antigua. Si la
+ * columna antigua ya no existe no hace nada, así que es seguro en cada
+ * arranque y se puede repetir si se interrumpe a medias.
+ *
+ * Se ejecuta en la primera fase del arranque, antes de que el servidor web
+ * acepte peticiones y de que empiecen las tareas programadas, que leerían los
+ * céntimos todavía sin copiar. Si falla, la aplicación no llega a arrancar.
+ */
+@Slf4j
+@Component
+public class MigracionDineroCentimos implements SmartLifecycle {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private volatile boolean ejecutada;
+
+	@Override
+	public void start() {
+		migrar("dam_cuenta_bancaria", "saldo", "saldo_centimos");
+		migrar("dam_operacion", "cantidad", "cantidad_centimos");
+		ejecutada = true;
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public boolean isRunning() {
+		return ejecutada;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MIN_VALUE;
+	}
+
+	private void migrar(String tabla, String columnaAntigua, String columnaCentimos) {
+		if (!existeColumna(tabla, columnaAntigua)) {
+			return;
+		}
+		int filas = jdbcTemplate.update("UPDATE " + tabla + " SET " + columnaCentimos + " = ROUND(" + columnaAntigua
+				+ " * 100) WHERE " + columnaAntigua + " IS NOT NULL");
+		jdbcTemplate.execute("ALTER TABLE " + tabla + " DROP COLUMN " + columnaAntigua);
+		log.info("Migrados {} importes de {}.{} a céntimos", filas, tabla, columnaAntigua);
+	}
+
+	private boolean existeColumna(String tabla, String columna) {
+		try {
+			jdbcTemplate.queryForList("SELECT " + columna + " FROM " + tabla + " WHERE 1 = 0");
+			return true;
+		} catch (DataAccessException e) {
+			return false;
+		}
+	}
+}
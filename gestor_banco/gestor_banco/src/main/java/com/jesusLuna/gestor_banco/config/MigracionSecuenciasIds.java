@@ -0,0 +1,84 @@
+package com.jesusLuna.gestor_banco.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ajusta al arrancar las secuencias de identificadores de operaciones, clientes
+ * y usuarios a las filas creadas cuando esas tablas usaban
+ * {@code AUTO_INCREMENT}.
+ *
+ * MySQL no tiene secuencias, así que Hibernate las emula con una tabla de una
+ * fila ({@code next_val}) que crea con {@code ddl-auto=update} empezando en 1.
+ * Este proceso adelanta ese valor por encima del mayor identificador existente
+ * para que los bloques reservados no choquen con filas antiguas. La
+ * actualización es condicional, así que nunca retrocede una secuencia ya en uso
+ * y es segura en cada arranque y con varios nodos arrancando a la vez. En bases
+ * de datos con secuencias nativas (H2 en las pruebas) no hay tabla y no hace
+ * nada.
+ *
+ * Se ejecuta en la primera fase del arranque, antes de que el servidor web
+ * acepte peticiones y de que empiecen las tareas programadas: una inserción
+ * anterior reservaría identificadores de filas que ya existen.
+ */
+@Slf4j
+@Component
+public class MigracionSecuenciasIds implements SmartLifecycle {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private volatile boolean ejecutada;
+
+	@Override
+	public void start() {
+		ajustar("dam_operacion_seq", "dam_operacion");
+		ajustar("dam_cliente_seq", "dam_cliente");
+		ajustar("dam_user_seq", "dam_user");
+		ejecutada = true;
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public boolean isRunning() {
+		return ejecutada;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MIN_VALUE;
+	}
+
+	private void ajustar(String secuencia, String tabla) {
+		if (!esTablaSecuencia(secuencia)) {
+			return;
+		}
+		Long maximo = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + tabla, Long.class);
+		if (maximo == null) {
+			return;
+		}
+		int filas = jdbcTemplate.update("UPDATE " + secuencia + " SET next_val = ? WHERE next_val <= ?", maximo + 1,
+				maximo);
+		if (filas > 0) {
+			log.info("Secuencia {} adelantada a {} tras los identificadores existentes de {}", secuencia, maximo + 1,
+					tabla);
+		}
+	}
+
+	private boolean esTablaSecuencia(String secuencia) {
+		try {
+			jdbcTemplate.queryForList("SELECT next_val FROM " + secuencia + " WHERE 1 = 0");
+			return true;
+		} catch (DataAccessException e) {
+			return false;
+		}
+	}
+}
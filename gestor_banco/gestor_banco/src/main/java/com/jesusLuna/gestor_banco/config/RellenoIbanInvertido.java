@@ -0,0 +1,55 @@
+package com.jesusLuna.gestor_banco.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rellena al arrancar la columna {@code Numero_Cuenta_Invertido} de las cuentas
+ * creadas antes de que existiera. Las cuentas nuevas la calculan al guardarse,
+ * así que tras la primera ejecución no queda nada pendiente y el arranque solo
+ * hace una consulta vacía.
+ */
+@Slf4j
+@Component
+public class RellenoIbanInvertido implements ApplicationRunner {
+
+	private static final int TAMANYO_LOTE = 500;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		int total = 0;
+		int procesadas;
+		do {
+			// Cada lote en su propia transacción para no bloquear la tabla entera
+			procesadas = transactionTemplate.execute(estado -> {
+				List<String> pendientes = cuentaBancRepo.findNumerosCuentaSinInvertir(Limit.of(TAMANYO_LOTE));
+				for (String numeroCuenta : pendientes) {
+					cuentaBancRepo.actualizarNumeroCuentaInvertido(numeroCuenta, CuentaBancaria.invertir(numeroCuenta));
+				}
+				return pendientes.size();
+			});
+			total += procesadas;
+		} while (procesadas == TAMANYO_LOTE);
+
+		if (total > 0) {
+			log.info("Calculado el número de cuenta invertido de {} cuentas", total);
+		}
+	}
+}
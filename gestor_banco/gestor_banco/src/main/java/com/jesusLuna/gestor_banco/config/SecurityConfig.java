@@ -6,6 +6,7 @@ import java.util.Collection;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -27,10 +28,13 @@ import lombok.RequiredArgsConstructor;
  * Configuración de seguridad de la aplicación que habilita la seguridad web
  * utilizando Spring Security. Esta clase se encarga de definir las políticas de
  * acceso, autenticación y autorización, así como de configurar los filtros
- * necesarios, como el filtro de autenticación JWT.
+ * necesarios, como el filtro de autenticación JWT. Las restricciones por rol
+ * de los controladores ({@code @PreAuthorize}) se aplican con
+ * {@link EnableMethodSecurity}.
  */
 @Configuration
 @EnableWebSecurity
+@EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
 
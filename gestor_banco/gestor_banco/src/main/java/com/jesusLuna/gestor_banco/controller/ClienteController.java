@@ -19,6 +19,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.jesusLuna.gestor_banco.dto.ClienteIdentificacion;
+import com.jesusLuna.gestor_banco.dto.ResultadoTypeahead;
 import com.jesusLuna.gestor_banco.entity.Cliente;
 import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
 import com.jesusLuna.gestor_banco.methods.Cifrado;
@@ -105,6 +107,44 @@ public class ClienteController {
 
 	}
 
+	/*
+	 * API
+	 */
+
+	/**
+	 * Buscador incremental de clientes para los formularios de cuentas. Devuelve en
+	 * JSON una página de clientes cuyo NIF, apellidos o email empiezan por
+	 * {@code q}.
+	 *
+	 * @param q            Prefijo introducido por el usuario.
+	 * @param numeroCuenta Cuenta cuyos titulares se excluyen (opcional).
+	 * @param pagina       Página solicitada, empezando en 0.
+	 * @return Página de clientes coincidentes.
+	 */
+	@GetMapping("/api/clientes/typeahead")
+	@ResponseBody
+	public ResultadoTypeahead buscarClientesTypeahead(@RequestParam String q,
+			@RequestParam(required = false) String numeroCuenta, @RequestParam(defaultValue = "0") int pagina) {
+		numeroCuenta = (numeroCuenta != null && numeroCuenta.trim().isEmpty()) ? null : numeroCuenta;
+		return clienteServiceI.buscarClientesTypeahead(q, numeroCuenta, pagina);
+	}
+
+	/**
+	 * Devuelve en JSON una página de clientes que no son titulares de la cuenta
+	 * indicada, ordenados por NIF.
+	 *
+	 * @param numeroCuenta Número de cuenta en claro.
+	 * @param despuesDeNif Último NIF recibido en la página anterior (opcional).
+	 * @param limite       Tamaño de página.
+	 * @return Clientes no asignados a la cuenta.
+	 */
+	@GetMapping("/api/clientes/noAsignados")
+	@ResponseBody
+	public List<ClienteIdentificacion> obtenerClientesNoAsignados(@RequestParam String numeroCuenta,
+			@RequestParam(required = false) String despuesDeNif, @RequestParam(defaultValue = "20") int limite) {
+		return clienteServiceI.obtenerClientesExcludeCuentaBancaria(numeroCuenta, despuesDeNif, limite);
+	}
+
 	/*
 	 * ACCIONES
 	 */
@@ -20,17 +20,23 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.jesusLuna.gestor_banco.dto.CuentaActividad;
+import com.jesusLuna.gestor_banco.dto.CuentaResumen;
+import com.jesusLuna.gestor_banco.dto.ModoBusquedaIban;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
 import com.jesusLuna.gestor_banco.entity.Cliente;
 import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
 import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.exception.ClienteNoEncontradoException;
 import com.jesusLuna.gestor_banco.methods.Cifrado;
 import com.jesusLuna.gestor_banco.methods.Methods;
+import com.jesusLuna.gestor_banco.service.BorradorCuenta;
+import com.jesusLuna.gestor_banco.service.BorradorCuentaStore;
 import com.jesusLuna.gestor_banco.service.ClienteService;
 import com.jesusLuna.gestor_banco.service.CuentaBancariaService;
 import com.jesusLuna.gestor_banco.service.OperacionesService;
 
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 
 /**
@@ -40,6 +46,9 @@ import jakarta.validation.Valid;
 @Controller
 public class CuentaBancariaController {
 
+	/** Número de cuentas por página en el listado general. */
+	private static final int TAMANYO_PAGINA_CUENTAS = 50;
+
 	/** Servicio para gestionar cuentas bancarias. */
 
 	@Autowired
@@ -53,33 +62,42 @@ public class CuentaBancariaController {
 	@Autowired
 	private OperacionesService operacionesService;
 
+	/** Borradores de edición de titulares de cuentas. */
+	@Autowired
+	private BorradorCuentaStore borradorStore;
+
 	/*
 	 * VISTAS
 	 */
 
 	/**
-	 * Muestra la vista con todas las cuentas bancarias registradas.
+	 * Muestra una página del listado de cuentas bancarias, de la más reciente a la
+	 * más antigua.
 	 *
-	 * @param model Modelo para enviar datos a la vista
+	 * @param cursor Cursor de la página a mostrar (opcional, primera página si no
+	 *               se indica)
+	 * @param model  Modelo para enviar datos a la vista
 	 * @return Nombre de la plantilla Thymeleaf
 	 */
 	@GetMapping("/showCuentasView")
-	public String mostrarCuentas(Model model) {
+	public String mostrarCuentas(@RequestParam(required = false) String cursor, Model model) {
 
 		try {
-			final List<CuentaBancaria> listaCuentaBancaria = cuentaBancariaService.obtenerCuentasBancarias();
+			final PaginaKeyset<CuentaResumen> pagina = cuentaBancariaService.obtenerPaginaCuentas(cursor,
+					TAMANYO_PAGINA_CUENTAS);
 			List<TipoCuenta> tiposCuenta = Arrays.asList(TipoCuenta.values());
 
-			// Creamos una lista auxiliar con los IBAN cifrados
+			// Creamos una lista auxiliar con los IBAN cifrados (solo los de esta página)
 			Map<String, String> ibanCifrados = new HashMap<>();
 
-			for (CuentaBancaria c : listaCuentaBancaria) {
+			for (CuentaResumen c : pagina.getElementos()) {
 				ibanCifrados.put(c.getNumeroCuenta(), Cifrado.cifrar(c.getNumeroCuenta()));
 			}
 
 			model.addAttribute("IBANCifrados", ibanCifrados);
 			model.addAttribute("tiposCuenta", tiposCuenta);
-			model.addAttribute("cuentaListView", listaCuentaBancaria);
+			model.addAttribute("cuentaListView", pagina.getElementos());
+			model.addAttribute("cursorSiguiente", pagina.getCursorSiguiente());
 
 		} catch (Exception e) {
 			return manejarError(model, "Error al obtener las cuentas bancarias", e.getMessage(), "/showCuentasView");
@@ -90,13 +108,21 @@ public class CuentaBancariaController {
 
 	/**
 	 * Muestra la vista para modificar una cuenta bancaria específica.
+	 * <p>
+	 * Los cambios de titulares se acumulan en un {@link BorradorCuenta} del
+	 * servidor identificado por {@code borradorId}. Si no se indica, ha caducado o
+	 * la cuenta ha cambiado de versión, se abre uno nuevo con los titulares
+	 * actuales.
+	 * </p>
 	 *
-	 * @param cuentaId ID cifrado de la cuenta bancaria
-	 * @param model    Modelo para enviar datos a la vista
+	 * @param cuentaId   ID cifrado de la cuenta bancaria
+	 * @param borradorId Identificador del borrador de edición en curso (opcional)
+	 * @param model      Modelo para enviar datos a la vista
 	 * @return Nombre de la plantilla para modificar la cuenta
 	 */
 	@GetMapping("/showCuentasMod")
-	public String mostrarModCuenta(@RequestParam String cuentaId, Model model, HttpSession session) {
+	public String mostrarModCuenta(@RequestParam String cuentaId, @RequestParam(required = false) String borradorId,
+			Model model) {
 		String ibanDescifrado;
 		try {
 			ibanDescifrado = Cifrado.descifrar(cuentaId);
@@ -104,23 +130,19 @@ public class CuentaBancariaController {
 			if (cuentaToMod == null) {
 				throw new EntityNotFoundException("Cuenta bancaria no encontrada.");
 			}
-			List<Cliente> listCliente = (List<Cliente>) session.getAttribute("clientesTemporales");
-
-			if (listCliente == null || listCliente.isEmpty()) {
-				listCliente = clienteService.obtenerClientesCuentaBancaria(ibanDescifrado);
-			}
-
-			List<Cliente> listClienteNotAssigned = (List<Cliente>) session.getAttribute("listClienteNotAssigned");
 
-			if (listClienteNotAssigned == null || listClienteNotAssigned.isEmpty()) {
-				listClienteNotAssigned = clienteService.obtenerClientesExcludeCuentaBancaria(ibanDescifrado);
+			BorradorCuenta borrador = borradorStore.obtener(borradorId, ibanDescifrado,
+					cuentaToMod.getVersionTitulares());
+			if (borrador == null) {
+				borrador = borradorStore.crear(ibanDescifrado, cuentaToMod.getVersionTitulares(),
+						clienteService.obtenerIdsClientesCuentaBancaria(ibanDescifrado));
 			}
 
+			// Los clientes no asignados ya no se incrustan en la página: el diálogo de
+			// añadir cliente los consulta bajo demanda en /api/clientes/typeahead
 			model.addAttribute("cuenta", cuentaToMod);
-			model.addAttribute("clientesTemporales", listCliente);
-			session.setAttribute("clientesTemporales", listCliente);
-			model.addAttribute("listClienteNotAssigned", listClienteNotAssigned);
-			session.setAttribute("listClienteNotAssigned", listClienteNotAssigned);
+			model.addAttribute("borradorId", borrador.getId());
+			model.addAttribute("clientesTemporales", clienteService.obtenerResumenClientes(borrador.getClienteIds()));
 			model.addAttribute("TipoCuenta", CuentaBancaria.TipoCuenta.values());
 			return "cuentaModificar";
 
@@ -148,24 +170,20 @@ public class CuentaBancariaController {
 		try {
 			nifDescifrado = Cifrado.descifrar(clienteNif);
 
-			final Cliente cliente = clienteService.obtenerPorNif(nifDescifrado);
-			if (cliente == null) {
-				throw new EntityNotFoundException("Cliente no encontrado con el NIF: " + nifDescifrado);
-			}
-
-			List<CuentaBancaria> cuentasBancarias = new ArrayList<>(cliente.getMisCuentas());
+			final List<CuentaActividad> cuentasBancarias = cuentaBancariaService
+					.obtenerCuentasConActividadDeCliente(nifDescifrado);
 
 			// Creamos una lista auxiliar con los IBAN cifrados
 			Map<String, String> ibanCifrados = new HashMap<>();
 
-			for (CuentaBancaria c : cuentasBancarias) {
+			for (CuentaActividad c : cuentasBancarias) {
 				ibanCifrados.put(c.getNumeroCuenta(), Cifrado.cifrar(c.getNumeroCuenta()));
 			}
 
 			model.addAttribute("IBANCifrados", ibanCifrados);
-
+			model.addAttribute("mostrarActividad", true);
 			model.addAttribute("cuentaListView", cuentasBancarias);
-		} catch (EntityNotFoundException e) {
+		} catch (ClienteNoEncontradoException e) {
 			return manejarError(model, "Error al mostrar cuentas del cliente", e.getMessage(), "/showClienteCuentas");
 
 		} catch (Exception e) {
@@ -182,7 +200,8 @@ public class CuentaBancariaController {
 	/**
 	 * Realiza la búsqueda de cuentas según parámetros proporcionados.
 	 *
-	 * @param numeroCuenta Número de cuenta
+	 * @param numeroCuenta Número de cuenta (completo o fragmento)
+	 * @param modoBusqueda Forma de comparar el número de cuenta (opcional)
 	 * @param tipoCuenta   Tipo de cuenta
 	 * @param ordenarPor   Criterio de ordenación
 	 * @param model        Modelo para enviar datos a la vista
@@ -190,6 +209,7 @@ public class CuentaBancariaController {
 	 */
 	@GetMapping("/actSearchCuenta")
 	public String submitBuscarCuentaForm(@RequestParam(required = false) String numeroCuenta,
+			@RequestParam(required = false) ModoBusquedaIban modoBusqueda,
 			@RequestParam(required = false) String tipoCuenta, @RequestParam(required = false) String ordenarPor,
 			Model model) {
 
@@ -209,8 +229,8 @@ public class CuentaBancariaController {
 				}
 			}
 
-			List<CuentaBancaria> listaCuentas = cuentaBancariaService.buscarCuentas(numeroCuenta, tipoCuenta,
-					ordenarPor, ordenTipo);
+			List<CuentaBancaria> listaCuentas = cuentaBancariaService.buscarCuentas(numeroCuenta, modoBusqueda,
+					tipoCuenta, ordenarPor, ordenTipo);
 			// Creamos una lista auxiliar con los IBAN cifrados
 						Map<String, String> ibanCifrados = new HashMap<>();
 
@@ -237,11 +257,9 @@ public class CuentaBancariaController {
 	 */
 	@GetMapping("/newCuentasView")
 	public String redirectToNewCuentaTemplate(Model model) {
-		List<Cliente> clientes = clienteService.obtenerClientes();
-
+		// El titular se elige con el buscador incremental (/api/clientes/typeahead)
 		model.addAttribute("tiposCuenta", TipoCuenta.values());
 		model.addAttribute("newCuenta", new CuentaBancaria());
-		model.addAttribute("clientesList", clientes);
 
 		return "cuentaInsertar";
 	}
@@ -287,42 +305,33 @@ public class CuentaBancariaController {
 	}
 
 	/**
-	 * Procesa la modificación de una cuenta existente.
+	 * Procesa la modificación de una cuenta existente, confirmando en la misma
+	 * transacción los titulares acumulados en el borrador de edición.
 	 *
-	 * @param model  Modelo para enviar datos a la vista
-	 * @param cuenta Cuenta modificada validada
-	 * @param result Resultado de validaciones
+	 * @param model      Modelo para enviar datos a la vista
+	 * @param cuenta     Cuenta modificada validada
+	 * @param result     Resultado de validaciones
+	 * @param borradorId Identificador del borrador de titulares
 	 * @return Redirección o vista de error
 	 * @throws Exception En caso de error inesperado
 	 */
 	@PostMapping("/actModCuenta")
 	private String modificarCuenta(Model model, @Valid @ModelAttribute("cuenta") CuentaBancaria cuenta,
-			BindingResult result, HttpSession session) throws Exception {
+			BindingResult result, @RequestParam String borradorId) throws Exception {
 		try {
 			if (result.hasErrors()) {
 				model.addAttribute("mensaje", "Parámetros de la cuenta incorrectos.");
 				return "errorPage"; // Redirige a la página de error con el mensaje
 			}
 
-			// Obtener la cuenta y los clientes temporales
-			CuentaBancaria cuentaToMod = cuentaBancariaService.obtenerPorNumeroCuenta(cuenta.getNumeroCuenta());
-			if (cuentaToMod == null) {
-				throw new EntityNotFoundException("Cuenta bancaria no encontrada.");
-			}
-
-			// Obtener los clientes temporales del modelo
-			List<Cliente> clientesTemporales = (List<Cliente>) session.getAttribute("clientesTemporales");
-
-			if (clientesTemporales != null) {
-				// Establecer la relación entre los clientes y la cuenta
-				cuenta.setMisClientes(clientesTemporales);
+			BorradorCuenta borrador = borradorStore.obtener(borradorId, cuenta.getNumeroCuenta());
+			if (borrador == null) {
+				throw new EntityNotFoundException("La edición ha caducado, vuelve a abrir la cuenta.");
 			}
 
-			cuentaToMod.setTipoCuenta(cuenta.getTipoCuenta());
-			cuentaToMod.setFechaCreacion(cuenta.getFechaCreacion());
-			cuentaToMod.setSaldo(cuenta.getSaldo());
-
-			cuentaBancariaService.actualizarCuentaBancaria(cuentaToMod);
+			cuentaBancariaService.actualizarCuentaYTitulares(cuenta, borrador.getVersionTitulares(),
+					borrador.getClienteIds());
+			borradorStore.descartar(borradorId);
 		} catch (EntityNotFoundException e) {
 			return manejarError(model, "Error al modificar cuenta bancaria", e.getMessage(), "/actModCuenta");
 
@@ -359,53 +368,36 @@ public class CuentaBancariaController {
 	}
 
 	/**
-	 * Elimina un cliente asociado a una cuenta bancaria.
+	 * Quita un cliente del borrador de titulares de una cuenta bancaria. El cambio
+	 * no se guarda hasta confirmar la modificación de la cuenta.
 	 *
-	 * @param cuentaId  ID de la cuenta bancaria
-	 * @param clienteId ID del cliente
-	 * @param model     Modelo para enviar datos a la vista
+	 * @param cuentaId   ID de la cuenta bancaria
+	 * @param clienteId  NIF del cliente
+	 * @param borradorId Identificador del borrador de titulares
+	 * @param model      Modelo para enviar datos a la vista
 	 * @return Redirección o vista de error
 	 */
 	@GetMapping("/actDropClienteCuenta")
-	public String eliminarClientedelaCuenta(@RequestParam String cuentaId, @RequestParam String clienteId, Model model,
-			HttpSession session) {
+	public String eliminarClientedelaCuenta(@RequestParam String cuentaId, @RequestParam String clienteId,
+			@RequestParam String borradorId, Model model) {
 		try {
-			CuentaBancaria cuenta = cuentaBancariaService.obtenerPorNumeroCuenta(cuentaId);
-			if (cuenta == null) {
-				throw new EntityNotFoundException("Cuenta bancaria no encontrada.");
+			BorradorCuenta borrador = borradorStore.obtener(borradorId, cuentaId);
+			if (borrador == null) {
+				throw new EntityNotFoundException("La edición ha caducado, vuelve a abrir la cuenta.");
 			}
 
-			String ibanCifrado = Cifrado.cifrar(cuentaId);
-
-			// Obtener la lista de clientes temporales del modelo
-			List<Cliente> clientesTemporales = (List<Cliente>) session.getAttribute("clientesTemporales");
-			if (clientesTemporales == null) {
-				clientesTemporales = new ArrayList<>();
-			}
-			List<Cliente> listClienteNotAssigned = (List<Cliente>) session.getAttribute("listClienteNotAssigned");
-			if (listClienteNotAssigned == null) {
-				listClienteNotAssigned = new ArrayList<>();
-			}
-
-			Cliente cliente = clienteService.obtenerPorNif(clienteId);
-			if (cliente == null) {
+			Long idCliente = clienteService.obtenerIdPorNif(clienteId);
+			if (idCliente == null) {
 				throw new EntityNotFoundException("Cliente no encontrado.");
 			}
-			// Eliminar el cliente de la lista temporal
-			if (!clientesTemporales.removeIf(c -> c.getNif().equals(clienteId))) {
+			// Eliminar el cliente del borrador
+			if (!borradorStore.quitarCliente(borrador, idCliente)) {
 				throw new Exception("Error al intentar borrar el cliente la lista de clientes");
 
 			}
-			listClienteNotAssigned.add(cliente);
-			// Actualizar la lista de clientes temporales en el modelo
-			session.setAttribute("clientesTemporales", clientesTemporales);
-			model.addAttribute("clientesTemporales", clientesTemporales);
-			session.setAttribute("listClienteNotAssigned", listClienteNotAssigned);
-			model.addAttribute("listClienteNotAssigned", listClienteNotAssigned);
-			model.addAttribute("cuenta", cuenta);
 
-			// Redirigir a la vista de modificación de cuenta con la lista actualizada
-			return "redirect:showCuentasMod?cuentaId=" + ibanCifrado;
+			// Redirigir a la vista de modificación de cuenta con el mismo borrador
+			return "redirect:showCuentasMod?cuentaId=" + Cifrado.cifrar(cuentaId) + "&borradorId=" + borradorId;
 
 		} catch (EntityNotFoundException e) {
 			return manejarError(model, "Verifica que el cliente y la cuenta estén correctamente seleccionados.",
@@ -419,11 +411,12 @@ public class CuentaBancariaController {
 	}
 
 	/**
-	 * Asocia un cliente existente a una cuenta bancaria existente.
+	 * Añade un cliente existente al borrador de titulares de una cuenta bancaria.
 	 * <p>
 	 * Este método maneja una petición POST para añadir un cliente a una cuenta
-	 * bancaria. Valida que tanto la cuenta como el cliente existan, y si es así,
-	 * asocia el cliente a la cuenta. En caso de éxito, redirige a la vista de
+	 * bancaria. Valida que el borrador siga vigente y que el cliente exista, y si
+	 * es así, lo añade al borrador. El cambio se guarda al confirmar la
+	 * modificación de la cuenta. En caso de éxito, redirige a la vista de
 	 * modificación de la cuenta con el IBAN cifrado. Si ocurre un error, se
 	 * redirige a una vista de error personalizada con detalles.
 	 * </p>
@@ -433,50 +426,31 @@ public class CuentaBancariaController {
 	 * @param numeroCuenta el número de cuenta bancaria en texto plano recibido
 	 *                     desde el formulario
 	 * @param clienteDni   el DNI/NIF del cliente que se desea asociar a la cuenta
+	 * @param borradorId   el identificador del borrador de titulares
 	 * @return una redirección a la vista de modificación de cuenta si todo va bien;
 	 *         de lo contrario, devuelve una vista de error con mensaje, detalle y
 	 *         ruta
 	 */
 	@PostMapping("/actAddClienteCuenta")
 	public String agregarCliente(Model model, @RequestParam String numeroCuenta, @RequestParam String clienteDni,
-			HttpSession session) {
+			@RequestParam String borradorId) {
 		try {
-			// Obtener la cuenta y el cliente, igual que antes
-			CuentaBancaria cuenta = cuentaBancariaService.obtenerPorNumeroCuenta(numeroCuenta);
-			if (cuenta == null) {
-				throw new EntityNotFoundException("Cuenta bancaria no encontrada.");
+			BorradorCuenta borrador = borradorStore.obtener(borradorId, numeroCuenta);
+			if (borrador == null) {
+				throw new EntityNotFoundException("La edición ha caducado, vuelve a abrir la cuenta.");
 			}
 
-			String ibanCifrado = Cifrado.cifrar(numeroCuenta);
-
-			Cliente cliente = clienteService.obtenerPorNif(clienteDni);
-			if (cliente == null) {
+			Long idCliente = clienteService.obtenerIdPorNif(clienteDni);
+			if (idCliente == null) {
 				throw new EntityNotFoundException("Cliente no encontrado.");
 			}
 
-			// Obtener la lista de clientes temporales desde el modelo, si no existe crearla
-			List<Cliente> clientesTemporales = (List<Cliente>) session.getAttribute("clientesTemporales");
-			if (clientesTemporales == null) {
-				clientesTemporales = new ArrayList<>();
-			}
-			List<Cliente> listClienteNotAssigned = (List<Cliente>) session.getAttribute("listClienteNotAssigned");
-			if (listClienteNotAssigned == null) {
-				listClienteNotAssigned = new ArrayList<>();
+			// Añadir el cliente al borrador
+			if (!borradorStore.anyadirCliente(borrador, idCliente)) {
+				throw new Exception("El cliente ya es titular de la cuenta");
 			}
-			// Añadir el cliente temporalmente
-			clientesTemporales.add(cliente);
-			if (!listClienteNotAssigned.removeIf(c -> c.getNif().equals(cliente.getNif()))) {
-				throw new Exception("Error al intentar borrar el cliente de la listas los clientes no asignados");
-			}
-			// Actualizar el modelo para que la lista de clientes temporales esté disponible
-			// en la vista
-			session.setAttribute("clientesTemporales", clientesTemporales);
-			model.addAttribute("clientesTemporales", clientesTemporales);
-			session.setAttribute("listClienteNotAssigned", listClienteNotAssigned);
-			model.addAttribute("listClienteNotAssigned", listClienteNotAssigned);
-			model.addAttribute("cuenta", cuenta);
-
-			return "redirect:/showCuentasMod?cuentaId=" + ibanCifrado;
+
+			return "redirect:/showCuentasMod?cuentaId=" + Cifrado.cifrar(numeroCuenta) + "&borradorId=" + borradorId;
 
 		} catch (EntityNotFoundException e) {
 			return manejarError(model, "Error al añadir cliente a cuenta bancaria", e.getMessage(),
@@ -1,39 +1,73 @@
 package com.jesusLuna.gestor_banco.controller;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-
-import com.itextpdf.kernel.pdf.PdfWriter;
-import com.itextpdf.io.exceptions.IOException;
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Table;
-import com.itextpdf.layout.properties.UnitValue;
+import java.util.Set;
+import java.util.UUID;
+
+import com.jesusLuna.gestor_banco.dto.AgrupacionResumen;
+import com.jesusLuna.gestor_banco.dto.EstadoExportacion;
+import com.jesusLuna.gestor_banco.dto.EstadoLiquidacion;
+import com.jesusLuna.gestor_banco.dto.FiltroOperaciones;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
+import com.jesusLuna.gestor_banco.dto.ResultadoCargaApuntes;
+import com.jesusLuna.gestor_banco.dto.ResultadoArchivado;
+import com.jesusLuna.gestor_banco.dto.ResultadoOrdenes;
+import com.jesusLuna.gestor_banco.dto.ResultadoReconstruccion;
+import com.jesusLuna.gestor_banco.dto.ResumenOperaciones;
+import com.jesusLuna.gestor_banco.dto.SaldoAFecha;
 import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
 import com.jesusLuna.gestor_banco.entity.Operacion;
 import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
-import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
-import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente.Periodicidad;
+import com.jesusLuna.gestor_banco.exception.OperacionNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
 import com.jesusLuna.gestor_banco.methods.Cifrado;
 import com.jesusLuna.gestor_banco.methods.Methods;
+import com.jesusLuna.gestor_banco.service.ArchivoOperacionesService;
+import com.jesusLuna.gestor_banco.service.ColaContabilizacionService;
+import com.jesusLuna.gestor_banco.service.ContabilizacionService;
 import com.jesusLuna.gestor_banco.service.CuentaBancariaService;
+import com.jesusLuna.gestor_banco.service.ExportacionService;
+import com.jesusLuna.gestor_banco.service.IdempotenciaService;
+import com.jesusLuna.gestor_banco.service.LiquidacionInteresesService;
 import com.jesusLuna.gestor_banco.service.OperacionesService;
+import com.jesusLuna.gestor_banco.service.OrdenPermanenteService;
+import com.jesusLuna.gestor_banco.service.ResumenOperacionesService;
+import com.jesusLuna.gestor_banco.service.SaldoHistoricoService;
+import com.jesusLuna.gestor_banco.service.TrabajoExportacion;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
@@ -46,6 +80,7 @@ import jakarta.validation.Valid;
  * <li>Visualizar operaciones de una cuenta.</li>
  * <li>Insertar nuevas operaciones (ingresos, retiros, transferencias,
  * etc.).</li>
+ * <li>Contabilizar ficheros de apuntes con muchas operaciones a la vez.</li>
  * <li>Consultar detalles de una operación concreta.</li>
  * <li>Eliminar operaciones (solo accesible por administradores).</li>
  * <li>Exportar las operaciones de una cuenta a un archivo PDF.</li>
@@ -66,14 +101,46 @@ import jakarta.validation.Valid;
 @Controller
 public class OperacionesController {
 
+	/** Número de operaciones por página en el historial de una cuenta. */
+	private static final int TAMANYO_PAGINA_HISTORIAL = 50;
+
 	@Autowired
 	public OperacionesService operacionService;
 
 	@Autowired
 	public CuentaBancariaService cuentaBancariaService;
 
+	@Autowired
+	public ContabilizacionService contabilizacionService;
+
+	@Autowired
+	public ColaContabilizacionService colaContabilizacionService;
+
+	@Autowired
+	public IdempotenciaService idempotenciaService;
+
+	@Autowired
+	public ExportacionService exportacionService;
+
+	@Autowired
+	public SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	public ResumenOperacionesService resumenOperacionesService;
+
+	@Autowired
+	public ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	public LiquidacionInteresesService liquidacionInteresesService;
+
+	@Autowired
+	public OrdenPermanenteService ordenPermanenteService;
+
 	/**
-	 * Muestra la vista con todas las operaciones asociadas a una cuenta bancaria.
+	 * Muestra la primera página del historial de operaciones de una cuenta
+	 * bancaria. Las páginas siguientes las carga la vista según se desplaza el
+	 * usuario, a través de {@code /api/operaciones/historial}.
 	 *
 	 * @param numCuenta El IBAN cifrado de la cuenta bancaria.
 	 * @param model     Modelo de Spring para pasar datos a la vista.
@@ -85,9 +152,13 @@ public class OperacionesController {
 		String ibanDescifrado;
 		try {
 			ibanDescifrado = Cifrado.descifrar(numCuenta);
-			List<Operacion> operaciones = cuentaBancariaService.obtenerPorNumeroCuenta(ibanDescifrado).getOperaciones();
+			// Solo comprueba que la cuenta existe; las operaciones no se cargan
+			cuentaBancariaService.obtenerPorNumeroCuenta(ibanDescifrado);
+			PaginaKeyset<OperacionResumen> pagina = operacionService.obtenerHistorialCuenta(ibanDescifrado, null,
+					TAMANYO_PAGINA_HISTORIAL);
 
-			model.addAttribute("operacionesListView", operaciones);
+			model.addAttribute("operacionesListView", pagina.getElementos());
+			model.addAttribute("cursorSiguiente", pagina.getCursorSiguiente());
 			model.addAttribute("numCuentaCifrado", numCuenta);
 			return "operacionView";
 		} catch (EntityNotFoundException e) {
@@ -99,6 +170,285 @@ public class OperacionesController {
 		}
 	}
 
+	/*
+	 * API
+	 */
+
+	/**
+	 * Devuelve en JSON la página siguiente del historial de operaciones de una
+	 * cuenta, para el desplazamiento infinito de la vista de operaciones.
+	 *
+	 * @param numCuenta El IBAN cifrado de la cuenta bancaria.
+	 * @param cursor    Cursor recibido con la página anterior.
+	 * @return Página de operaciones con el cursor de la siguiente.
+	 */
+	@GetMapping("/api/operaciones/historial")
+	@ResponseBody
+	public PaginaKeyset<OperacionResumen> obtenerHistorialOperaciones(@RequestParam String numCuenta,
+			@RequestParam(required = false) String cursor) {
+		String ibanDescifrado;
+		try {
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		return operacionService.obtenerHistorialCuenta(ibanDescifrado, cursor, TAMANYO_PAGINA_HISTORIAL);
+	}
+
+	/**
+	 * Devuelve en JSON el saldo que tenía una cuenta al cierre de un día.
+	 *
+	 * @param numCuenta El IBAN cifrado de la cuenta bancaria.
+	 * @param fecha     El día consultado.
+	 * @return El saldo de la cuenta ese día.
+	 */
+	@GetMapping("/api/operaciones/saldo")
+	@ResponseBody
+	public SaldoAFecha obtenerSaldoAFecha(@RequestParam String numCuenta,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha) {
+		String ibanDescifrado;
+		try {
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		return new SaldoAFecha(fecha, saldoHistoricoService.obtenerSaldoAFecha(ibanDescifrado, fecha));
+	}
+
+	/**
+	 * Devuelve en JSON los totales de ingresos, retiradas y transferencias de una
+	 * cuenta en un periodo, por días o por meses.
+	 *
+	 * @param numCuenta  El IBAN cifrado de la cuenta bancaria.
+	 * @param desde      Primer día del periodo.
+	 * @param hasta      Último día del periodo.
+	 * @param agrupacion {@code DIA} o {@code MES}.
+	 * @return Un total por periodo y tipo de operación.
+	 */
+	@GetMapping("/api/operaciones/resumen")
+	@ResponseBody
+	public List<ResumenOperaciones> obtenerResumenCuenta(@RequestParam String numCuenta,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+			@RequestParam(defaultValue = "DIA") AgrupacionResumen agrupacion) {
+		String ibanDescifrado;
+		try {
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		return resumenOperacionesService.obtenerResumenCuenta(ibanDescifrado, desde, hasta, agrupacion);
+	}
+
+	/**
+	 * Devuelve en JSON los totales de ingresos, retiradas y transferencias de las
+	 * cuentas de un tipo, o de cada tipo, en un periodo, por días o por meses.
+	 *
+	 * @param tipoCuenta Tipo de cuenta; si no se indica, todos por separado.
+	 * @param desde      Primer día del periodo.
+	 * @param hasta      Último día del periodo.
+	 * @param agrupacion {@code DIA} o {@code MES}.
+	 * @return Un total por periodo, tipo de cuenta y tipo de operación.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@GetMapping("/api/operaciones/resumen/tipos-cuenta")
+	@ResponseBody
+	public List<ResumenOperaciones> obtenerResumenTiposCuenta(@RequestParam(required = false) TipoCuenta tipoCuenta,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+			@RequestParam(defaultValue = "DIA") AgrupacionResumen agrupacion) {
+		return resumenOperacionesService.obtenerResumenTiposCuenta(tipoCuenta, desde, hasta, agrupacion);
+	}
+
+	/**
+	 * Vuelve a calcular los resúmenes de operaciones de todas las cuentas a
+	 * partir de sus operaciones.
+	 *
+	 * @return Las particiones reconstruidas y las filas escritas.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@PostMapping("/api/operaciones/resumen/reconstruir")
+	@ResponseBody
+	public ResultadoReconstruccion reconstruirResumenes() {
+		return resumenOperacionesService.reconstruir();
+	}
+
+	/**
+	 * Mueve al archivo las operaciones anteriores al periodo de retención. Las
+	 * consultas siguen devolviéndolas desde el archivo.
+	 *
+	 * @return El nuevo horizonte del archivo y las operaciones archivadas.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@PostMapping("/api/operaciones/archivar")
+	@ResponseBody
+	public ResultadoArchivado archivarOperaciones() {
+		return archivoOperacionesService.archivar();
+	}
+
+	/**
+	 * Liquida los intereses de las cuentas de ahorro en un mes terminado. Si una
+	 * liquidación anterior del mes se interrumpió, continúa donde se quedó.
+	 *
+	 * @param mes Cualquier día del mes a liquidar.
+	 * @return El avance de la liquidación al terminar.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@PostMapping("/api/operaciones/intereses/liquidar")
+	@ResponseBody
+	public EstadoLiquidacion liquidarIntereses(
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mes) {
+		return liquidacionInteresesService.liquidar(mes);
+	}
+
+	/**
+	 * Devuelve el avance de la liquidación de intereses de un mes, por
+	 * particiones, también mientras se está liquidando.
+	 *
+	 * @param mes Cualquier día del mes.
+	 * @return Las cuentas liquidadas, los intereses abonados y el ritmo.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@GetMapping("/api/operaciones/intereses/estado")
+	@ResponseBody
+	public EstadoLiquidacion obtenerEstadoLiquidacion(
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate mes) {
+		return liquidacionInteresesService.obtenerEstado(mes);
+	}
+
+	/**
+	 * Da de alta una orden permanente que paga una cuenta.
+	 *
+	 * @param numCuenta     IBAN cifrado de la cuenta que paga.
+	 * @param cuentaDestino IBAN de la cuenta que cobra, del banco o externa.
+	 * @param cantidad      Cantidad de cada transferencia.
+	 * @param concepto      Concepto de los apuntes.
+	 * @param periodicidad  Cada cuánto se repite la transferencia.
+	 * @param fechaInicio   Fecha de la primera ejecución.
+	 * @param fechaFin      Última fecha posible. Opcional.
+	 * @return La orden creada.
+	 */
+	@PostMapping("/api/ordenes-permanentes")
+	@ResponseBody
+	public OrdenPermanente crearOrdenPermanente(@RequestParam String numCuenta, @RequestParam String cuentaDestino,
+			@RequestParam Dinero cantidad, @RequestParam String concepto, @RequestParam Periodicidad periodicidad,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+		String ibanDescifrado;
+		try {
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		return ordenPermanenteService.crear(ibanDescifrado, cuentaDestino.replace(" ", "").toUpperCase(), cantidad,
+				concepto, periodicidad, fechaInicio, fechaFin);
+	}
+
+	/**
+	 * Devuelve en JSON las órdenes permanentes que paga una cuenta.
+	 *
+	 * @param numCuenta IBAN cifrado de la cuenta.
+	 * @return Sus órdenes, incluidas las terminadas y canceladas.
+	 */
+	@GetMapping("/api/ordenes-permanentes")
+	@ResponseBody
+	public List<OrdenPermanente> obtenerOrdenesPermanentes(@RequestParam String numCuenta) {
+		String ibanDescifrado;
+		try {
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		return ordenPermanenteService.obtenerOrdenes(ibanDescifrado);
+	}
+
+	/**
+	 * Cancela una orden permanente de una cuenta.
+	 *
+	 * @param id        Identificador de la orden.
+	 * @param numCuenta IBAN cifrado de la cuenta que la paga.
+	 */
+	@PostMapping("/api/ordenes-permanentes/{id}/cancelar")
+	@ResponseBody
+	public void cancelarOrdenPermanente(@PathVariable long id, @RequestParam String numCuenta) {
+		String ibanDescifrado;
+		try {
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		ordenPermanenteService.cancelar(ibanDescifrado, id);
+	}
+
+	/**
+	 * Ejecuta ya las órdenes permanentes vencidas, sin esperar al planificador.
+	 *
+	 * @return Las ejecuciones contabilizadas y rechazadas.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@PostMapping("/api/ordenes-permanentes/ejecutar")
+	@ResponseBody
+	public ResultadoOrdenes ejecutarOrdenesPermanentes() {
+		return ordenPermanenteService.ejecutarVencidas();
+	}
+
+	/**
+	 * Busca operaciones combinando los criterios recibidos. Los parámetros no
+	 * informados no filtran. Los resultados se devuelven de la operación más
+	 * reciente a la más antigua, por páginas. Sin cuenta se busca en todas, y
+	 * eso solo pueden hacerlo los administradores.
+	 *
+	 * @param numCuenta      IBAN cifrado de la cuenta de la operación.
+	 * @param tipo           Tipos de operación admitidos.
+	 * @param desde          Fecha mínima, incluida.
+	 * @param hasta          Fecha máxima, incluida.
+	 * @param cantidadMinima Cantidad mínima, incluida.
+	 * @param cantidadMaxima Cantidad máxima, incluida.
+	 * @param contraparte    IBAN de la otra parte en las transferencias.
+	 * @param cursor         Cursor recibido con la página anterior.
+	 * @return Página de operaciones con el cursor de la siguiente.
+	 */
+	@PreAuthorize("hasRole('Admin') or #numCuenta != null")
+	@GetMapping("/api/operaciones/buscar")
+	@ResponseBody
+	public PaginaKeyset<OperacionResumen> buscarOperaciones(@RequestParam(required = false) String numCuenta,
+			@RequestParam(required = false) Set<TipoOperacion> tipo,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+			@RequestParam(required = false) Dinero cantidadMinima,
+			@RequestParam(required = false) Dinero cantidadMaxima,
+			@RequestParam(required = false) String contraparte, @RequestParam(required = false) String cursor) {
+		String ibanDescifrado = null;
+		if (numCuenta != null) {
+			try {
+				ibanDescifrado = Cifrado.descifrar(numCuenta);
+			} catch (Exception e) {
+				throw new ParametroBusquedaException("Número de cuenta no válido.");
+			}
+		}
+		FiltroOperaciones filtro = FiltroOperaciones.builder().numeroCuenta(ibanDescifrado).tipos(tipo).fechaDesde(desde)
+				.fechaHasta(hasta).cantidadMinima(cantidadMinima).cantidadMaxima(cantidadMaxima)
+				.cuentaContraparte(contraparte).build();
+		return operacionService.buscarOperaciones(filtro, cursor, TAMANYO_PAGINA_HISTORIAL);
+	}
+
+	/**
+	 * Devuelve en JSON una página de la actividad de todas las cuentas, de la
+	 * operación más reciente a la más antigua, para las pantallas de
+	 * seguimiento.
+	 *
+	 * @param tipo   Tipo de operación; si no se indica, todos.
+	 * @param cursor Cursor recibido con la página anterior.
+	 * @return Página de operaciones con el cursor de la siguiente.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@GetMapping("/api/operaciones/actividad")
+	@ResponseBody
+	public PaginaKeyset<OperacionResumen> obtenerActividad(@RequestParam(required = false) TipoOperacion tipo,
+			@RequestParam(required = false) String cursor) {
+		return operacionService.obtenerActividad(tipo, cursor, TAMANYO_PAGINA_HISTORIAL);
+	}
+
 	/**
 	 * Muestra el formulario para insertar una nueva operación bancaria.
 	 *
@@ -123,6 +473,8 @@ public class OperacionesController {
 			model.addAttribute("numCuenta", numCuenta);
 			model.addAttribute("tiposOperacion", TipoOperacion.values());
 			model.addAttribute("fechaCreacionCuenta", cuentaBancaria.getFechaCreacion());
+			// Clave única por formulario: un doble clic o un reintento no duplica la operación
+			model.addAttribute("claveIdempotencia", UUID.randomUUID().toString());
 		} catch (IllegalArgumentException e) {
 			return manejarError(model, "Error al mostrar el formulario de operación", e.getMessage(),
 					"/newOperacionView");
@@ -138,21 +490,43 @@ public class OperacionesController {
 	/**
 	 * Muestra los detalles de una operación específica.
 	 *
-	 * @param codigo Código identificador de la operación.
-	 * @param model  Modelo de Spring para pasar datos a la vista.
+	 * Las operaciones archivadas ya no están en la tabla; el historial enlaza
+	 * sus detalles con la cuenta y la fecha, que bastan para leerlas del
+	 * archivo.
+	 *
+	 * @param codigo    Código identificador de la operación.
+	 * @param numCuenta IBAN cifrado de la cuenta, para buscarla en el archivo.
+	 * @param fecha     Fecha de la operación, para buscarla en el archivo.
+	 * @param model     Modelo de Spring para pasar datos a la vista.
 	 * @return Nombre de la vista de detalles o vista de error si la operación no se
 	 *         encuentra.
 	 */
 	@GetMapping("/operacionDetails")
-	public String operacionDetails(@RequestParam int codigo, Model model) {
+	public String operacionDetails(@RequestParam int codigo, @RequestParam(required = false) String numCuenta,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+			Model model) {
 		try {
-			Operacion operacion = operacionService.obtenerPorCodigo(codigo);
+			Operacion operacion;
+			try {
+				operacion = operacionService.obtenerPorCodigo(codigo);
+			} catch (OperacionNoEncontradaException e) {
+				if (numCuenta == null || fecha == null) {
+					throw e;
+				}
+				String iban = Cifrado.descifrar(numCuenta);
+				OperacionResumen archivada = archivoOperacionesService.buscar(iban, fecha, codigo)
+						.orElseThrow(() -> e);
+				model.addAttribute("numCuentaCifrado", numCuenta);
+				model.addAttribute("numCuenta", iban);
+				model.addAttribute("operacion", archivada);
+				return "operacionDetails";
+			}
 			if (operacion == null) {
 				throw new EntityNotFoundException("Operación no encontrada.");
 			}
-			String numCuenta = operacion.getCuentaBancaria().getNumeroCuenta();
-			model.addAttribute("numCuentaCifrado", Cifrado.cifrar(numCuenta));
-			model.addAttribute("numCuenta", numCuenta);
+			String iban = operacion.getCuentaBancaria().getNumeroCuenta();
+			model.addAttribute("numCuentaCifrado", Cifrado.cifrar(iban));
+			model.addAttribute("numCuenta", iban);
 			model.addAttribute("operacion", operacion);
 		} catch (EntityNotFoundException e) {
 			return manejarError(model, "Error al obtener los detalles de la operación", e.getMessage(),
@@ -169,12 +543,22 @@ public class OperacionesController {
 	/**
 	 * Añade una nueva operación bancaria (ingreso, retirada o transferencia) a una
 	 * cuenta.
+	 * 
+	 * Si el envío trae una clave de idempotencia (campo del formulario o cabecera
+	 * {@code Idempotency-Key}), los reintentos con la misma clave devuelven la
+	 * misma redirección sin volver a contabilizar la operación. La clave queda
+	 * ligada al usuario y a los datos del envío: reutilizarla con otros datos es
+	 * un error.
 	 *
-	 * @param newOperacion Objeto con los datos de la operación a insertar.
-	 * @param numCuenta    IBAN cifrado de la cuenta sobre la que se realiza la
-	 *                     operación.
-	 * @param result       Resultado de validaciones del formulario.
-	 * @param model        Modelo de Spring para pasar datos a la vista.
+	 * @param newOperacion         Objeto con los datos de la operación a insertar.
+	 * @param numCuenta            IBAN cifrado de la cuenta sobre la que se
+	 *                             realiza la operación.
+	 * @param result               Resultado de validaciones del formulario.
+	 * @param claveIdempotencia    Clave de idempotencia del formulario (opcional).
+	 * @param cabeceraIdempotencia Clave de idempotencia en cabecera (opcional,
+	 *                             tiene prioridad sobre la del formulario).
+	 * @param usuario              Usuario autenticado que realiza el envío.
+	 * @param model                Modelo de Spring para pasar datos a la vista.
 	 * @return Redirección a la vista de operaciones o una vista de error si algo
 	 *         falla.
 	 * @throws Exception Si ocurre un error durante la validación o proceso de la
@@ -182,8 +566,10 @@ public class OperacionesController {
 	 */
 	@PostMapping("/addOperacion")
 	public String addOperacion(@Valid @ModelAttribute Operacion newOperacion,
-			@RequestParam(required = false) String numCuenta, BindingResult result, Model model) throws Exception {
-		String ibanDescifrado;
+			@RequestParam(required = false) String numCuenta, BindingResult result,
+			@RequestParam(required = false) String claveIdempotencia,
+			@RequestHeader(name = "Idempotency-Key", required = false) String cabeceraIdempotencia,
+			Principal usuario, Model model) throws Exception {
 		try {
 			if (result.hasErrors()) {
 				throw new Exception("Parámetros de operación erróneos");
@@ -196,31 +582,21 @@ public class OperacionesController {
 				}
 			}
 
-			ibanDescifrado = Cifrado.descifrar(numCuenta);
-
-			CuentaBancaria cuenta = cuentaBancariaService.obtenerPorNumeroCuenta(ibanDescifrado);
-			if (cuenta == null) {
-				throw new CuentaNoEncontradaException("Cuenta bancaria no encontrada.");
-			}
+			String ibanDescifrado = Cifrado.descifrar(numCuenta);
 
-			float cantidad = newOperacion.getCantidad();
-			switch (newOperacion.getTipo()) {
-			case IngresarDinero, EntradaTransferencia -> {
-				cuenta.setSaldo(cuenta.getSaldo() + cantidad);
-			}
-			case RetirarDinero, RetiradaTransferencia -> {
-				if (cuenta.getSaldo() < cantidad) {
-					throw new SaldoInsuficienteException("Saldo insuficiente para realizar la operación.");
-				}
-				cuenta.setSaldo(cuenta.getSaldo() - cantidad);
+			String clave = cabeceraIdempotencia != null ? cabeceraIdempotencia : claveIdempotencia;
+			if (clave == null || clave.isBlank()) {
+				return contabilizarOperacion(newOperacion, ibanDescifrado, numCuenta, true);
 			}
-			}
-
-			cuentaBancariaService.actualizarCuentaBancaria(cuenta);
-			newOperacion.setCuentaBancaria(cuenta);
-			operacionService.insertarOperaciones(newOperacion);
-
-			return "redirect:/showOperacionesView?numCuenta=" + numCuenta;
+			String peticion = String.join("|", usuario != null ? usuario.getName() : "", ibanDescifrado,
+					String.valueOf(newOperacion.getTipo()), String.valueOf(newOperacion.getCantidad()),
+					String.valueOf(newOperacion.getFecha()), String.valueOf(newOperacion.getNumCuentaTransferencia()),
+					String.valueOf(newOperacion.getDescripcion()));
+			// Con clave la operación se contabiliza en la transacción que guarda la
+			// clave: la cola la confirmaría en otra transacción, con otra conexión,
+			// mientras esta espera ocupando la suya
+			return idempotenciaService.ejecutarUnaVez(clave, peticion,
+					() -> contabilizarOperacion(newOperacion, ibanDescifrado, numCuenta, false));
 
 		} catch (Exception e) {
 			return manejarError(model, "Error al realizar la operación", e.getMessage(), "/addOperacion");
@@ -230,10 +606,62 @@ public class OperacionesController {
 	}
 
 	/**
-	 * Elimina una operación existente y revierte sus efectos sobre el saldo de la
-	 * cuenta. Solo accesible por usuarios con rol ADMIN.
+	 * Contabiliza la operación enviada y devuelve la redirección a la vista de
+	 * operaciones de la cuenta. Solo se usan las colas si {@code porCola} y
+	 * están activas.
+	 */
+	private String contabilizarOperacion(Operacion newOperacion, String ibanDescifrado, String numCuenta,
+			boolean porCola) {
+		String contrapartida = newOperacion.getNumCuentaTransferencia() == null ? null
+				: newOperacion.getNumCuentaTransferencia().replaceAll("\\s+", "").toUpperCase();
+		boolean esTransferencia = newOperacion.getTipo() == TipoOperacion.EntradaTransferencia
+				|| newOperacion.getTipo() == TipoOperacion.RetiradaTransferencia;
+
+		if (esTransferencia && contabilizacionService.esCuentaInterna(contrapartida)) {
+			// Transferencia entre cuentas propias: se contabilizan las dos patas a la vez
+			boolean esSalida = newOperacion.getTipo() == TipoOperacion.RetiradaTransferencia;
+			contabilizacionService.transferir(esSalida ? ibanDescifrado : contrapartida,
+					esSalida ? contrapartida : ibanDescifrado, newOperacion.getCantidad(),
+					newOperacion.getDescripcion(), newOperacion.getFecha());
+		} else if (porCola && colaContabilizacionService.isActiva()) {
+			// Un único hilo por cuenta contabiliza sus operaciones en lotes
+			colaContabilizacionService.contabilizar(ibanDescifrado, newOperacion);
+		} else {
+			// El saldo se actualiza y la operación se registra en una única transacción
+			contabilizacionService.contabilizar(ibanDescifrado, newOperacion);
+		}
+
+		return "redirect:/showOperacionesView?numCuenta=" + numCuenta;
+	}
+
+	/**
+	 * Contabiliza un fichero de ingresos y retiradas, como los que envían los
+	 * clientes de empresa, en lugar de introducirlos uno a uno. Cada línea es un
+	 * apunte con el formato {@code IBAN;TIPO;IMPORTE;FECHA;DESCRIPCION}. Las
+	 * líneas erróneas se devuelven con su motivo y no impiden contabilizar el
+	 * resto. Es una carga de back-office: solo accesible por usuarios con rol
+	 * ADMIN.
+	 *
+	 * @param fichero Fichero de apuntes en UTF-8.
+	 * @return Número de apuntes contabilizados y errores por línea.
+	 * @throws IOException si falla la lectura del fichero.
+	 */
+	@PreAuthorize("hasRole('Admin')")
+	@PostMapping("/api/operaciones/carga")
+	@ResponseBody
+	public ResultadoCargaApuntes cargarApuntes(@RequestParam MultipartFile fichero) throws IOException {
+		try (Reader lector = new InputStreamReader(fichero.getInputStream(), StandardCharsets.UTF_8)) {
+			return contabilizacionService.contabilizarFichero(lector);
+		}
+	}
+
+	/**
+	 * Anula una operación existente con un apunte de compensación que revierte
+	 * sus efectos sobre el saldo de la cuenta; la operación original se conserva.
+	 * Repetir la petición no vuelve a modificar el saldo. Solo accesible por
+	 * usuarios con rol ADMIN.
 	 *
-	 * @param codigo Código de la operación a eliminar.
+	 * @param codigo Código de la operación a anular.
 	 * @param model  Modelo de Spring para pasar mensajes en caso de error.
 	 * @return Redirección a la vista de operaciones de la cuenta o una vista de
 	 *         error.
@@ -243,105 +671,114 @@ public class OperacionesController {
 	public String eliminarCuenta(@RequestParam long codigo, Model model) {
 
 		try {
-			Operacion operacion = operacionService.obtenerPorCodigo(codigo);
-			if (operacion == null) {
-				throw new EntityNotFoundException("Operación no encontrada.");
-			}
-
-			CuentaBancaria cuentaBancaria = operacion.getCuentaBancaria();
-			if (cuentaBancaria != null) {
-				switch (operacion.getTipo()) {
-				case IngresarDinero, EntradaTransferencia ->
-					cuentaBancaria.setSaldo(cuentaBancaria.getSaldo() - operacion.getCantidad());
-				case RetirarDinero, RetiradaTransferencia ->
-					cuentaBancaria.setSaldo(cuentaBancaria.getSaldo() + operacion.getCantidad());
-				}
-				cuentaBancariaService.actualizarCuentaBancaria(cuentaBancaria);
-			}
+			Operacion anulacion = contabilizacionService.anular(codigo);
+			return "redirect:/showOperacionesView?numCuenta="
+					+ Cifrado.cifrar(anulacion.getCuentaBancaria().getNumeroCuenta());
 
-			operacionService.eliminarOperacion(codigo);
-			return "redirect:/showOperacionesView?numCuenta=" + Cifrado.cifrar(cuentaBancaria.getNumeroCuenta());
-
-		} catch (EntityNotFoundException e) {
-			return manejarError(model, "Error al eliminar la operación", e.getMessage(), "/actDropOperacion");
+		} catch (OperacionNoEncontradaException e) {
+			return manejarError(model, "Error al anular la operación", e.getMessage(), "/actDropOperacion");
 
 		} catch (Exception e) {
-			return manejarError(model, "Error al eliminar la operación", e.getMessage(), "/actDropOperacion");
+			return manejarError(model, "Error al anular la operación", e.getMessage(), "/actDropOperacion");
 
 		}
 	}
 
 	/**
-	 * Exporta a PDF el listado de operaciones de una cuenta bancaria.
+	 * Solicita la exportación a PDF del listado de operaciones de una cuenta. El
+	 * PDF se genera en segundo plano; el cliente consulta el progreso con
+	 * {@code /api/exportaciones/{id}} y lo descarga al completarse. Si la cuenta
+	 * no ha tenido movimientos desde la última exportación igual, el trabajo se
+	 * devuelve ya completado.
 	 *
-	 * @param numCuenta IBAN en texto plano de la cuenta bancaria.
-	 * @param response  Objeto HttpServletResponse para enviar el archivo PDF
-	 *                  generado.
+	 * @param numCuenta IBAN cifrado de la cuenta bancaria.
+	 * @param desde     Fecha inicial del extracto, incluida. Opcional.
+	 * @param hasta     Fecha final del extracto, incluida. Opcional.
+	 * @return Estado inicial del trabajo de exportación, con su identificador.
 	 */
-	@GetMapping("/exportOperacionesPdf")
-	public String exportOperacionesToPdf(Model model, @RequestParam String numCuenta, HttpServletResponse response) {
+	@PostMapping("/api/exportaciones")
+	@ResponseBody
+	public EstadoExportacion solicitarExportacion(@RequestParam String numCuenta,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+		String ibanDescifrado;
 		try {
-			String numCuentaDescifrado = Cifrado.descifrar(numCuenta);
-			List<Operacion> operaciones = cuentaBancariaService.obtenerPorNumeroCuenta(numCuentaDescifrado)
-					.getOperaciones();
+			ibanDescifrado = Cifrado.descifrar(numCuenta);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Número de cuenta no válido.");
+		}
+		return EstadoExportacion.de(exportacionService.solicitar(ibanDescifrado, desde, hasta));
+	}
+
+	/**
+	 * Devuelve el progreso de una exportación.
+	 *
+	 * @param id Identificador del trabajo de exportación.
+	 * @return Estado actual del trabajo.
+	 */
+	@GetMapping("/api/exportaciones/{id}")
+	@ResponseBody
+	public EstadoExportacion consultarExportacion(@PathVariable String id) {
+		return EstadoExportacion.de(exportacionService.obtener(id));
+	}
 
+	/**
+	 * Descarga el PDF de una exportación completada. La respuesta lleva como
+	 * {@code ETag} la clave del extracto en la caché, que cambia con la versión de
+	 * la cuenta; si el cliente ya la tiene ({@code If-None-Match}) se responde 304
+	 * sin cuerpo. El fichero se abre antes de que la caché pueda descartarlo y se
+	 * copia con {@link FileChannel#transferTo} sobre la salida de la respuesta;
+	 * si la caché lo descarta durante el envío, el canal abierto sigue leyéndolo
+	 * entero.
+	 *
+	 * @param id       Identificador del trabajo de exportación.
+	 * @param request  Petición HTTP, para comprobar el {@code If-None-Match}.
+	 * @param response Respuesta HTTP donde se escribe el PDF.
+	 * @throws IOException si falla la lectura del fichero o el envío.
+	 */
+	@GetMapping("/api/exportaciones/{id}/descarga")
+	public void descargarExportacion(@PathVariable String id, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		TrabajoExportacion trabajo = exportacionService.obtenerCompletado(id);
+		String etag = "\"" + trabajo.getClave() + "\"";
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "private, no-cache");
+		if (coincideEtag(request.getHeader("If-None-Match"), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		try (FileChannel canal = exportacionService.abrirExtracto(trabajo)) {
+			long tamanyo = canal.size();
 			response.setContentType("application/pdf");
 			response.setHeader("Content-Disposition",
-					"attachment; filename=operaciones_" + numCuentaDescifrado + ".pdf");
-
-			PdfWriter writer = new PdfWriter(response.getOutputStream());
-			PdfDocument pdfDoc = new PdfDocument(writer);
-			Document document = new Document(pdfDoc);
-
-			String fechaHoy = LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-
-			document.add(new Paragraph("Listado de Operaciones para cuenta: " + numCuentaDescifrado).setBold()
-					.setFontSize(14));
-			document.add(new Paragraph("Fecha de expedición: " + fechaHoy).setItalic());
-			document.add(new Paragraph(" "));
-
-			// Añadimos una columna más si hay alguna transferencia
-			boolean contieneTransferencias = operaciones.stream()
-					.anyMatch(op -> op.getNumCuentaTransferencia() != null);
-
-			Table table;
-			if (contieneTransferencias) {
-				table = new Table(UnitValue.createPercentArray(new float[] { 2, 4, 4, 3, 5 }));
-				table.addHeaderCell("Código");
-				table.addHeaderCell("Fecha");
-				table.addHeaderCell("Tipo");
-				table.addHeaderCell("Cantidad");
-				table.addHeaderCell("Cuenta destino");
-			} else {
-				table = new Table(UnitValue.createPercentArray(new float[] { 2, 4, 4, 3 }));
-				table.addHeaderCell("Código");
-				table.addHeaderCell("Fecha");
-				table.addHeaderCell("Tipo");
-				table.addHeaderCell("Cantidad");
-			}
-
-			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+					"attachment; filename=operaciones_" + trabajo.getNumeroCuenta() + ".pdf");
+			response.setContentLengthLong(tamanyo);
 
-			for (Operacion op : operaciones) {
-				table.addCell(String.valueOf(op.getCodigo()));
-				table.addCell(op.getFecha().format(formatter));
-				table.addCell(op.getTipo().name()); // O usa tu método personalizado tipo.getNombreBonito()
-				table.addCell(String.format("%.2f €", op.getCantidad()));
-
-				if (contieneTransferencias) {
-					table.addCell(op.getNumCuentaTransferencia() != null ? op.getNumCuentaTransferencia() : "-");
-				}
+			WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+			long enviado = 0;
+			while (enviado < tamanyo) {
+				enviado += canal.transferTo(enviado, tamanyo - enviado, salida);
 			}
+		}
+	}
 
-			document.add(table);
-			document.close();
-
-			return "redirect:showOperacionesView?numCuenta=" + numCuenta;
-
-		} catch (Exception e) {
-			return manejarError(model, "No se pudo exportar el listado de operaciones.", e.getMessage(),
-					"/exportOperacionesPdf");
+	/**
+	 * Comprueba si la cabecera {@code If-None-Match} incluye la etiqueta indicada.
+	 */
+	private static boolean coincideEtag(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidata : ifNoneMatch.split(",")) {
+			String valor = candidata.trim();
+			if (valor.startsWith("W/")) {
+				valor = valor.substring(2);
+			}
+			if (valor.equals("*") || valor.equals(etag)) {
+				return true;
+			}
 		}
+		return false;
 	}
 
 	/**
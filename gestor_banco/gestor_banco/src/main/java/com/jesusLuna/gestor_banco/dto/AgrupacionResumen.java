@@ -0,0 +1,25 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Periodo en el que se agrupan los totales de un resumen de operaciones.
+ * 
+ * <ul>
+ * <li>{@code DIA}: un total por día.</li>
+ * <li>{@code MES}: un total por mes, identificado por su primer día.</li>
+ * </ul>
+ * 
+ * @author Jesús
+ */
+public enum AgrupacionResumen {
+	DIA, MES;
+
+	/**
+	 * @param fecha un día.
+	 * @return el periodo al que pertenece el día.
+	 */
+	public LocalDate periodo(LocalDate fecha) {
+		return this == MES ? fecha.withDayOfMonth(1) : fecha;
+	}
+}
@@ -0,0 +1,28 @@
+package com.jesusLuna.gestor_banco.dto;
+
+/**
+ * Proyección mínima de un {@code Cliente} (identificador, NIF y nombre) para
+ * listados de candidatos a titular de una cuenta.
+ * 
+ * Es una proyección por interfaz porque se rellena desde una consulta nativa;
+ * los alias de las columnas deben coincidir con los nombres de los getters.
+ * 
+ * @author Jesús
+ */
+public interface ClienteIdentificacion {
+
+	/**
+	 * @return el identificador del cliente.
+	 */
+	Long getId();
+
+	/**
+	 * @return el NIF del cliente.
+	 */
+	String getNif();
+
+	/**
+	 * @return el nombre del cliente.
+	 */
+	String getNombre();
+}
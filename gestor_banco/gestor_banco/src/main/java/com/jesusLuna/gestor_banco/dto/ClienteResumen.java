@@ -0,0 +1,57 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección ligera de un {@code Cliente} con los datos que necesitan los
+ * selectores de cliente de los formularios de cuentas.
+ * 
+ * Se construye directamente desde la consulta JPQL (expresión
+ * {@code SELECT new}), por lo que nunca se cargan entidades ni sus colecciones
+ * perezosas.
+ * 
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClienteResumen implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Identificador del cliente.
+	 */
+	private Long id;
+
+	/**
+	 * NIF del cliente.
+	 */
+	private String nif;
+
+	/**
+	 * Nombre del cliente.
+	 */
+	private String nombre;
+
+	/**
+	 * Apellidos del cliente.
+	 */
+	private String apellidos;
+
+	/**
+	 * Año de nacimiento, usado por el formulario para validar la fecha de apertura.
+	 */
+	private Integer anyoNacimiento;
+
+	/**
+	 * Correo electrónico del cliente.
+	 */
+	private String email;
+}
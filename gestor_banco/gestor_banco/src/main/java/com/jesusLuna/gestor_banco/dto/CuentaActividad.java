@@ -0,0 +1,62 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección de una cuenta de un cliente junto con un resumen de su actividad:
+ * número de operaciones y fecha de la última.
+ * 
+ * Se construye con una única consulta agrupada, de modo que la vista de cuentas
+ * de un cliente no necesita cargar la colección perezosa de cuentas ni las
+ * operaciones.
+ * 
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CuentaActividad implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * IBAN de la cuenta.
+	 */
+	private String numeroCuenta;
+
+	/**
+	 * Tipo de cuenta.
+	 */
+	private TipoCuenta tipoCuenta;
+
+	/**
+	 * Fecha de creación de la cuenta.
+	 */
+	private LocalDate fechaCreacion;
+
+	/**
+	 * Saldo actual.
+	 */
+	private Dinero saldo;
+
+	/**
+	 * Número de operaciones registradas en la cuenta.
+	 */
+	private long numeroOperaciones;
+
+	/**
+	 * Fecha de la última operación, o {@code null} si la cuenta no tiene
+	 * operaciones.
+	 */
+	private LocalDate ultimaActividad;
+}
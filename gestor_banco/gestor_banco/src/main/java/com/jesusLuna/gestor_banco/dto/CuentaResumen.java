@@ -0,0 +1,50 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección de solo lectura de una {@code CuentaBancaria} con las columnas que
+ * muestra el listado de cuentas: IBAN, tipo, fecha de creación y saldo.
+ * 
+ * Se construye en la propia consulta JPQL, así que no se cargan entidades,
+ * titulares ni operaciones.
+ * 
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CuentaResumen implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * IBAN de la cuenta.
+	 */
+	private String numeroCuenta;
+
+	/**
+	 * Tipo de cuenta.
+	 */
+	private TipoCuenta tipoCuenta;
+
+	/**
+	 * Fecha de creación de la cuenta.
+	 */
+	private LocalDate fechaCreacion;
+
+	/**
+	 * Saldo actual.
+	 */
+	private Dinero saldo;
+}
@@ -0,0 +1,32 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Línea de un fichero de apuntes que no se ha podido contabilizar.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ErrorLineaCarga implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Número de la línea en el fichero, empezando en 1.
+	 */
+	private long linea;
+
+	/**
+	 * Motivo por el que se ha rechazado.
+	 */
+	private String mensaje;
+}
@@ -0,0 +1,62 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+
+import com.jesusLuna.gestor_banco.service.TrabajoExportacion;
+import com.jesusLuna.gestor_banco.service.TrabajoExportacion.Estado;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Estado de un trabajo de exportación tal y como se devuelve al cliente que
+ * consulta su progreso.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EstadoExportacion implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Identificador del trabajo.
+	 */
+	private String id;
+
+	/**
+	 * Estado del trabajo.
+	 */
+	private Estado estado;
+
+	/**
+	 * Operaciones escritas hasta el momento.
+	 */
+	private long filasProcesadas;
+
+	/**
+	 * Operaciones que tiene que escribir.
+	 */
+	private long filasTotales;
+
+	/**
+	 * Motivo del fallo, si lo hay.
+	 */
+	private String error;
+
+	/**
+	 * Construye el estado a partir del trabajo.
+	 *
+	 * @param trabajo el trabajo de exportación.
+	 * @return su estado actual.
+	 */
+	public static EstadoExportacion de(TrabajoExportacion trabajo) {
+		return new EstadoExportacion(trabajo.getId(), trabajo.getEstado(), trabajo.getFilasProcesadas(),
+				trabajo.getFilasTotales(), trabajo.getError());
+	}
+}
@@ -0,0 +1,69 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.ParticionLiquidacion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Avance de la liquidación de intereses de un mes, calculado a partir de los
+ * puntos de control de sus particiones.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EstadoLiquidacion implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Primer día del mes liquidado.
+	 */
+	private LocalDate mes;
+
+	/**
+	 * Cuentas de ahorro al calcular las particiones.
+	 */
+	private long totalCuentas;
+
+	/**
+	 * Cuentas liquidadas.
+	 */
+	private long cuentas;
+
+	/**
+	 * Cuentas a las que se han abonado intereses.
+	 */
+	private long abonos;
+
+	/**
+	 * Suma de los intereses abonados.
+	 */
+	private Dinero intereses;
+
+	/**
+	 * Particiones que ya han liquidado todas sus cuentas.
+	 */
+	private int particionesTerminadas;
+
+	/**
+	 * Cuentas liquidadas por segundo desde que se calcularon las particiones
+	 * hasta el último bloque confirmado.
+	 */
+	private double cuentasPorSegundo;
+
+	/**
+	 * Rango y avance de cada partición.
+	 */
+	private List<ParticionLiquidacion> particiones;
+}
@@ -0,0 +1,63 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Set;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Criterios de búsqueda de operaciones. Todos los campos son opcionales: un
+ * campo {@code null} (o un conjunto de tipos vacío) no filtra.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FiltroOperaciones implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * IBAN de la cuenta de la operación.
+	 */
+	private String numeroCuenta;
+
+	/**
+	 * Tipos de operación admitidos.
+	 */
+	private Set<TipoOperacion> tipos;
+
+	/**
+	 * Fecha mínima de la operación, incluida.
+	 */
+	private LocalDate fechaDesde;
+
+	/**
+	 * Fecha máxima de la operación, incluida.
+	 */
+	private LocalDate fechaHasta;
+
+	/**
+	 * Cantidad mínima de la operación, incluida.
+	 */
+	private Dinero cantidadMinima;
+
+	/**
+	 * Cantidad máxima de la operación, incluida.
+	 */
+	private Dinero cantidadMaxima;
+
+	/**
+	 * IBAN de la otra parte en las transferencias.
+	 */
+	private String cuentaContraparte;
+}
@@ -0,0 +1,23 @@
+package com.jesusLuna.gestor_banco.dto;
+
+/**
+ * Forma de comparar el fragmento de IBAN introducido en el buscador de cuentas.
+ * 
+ * <ul>
+ * <li>{@code AUTOMATICO}: si el fragmento empieza por el código de país se
+ * busca por prefijo; si no, por sufijo (los últimos dígitos de la cuenta).</li>
+ * <li>{@code EXACTO}: IBAN completo, por clave primaria.</li>
+ * <li>{@code PREFIJO}: IBAN que empieza por el fragmento, por clave
+ * primaria.</li>
+ * <li>{@code SUFIJO}: IBAN que termina por el fragmento, por el índice del
+ * número de cuenta invertido.</li>
+ * <li>{@code CONTIENE}: fragmento en cualquier posición. No puede usar ningún
+ * índice y recorre todas las cuentas, por eso solo se aplica cuando se pide
+ * expresamente.</li>
+ * </ul>
+ * 
+ * @author Jesús
+ */
+public enum ModoBusquedaIban {
+	AUTOMATICO, EXACTO, PREFIJO, SUFIJO, CONTIENE
+}
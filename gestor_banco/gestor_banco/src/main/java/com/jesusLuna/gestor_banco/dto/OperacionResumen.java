@@ -0,0 +1,77 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección de solo lectura de una {@code Operacion} para el historial de una
+ * cuenta y la búsqueda de operaciones. Se construye en la propia consulta, sin
+ * cargar la entidad ni su cuenta.
+ * 
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OperacionResumen implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Código de la operación.
+	 */
+	private long codigo;
+
+	/**
+	 * IBAN de la cuenta a la que pertenece la operación.
+	 */
+	private String numeroCuenta;
+
+	/**
+	 * Descripción de la operación.
+	 */
+	private String descripcion;
+
+	/**
+	 * Fecha de la operación.
+	 */
+	private LocalDate fecha;
+
+	/**
+	 * Tipo de operación.
+	 */
+	private TipoOperacion tipo;
+
+	/**
+	 * Cantidad de la operación.
+	 */
+	private Dinero cantidad;
+
+	/**
+	 * Cuenta de la otra parte en las transferencias, o {@code null}.
+	 */
+	private String numCuentaTransferencia;
+
+	/**
+	 * Saldo de la cuenta tras la operación. Solo se informa en el historial de
+	 * una cuenta; en las búsquedas es {@code null}.
+	 */
+	private Dinero saldo;
+
+	/**
+	 * Constructor usado por las consultas, que no calculan el saldo.
+	 */
+	public OperacionResumen(long codigo, String numeroCuenta, String descripcion, LocalDate fecha,
+			TipoOperacion tipo, Dinero cantidad, String numCuentaTransferencia) {
+		this(codigo, numeroCuenta, descripcion, fecha, tipo, cantidad, numCuentaTransferencia, null);
+	}
+}
@@ -0,0 +1,40 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Página de resultados obtenida con paginación por clave (keyset).
+ * 
+ * En lugar de un número de página se devuelve un cursor opaco que identifica la
+ * última fila entregada; la página siguiente se pide a partir de él, de modo
+ * que la base de datos nunca tiene que saltar filas con {@code OFFSET}.
+ * 
+ * @param <T> Tipo de los elementos de la página.
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaKeyset<T> {
+
+	/**
+	 * Elementos de la página.
+	 */
+	private List<T> elementos;
+
+	/**
+	 * Indica si hay más elementos después de esta página.
+	 */
+	private boolean hayMas;
+
+	/**
+	 * Cursor para pedir la página siguiente, o {@code null} si no hay más.
+	 */
+	private String cursorSiguiente;
+}
@@ -0,0 +1,50 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de archivar las operaciones antiguas.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoArchivado implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Primer día que sigue en la tabla de operaciones; las anteriores están en
+	 * el archivo.
+	 */
+	private LocalDate horizonte;
+
+	/**
+	 * Ficheros escritos en el archivo.
+	 */
+	private int ficheros;
+
+	/**
+	 * Operaciones archivadas.
+	 */
+	private long operaciones;
+
+	/**
+	 * Bloques de cuentas que no se pudieron archivar y conservan sus
+	 * operaciones en la tabla.
+	 */
+	private int bloquesFallidos;
+
+	/**
+	 * Duración del archivado en milisegundos.
+	 */
+	private long milisegundos;
+}
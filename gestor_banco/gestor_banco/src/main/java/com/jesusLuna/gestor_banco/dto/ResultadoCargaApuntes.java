@@ -0,0 +1,45 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de contabilizar un fichero de apuntes: cuántas líneas se han
+ * contabilizado y el motivo de cada una de las rechazadas. Las líneas
+ * rechazadas no afectan al resto del fichero.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoCargaApuntes implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Líneas con apuntes leídas del fichero, sin contar vacías ni comentarios.
+	 */
+	private long lineasLeidas;
+
+	/**
+	 * Apuntes contabilizados.
+	 */
+	private long lineasContabilizadas;
+
+	/**
+	 * Cuentas cuyo saldo ha cambiado.
+	 */
+	private int cuentasAfectadas;
+
+	/**
+	 * Líneas rechazadas, en el orden del fichero.
+	 */
+	private List<ErrorLineaCarga> errores;
+}
@@ -0,0 +1,49 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de una pasada de ejecución de las órdenes permanentes vencidas.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoOrdenes implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Ejecuciones contabilizadas.
+	 */
+	private long ejecutadas;
+
+	/**
+	 * Ejecuciones rechazadas, normalmente por saldo insuficiente; la orden pasa
+	 * igualmente a su siguiente fecha.
+	 */
+	private long rechazadas;
+
+	/**
+	 * Lotes de órdenes procesados.
+	 */
+	private int lotes;
+
+	/**
+	 * Lotes que fallaron después de reintentarlos; sus órdenes se liberan y se
+	 * ejecutan en la siguiente pasada.
+	 */
+	private int lotesFallidos;
+
+	/**
+	 * Duración de la pasada en milisegundos.
+	 */
+	private long milisegundos;
+}
@@ -0,0 +1,49 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de reconstruir los resúmenes de operaciones.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoReconstruccion implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Particiones reconstruidas, una por bloque de cuentas.
+	 */
+	private int particiones;
+
+	/**
+	 * Particiones que no se pudieron reconstruir y conservan sus resúmenes
+	 * anteriores.
+	 */
+	private int particionesFallidas;
+
+	/**
+	 * Filas por cuenta escritas.
+	 */
+	private long filas;
+
+	/**
+	 * Filas por tipo de cuenta corregidas al conciliarlas con las filas por
+	 * cuenta.
+	 */
+	private long filasCorregidas;
+
+	/**
+	 * Duración de la reconstrucción en milisegundos.
+	 */
+	private long milisegundos;
+}
@@ -0,0 +1,40 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Página de resultados devuelta por el buscador incremental (typeahead) de
+ * clientes.
+ * 
+ * No incluye el total de coincidencias: la consulta se resuelve como un
+ * {@code Slice}, así que solo se sabe si hay una página siguiente y se evita el
+ * {@code COUNT} sobre toda la tabla.
+ * 
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoTypeahead {
+
+	/**
+	 * Clientes de la página solicitada.
+	 */
+	private List<ClienteResumen> resultados;
+
+	/**
+	 * Número de página (empezando en 0).
+	 */
+	private int pagina;
+
+	/**
+	 * Indica si existe al menos una página más de resultados.
+	 */
+	private boolean hayMas;
+}
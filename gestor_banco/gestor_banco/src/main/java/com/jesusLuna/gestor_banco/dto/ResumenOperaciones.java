@@ -0,0 +1,53 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Total de las operaciones de un tipo en un periodo, para los informes de
+ * depósitos, retiradas y transferencias.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumenOperaciones implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Día del total, o primer día del mes si se agrupa por meses.
+	 */
+	private LocalDate periodo;
+
+	/**
+	 * Tipo de las cuentas; {@code null} en los resúmenes de una cuenta.
+	 */
+	private TipoCuenta tipoCuenta;
+
+	/**
+	 * Tipo de las operaciones.
+	 */
+	private TipoOperacion tipo;
+
+	/**
+	 * Número de operaciones.
+	 */
+	private long numOperaciones;
+
+	/**
+	 * Suma de las cantidades de las operaciones.
+	 */
+	private Dinero total;
+}
@@ -0,0 +1,35 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Saldo de una cuenta al cierre de un día.
+ *
+ * @author Jesús
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SaldoAFecha implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Día consultado.
+	 */
+	private LocalDate fecha;
+
+	/**
+	 * Saldo de la cuenta tras la última operación de ese día o de los anteriores.
+	 */
+	private Dinero saldo;
+}
@@ -0,0 +1,60 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Clave de idempotencia de un envío de operación ya contabilizado.
+ * 
+ * El cliente manda una clave única con cada envío. La fila se inserta en la
+ * misma transacción que la operación, de modo que solo puede existir si la
+ * operación se ha confirmado; un reintento con la misma clave devuelve el
+ * resultado guardado en lugar de volver a mover el saldo. Las claves caducan y
+ * se eliminan periódicamente.
+ * 
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Clave_Idempotencia", indexes = @Index(name = "idx_clave_idempotencia_expira", columnList = "Expira_En"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClaveIdempotencia implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Clave enviada por el cliente.
+	 */
+	@Id
+	@Column(name = "Clave", length = 64, nullable = false)
+	private String clave;
+
+	/**
+	 * Resultado del envío original, que se devuelve tal cual en los reintentos.
+	 */
+	@Column(name = "Resultado", length = 512)
+	private String resultado;
+
+	/**
+	 * Resumen SHA-256 del usuario y los datos del envío original. Un reintento con
+	 * la misma clave y otros datos se rechaza en lugar de recibir este resultado.
+	 */
+	@Column(name = "Huella", length = 64)
+	private String huella;
+
+	/**
+	 * Momento en que se contabilizó la operación.
+	 */
+	@Column(name = "Creada_En", nullable = false)
+	private LocalDateTime creadaEn;
+
+	/**
+	 * Momento a partir del cual la clave deja de tener efecto.
+	 */
+	@Column(name = "Expira_En", nullable = false)
+	private LocalDateTime expiraEn;
+}
@@ -41,7 +41,7 @@ import lombok.*;
  * @author Jesús
  */
 @Entity
-@Table(name = "dam_cliente")
+@Table(name = "dam_cliente", indexes = @Index(name = "idx_cliente_apellidos", columnList = "Apellidos"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -52,10 +52,12 @@ public class Cliente implements Serializable {
 	private static final int EDAD_MINIMA = 18;
 
 	/**
-	 * Identificador único del cliente. Es la clave primaria en la base de datos.
+	 * Identificador único del cliente. Es la clave primaria en la base de datos y
+	 * se obtiene de la secuencia {@code dam_cliente_seq}.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cliente_seq")
+	@SequenceGenerator(name = "cliente_seq", sequenceName = "dam_cliente_seq", allocationSize = 20)
 	@Column(name = "Id")
 	private Long id;
 
@@ -40,7 +40,10 @@ import lombok.*;
  * @author Jesús
  */
 @Entity
-@Table(name = "dam_Cuenta_Bancaria")
+@Table(name = "dam_Cuenta_Bancaria", indexes = {
+		@Index(name = "idx_cuenta_fecha_creacion", columnList = "Fecha_Creacion, Numero_Cuenta, Tipo_Cuenta"),
+		@Index(name = "idx_cuenta_iban_invertido", columnList = "Numero_Cuenta_Invertido, Tipo_Cuenta"),
+		@Index(name = "idx_cuenta_tipo_numero", columnList = "Tipo_Cuenta, Numero_Cuenta") })
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -56,6 +59,15 @@ public class CuentaBancaria implements Serializable {
 	@Column(name = "Numero_Cuenta", length = 34, nullable = false, unique = true)
 	private String numeroCuenta;
 
+	/**
+	 * Número de cuenta escrito al revés. Permite buscar por los últimos dígitos del
+	 * IBAN con un {@code LIKE 'fragmento%'} sobre un índice, igual que las
+	 * búsquedas por prefijo usan la clave primaria. Se mantiene automáticamente
+	 * antes de cada inserción o actualización.
+	 */
+	@Column(name = "Numero_Cuenta_Invertido", length = 34)
+	private String numeroCuentaInvertido;
+
 	/**
 	 * Tipo de cuenta bancaria. Se utiliza la enumeración {@code TipoCuenta} que
 	 * puede ser de tipo Ahorro, Corriente o Empresarial.
@@ -88,24 +100,39 @@ public class CuentaBancaria implements Serializable {
 	}
 
 	/**
-	 * Saldo actual de la cuenta bancaria. No puede ser nulo y debe tener un valor
-	 * válido.
+	 * Saldo actual de la cuenta bancaria, en céntimos exactos. No puede ser nulo.
+	 * 
+	 * @see Dinero
 	 */
-	@Column(name = "Saldo", nullable = false)
-	private float saldo;
+	@NotNull(message = "El saldo no puede estar vacío")
+	@Column(name = "Saldo_Centimos", nullable = false)
+	private Dinero saldo = Dinero.CERO;
 
 	@Version
 	private int version;
 
+	/**
+	 * Versión de los datos que se editan a mano: tipo, fecha de creación y
+	 * titulares. Las contabilizaciones cambian el saldo y {@link #version}, pero
+	 * no esta, así que un borrador de edición sigue siendo válido mientras nadie
+	 * más edite la cuenta.
+	 */
+	@Column(name = "Version_Titulares", nullable = false)
+	private int versionTitulares;
+
 	/**
 	 * Relación Many-to-Many entre cuentas bancarias y clientes. Una cuenta bancaria
 	 * puede estar asociada a múltiples clientes. Se utiliza una tabla intermedia
-	 * {@code cliente_cuenta} para gestionar esta relación.
+	 * {@code cliente_cuenta} para gestionar esta relación, indexada en ambos
+	 * sentidos para que las búsquedas de titulares y los anti-joins por cliente no
+	 * recorran la tabla completa.
 	 * 
 	 * @see Cliente
 	 */
 	@ManyToMany(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST)
-	@JoinTable(name = "cliente_cuenta", joinColumns = @JoinColumn(name = "cuenta_id"), inverseJoinColumns = @JoinColumn(name = "cliente_id"))
+	@JoinTable(name = "cliente_cuenta", joinColumns = @JoinColumn(name = "cuenta_id"), inverseJoinColumns = @JoinColumn(name = "cliente_id"), indexes = {
+			@Index(name = "idx_cliente_cuenta_cuenta_cliente", columnList = "cuenta_id, cliente_id"),
+			@Index(name = "idx_cliente_cuenta_cliente_cuenta", columnList = "cliente_id, cuenta_id") })
 	private List<Cliente> misClientes;
 
 	/**
@@ -117,6 +144,25 @@ public class CuentaBancaria implements Serializable {
 	@OneToMany(mappedBy = "cuentaBancaria", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
 	private List<Operacion> operaciones;
 
+	/**
+	 * Recalcula el número de cuenta invertido a partir del número de cuenta.
+	 */
+	@PrePersist
+	@PreUpdate
+	public void sincronizarNumeroCuentaInvertido() {
+		numeroCuentaInvertido = invertir(numeroCuenta);
+	}
+
+	/**
+	 * Invierte un número de cuenta o un fragmento de él.
+	 * 
+	 * @param numeroCuenta El texto a invertir. Puede ser {@code null}.
+	 * @return El texto invertido, o {@code null} si la entrada es {@code null}.
+	 */
+	public static String invertir(String numeroCuenta) {
+		return numeroCuenta == null ? null : new StringBuilder(numeroCuenta).reverse().toString();
+	}
+
 	/**
 	 * Enumeración que define los tipos de cuentas bancarias.
 	 * 
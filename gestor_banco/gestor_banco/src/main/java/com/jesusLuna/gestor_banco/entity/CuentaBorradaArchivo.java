@@ -0,0 +1,41 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Marca de una cuenta borrada que tenía operaciones archivadas.
+ *
+ * Los ficheros del archivo guardan varias cuentas, así que al borrar una no se
+ * reescriben: sus operaciones se ocultan con esta marca. Los ficheros
+ * archivados hasta el día del borrado no se leen para ese IBAN; si se da de
+ * alta otra cuenta con el mismo IBAN, solo se leen los que se archiven
+ * después, que son los suyos.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Cuenta_Borrada_Archivo")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CuentaBorradaArchivo implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * IBAN de la cuenta borrada.
+	 */
+	@Id
+	@Column(name = "Numero_Cuenta", length = 34)
+	private String numeroCuenta;
+
+	/**
+	 * Día del último borrado de una cuenta con este IBAN.
+	 */
+	@Column(name = "Fecha_Borrado", nullable = false)
+	private LocalDate fechaBorrado;
+}
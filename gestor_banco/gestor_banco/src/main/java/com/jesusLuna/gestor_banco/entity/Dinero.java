@@ -0,0 +1,148 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Importe monetario exacto expresado en céntimos.
+ * 
+ * Sustituye a los {@code float} que se usaban para saldos y cantidades: con
+ * coma flotante los saldos se desviaban tras unos miles de movimientos y no se
+ * podían cuadrar. El valor es inmutable y se guarda en la base de datos como un
+ * {@code BIGINT} de céntimos mediante {@link DineroConverter}.
+ * 
+ * Para el camino caliente de la contabilización existen versiones estáticas de
+ * las operaciones que trabajan directamente con {@code long} y no crean
+ * objetos.
+ * 
+ * En JSON se escribe como el texto de {@link #toString()}, por ejemplo
+ * {@code "12.50"}, igual que en las vistas, y se lee con {@link #parse(String)}.
+ * 
+ * @author Jesús
+ */
+public final class Dinero implements Comparable<Dinero>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Importe cero.
+	 */
+	public static final Dinero CERO = new Dinero(0);
+
+	private final long centimos;
+
+	private Dinero(long centimos) {
+		this.centimos = centimos;
+	}
+
+	/**
+	 * Crea un importe a partir de céntimos.
+	 * 
+	 * @param centimos El importe en céntimos.
+	 * @return El importe.
+	 */
+	public static Dinero deCentimos(long centimos) {
+		return centimos == 0 ? CERO : new Dinero(centimos);
+	}
+
+	/**
+	 * Convierte un texto como {@code "12.50"} o {@code "12,5"} en un importe.
+	 * 
+	 * @param texto El importe en euros, con como mucho dos decimales.
+	 * @return El importe.
+	 * @throws IllegalArgumentException si el texto no es un importe válido o tiene
+	 *                                  más de dos decimales.
+	 */
+	@JsonCreator
+	public static Dinero parse(String texto) {
+		if (texto == null || texto.isBlank()) {
+			throw new IllegalArgumentException("El importe no puede estar vacío.");
+		}
+		try {
+			BigDecimal euros = new BigDecimal(texto.trim().replace(',', '.'));
+			return deCentimos(euros.setScale(2, RoundingMode.UNNECESSARY).movePointRight(2).longValueExact());
+		} catch (ArithmeticException | NumberFormatException e) {
+			throw new IllegalArgumentException("Importe no válido: " + texto);
+		}
+	}
+
+	/**
+	 * Suma dos importes en céntimos sin crear objetos.
+	 * 
+	 * @throws ArithmeticException si el resultado se desborda.
+	 */
+	public static long sumar(long a, long b) {
+		return Math.addExact(a, b);
+	}
+
+	/**
+	 * Resta dos importes en céntimos sin crear objetos.
+	 * 
+	 * @throws ArithmeticException si el resultado se desborda.
+	 */
+	public static long restar(long a, long b) {
+		return Math.subtractExact(a, b);
+	}
+
+	/**
+	 * Obtiene el importe en céntimos.
+	 * 
+	 * @return Los céntimos.
+	 */
+	public long getCentimos() {
+		return centimos;
+	}
+
+	public Dinero sumar(Dinero otro) {
+		return deCentimos(sumar(centimos, otro.centimos));
+	}
+
+	public Dinero restar(Dinero otro) {
+		return deCentimos(restar(centimos, otro.centimos));
+	}
+
+	public boolean esPositivo() {
+		return centimos > 0;
+	}
+
+	public boolean esNegativo() {
+		return centimos < 0;
+	}
+
+	/**
+	 * Obtiene el importe en euros como {@link BigDecimal} con dos decimales.
+	 * 
+	 * @return El importe en euros.
+	 */
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(centimos, 2);
+	}
+
+	@Override
+	public int compareTo(Dinero otro) {
+		return Long.compare(centimos, otro.centimos);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Dinero d && d.centimos == centimos;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(centimos);
+	}
+
+	/**
+	 * Devuelve el importe en euros con dos decimales, por ejemplo {@code "12.50"}.
+	 */
+	@Override
+	@JsonValue
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+}
@@ -0,0 +1,24 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Convierte un {@link Dinero} en su número de céntimos para guardarlo en una
+ * columna {@code BIGINT}, y viceversa.
+ * 
+ * @author Jesús
+ */
+@Converter(autoApply = true)
+public class DineroConverter implements AttributeConverter<Dinero, Long> {
+
+	@Override
+	public Long convertToDatabaseColumn(Dinero dinero) {
+		return dinero == null ? null : dinero.getCentimos();
+	}
+
+	@Override
+	public Dinero convertToEntityAttribute(Long centimos) {
+		return centimos == null ? null : Dinero.deCentimos(centimos);
+	}
+}
@@ -0,0 +1,44 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Horizonte del archivo de operaciones: el primer día cuyas operaciones siguen
+ * en {@code dam_Operacion}. La tabla tiene una sola fila, con
+ * {@link #ID}.
+ *
+ * El archivado la avanza antes de mover ninguna operación y nunca la hace
+ * retroceder, y la contabilización la lee con un bloqueo compartido en su
+ * propia transacción, así que todas las instancias de la aplicación ven el
+ * mismo horizonte y ninguna contabiliza en un mes que otra está cerrando.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Horizonte_Archivo")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HorizonteArchivo implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Identificador de la única fila.
+	 */
+	public static final int ID = 1;
+
+	@Id
+	@Column(name = "Id")
+	private int id;
+
+	/**
+	 * Primer día que sigue en la tabla de operaciones.
+	 */
+	@Column(name = "Fecha", nullable = false)
+	private LocalDate fecha;
+}
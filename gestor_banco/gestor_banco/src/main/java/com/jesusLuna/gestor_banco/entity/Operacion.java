@@ -30,7 +30,7 @@ import lombok.*;
  * <ul>
  * <li>{@code @NotEmpty}: asegura que los campos no sean nulos o vacíos.</li>
  * <li>{@code @NotNull}: asegura que los campos no sean nulos.</li>
- * <li>{@code @Positive}: valida que la cantidad sea mayor que 0.</li>
+ * <li>{@code @AssertTrue}: valida que la cantidad sea mayor que 0.</li>
  * <li>{@code @PastOrPresent}: valida que la fecha de operación no sea
  * futura.</li>
  * </ul>
@@ -38,7 +38,12 @@ import lombok.*;
  * @author Jesús
  */
 @Entity
-@Table(name = "dam_Operacion")
+@Table(name = "dam_Operacion", indexes = {
+		@Index(name = "idx_operacion_cuenta_fecha_id", columnList = "cuenta_id, Fecha, Id"),
+		@Index(name = "idx_operacion_contraparte_fecha_id", columnList = "Num_Cuenta_Transferencia, Fecha, Id"),
+		@Index(name = "idx_operacion_tipo_fecha_id", columnList = "Tipo, Fecha, Id"),
+		@Index(name = "idx_operacion_fecha_id", columnList = "Fecha, Id"),
+		@Index(name = "idx_operacion_anulada", columnList = "Id_Operacion_Anulada", unique = true) })
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -46,12 +51,18 @@ public class Operacion implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	/** Identificadores que reserva cada acceso a la secuencia. */
+	public static final int BLOQUE_IDS = 50;
+
 	/**
 	 * Identificador único de la operación. Este campo es la clave primaria en la
-	 * base de datos y se genera automáticamente.
+	 * base de datos y se genera automáticamente a partir de la secuencia
+	 * {@code dam_operacion_seq}, reservando bloques de {@value #BLOQUE_IDS}
+	 * identificadores para poder insertar en lotes.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "operacion_seq")
+	@SequenceGenerator(name = "operacion_seq", sequenceName = "dam_operacion_seq", allocationSize = BLOQUE_IDS)
 	@Column(name = "Id")
 	private long codigo;
 
@@ -85,13 +96,24 @@ public class Operacion implements Serializable {
 	private LocalDate fecha;
 
 	/**
-	 * Cantidad de dinero involucrada en la operación. La cantidad debe ser mayor
-	 * que 0.
+	 * Cantidad de dinero involucrada en la operación, en céntimos exactos. La
+	 * cantidad debe ser mayor que 0.
+	 * 
+	 * @see Dinero
 	 */
 	@NotNull(message = "La cantidad no puede estar vacía")
-	@Positive(message = "La cantidad debe ser mayor que 0")
-	@Column(name = "Cantidad", nullable = false)
-	private Float cantidad;
+	@Column(name = "Cantidad_Centimos", nullable = false)
+	private Dinero cantidad;
+
+	/**
+	 * Valida que la cantidad de la operación sea mayor que 0.
+	 * 
+	 * @return {@code true} si la cantidad es positiva o todavía no se ha indicado.
+	 */
+	@AssertTrue(message = "La cantidad debe ser mayor que 0")
+	public boolean isCantidadPositiva() {
+		return cantidad == null || cantidad.esPositivo();
+	}
 
 	/**
 	 * Número de cuenta de transferencia asociado a la operación (si aplica). Este
@@ -108,6 +130,14 @@ public class Operacion implements Serializable {
 	@JoinColumn(name = "cuenta_id", nullable = false)
 	private CuentaBancaria cuentaBancaria;
 
+	/**
+	 * En los apuntes de anulación, código de la operación que compensan; en el
+	 * resto es nulo. El índice único garantiza que una operación no se anule dos
+	 * veces.
+	 */
+	@Column(name = "Id_Operacion_Anulada")
+	private Long codigoAnulada;
+
 	/**
 	 * Enumeración que define los tipos de operaciones bancarias.
 	 * 
@@ -140,5 +170,34 @@ public class Operacion implements Serializable {
 			return nombre;
 		}
 
+		/**
+		 * Aplica a una cantidad el signo con el que este tipo de operación mueve el
+		 * saldo: positivo en los abonos y negativo en los cargos.
+		 * 
+		 * @param centimos la cantidad de la operación, en céntimos.
+		 * @return la variación del saldo, en céntimos.
+		 */
+		public long importe(long centimos) {
+			return switch (this) {
+			case IngresarDinero, EntradaTransferencia -> centimos;
+			case RetirarDinero, RetiradaTransferencia -> -centimos;
+			};
+		}
+
+		/**
+		 * Obtiene el tipo de operación que deshace a este, con el que se registran
+		 * los apuntes de anulación.
+		 * 
+		 * @return el tipo que mueve el saldo en sentido contrario.
+		 */
+		public TipoOperacion opuesto() {
+			return switch (this) {
+			case IngresarDinero -> RetirarDinero;
+			case RetirarDinero -> IngresarDinero;
+			case EntradaTransferencia -> RetiradaTransferencia;
+			case RetiradaTransferencia -> EntradaTransferencia;
+			};
+		}
+
 	}
 }
@@ -0,0 +1,172 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Orden permanente: una transferencia que se repite con una periodicidad fija
+ * desde una cuenta del banco a otra cuenta, del banco o externa.
+ *
+ * La fecha de cada ejecución se calcula desde la fecha de inicio y el número
+ * de ejecuciones, no desde la anterior, para que una orden del día 31 vuelva
+ * al 31 después de febrero. {@code proximaEjecucion} es la fecha de la
+ * siguiente y el planificador busca las vencidas por el índice
+ * {@code idx_orden_proxima_ejecucion}; queda a {@code null} cuando la orden
+ * termina o se cancela.
+ *
+ * {@code bloqueadaPor} y {@code bloqueadaHasta} son la concesión con la que una
+ * instancia de la aplicación reserva la orden mientras la ejecuta; si la
+ * instancia cae, la orden vuelve a estar disponible al vencer la concesión.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Orden_Permanente", indexes = {
+		@Index(name = "idx_orden_proxima_ejecucion", columnList = "Proxima_Ejecucion, Id"),
+		@Index(name = "idx_orden_cuenta_origen", columnList = "Cuenta_Origen, Id") })
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrdenPermanente implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Identificador de la orden, generado a partir de la secuencia
+	 * {@code dam_orden_permanente_seq}.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orden_permanente_seq")
+	@SequenceGenerator(name = "orden_permanente_seq", sequenceName = "dam_orden_permanente_seq", allocationSize = 20)
+	@Column(name = "Id")
+	private Long id;
+
+	/**
+	 * IBAN de la cuenta del banco que paga.
+	 */
+	@Column(name = "Cuenta_Origen", length = 34, nullable = false)
+	private String cuentaOrigen;
+
+	/**
+	 * IBAN de la cuenta que cobra; puede ser de otro banco.
+	 */
+	@Column(name = "Cuenta_Destino", length = 34, nullable = false)
+	private String cuentaDestino;
+
+	/**
+	 * Cantidad de cada transferencia.
+	 *
+	 * @see Dinero
+	 */
+	@Column(name = "Cantidad_Centimos", nullable = false)
+	private Dinero cantidad;
+
+	/**
+	 * Concepto, que se usa como descripción de los apuntes.
+	 */
+	@Column(name = "Concepto", nullable = false)
+	private String concepto;
+
+	/**
+	 * Cada cuánto se repite la transferencia.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "Periodicidad", nullable = false, length = 20)
+	private Periodicidad periodicidad;
+
+	/**
+	 * Fecha de la primera ejecución.
+	 */
+	@Column(name = "Fecha_Inicio", nullable = false)
+	private LocalDate fechaInicio;
+
+	/**
+	 * Última fecha en la que puede ejecutarse, o {@code null} si no termina.
+	 */
+	@Column(name = "Fecha_Fin")
+	private LocalDate fechaFin;
+
+	/**
+	 * Ejecuciones ya procesadas, incluidas las rechazadas.
+	 */
+	@Column(name = "Ejecuciones", nullable = false)
+	private int ejecuciones;
+
+	/**
+	 * Fecha de la siguiente ejecución, o {@code null} si la orden ha terminado.
+	 */
+	@Column(name = "Proxima_Ejecucion")
+	private LocalDate proximaEjecucion;
+
+	/**
+	 * Motivo por el que se rechazó la última ejecución, o {@code null} si se
+	 * contabilizó.
+	 */
+	@Column(name = "Ultimo_Rechazo")
+	private String ultimoRechazo;
+
+	/**
+	 * Instancia de la aplicación que tiene reservada la orden, o {@code null}.
+	 */
+	@Column(name = "Bloqueada_Por", length = 64)
+	private String bloqueadaPor;
+
+	/**
+	 * Momento en que vence la reserva.
+	 */
+	@Column(name = "Bloqueada_Hasta")
+	private LocalDateTime bloqueadaHasta;
+
+	/**
+	 * Fecha de la ejecución que sigue a {@code ejecuciones} ejecuciones, o
+	 * {@code null} si cae después de la fecha de fin.
+	 *
+	 * @param ejecuciones número de ejecuciones ya procesadas.
+	 * @return la fecha de la siguiente ejecución.
+	 */
+	public LocalDate fechaEjecucion(int ejecuciones) {
+		LocalDate fecha = periodicidad.sumar(fechaInicio, ejecuciones);
+		return fechaFin != null && fecha.isAfter(fechaFin) ? null : fecha;
+	}
+
+	/**
+	 * Periodicidad de una orden permanente.
+	 */
+	public enum Periodicidad {
+		SEMANAL("Semanal", 0), MENSUAL("Mensual", 1), TRIMESTRAL("Trimestral", 3), ANUAL("Anual", 12);
+
+		private final String nombre;
+
+		private final int meses;
+
+		Periodicidad(String nombre, int meses) {
+			this.nombre = nombre;
+			this.meses = meses;
+		}
+
+		/**
+		 * Obtiene el nombre de la periodicidad.
+		 *
+		 * @return El nombre de la periodicidad.
+		 */
+		public String getNombre() {
+			return nombre;
+		}
+
+		/**
+		 * Suma a una fecha un número de periodos. Los meses se suman de una vez
+		 * para no arrastrar el recorte de los meses cortos.
+		 *
+		 * @param fecha    fecha inicial.
+		 * @param periodos número de periodos.
+		 * @return la fecha resultante.
+		 */
+		public LocalDate sumar(LocalDate fecha, int periodos) {
+			return meses == 0 ? fecha.plusWeeks(periodos) : fecha.plusMonths((long) meses * periodos);
+		}
+	}
+}
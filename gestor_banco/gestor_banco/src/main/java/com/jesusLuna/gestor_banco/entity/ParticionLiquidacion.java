@@ -0,0 +1,122 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Partición de la liquidación mensual de intereses de las cuentas de ahorro:
+ * un rango de IBAN y el punto de control de su avance.
+ *
+ * Las particiones de un mes se calculan al empezar la primera pasada y no
+ * cambian después. Cada bloque de cuentas abona sus intereses y avanza
+ * {@code ultimaCuenta} en la misma transacción, así que una pasada que se
+ * interrumpe se reanuda en la cuenta siguiente sin abonar dos veces la misma.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Particion_Liquidacion")
+@IdClass(ParticionLiquidacion.Clave.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ParticionLiquidacion implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Primer día del mes liquidado.
+	 */
+	@Id
+	@Column(name = "Mes")
+	private LocalDate mes;
+
+	/**
+	 * Número de la partición dentro del mes, desde 0.
+	 */
+	@Id
+	@Column(name = "Particion")
+	private int particion;
+
+	/**
+	 * IBAN a partir del cual empieza la partición, excluido; vacío en la
+	 * primera.
+	 */
+	@Column(name = "Desde", length = 34, nullable = false)
+	private String desde;
+
+	/**
+	 * Último IBAN de la partición, incluido; {@code null} en la última.
+	 */
+	@Column(name = "Hasta", length = 34)
+	private String hasta;
+
+	/**
+	 * Última cuenta liquidada, o {@code null} si la partición no ha empezado.
+	 */
+	@Column(name = "Ultima_Cuenta", length = 34)
+	private String ultimaCuenta;
+
+	/**
+	 * Cuentas de ahorro de la partición al calcular las particiones.
+	 */
+	@Column(name = "Total_Cuentas", nullable = false)
+	private long totalCuentas;
+
+	/**
+	 * Cuentas liquidadas.
+	 */
+	@Column(name = "Cuentas", nullable = false)
+	private long cuentas;
+
+	/**
+	 * Cuentas a las que se han abonado intereses.
+	 */
+	@Column(name = "Abonos", nullable = false)
+	private long abonos;
+
+	/**
+	 * Suma de los intereses abonados.
+	 *
+	 * @see Dinero
+	 */
+	@Column(name = "Intereses_Centimos", nullable = false)
+	private Dinero intereses;
+
+	/**
+	 * Indica si ya se han liquidado todas las cuentas de la partición.
+	 */
+	@Column(name = "Terminada", nullable = false)
+	private boolean terminada;
+
+	/**
+	 * Momento en que se calcularon las particiones.
+	 */
+	@Column(name = "Inicio", nullable = false)
+	private LocalDateTime inicio;
+
+	/**
+	 * Momento del último bloque confirmado.
+	 */
+	@Column(name = "Actualizacion", nullable = false)
+	private LocalDateTime actualizacion;
+
+	/**
+	 * Clave primaria: mes y partición.
+	 */
+	@Data
+	@AllArgsConstructor
+	@NoArgsConstructor
+	public static class Clave implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private LocalDate mes;
+
+		private int particion;
+	}
+}
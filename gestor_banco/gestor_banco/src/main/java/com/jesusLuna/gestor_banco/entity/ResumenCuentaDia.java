@@ -0,0 +1,87 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Totales de las operaciones de un tipo en una cuenta y un día.
+ *
+ * Cada contabilización suma su operación a la fila que le corresponde en la
+ * misma transacción, con un {@code UPDATE} que incrementa los contadores sin
+ * leerlos. Los informes por cuenta leen solo estas filas, nunca
+ * {@code dam_Operacion}; los totales mensuales se obtienen sumando los días del
+ * mes.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Resumen_Cuenta_Dia")
+@IdClass(ResumenCuentaDia.Clave.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumenCuentaDia implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * IBAN de la cuenta.
+	 */
+	@Id
+	@Column(name = "Cuenta_Id", length = 34)
+	private String cuenta;
+
+	/**
+	 * Fecha de las operaciones.
+	 */
+	@Id
+	@Column(name = "Fecha")
+	private LocalDate fecha;
+
+	/**
+	 * Tipo de las operaciones.
+	 */
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "Tipo")
+	private TipoOperacion tipo;
+
+	/**
+	 * Número de operaciones.
+	 */
+	@Column(name = "Num_Operaciones", nullable = false)
+	private long numOperaciones;
+
+	/**
+	 * Suma de las cantidades de las operaciones.
+	 *
+	 * @see Dinero
+	 */
+	@Column(name = "Total_Centimos", nullable = false)
+	private Dinero total;
+
+	/**
+	 * Clave primaria: cuenta, fecha y tipo, en ese orden, para que los totales
+	 * de una cuenta en un periodo sean un rango de la clave.
+	 * Hibernate crea las columnas de la clave en orden alfabético de atributo,
+	 * por eso los nombres de los atributos siguen ese orden.
+	 */
+	@Data
+	@AllArgsConstructor
+	@NoArgsConstructor
+	public static class Clave implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String cuenta;
+
+		private LocalDate fecha;
+
+		private TipoOperacion tipo;
+	}
+}
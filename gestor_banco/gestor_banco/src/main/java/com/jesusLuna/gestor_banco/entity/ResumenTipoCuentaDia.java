@@ -0,0 +1,101 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Totales de las operaciones de un tipo en las cuentas de un
+ * {@link TipoCuenta} y un día.
+ *
+ * Todas las cuentas de un mismo tipo suman en las mismas filas, así que cada
+ * día y tipo de operación se reparte en {@code franja}s según el IBAN de la
+ * cuenta: dos contabilizaciones simultáneas en cuentas distintas rara vez
+ * esperan por la misma fila. Las consultas suman todas las franjas, y la
+ * reconstrucción de los resúmenes trabaja franja a franja con el índice
+ * {@code idx_resumen_tipo_cuenta_franja}.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Resumen_Tipo_Cuenta_Dia", indexes = @Index(name = "idx_resumen_tipo_cuenta_franja", columnList = "Franja"))
+@IdClass(ResumenTipoCuentaDia.Clave.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumenTipoCuentaDia implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Tipo de las cuentas.
+	 */
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "Tipo_Cuenta")
+	private TipoCuenta clase;
+
+	/**
+	 * Fecha de las operaciones.
+	 */
+	@Id
+	@Column(name = "Fecha")
+	private LocalDate fecha;
+
+	/**
+	 * Franja de cuentas que suma en la fila.
+	 */
+	@Id
+	@Column(name = "Franja")
+	private int franja;
+
+	/**
+	 * Tipo de las operaciones.
+	 */
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "Tipo")
+	private TipoOperacion tipo;
+
+	/**
+	 * Número de operaciones.
+	 */
+	@Column(name = "Num_Operaciones", nullable = false)
+	private long numOperaciones;
+
+	/**
+	 * Suma de las cantidades de las operaciones.
+	 *
+	 * @see Dinero
+	 */
+	@Column(name = "Total_Centimos", nullable = false)
+	private Dinero total;
+
+	/**
+	 * Clave primaria: tipo de cuenta, fecha, franja y tipo de operación, en ese
+	 * orden, para que los totales de un tipo de cuenta en un periodo sean un
+	 * rango de la clave.
+	 * Hibernate crea las columnas de la clave en orden alfabético de atributo,
+	 * por eso los nombres de los atributos siguen ese orden.
+	 */
+	@Data
+	@AllArgsConstructor
+	@NoArgsConstructor
+	public static class Clave implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private TipoCuenta clase;
+
+		private LocalDate fecha;
+
+		private int franja;
+
+		private TipoOperacion tipo;
+	}
+}
@@ -0,0 +1,58 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Saldo de una cuenta inmediatamente después de una de sus operaciones.
+ *
+ * Las instantáneas se generan periódicamente sobre los días ya cerrados y
+ * permiten calcular el saldo de una cuenta en cualquier punto de su historial
+ * partiendo de la instantánea más cercana y sumando solo las operaciones que
+ * las separan, sin recorrer el historial completo. Se ordenan igual que el
+ * historial, por fecha y código de operación.
+ *
+ * Cada instantánea corresponde a una única operación, cuyo código hace de
+ * clave primaria.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Saldo_Instantanea", indexes = @Index(name = "idx_saldo_instantanea_cuenta_fecha_id", columnList = "Cuenta_Id, Fecha, Id_Operacion", unique = true))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SaldoInstantanea implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Código de la operación tras la que se tomó el saldo.
+	 */
+	@Id
+	@Column(name = "Id_Operacion")
+	private long codigoOperacion;
+
+	/**
+	 * IBAN de la cuenta.
+	 */
+	@Column(name = "Cuenta_Id", length = 34, nullable = false)
+	private String numeroCuenta;
+
+	/**
+	 * Fecha de la operación.
+	 */
+	@Column(name = "Fecha", nullable = false)
+	private LocalDate fecha;
+
+	/**
+	 * Saldo de la cuenta después de la operación.
+	 *
+	 * @see Dinero
+	 */
+	@Column(name = "Saldo_Centimos", nullable = false)
+	private Dinero saldo;
+}
@@ -0,0 +1,72 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Fichero del archivo de operaciones: las operaciones de un mes de un rango
+ * de cuentas, que ya no están en {@code dam_Operacion}.
+ *
+ * El archivo se organiza en particiones mensuales, una carpeta por mes, y cada
+ * pasada del archivado añade ficheros nuevos sin modificar los existentes. Las
+ * lecturas buscan aquí los ficheros de una cuenta y solo abren los de los meses
+ * que piden. Un fichero que no tiene fila en esta tabla es de una pasada que no
+ * llegó a confirmarse y no se lee.
+ *
+ * @author Jesús
+ */
+@Entity
+@Table(name = "dam_Segmento_Archivo", indexes = @Index(name = "idx_segmento_archivo_mes_cuentas", columnList = "Mes, Primera_Cuenta, Ultima_Cuenta"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SegmentoArchivo implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Ruta del fichero, relativa al directorio del archivo.
+	 */
+	@Id
+	@Column(name = "Fichero", length = 100)
+	private String fichero;
+
+	/**
+	 * Primer día del mes de las operaciones.
+	 */
+	@Column(name = "Mes", nullable = false)
+	private LocalDate mes;
+
+	/**
+	 * Menor IBAN con operaciones en el fichero.
+	 */
+	@Column(name = "Primera_Cuenta", length = 34, nullable = false)
+	private String primeraCuenta;
+
+	/**
+	 * Mayor IBAN con operaciones en el fichero.
+	 */
+	@Column(name = "Ultima_Cuenta", length = 34, nullable = false)
+	private String ultimaCuenta;
+
+	/**
+	 * Número de operaciones del fichero.
+	 */
+	@Column(name = "Operaciones", nullable = false)
+	private int operaciones;
+
+	/**
+	 * Indica si alguna operación del fichero es una transferencia.
+	 */
+	@Column(name = "Transferencias", nullable = false)
+	private boolean transferencias;
+
+	/**
+	 * Día en que se archivaron las operaciones.
+	 */
+	@Column(name = "Fecha_Archivo", nullable = false)
+	private LocalDate fechaArchivo;
+}
@@ -15,6 +15,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -63,10 +64,11 @@ public class User implements UserDetails {
 
 	/**
 	 * Identificador único del usuario. Este campo es la clave primaria en la base
-	 * de datos y se genera automáticamente.
+	 * de datos y se obtiene de la secuencia {@code dam_user_seq}.
 	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+	@SequenceGenerator(name = "user_seq", sequenceName = "dam_user_seq", allocationSize = 20)
 	private Integer id;
 
 	/**
@@ -131,11 +133,14 @@ public class User implements UserDetails {
 	 * Implementa el método {@code getAuthorities} de la interfaz
 	 * {@code UserDetails}.
 	 * 
+	 * El rol lleva el prefijo {@code ROLE_}, que es el que busca
+	 * {@code hasRole('Admin')} en las anotaciones {@code @PreAuthorize}.
+	 * 
 	 * @return Una colección de autoridades que contienen el rol del usuario.
 	 */
 	@Override
 	public Collection<? extends GrantedAuthority> getAuthorities() {
-		return List.of(new SimpleGrantedAuthority(role.name()));
+		return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
 	}
 
 	/**
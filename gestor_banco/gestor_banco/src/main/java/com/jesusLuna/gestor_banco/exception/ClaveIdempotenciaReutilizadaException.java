@@ -0,0 +1,7 @@
+package com.jesusLuna.gestor_banco.exception;
+
+public class ClaveIdempotenciaReutilizadaException extends RuntimeException {
+	public ClaveIdempotenciaReutilizadaException(String mensaje) {
+		super(mensaje);
+	}
+}
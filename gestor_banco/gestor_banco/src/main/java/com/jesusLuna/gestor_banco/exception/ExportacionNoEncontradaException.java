@@ -0,0 +1,7 @@
+package com.jesusLuna.gestor_banco.exception;
+
+public class ExportacionNoEncontradaException extends RuntimeException {
+	public ExportacionNoEncontradaException(String mensaje) {
+		super(mensaje);
+	}
+}
@@ -0,0 +1,7 @@
+package com.jesusLuna.gestor_banco.exception;
+
+public class ExportacionRechazadaException extends RuntimeException {
+	public ExportacionRechazadaException(String mensaje) {
+		super(mensaje);
+	}
+}
@@ -1,15 +1,16 @@
 package com.jesusLuna.gestor_banco.exception;
 
-import java.nio.file.AccessDeniedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.servlet.NoHandlerFoundException;
 import jakarta.persistence.OptimisticLockException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -100,6 +101,42 @@ public class GlobalExceptionHandler {
 		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
 	}
 
+	/**
+	 * Maneja la excepción {@link ExportacionNoEncontradaException} y devuelve un
+	 * mensaje con el estado 404 (NOT FOUND).
+	 *
+	 * @param ex La excepción capturada.
+	 * @return La respuesta con el mensaje de la excepción y el estado HTTP 404.
+	 */
+	@ExceptionHandler(ExportacionNoEncontradaException.class)
+	public ResponseEntity<String> handleExportacionNoEncontrada(ExportacionNoEncontradaException ex) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+	}
+
+	/**
+	 * Maneja la excepción {@link OrdenPermanenteNoEncontradaException} y devuelve
+	 * un mensaje con el estado 404 (NOT FOUND).
+	 *
+	 * @param ex La excepción capturada.
+	 * @return La respuesta con el mensaje de la excepción y el estado HTTP 404.
+	 */
+	@ExceptionHandler(OrdenPermanenteNoEncontradaException.class)
+	public ResponseEntity<String> handleOrdenPermanenteNoEncontrada(OrdenPermanenteNoEncontradaException ex) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+	}
+
+	/**
+	 * Maneja la excepción {@link ExportacionRechazadaException} y devuelve un
+	 * mensaje con el estado 503 (SERVICE UNAVAILABLE).
+	 *
+	 * @param ex La excepción capturada.
+	 * @return La respuesta con el mensaje de la excepción y el estado HTTP 503.
+	 */
+	@ExceptionHandler(ExportacionRechazadaException.class)
+	public ResponseEntity<String> handleExportacionRechazada(ExportacionRechazadaException ex) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+	}
+
 	/**
 	 * Maneja la excepción {@link CredencialesInvalidasException} y devuelve un
 	 * mensaje con el estado 401 (UNAUTHORIZED).
@@ -167,6 +204,7 @@ public class GlobalExceptionHandler {
 	 * @return El nombre de la vista de error.
 	 */
 	@ExceptionHandler(AccessDeniedException.class)
+	@ResponseStatus(HttpStatus.FORBIDDEN)
 	public String handleAccessDenied(AccessDeniedException ex, Model model, HttpServletRequest request) {
 		model.addAttribute("mensaje", "No tienes permiso para acceder a esta página.");
 		model.addAttribute("detalle", ex.getMessage());
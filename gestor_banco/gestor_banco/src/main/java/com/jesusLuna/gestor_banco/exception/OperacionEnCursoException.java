@@ -0,0 +1,7 @@
+package com.jesusLuna.gestor_banco.exception;
+
+public class OperacionEnCursoException extends RuntimeException {
+	public OperacionEnCursoException(String mensaje) {
+		super(mensaje);
+	}
+}
@@ -0,0 +1,7 @@
+package com.jesusLuna.gestor_banco.exception;
+
+public class OrdenPermanenteNoEncontradaException extends RuntimeException {
+	public OrdenPermanenteNoEncontradaException(String mensaje) {
+		super(mensaje);
+	}
+}
@@ -0,0 +1,75 @@
+package com.jesusLuna.gestor_banco.methods;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+
+/**
+ * Clase que codifica y decodifica los cursores de la paginación por clave
+ * (keyset). Un cursor guarda la fecha y el desempate (IBAN, código...) de la
+ * última fila entregada, cifrado con {@link Cifrado} para que el IBAN no viaje
+ * en claro en la URL, y el cliente lo devuelve tal cual al pedir la página
+ * siguiente.
+ */
+public class CursorKeyset {
+
+	private CursorKeyset() {
+	}
+
+	/**
+	 * Construye el cursor de una fila.
+	 *
+	 * @param fecha      Fecha de la fila.
+	 * @param desempate  Valor que desempata filas con la misma fecha.
+	 * @return El cursor cifrado.
+	 */
+	public static String codificar(LocalDate fecha, String desempate) {
+		try {
+			return Cifrado.cifrar(fecha + "|" + desempate);
+		} catch (Exception e) {
+			throw new IllegalStateException("No se ha podido cifrar el cursor de paginación.", e);
+		}
+	}
+
+	/**
+	 * Obtiene la fecha guardada en un cursor.
+	 *
+	 * @param cursor El cursor recibido.
+	 * @return La fecha.
+	 * @throws ParametroBusquedaException si el cursor no es válido.
+	 */
+	public static LocalDate fecha(String cursor) {
+		return LocalDate.parse(partes(cursor)[0]);
+	}
+
+	/**
+	 * Obtiene el valor de desempate guardado en un cursor.
+	 *
+	 * @param cursor El cursor recibido.
+	 * @return El valor de desempate.
+	 * @throws ParametroBusquedaException si el cursor no es válido.
+	 */
+	public static String desempate(String cursor) {
+		return partes(cursor)[1];
+	}
+
+	private static String[] partes(String cursor) {
+		String clave;
+		try {
+			clave = Cifrado.descifrar(cursor);
+		} catch (Exception e) {
+			throw new ParametroBusquedaException("Cursor de paginación no válido.");
+		}
+		try {
+			String[] partes = clave.split("\\|", 2);
+			if (partes.length != 2) {
+				throw new ParametroBusquedaException("Cursor de paginación no válido.");
+			}
+			LocalDate.parse(partes[0]);
+			return partes;
+		} catch (DateTimeParseException e) {
+			throw new ParametroBusquedaException("Cursor de paginación no válido.");
+		}
+	}
+}
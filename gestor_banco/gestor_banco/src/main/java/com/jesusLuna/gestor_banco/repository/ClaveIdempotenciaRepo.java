@@ -0,0 +1,63 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.jesusLuna.gestor_banco.entity.ClaveIdempotencia;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link ClaveIdempotencia}.
+ * 
+ * @author Jesús
+ */
+public interface ClaveIdempotenciaRepo extends JpaRepository<ClaveIdempotencia, String> {
+
+	/**
+	 * Inserta la clave. Si otra transacción ya ha insertado la misma clave, la
+	 * sentencia espera a que termine y falla por clave duplicada si se confirma;
+	 * así dos envíos simultáneos nunca contabilizan los dos.
+	 * 
+	 * @param clave    la clave de idempotencia.
+	 * @param huella   resumen del usuario y los datos del envío.
+	 * @param creadaEn el momento actual.
+	 * @param expiraEn el momento de caducidad.
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO dam_clave_idempotencia (clave, huella, creada_en, expira_en) VALUES (:clave, :huella, :creadaEn, :expiraEn)", nativeQuery = true)
+	void reservar(@Param("clave") String clave, @Param("huella") String huella,
+			@Param("creadaEn") LocalDateTime creadaEn, @Param("expiraEn") LocalDateTime expiraEn);
+
+	/**
+	 * Guarda el resultado del envío asociado a la clave.
+	 * 
+	 * @param clave     la clave de idempotencia.
+	 * @param resultado el resultado a devolver en los reintentos.
+	 */
+	@Modifying
+	@Query("UPDATE ClaveIdempotencia k SET k.resultado = :resultado WHERE k.clave = :clave")
+	void completar(@Param("clave") String clave, @Param("resultado") String resultado);
+
+	/**
+	 * Elimina una clave concreta si ha caducado, para poder reutilizarla.
+	 * 
+	 * @param clave la clave de idempotencia.
+	 * @param ahora el momento actual.
+	 */
+	@Modifying
+	@Query("DELETE FROM ClaveIdempotencia k WHERE k.clave = :clave AND k.expiraEn < :ahora")
+	void borrarSiCaducada(@Param("clave") String clave, @Param("ahora") LocalDateTime ahora);
+
+	/**
+	 * Elimina todas las claves caducadas.
+	 * 
+	 * @param ahora el momento actual.
+	 * @return el número de claves eliminadas.
+	 */
+	@Modifying
+	@Query("DELETE FROM ClaveIdempotencia k WHERE k.expiraEn < :ahora")
+	int borrarCaducadas(@Param("ahora") LocalDateTime ahora);
+}
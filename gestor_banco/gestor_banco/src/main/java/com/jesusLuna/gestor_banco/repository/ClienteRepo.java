@@ -1,13 +1,18 @@
 package com.jesusLuna.gestor_banco.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import com.jesusLuna.gestor_banco.dto.ClienteIdentificacion;
+import com.jesusLuna.gestor_banco.dto.ClienteResumen;
 import com.jesusLuna.gestor_banco.entity.Cliente;
 
 
@@ -74,13 +79,24 @@ public interface ClienteRepo extends JpaRepository<Cliente, Long>, JpaSpecificat
                                  @Param("dni") String dni);
     
 	/**
-	 * Encuentra todos los clientes que no estén asociados con una cuenta bancaria específica.
+	 * Encuentra una página de clientes que no estén asociados con una cuenta bancaria específica.
+	 * 
+	 * La exclusión se resuelve con un anti-join ({@code NOT EXISTS}) directamente sobre
+	 * {@code cliente_cuenta}, que se satisface con el índice {@code (cliente_id, cuenta_id)}
+	 * sin tocar {@code dam_Cuenta_Bancaria}. La paginación es por clave ({@code NIF > ?}),
+	 * así que cada página recorre solo el tramo del índice único de NIF que devuelve.
 	 * 
 	 * @param numeroCuenta El número de cuenta bancaria que no debe estar asociado con los clientes.
-	 * @return Una lista de clientes que no están asociados a la cuenta bancaria proporcionada.
+	 * @param despuesDeNif Último NIF de la página anterior, o cadena vacía para la primera página.
+	 * @param limite       Número máximo de clientes a devolver.
+	 * @return Los clientes no asociados a la cuenta, ordenados por NIF.
 	 */
-	@Query("SELECT c FROM Cliente c WHERE c NOT IN (SELECT cli FROM CuentaBancaria cb JOIN cb.misClientes cli WHERE cb.numeroCuenta = :numeroCuenta) ORDER BY c.nif")
-	List<Cliente> findClientesExcludeNumeroCuenta(@Param("numeroCuenta") String numeroCuenta);
+	@Query(value = "SELECT c.id AS id, c.nif AS nif, c.nombre AS nombre FROM dam_cliente c "
+			+ "WHERE c.nif > :despuesDeNif "
+			+ "AND NOT EXISTS (SELECT 1 FROM cliente_cuenta cc WHERE cc.cliente_id = c.id AND cc.cuenta_id = :numeroCuenta) "
+			+ "ORDER BY c.nif LIMIT :limite", nativeQuery = true)
+	List<ClienteIdentificacion> findClientesExcludeNumeroCuenta(@Param("numeroCuenta") String numeroCuenta,
+			@Param("despuesDeNif") String despuesDeNif, @Param("limite") int limite);
 	
 	/**
 	 * Encuentra todos los clientes asociados a una cuenta bancaria específica.
@@ -90,4 +106,69 @@ public interface ClienteRepo extends JpaRepository<Cliente, Long>, JpaSpecificat
 	 */
 	@Query("SELECT c.misClientes FROM CuentaBancaria c WHERE c.numeroCuenta = :numeroCuenta")
 	List<Cliente> findClientesByNumeroCuenta(@Param("numeroCuenta") String numeroCuenta);
+
+	/**
+	 * Busca clientes cuyo NIF, apellidos o correo electrónico empiecen por el
+	 * prefijo indicado, devolviendo solo una proyección ligera.
+	 * 
+	 * Las tres condiciones son de prefijo ({@code LIKE 'x%'}) para que MySQL pueda
+	 * resolverlas con rangos sobre los índices de {@code NIF}, {@code Email} y
+	 * {@code Apellidos}; no se aplica {@code LOWER} porque la intercalación de la
+	 * base de datos ya es insensible a mayúsculas y anularía el índice.
+	 *
+	 * @param prefijo      Prefijo a buscar, con los comodines escapados por
+	 *                     {@link #escaparLike(String)}.
+	 * @param numeroCuenta Si no es nulo, se excluyen los titulares de esa cuenta.
+	 * @param pageable     Página y tamaño solicitados.
+	 * @return Una porción de clientes ordenada por NIF.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.ClienteResumen(c.id, c.nif, c.nombre, c.apellidos, c.anyoNacimiento, c.email) "
+			+ "FROM Cliente c WHERE "
+			+ "(c.nif LIKE CONCAT(:prefijo, '%') ESCAPE '\\' OR c.apellidos LIKE CONCAT(:prefijo, '%') ESCAPE '\\' "
+			+ "OR c.email LIKE CONCAT(:prefijo, '%') ESCAPE '\\') AND "
+			+ "(:numeroCuenta IS NULL OR NOT EXISTS (SELECT 1 FROM CuentaBancaria cb JOIN cb.misClientes cli "
+			+ "WHERE cb.numeroCuenta = :numeroCuenta AND cli.id = c.id)) "
+			+ "ORDER BY c.nif")
+	Slice<ClienteResumen> buscarTypeahead(@Param("prefijo") String prefijo, @Param("numeroCuenta") String numeroCuenta,
+			Pageable pageable);
+
+	/**
+	 * Escapa los comodines de {@code LIKE} de un texto para buscarlo tal cual con
+	 * {@code ESCAPE '\'}: un {@code _} es válido en un correo electrónico y no
+	 * debe coincidir con cualquier carácter.
+	 *
+	 * @param texto Texto introducido por el usuario.
+	 * @return El texto con {@code \}, {@code %} y {@code _} escapados.
+	 */
+	static String escaparLike(String texto) {
+		return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	/**
+	 * Obtiene solo los identificadores de los titulares de una cuenta bancaria.
+	 *
+	 * @param numeroCuenta El número de cuenta bancaria.
+	 * @return Los identificadores de los clientes asociados a la cuenta.
+	 */
+	@Query("SELECT cli.id FROM CuentaBancaria cb JOIN cb.misClientes cli WHERE cb.numeroCuenta = :numeroCuenta")
+	List<Long> findIdsClientesByNumeroCuenta(@Param("numeroCuenta") String numeroCuenta);
+
+	/**
+	 * Obtiene la proyección ligera de los clientes con los identificadores dados.
+	 *
+	 * @param ids Identificadores de los clientes.
+	 * @return Los clientes encontrados, ordenados por NIF.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.ClienteResumen(c.id, c.nif, c.nombre, c.apellidos, c.anyoNacimiento, c.email) "
+			+ "FROM Cliente c WHERE c.id IN :ids ORDER BY c.nif")
+	List<ClienteResumen> findResumenByIdIn(@Param("ids") Collection<Long> ids);
+
+	/**
+	 * Obtiene el identificador de un cliente a partir de su NIF.
+	 *
+	 * @param nif El NIF del cliente.
+	 * @return El identificador del cliente, o {@code null} si no existe.
+	 */
+	@Query("SELECT c.id FROM Cliente c WHERE c.nif = :nif")
+	Long findIdByNif(@Param("nif") String nif);
 }
@@ -1,13 +1,23 @@
 package com.jesusLuna.gestor_banco.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import com.jesusLuna.gestor_banco.dto.CuentaActividad;
+import com.jesusLuna.gestor_banco.dto.CuentaResumen;
 import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
 
+import jakarta.persistence.LockModeType;
+
 
 /**
  * Repositorio de acceso a datos para la entidad {@link CuentaBancaria}.
@@ -20,22 +30,144 @@ import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
 public interface CuentaBancariaRepo extends JpaRepository<CuentaBancaria, String> {
 
 	/**
-	 * Busca una lista de cuentas bancarias que coincidan con los criterios de
-	 * número de cuenta y tipo de cuenta. Si uno de los parámetros es null, ese
-	 * criterio no se aplica.
+	 * Busca las cuentas de un tipo concreto, o todas si el tipo es {@code null}.
+	 * 
+	 * @param tipoCuenta el tipo de cuenta a buscar. Puede ser {@code null}.
+	 * @return las cuentas bancarias del tipo indicado.
+	 */
+	@Query("SELECT c FROM CuentaBancaria c WHERE (:tipoCuenta IS NULL OR c.tipoCuenta = :tipoCuenta)")
+	List<CuentaBancaria> buscarCuentas(@Param("tipoCuenta") CuentaBancaria.TipoCuenta tipoCuenta);
+
+	/**
+	 * Busca la cuenta con el IBAN exacto, filtrando opcionalmente por tipo.
+	 * 
+	 * @param numeroCuenta el IBAN completo.
+	 * @param tipoCuenta   el tipo de cuenta. Puede ser {@code null}.
+	 * @return la cuenta encontrada, o una lista vacía.
+	 */
+	@Query("SELECT c FROM CuentaBancaria c WHERE c.numeroCuenta = :numeroCuenta "
+			+ "AND (:tipoCuenta IS NULL OR c.tipoCuenta = :tipoCuenta)")
+	List<CuentaBancaria> buscarPorIbanExacto(@Param("numeroCuenta") String numeroCuenta,
+			@Param("tipoCuenta") CuentaBancaria.TipoCuenta tipoCuenta);
+
+	/**
+	 * Busca las cuentas cuyo IBAN empieza por el fragmento indicado. Se resuelve
+	 * como un rango sobre la clave primaria.
+	 * 
+	 * @param patron     patrón {@code LIKE} ya construido ({@code fragmento%}).
+	 * @param tipoCuenta el tipo de cuenta. Puede ser {@code null}.
+	 * @return las cuentas que cumplen los criterios.
+	 */
+	@Query("SELECT c FROM CuentaBancaria c WHERE c.numeroCuenta LIKE :patron "
+			+ "AND (:tipoCuenta IS NULL OR c.tipoCuenta = :tipoCuenta)")
+	List<CuentaBancaria> buscarPorPrefijoIban(@Param("patron") String patron,
+			@Param("tipoCuenta") CuentaBancaria.TipoCuenta tipoCuenta);
+
+	/**
+	 * Busca las cuentas cuyo IBAN termina por un fragmento. Se resuelve como un
+	 * rango sobre el índice {@code idx_cuenta_iban_invertido}.
 	 * 
-	 * @param numeroCuenta el número de cuenta a buscar (puede ser una coincidencia
-	 *                     parcial). Puede ser {@code null}.
-	 * @param tipoCuenta   el tipo de cuenta a buscar. Puede ser {@code null}.
-	 * @return una lista de cuentas bancarias que cumplen con los criterios
-	 *         especificados.
+	 * @param patron     patrón {@code LIKE} sobre el número invertido
+	 *                   ({@code fragmentoInvertido%}).
+	 * @param tipoCuenta el tipo de cuenta. Puede ser {@code null}.
+	 * @return las cuentas que cumplen los criterios.
 	 */
-	@Query("SELECT c FROM CuentaBancaria c WHERE "
-			+ "(:numeroCuenta IS NULL OR c.numeroCuenta LIKE %:numeroCuenta%) AND "
-			+ "(:tipoCuenta IS NULL OR c.tipoCuenta = :tipoCuenta)")
-	List<CuentaBancaria> buscarCuentas(@Param("numeroCuenta") String numeroCuenta,
+	@Query("SELECT c FROM CuentaBancaria c WHERE c.numeroCuentaInvertido LIKE :patron "
+			+ "AND (:tipoCuenta IS NULL OR c.tipoCuenta = :tipoCuenta)")
+	List<CuentaBancaria> buscarPorSufijoIban(@Param("patron") String patron,
 			@Param("tipoCuenta") CuentaBancaria.TipoCuenta tipoCuenta);
 
+	/**
+	 * Busca las cuentas que contienen el fragmento en cualquier posición del IBAN.
+	 * Recorre la tabla completa, así que solo debe usarse cuando se pide
+	 * explícitamente.
+	 * 
+	 * @param patron     patrón {@code LIKE} ya construido ({@code %fragmento%}).
+	 * @param tipoCuenta el tipo de cuenta. Puede ser {@code null}.
+	 * @return las cuentas que cumplen los criterios.
+	 */
+	@Query("SELECT c FROM CuentaBancaria c WHERE c.numeroCuenta LIKE :patron "
+			+ "AND (:tipoCuenta IS NULL OR c.tipoCuenta = :tipoCuenta)")
+	List<CuentaBancaria> buscarPorFragmentoIban(@Param("patron") String patron,
+			@Param("tipoCuenta") CuentaBancaria.TipoCuenta tipoCuenta);
+
+	/**
+	 * Suma una cantidad al saldo de una cuenta con una única sentencia
+	 * {@code UPDATE}, sin leer antes la cuenta. También incrementa la versión
+	 * para que un formulario de edición abierto antes del movimiento no pueda
+	 * sobrescribir el saldo nuevo.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param centimos     la cantidad a sumar, en céntimos (positiva).
+	 * @return el número de filas actualizadas: 0 si la cuenta no existe.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query(value = "UPDATE dam_cuenta_bancaria SET saldo_centimos = saldo_centimos + :centimos, version = version + 1 "
+			+ "WHERE numero_cuenta = :numeroCuenta", nativeQuery = true)
+	int abonar(@Param("numeroCuenta") String numeroCuenta, @Param("centimos") long centimos);
+
+	/**
+	 * Resta una cantidad del saldo de una cuenta solo si el saldo alcanza. La
+	 * comprobación y la resta se hacen en la misma sentencia, así que dos
+	 * retiradas simultáneas nunca pueden dejar la cuenta en negativo.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param centimos     la cantidad a restar, en céntimos (positiva).
+	 * @return el número de filas actualizadas: 0 si la cuenta no existe o no
+	 *         tiene saldo suficiente.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query(value = "UPDATE dam_cuenta_bancaria SET saldo_centimos = saldo_centimos - :centimos, version = version + 1 "
+			+ "WHERE numero_cuenta = :numeroCuenta AND saldo_centimos >= :centimos", nativeQuery = true)
+	int cargar(@Param("numeroCuenta") String numeroCuenta, @Param("centimos") long centimos);
+
+	/**
+	 * Carga una cuenta bloqueando su fila hasta el final de la transacción, para
+	 * editarla sin chocar con las contabilizaciones que cambian su versión.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return la cuenta, si existe.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT c FROM CuentaBancaria c WHERE c.numeroCuenta = :numeroCuenta")
+	Optional<CuentaBancaria> bloquearParaEditar(@Param("numeroCuenta") String numeroCuenta);
+
+	/**
+	 * Bloquea las cuentas indicadas que existan y devuelve su saldo. Las filas se
+	 * bloquean en orden de IBAN, como en las transferencias, para que dos cargas
+	 * simultáneas sobre las mismas cuentas no puedan interbloquearse.
+	 * 
+	 * @param numerosCuenta los IBAN a bloquear.
+	 * @return filas {@code [numero_cuenta, saldo_centimos, tipo_cuenta]} de las
+	 *         cuentas que existen; las que no aparecen no existen.
+	 */
+	@Query(value = "SELECT numero_cuenta, saldo_centimos, tipo_cuenta FROM dam_cuenta_bancaria "
+			+ "WHERE numero_cuenta IN (:numerosCuenta) ORDER BY numero_cuenta FOR UPDATE", nativeQuery = true)
+	List<Object[]> bloquearSaldos(@Param("numerosCuenta") Collection<String> numerosCuenta);
+
+	/**
+	 * Obtiene números de cuenta que todavía no tienen calculado el número
+	 * invertido (filas anteriores a la columna).
+	 * 
+	 * @param limite número máximo de cuentas a devolver.
+	 * @return los números de cuenta pendientes.
+	 */
+	@Query("SELECT c.numeroCuenta FROM CuentaBancaria c WHERE c.numeroCuentaInvertido IS NULL")
+	List<String> findNumerosCuentaSinInvertir(Limit limite);
+
+	/**
+	 * Guarda el número de cuenta invertido de una cuenta sin cargar la entidad ni
+	 * incrementar su versión.
+	 * 
+	 * @param numeroCuenta          el IBAN de la cuenta.
+	 * @param numeroCuentaInvertido el IBAN invertido.
+	 */
+	@Modifying
+	@Query("UPDATE CuentaBancaria c SET c.numeroCuentaInvertido = :numeroCuentaInvertido "
+			+ "WHERE c.numeroCuenta = :numeroCuenta")
+	void actualizarNumeroCuentaInvertido(@Param("numeroCuenta") String numeroCuenta,
+			@Param("numeroCuentaInvertido") String numeroCuentaInvertido);
+
 	/**
 	 * Busca una cuenta bancaria por su número de cuenta exacto.
 	 * 
@@ -44,4 +176,62 @@ public interface CuentaBancariaRepo extends JpaRepository<CuentaBancaria, String
 	 *         encuentra.
 	 */
 	CuentaBancaria findByNumeroCuenta(String numeroCuenta);
+
+	/**
+	 * Obtiene las cuentas de un cliente con el número de operaciones y la fecha de
+	 * la última operación de cada una, en una sola consulta.
+	 * 
+	 * @param nif NIF del cliente.
+	 * @return las cuentas del cliente con su actividad, de la más reciente a la
+	 *         más antigua; vacía si el cliente no tiene cuentas o no existe.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.CuentaActividad(c.numeroCuenta, c.tipoCuenta, c.fechaCreacion, c.saldo, "
+			+ "COUNT(o), MAX(o.fecha)) "
+			+ "FROM CuentaBancaria c JOIN c.misClientes cl LEFT JOIN c.operaciones o "
+			+ "WHERE cl.nif = :nif "
+			+ "GROUP BY c.numeroCuenta, c.tipoCuenta, c.fechaCreacion, c.saldo "
+			+ "ORDER BY c.fechaCreacion DESC, c.numeroCuenta")
+	List<CuentaActividad> findActividadCuentasByNifCliente(@Param("nif") String nif);
+
+	/**
+	 * Obtiene la primera página del listado de cuentas, de la más reciente a la
+	 * más antigua.
+	 * 
+	 * La consulta recorre el índice {@code idx_cuenta_fecha_creacion} en orden y
+	 * solo lee de la tabla el saldo de las filas de la página; el saldo no forma
+	 * parte del índice porque cambia con cada operación.
+	 * 
+	 * @param limite número máximo de cuentas a devolver.
+	 * @return las cuentas más recientes.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.CuentaResumen(c.numeroCuenta, c.tipoCuenta, c.fechaCreacion, c.saldo) "
+			+ "FROM CuentaBancaria c ORDER BY c.fechaCreacion DESC, c.numeroCuenta DESC")
+	List<CuentaResumen> findPrimeraPaginaResumen(Limit limite);
+
+	/**
+	 * Obtiene la página del listado de cuentas que sigue a la cuenta indicada, en
+	 * el mismo orden que {@link #findPrimeraPaginaResumen(Limit)}.
+	 * 
+	 * @param fechaCreacion fecha de creación de la última cuenta de la página
+	 *                      anterior.
+	 * @param numeroCuenta  IBAN de la última cuenta de la página anterior.
+	 * @param limite        número máximo de cuentas a devolver.
+	 * @return las cuentas siguientes.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.CuentaResumen(c.numeroCuenta, c.tipoCuenta, c.fechaCreacion, c.saldo) "
+			+ "FROM CuentaBancaria c WHERE c.fechaCreacion < :fechaCreacion "
+			+ "OR (c.fechaCreacion = :fechaCreacion AND c.numeroCuenta < :numeroCuenta) "
+			+ "ORDER BY c.fechaCreacion DESC, c.numeroCuenta DESC")
+	List<CuentaResumen> findPaginaResumenDespuesDe(@Param("fechaCreacion") LocalDate fechaCreacion,
+			@Param("numeroCuenta") String numeroCuenta, Limit limite);
+
+	/**
+	 * Obtiene la versión de una cuenta sin cargarla. Cambia con cada operación
+	 * contabilizada, por lo que identifica el estado de su historial.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return la versión, o vacío si la cuenta no existe.
+	 */
+	@Query("SELECT c.version FROM CuentaBancaria c WHERE c.numeroCuenta = :numeroCuenta")
+	Optional<Integer> findVersionByNumeroCuenta(@Param("numeroCuenta") String numeroCuenta);
 }
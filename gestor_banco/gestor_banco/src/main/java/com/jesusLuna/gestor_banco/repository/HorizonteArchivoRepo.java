@@ -0,0 +1,31 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import com.jesusLuna.gestor_banco.entity.HorizonteArchivo;
+
+import jakarta.persistence.LockModeType;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link HorizonteArchivo}. El
+ * horizonte se avanza con JDBC desde {@code ArchivoOperacionesServiceImpl}.
+ *
+ * @author Jesús
+ */
+public interface HorizonteArchivoRepo extends JpaRepository<HorizonteArchivo, Integer> {
+
+	/**
+	 * Lee el horizonte con un bloqueo compartido que dura hasta el final de la
+	 * transacción ({@code FOR SHARE} en MySQL): mientras tanto el archivado no
+	 * puede avanzarlo. Debe llamarse dentro de una transacción.
+	 *
+	 * @return el horizonte, si ya se ha guardado.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_READ)
+	@Query("SELECT h FROM HorizonteArchivo h WHERE h.id = " + HorizonteArchivo.ID)
+	Optional<HorizonteArchivo> bloquear();
+}
@@ -1,46 +1,249 @@
 package com.jesusLuna.gestor_banco.repository;
 
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
 import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+import jakarta.persistence.QueryHint;
 
 /**
  * Repositorio para la entidad {@link Operacion}.
  * <p>
- * Proporciona métodos para acceder a operaciones almacenadas en la base de
- * datos según diferentes criterios de búsqueda (tipo, fecha y cantidad).
+ * Proporciona el historial paginado de cada cuenta, la actividad paginada de
+ * todas ellas y, a través de
+ * {@link OperacionesRepoCustom}, la búsqueda de operaciones por cuenta, tipo,
+ * fechas, cantidades y contraparte.
  * </p>
  * 
  * Extiende de {@link JpaRepository} para obtener funcionalidades CRUD estándar.
  * 
  * @author Jesús
  */
-public interface OperacionesRepo extends JpaRepository<Operacion, Long> {
+public interface OperacionesRepo extends JpaRepository<Operacion, Long>, OperacionesRepoCustom {
+
+	/** Importe con signo de una operación en SQL, igual que {@code TipoOperacion.importe}. */
+	String IMPORTE = "CASE WHEN o.tipo IN ('IngresarDinero', 'EntradaTransferencia') "
+			+ "THEN o.cantidad_centimos ELSE -o.cantidad_centimos END";
+
+	/**
+	 * Obtiene la primera página del historial de una cuenta, de la operación más
+	 * reciente a la más antigua. Se resuelve sobre el índice
+	 * {@code idx_operacion_cuenta_fecha_id}.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param limite       número máximo de operaciones a devolver.
+	 * @return las operaciones más recientes de la cuenta.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o WHERE o.cuentaBancaria.numeroCuenta = :numeroCuenta "
+			+ "ORDER BY o.fecha DESC, o.codigo DESC")
+	List<OperacionResumen> findHistorialPrimeraPagina(@Param("numeroCuenta") String numeroCuenta, Limit limite);
+
+	/**
+	 * Obtiene la página del historial de una cuenta que sigue a la operación
+	 * indicada, en el mismo orden que
+	 * {@link #findHistorialPrimeraPagina(String, Limit)}.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la última operación de la página anterior.
+	 * @param codigo       código de la última operación de la página anterior.
+	 * @param limite       número máximo de operaciones a devolver.
+	 * @return las operaciones siguientes.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o WHERE o.cuentaBancaria.numeroCuenta = :numeroCuenta "
+			+ "AND (o.fecha < :fecha OR (o.fecha = :fecha AND o.codigo < :codigo)) "
+			+ "ORDER BY o.fecha DESC, o.codigo DESC")
+	List<OperacionResumen> findHistorialDespuesDe(@Param("numeroCuenta") String numeroCuenta,
+			@Param("fecha") LocalDate fecha, @Param("codigo") long codigo, Limit limite);
+
+	/**
+	 * Obtiene la primera página de la actividad de todas las cuentas, de la
+	 * operación más reciente a la más antigua. Se resuelve sobre el índice
+	 * {@code idx_operacion_fecha_id}; el IBAN sale de la clave ajena, sin unir
+	 * con la tabla de cuentas.
+	 * 
+	 * @param limite número máximo de operaciones a devolver.
+	 * @return las operaciones más recientes.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o ORDER BY o.fecha DESC, o.codigo DESC")
+	List<OperacionResumen> findActividadPrimeraPagina(Limit limite);
+
+	/**
+	 * Obtiene la página de la actividad de todas las cuentas que sigue a la
+	 * operación indicada, en el mismo orden que
+	 * {@link #findActividadPrimeraPagina(Limit)}. La condición redundante
+	 * {@code o.fecha <= :fecha} es la que acota el tramo del índice.
+	 * 
+	 * @param fecha  fecha de la última operación de la página anterior.
+	 * @param codigo código de la última operación de la página anterior.
+	 * @param limite número máximo de operaciones a devolver.
+	 * @return las operaciones siguientes.
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o WHERE o.fecha <= :fecha AND (o.fecha < :fecha OR (o.fecha = :fecha AND o.codigo < :codigo)) "
+			+ "ORDER BY o.fecha DESC, o.codigo DESC")
+	List<OperacionResumen> findActividadDespuesDe(@Param("fecha") LocalDate fecha, @Param("codigo") long codigo,
+			Limit limite);
+
+	/**
+	 * Obtiene la primera página de la actividad de todas las cuentas en
+	 * operaciones de un tipo. Se resuelve sobre el índice
+	 * {@code idx_operacion_tipo_fecha_id}.
+	 * 
+	 * @param tipo   tipo de operación.
+	 * @param limite número máximo de operaciones a devolver.
+	 * @return las operaciones más recientes del tipo.
+	 * @see #findActividadPrimeraPagina(Limit)
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o WHERE o.tipo = :tipo ORDER BY o.fecha DESC, o.codigo DESC")
+	List<OperacionResumen> findActividadPorTipoPrimeraPagina(@Param("tipo") TipoOperacion tipo, Limit limite);
+
+	/**
+	 * Obtiene la página de la actividad en operaciones de un tipo que sigue a la
+	 * operación indicada.
+	 * 
+	 * @param tipo   tipo de operación.
+	 * @param fecha  fecha de la última operación de la página anterior.
+	 * @param codigo código de la última operación de la página anterior.
+	 * @param limite número máximo de operaciones a devolver.
+	 * @return las operaciones siguientes del tipo.
+	 * @see #findActividadDespuesDe(LocalDate, long, Limit)
+	 */
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o WHERE o.tipo = :tipo "
+			+ "AND o.fecha <= :fecha AND (o.fecha < :fecha OR (o.fecha = :fecha AND o.codigo < :codigo)) "
+			+ "ORDER BY o.fecha DESC, o.codigo DESC")
+	List<OperacionResumen> findActividadPorTipoDespuesDe(@Param("tipo") TipoOperacion tipo,
+			@Param("fecha") LocalDate fecha, @Param("codigo") long codigo, Limit limite);
+
+	/**
+	 * Recorre las operaciones de una cuenta, de la más antigua a la más reciente,
+	 * para generar su extracto. Las filas se leen del cursor de la base de datos
+	 * por bloques, sin cargar entidades, así que la memoria usada no depende del
+	 * tamaño del historial. Debe consumirse dentro de una transacción y cerrarse
+	 * al terminar.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        fecha inicial incluida, o {@code null} para no acotar.
+	 * @param hasta        fecha final incluida, o {@code null} para no acotar.
+	 * @return las operaciones de la cuenta en orden cronológico.
+	 */
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+	@Query("SELECT new com.jesusLuna.gestor_banco.dto.OperacionResumen(o.codigo, o.cuentaBancaria.numeroCuenta, o.descripcion, o.fecha, o.tipo, o.cantidad, o.numCuentaTransferencia) "
+			+ "FROM Operacion o WHERE o.cuentaBancaria.numeroCuenta = :numeroCuenta "
+			+ "AND (:desde IS NULL OR o.fecha >= :desde) AND (:hasta IS NULL OR o.fecha <= :hasta) "
+			+ "ORDER BY o.fecha ASC, o.codigo ASC")
+	Stream<OperacionResumen> streamExtracto(@Param("numeroCuenta") String numeroCuenta,
+			@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+	/**
+	 * Cuenta las operaciones que entran en un extracto.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        fecha inicial incluida, o {@code null} para no acotar.
+	 * @param hasta        fecha final incluida, o {@code null} para no acotar.
+	 * @return el número de operaciones.
+	 */
+	@Query("SELECT COUNT(o) FROM Operacion o WHERE o.cuentaBancaria.numeroCuenta = :numeroCuenta "
+			+ "AND (:desde IS NULL OR o.fecha >= :desde) AND (:hasta IS NULL OR o.fecha <= :hasta)")
+	long contarExtracto(@Param("numeroCuenta") String numeroCuenta, @Param("desde") LocalDate desde,
+			@Param("hasta") LocalDate hasta);
+
+	/**
+	 * Suma la variación del saldo de una cuenta entre dos operaciones de su
+	 * historial, ordenado por (fecha, código): abonos en positivo y cargos en
+	 * negativo. Recorre solo el tramo del índice {@code idx_operacion_cuenta_fecha_id}
+	 * entre las dos operaciones: las condiciones redundantes sobre la fecha son
+	 * las que permiten acotar ese tramo, porque la comparación por (fecha, código)
+	 * con {@code OR} no se resuelve como un rango.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desdeFecha   fecha de la operación inicial, excluida.
+	 * @param desdeCodigo  código de la operación inicial, excluida.
+	 * @param hastaFecha   fecha de la operación final, incluida.
+	 * @param hastaCodigo  código de la operación final, incluida.
+	 * @return la variación del saldo, en céntimos.
+	 */
+	@Query(value = "SELECT COALESCE(SUM(" + IMPORTE + "), 0) FROM dam_operacion o WHERE o.cuenta_id = :numeroCuenta "
+			+ "AND o.fecha >= :desdeFecha AND (o.fecha > :desdeFecha OR (o.fecha = :desdeFecha AND o.id > :desdeCodigo)) "
+			+ "AND o.fecha <= :hastaFecha AND (o.fecha < :hastaFecha OR (o.fecha = :hastaFecha AND o.id <= :hastaCodigo))",
+			nativeQuery = true)
+	long sumarImportesEntre(@Param("numeroCuenta") String numeroCuenta, @Param("desdeFecha") LocalDate desdeFecha,
+			@Param("desdeCodigo") long desdeCodigo, @Param("hastaFecha") LocalDate hastaFecha,
+			@Param("hastaCodigo") long hastaCodigo);
+
+	/**
+	 * Suma la variación del saldo de una cuenta desde su primera operación hasta
+	 * la indicada, incluida.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param hastaFecha   fecha de la operación final.
+	 * @param hastaCodigo  código de la operación final.
+	 * @return la variación del saldo, en céntimos.
+	 * @see #sumarImportesEntre(String, LocalDate, long, LocalDate, long)
+	 */
+	@Query(value = "SELECT COALESCE(SUM(" + IMPORTE + "), 0) FROM dam_operacion o WHERE o.cuenta_id = :numeroCuenta "
+			+ "AND o.fecha <= :hastaFecha AND (o.fecha < :hastaFecha OR (o.fecha = :hastaFecha AND o.id <= :hastaCodigo))",
+			nativeQuery = true)
+	long sumarImportesHasta(@Param("numeroCuenta") String numeroCuenta, @Param("hastaFecha") LocalDate hastaFecha,
+			@Param("hastaCodigo") long hastaCodigo);
+
+	/**
+	 * Suma la variación del saldo de una cuenta en las operaciones posteriores a
+	 * la indicada.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desdeFecha   fecha de la operación inicial, excluida.
+	 * @param desdeCodigo  código de la operación inicial, excluida.
+	 * @return la variación del saldo, en céntimos.
+	 * @see #sumarImportesEntre(String, LocalDate, long, LocalDate, long)
+	 */
+	@Query(value = "SELECT COALESCE(SUM(" + IMPORTE + "), 0) FROM dam_operacion o WHERE o.cuenta_id = :numeroCuenta "
+			+ "AND o.fecha >= :desdeFecha AND (o.fecha > :desdeFecha OR (o.fecha = :desdeFecha AND o.id > :desdeCodigo))",
+			nativeQuery = true)
+	long sumarImportesDesde(@Param("numeroCuenta") String numeroCuenta, @Param("desdeFecha") LocalDate desdeFecha,
+			@Param("desdeCodigo") long desdeCodigo);
 
 	/**
-	 * Busca operaciones por su tipo.
+	 * Suma la variación del saldo de una cuenta en todo su historial.
 	 * 
-	 * @param tipo el tipo de operación (por ejemplo: "ingreso", "retiro", etc.)
-	 * @return una lista de operaciones que coinciden con el tipo proporcionado
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return la variación del saldo, en céntimos.
+	 * @see #sumarImportesEntre(String, LocalDate, long, LocalDate, long)
 	 */
-	List<Operacion> findByTipo(String tipo);
+	@Query(value = "SELECT COALESCE(SUM(" + IMPORTE + "), 0) FROM dam_operacion o WHERE o.cuenta_id = :numeroCuenta", nativeQuery = true)
+	long sumarImportes(@Param("numeroCuenta") String numeroCuenta);
 
 	/**
-	 * Busca operaciones realizadas en una fecha específica.
+	 * Comprueba si una cuenta tiene alguna transferencia. La consulta se detiene
+	 * en la primera coincidencia.
 	 * 
-	 * @param fecha la fecha de la operación
-	 * @return una lista de operaciones realizadas en la fecha indicada
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return {@code true} si alguna operación tiene cuenta de contraparte.
 	 */
-	List<Operacion> findByFecha(Date fecha);
+	boolean existsByCuentaBancariaNumeroCuentaAndNumCuentaTransferenciaIsNotNull(String numeroCuenta);
 
 	/**
-	 * Busca operaciones por una cantidad específica.
+	 * Busca el apunte que anula una operación. Se resuelve sobre el índice
+	 * {@code idx_operacion_anulada}.
 	 * 
-	 * @param cantidad el valor monetario exacto de la operación
-	 * @return una lista de operaciones que coinciden con la cantidad proporcionada
+	 * @param codigo código de la operación anulada.
+	 * @return el apunte de anulación, si la operación está anulada.
 	 */
-	List<Operacion> findByCantidad(float cantidad);
+	Optional<Operacion> findByCodigoAnulada(long codigo);
 }
@@ -0,0 +1,30 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.jesusLuna.gestor_banco.dto.FiltroOperaciones;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+
+/**
+ * Consultas de {@link OperacionesRepo} que se construyen en tiempo de ejecución
+ * y no pueden declararse con {@code @Query}.
+ *
+ * @author Jesús
+ */
+public interface OperacionesRepoCustom {
+
+	/**
+	 * Busca operaciones que cumplan el filtro, de la más reciente a la más antigua
+	 * por (fecha, código). Solo se añaden a la consulta los criterios informados.
+	 *
+	 * @param filtro      criterios de búsqueda.
+	 * @param fechaCursor fecha de la última operación de la página anterior, o
+	 *                    {@code null} para la primera página.
+	 * @param codigoCursor código de la última operación de la página anterior.
+	 * @param limite      número máximo de operaciones a devolver.
+	 * @return las operaciones encontradas.
+	 */
+	List<OperacionResumen> buscarOperaciones(FiltroOperaciones filtro, LocalDate fechaCursor, long codigoCursor,
+			int limite);
+}
@@ -0,0 +1,79 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jesusLuna.gestor_banco.dto.FiltroOperaciones;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Implementación de {@link OperacionesRepoCustom} con la API Criteria.
+ * <p>
+ * Cada criterio informado añade un predicado; el orden es siempre (fecha,
+ * código) descendente, de modo que la consulta se apoya en el índice cuya
+ * columna inicial es el criterio más selectivo presente (cuenta, contraparte,
+ * tipo o solo fecha) y recorre el resto por clave, sin ordenar en memoria.
+ * </p>
+ *
+ * @author Jesús
+ */
+public class OperacionesRepoCustomImpl implements OperacionesRepoCustom {
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Override
+	public List<OperacionResumen> buscarOperaciones(FiltroOperaciones filtro, LocalDate fechaCursor,
+			long codigoCursor, int limite) {
+		CriteriaBuilder cb = em.getCriteriaBuilder();
+		CriteriaQuery<OperacionResumen> query = cb.createQuery(OperacionResumen.class);
+		Root<Operacion> o = query.from(Operacion.class);
+		Path<String> numeroCuenta = o.get("cuentaBancaria").get("numeroCuenta");
+		Path<LocalDate> fecha = o.get("fecha");
+		Path<Long> codigo = o.get("codigo");
+		Path<Dinero> cantidad = o.get("cantidad");
+
+		List<Predicate> predicados = new ArrayList<>();
+		if (filtro.getNumeroCuenta() != null) {
+			predicados.add(cb.equal(numeroCuenta, filtro.getNumeroCuenta()));
+		}
+		if (filtro.getCuentaContraparte() != null) {
+			predicados.add(cb.equal(o.get("numCuentaTransferencia"), filtro.getCuentaContraparte()));
+		}
+		if (filtro.getTipos() != null && !filtro.getTipos().isEmpty()) {
+			predicados.add(o.get("tipo").in(filtro.getTipos()));
+		}
+		if (filtro.getFechaDesde() != null) {
+			predicados.add(cb.greaterThanOrEqualTo(fecha, filtro.getFechaDesde()));
+		}
+		if (filtro.getFechaHasta() != null) {
+			predicados.add(cb.lessThanOrEqualTo(fecha, filtro.getFechaHasta()));
+		}
+		if (filtro.getCantidadMinima() != null) {
+			predicados.add(cb.greaterThanOrEqualTo(cantidad, filtro.getCantidadMinima()));
+		}
+		if (filtro.getCantidadMaxima() != null) {
+			predicados.add(cb.lessThanOrEqualTo(cantidad, filtro.getCantidadMaxima()));
+		}
+		if (fechaCursor != null) {
+			predicados.add(cb.or(cb.lessThan(fecha, fechaCursor),
+					cb.and(cb.equal(fecha, fechaCursor), cb.lessThan(codigo, codigoCursor))));
+		}
+
+		query.select(cb.construct(OperacionResumen.class, codigo, numeroCuenta, o.get("descripcion"), fecha,
+				o.get("tipo"), cantidad, o.get("numCuentaTransferencia")))
+				.where(predicados.toArray(new Predicate[0])).orderBy(cb.desc(fecha), cb.desc(codigo));
+		return em.createQuery(query).setMaxResults(limite).getResultList();
+	}
+}
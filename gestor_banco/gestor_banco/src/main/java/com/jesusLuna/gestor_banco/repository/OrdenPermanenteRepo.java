@@ -0,0 +1,43 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link OrdenPermanente}. La
+ * reserva y la ejecución de las órdenes vencidas se hacen con JDBC desde
+ * {@code OrdenPermanenteServiceImpl}; aquí están las altas y las consultas de
+ * cada cuenta.
+ *
+ * @author Jesús
+ */
+public interface OrdenPermanenteRepo extends JpaRepository<OrdenPermanente, Long> {
+
+	/**
+	 * Obtiene las órdenes que paga una cuenta, sobre el índice
+	 * {@code idx_orden_cuenta_origen}.
+	 *
+	 * @param cuentaOrigen el IBAN de la cuenta.
+	 * @return sus órdenes, de la más antigua a la más reciente.
+	 */
+	List<OrdenPermanente> findByCuentaOrigenOrderById(String cuentaOrigen);
+
+	/**
+	 * Cancela una orden quitándole la próxima ejecución. Es una sola sentencia
+	 * para no pisar el resto de columnas: si la orden se está ejecutando, espera
+	 * a que termine el lote y la cancela después.
+	 *
+	 * @param id           el identificador de la orden.
+	 * @param cuentaOrigen el IBAN de la cuenta que la paga.
+	 * @return 1 si la orden existe y es de la cuenta; 0 si no.
+	 */
+	@Modifying
+	@Query("UPDATE OrdenPermanente o SET o.proximaEjecucion = NULL WHERE o.id = :id AND o.cuentaOrigen = :cuentaOrigen")
+	int cancelar(@Param("id") long id, @Param("cuentaOrigen") String cuentaOrigen);
+}
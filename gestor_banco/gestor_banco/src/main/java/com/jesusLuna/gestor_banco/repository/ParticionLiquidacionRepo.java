@@ -0,0 +1,25 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.jesusLuna.gestor_banco.entity.ParticionLiquidacion;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link ParticionLiquidacion}.
+ * El avance de cada partición se actualiza con JDBC desde
+ * {@code LiquidacionInteresesServiceImpl}, en la misma transacción que abona
+ * los intereses de cada bloque.
+ *
+ * @author Jesús
+ */
+public interface ParticionLiquidacionRepo extends JpaRepository<ParticionLiquidacion, ParticionLiquidacion.Clave> {
+
+	/**
+	 * @param mes primer día del mes liquidado.
+	 * @return las particiones del mes, en orden.
+	 */
+	List<ParticionLiquidacion> findByMesOrderByParticion(LocalDate mes);
+}
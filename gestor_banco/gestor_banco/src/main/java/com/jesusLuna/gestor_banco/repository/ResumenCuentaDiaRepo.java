@@ -0,0 +1,28 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.jesusLuna.gestor_banco.entity.ResumenCuentaDia;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link ResumenCuentaDia}. Los
+ * incrementos se escriben con JDBC desde
+ * {@code ResumenOperacionesServiceImpl}; aquí solo están las lecturas.
+ *
+ * @author Jesús
+ */
+public interface ResumenCuentaDiaRepo extends JpaRepository<ResumenCuentaDia, ResumenCuentaDia.Clave> {
+
+	/**
+	 * Totales de una cuenta en un periodo, un rango de la clave primaria.
+	 *
+	 * @param cuenta el IBAN de la cuenta.
+	 * @param desde  primer día, incluido.
+	 * @param hasta  último día, incluido.
+	 * @return los totales por día y tipo de operación.
+	 */
+	List<ResumenCuentaDia> findByCuentaAndFechaBetween(String cuenta, LocalDate desde, LocalDate hasta);
+}
@@ -0,0 +1,30 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.ResumenTipoCuentaDia;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link ResumenTipoCuentaDia}.
+ * Los incrementos se escriben con JDBC desde
+ * {@code ResumenOperacionesServiceImpl}; aquí solo están las lecturas.
+ *
+ * @author Jesús
+ */
+public interface ResumenTipoCuentaDiaRepo extends JpaRepository<ResumenTipoCuentaDia, ResumenTipoCuentaDia.Clave> {
+
+	/**
+	 * Totales de un tipo de cuenta en un periodo, de todas las franjas. Es un
+	 * rango de la clave primaria.
+	 *
+	 * @param clase el tipo de cuenta.
+	 * @param desde primer día, incluido.
+	 * @param hasta último día, incluido.
+	 * @return los totales por día, franja y tipo de operación.
+	 */
+	List<ResumenTipoCuentaDia> findByClaseAndFechaBetween(TipoCuenta clase, LocalDate desde, LocalDate hasta);
+}
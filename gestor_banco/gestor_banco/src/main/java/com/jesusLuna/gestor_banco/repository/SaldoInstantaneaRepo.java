@@ -0,0 +1,94 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.entity.SaldoInstantanea;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link SaldoInstantanea}. Todas
+ * las consultas se resuelven sobre el índice
+ * {@code idx_saldo_instantanea_cuenta_fecha_id}.
+ *
+ * @author Jesús
+ */
+public interface SaldoInstantaneaRepo extends JpaRepository<SaldoInstantanea, Long> {
+
+	/**
+	 * Busca la instantánea más reciente de una cuenta en o antes de la operación
+	 * indicada.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación.
+	 * @param codigo       código de la operación.
+	 * @param limite       {@code Limit.of(1)}.
+	 * @return la instantánea, si existe.
+	 */
+	@Query("SELECT s FROM SaldoInstantanea s WHERE s.numeroCuenta = :numeroCuenta "
+			+ "AND s.fecha <= :fecha AND (s.fecha < :fecha OR (s.fecha = :fecha AND s.codigoOperacion <= :codigo)) "
+			+ "ORDER BY s.fecha DESC, s.codigoOperacion DESC")
+	List<SaldoInstantanea> findAnterior(@Param("numeroCuenta") String numeroCuenta, @Param("fecha") LocalDate fecha,
+			@Param("codigo") long codigo, Limit limite);
+
+	/**
+	 * Busca la instantánea más antigua de una cuenta posterior a la operación
+	 * indicada.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación.
+	 * @param codigo       código de la operación.
+	 * @param limite       {@code Limit.of(1)}.
+	 * @return la instantánea, si existe.
+	 */
+	@Query("SELECT s FROM SaldoInstantanea s WHERE s.numeroCuenta = :numeroCuenta "
+			+ "AND s.fecha >= :fecha AND (s.fecha > :fecha OR (s.fecha = :fecha AND s.codigoOperacion > :codigo)) "
+			+ "ORDER BY s.fecha ASC, s.codigoOperacion ASC")
+	List<SaldoInstantanea> findPosterior(@Param("numeroCuenta") String numeroCuenta, @Param("fecha") LocalDate fecha,
+			@Param("codigo") long codigo, Limit limite);
+
+	/**
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return la primera instantánea de la cuenta, si tiene alguna.
+	 */
+	Optional<SaldoInstantanea> findFirstByNumeroCuentaOrderByFechaAscCodigoOperacionAsc(String numeroCuenta);
+
+	/**
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return la última instantánea de la cuenta, si tiene alguna.
+	 */
+	Optional<SaldoInstantanea> findFirstByNumeroCuentaOrderByFechaDescCodigoOperacionDesc(String numeroCuenta);
+
+	/**
+	 * Elimina las instantáneas de una cuenta tomadas en o después de la operación
+	 * indicada, que dejan de ser válidas cuando se inserta o se elimina una
+	 * operación en ese punto del historial.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación.
+	 * @param codigo       código de la operación.
+	 * @return el número de instantáneas eliminadas.
+	 */
+	@Modifying
+	@Query("DELETE FROM SaldoInstantanea s WHERE s.numeroCuenta = :numeroCuenta "
+			+ "AND s.fecha >= :fecha AND (s.fecha > :fecha OR (s.fecha = :fecha AND s.codigoOperacion >= :codigo))")
+	int borrarDesde(@Param("numeroCuenta") String numeroCuenta, @Param("fecha") LocalDate fecha,
+			@Param("codigo") long codigo);
+
+	/**
+	 * Elimina todas las instantáneas de una cuenta.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 */
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM SaldoInstantanea s WHERE s.numeroCuenta = :numeroCuenta")
+	void borrarDeCuenta(@Param("numeroCuenta") String numeroCuenta);
+}
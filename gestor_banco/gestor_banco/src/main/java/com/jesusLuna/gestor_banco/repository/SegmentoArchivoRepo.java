@@ -0,0 +1,46 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.jesusLuna.gestor_banco.entity.SegmentoArchivo;
+
+/**
+ * Repositorio de acceso a datos para la entidad {@link SegmentoArchivo}. Los
+ * segmentos se dan de alta con JDBC desde
+ * {@code ArchivoOperacionesServiceImpl}, en la misma transacción que borra sus
+ * operaciones; aquí solo están las lecturas.
+ *
+ * @author Jesús
+ */
+public interface SegmentoArchivoRepo extends JpaRepository<SegmentoArchivo, String> {
+
+	/**
+	 * Busca los ficheros que pueden contener operaciones de una cuenta en un
+	 * rango de meses, sobre el índice {@code idx_segmento_archivo_mes_cuentas}.
+	 * Si el IBAN es de una cuenta borrada ({@code CuentaBorradaArchivo}), se
+	 * omiten los ficheros archivados hasta el día del borrado.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        primer día del primer mes, incluido.
+	 * @param hasta        primer día del último mes, incluido.
+	 * @return los ficheros, del mes más antiguo al más reciente.
+	 */
+	@Query("SELECT s FROM SegmentoArchivo s WHERE s.mes BETWEEN :desde AND :hasta "
+			+ "AND s.primeraCuenta <= :numeroCuenta AND s.ultimaCuenta >= :numeroCuenta "
+			+ "AND NOT EXISTS (SELECT b FROM CuentaBorradaArchivo b WHERE b.numeroCuenta = :numeroCuenta "
+			+ "AND b.fechaBorrado >= s.fechaArchivo) ORDER BY s.mes, s.fichero")
+	List<SegmentoArchivo> findDeCuenta(@Param("numeroCuenta") String numeroCuenta, @Param("desde") LocalDate desde,
+			@Param("hasta") LocalDate hasta);
+
+	/**
+	 * @return el mes archivado más reciente, si se ha archivado alguno.
+	 */
+	@Query("SELECT MAX(s.mes) FROM SegmentoArchivo s")
+	Optional<LocalDate> findUltimoMes();
+}
@@ -0,0 +1,147 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+/**
+ * Apunte pendiente de contabilizar en un lote de {@link ContabilizadorLotes}.
+ *
+ * Lleva los datos ya validados de la operación y, tras contabilizar el lote,
+ * el código asignado o el motivo por el que se ha rechazado.
+ *
+ * @author Jesús
+ */
+final class Apunte {
+
+	private final long linea;
+	private final String numeroCuenta;
+	private final TipoOperacion tipo;
+	private final long centimos;
+	private final LocalDate fecha;
+	private final String descripcion;
+	private final String contrapartida;
+	private Apunte condicion;
+	private long codigo;
+	private RuntimeException rechazo;
+
+	/**
+	 * @param linea         posición del apunte en su origen (línea del fichero o
+	 *                      0 si no aplica).
+	 * @param numeroCuenta  IBAN de la cuenta.
+	 * @param tipo          tipo de operación.
+	 * @param centimos      cantidad, positiva.
+	 * @param fecha         fecha de la operación.
+	 * @param descripcion   descripción.
+	 * @param contrapartida IBAN de la otra parte, o {@code null}.
+	 */
+	Apunte(long linea, String numeroCuenta, TipoOperacion tipo, long centimos, LocalDate fecha, String descripcion,
+			String contrapartida) {
+		this.linea = linea;
+		this.numeroCuenta = numeroCuenta;
+		this.tipo = tipo;
+		this.centimos = centimos;
+		this.fecha = fecha;
+		this.descripcion = descripcion;
+		this.contrapartida = contrapartida;
+	}
+
+	/**
+	 * Crea el apunte de una operación para una cuenta.
+	 */
+	static Apunte de(String numeroCuenta, Operacion operacion) {
+		return new Apunte(0, numeroCuenta, operacion.getTipo(), operacion.getCantidad().getCentimos(),
+				operacion.getFecha(), operacion.getDescripcion(), operacion.getNumCuentaTransferencia());
+	}
+
+	long getLinea() {
+		return linea;
+	}
+
+	String getNumeroCuenta() {
+		return numeroCuenta;
+	}
+
+	TipoOperacion getTipo() {
+		return tipo;
+	}
+
+	long getCentimos() {
+		return centimos;
+	}
+
+	LocalDate getFecha() {
+		return fecha;
+	}
+
+	String getDescripcion() {
+		return descripcion;
+	}
+
+	String getContrapartida() {
+		return contrapartida;
+	}
+
+	/**
+	 * @return el importe con signo: positivo si abona la cuenta, negativo si la
+	 *         carga.
+	 */
+	long importe() {
+		return tipo.importe(centimos);
+	}
+
+	/**
+	 * @return el apunte que debe aceptarse para contabilizar este, o
+	 *         {@code null} si no depende de otro.
+	 */
+	Apunte getCondicion() {
+		return condicion;
+	}
+
+	/**
+	 * Hace que este apunte solo se contabilice si se acepta otro que va antes en
+	 * el mismo lote, como el abono de una transferencia respecto a su cargo. Si
+	 * el otro se rechaza, este se rechaza por el mismo motivo.
+	 */
+	void setCondicion(Apunte condicion) {
+		this.condicion = condicion;
+	}
+
+	/**
+	 * @return el código de la operación insertada, o 0 si no se ha insertado.
+	 */
+	long getCodigo() {
+		return codigo;
+	}
+
+	void setCodigo(long codigo) {
+		this.codigo = codigo;
+	}
+
+	/**
+	 * @return el motivo del rechazo, o {@code null} si no se ha rechazado.
+	 */
+	RuntimeException getRechazo() {
+		return rechazo;
+	}
+
+	void rechazar(RuntimeException rechazo) {
+		this.rechazo = rechazo;
+	}
+
+	/**
+	 * Construye la operación contabilizada, sin la cuenta cargada.
+	 */
+	Operacion aOperacion() {
+		Operacion o = new Operacion();
+		o.setCodigo(codigo);
+		o.setTipo(tipo);
+		o.setCantidad(Dinero.deCentimos(centimos));
+		o.setFecha(fecha);
+		o.setDescripcion(descripcion);
+		o.setNumCuentaTransferencia(contrapartida);
+		return o;
+	}
+}
@@ -0,0 +1,37 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoArchivado;
+
+public interface ArchivoOperacionesService {
+
+	/** Horizonte mientras no se ha archivado nada: la menor fecha de MySQL. */
+	public static final LocalDate SIN_ARCHIVO = LocalDate.of(1000, 1, 1);
+
+	public LocalDate horizonte();
+
+	public LocalDate bloquearHorizonte();
+
+	public void comprobarAbierto(LocalDate fecha);
+
+	public ResultadoArchivado archivar();
+
+	public List<OperacionResumen> historialAnterior(String numeroCuenta, LocalDate fecha, long codigo, int limite);
+
+	public void recorrer(String numeroCuenta, LocalDate desde, LocalDate hasta, Consumer<OperacionResumen> destino);
+
+	public long sumarImportes(String numeroCuenta, LocalDate desdeFecha, long desdeCodigo, LocalDate hastaFecha,
+			long hastaCodigo);
+
+	public boolean tieneTransferencias(String numeroCuenta);
+
+	public Optional<OperacionResumen> buscar(String numeroCuenta, LocalDate fecha, long codigo);
+
+	public void olvidarCuenta(String numeroCuenta);
+
+}
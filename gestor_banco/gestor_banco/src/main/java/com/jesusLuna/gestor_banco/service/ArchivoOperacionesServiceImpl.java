@@ -0,0 +1,574 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoArchivado;
+import com.jesusLuna.gestor_banco.entity.CuentaBorradaArchivo;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.HorizonteArchivo;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.SegmentoArchivo;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.HorizonteArchivoRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.SegmentoArchivoRepo;
+import com.jesusLuna.gestor_banco.service.FicheroArchivo.OperacionArchivada;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación del archivo de operaciones antiguas.
+ *
+ * Las operaciones se reparten por meses: las de los últimos
+ * {@code archivo.operaciones.meses-retencion} meses siguen en
+ * {@code dam_operacion}, y las anteriores se mueven a ficheros comprimidos,
+ * una carpeta por mes, con el formato de {@link FicheroArchivo}. Así la tabla
+ * y sus índices dejan de crecer con la antigüedad del banco, y las consultas
+ * de un periodo reciente no leen nunca el archivo. Los ficheros no se
+ * modifican una vez escritos; cada pasada añade los suyos.
+ *
+ * El primer día que sigue en la tabla es el horizonte del archivo, guardado en
+ * {@link HorizonteArchivo}. Los meses anteriores quedan cerrados: no se admite
+ * contabilizar operaciones con fecha anterior al horizonte. Las lecturas del
+ * historial, los extractos y los saldos históricos que llegan más atrás del
+ * horizonte completan la tabla con el archivo sin que quien las pide lo note.
+ *
+ * Cada bloque de cuentas se archiva en una transacción que bloquea las cuentas,
+ * escribe los ficheros, los registra en {@link SegmentoArchivo}, borra las
+ * operaciones y deja una instantánea de saldo tras la última operación
+ * archivada de cada cuenta, de la que parten los saldos de la parte que sigue
+ * en la tabla. Si la transacción falla se borran los ficheros escritos; uno que
+ * quedara sin registrar no se lee nunca.
+ *
+ * Las operaciones archivadas solo existen en los ficheros: el índice de
+ * {@link SegmentoArchivo} está en la base de datos compartida, pero los
+ * ficheros no. Por eso {@code archivo.operaciones.directorio} es obligatorio,
+ * debe ser una ruta absoluta en un almacenamiento compartido por todas las
+ * instancias o replicado, y la aplicación no arranca si falta o no se puede
+ * escribir en él.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class ArchivoOperacionesServiceImpl implements ArchivoOperacionesService {
+
+	/** Cuentas que se archivan en cada transacción. */
+	private static final int CUENTAS_POR_BLOQUE = 200;
+
+	private static final DateTimeFormatter FORMATO_MES = DateTimeFormatter.ofPattern("yyyy-MM");
+
+	private static final String AVANZAR_HORIZONTE = "INSERT INTO dam_horizonte_archivo (id, fecha) VALUES ("
+			+ HorizonteArchivo.ID + ", ?) ON DUPLICATE KEY UPDATE fecha = GREATEST(fecha, VALUES(fecha))";
+
+	private static final String OLVIDAR_CUENTA = "INSERT INTO dam_cuenta_borrada_archivo (numero_cuenta, "
+			+ "fecha_borrado) VALUES (?, ?) ON DUPLICATE KEY UPDATE fecha_borrado = VALUES(fecha_borrado)";
+
+	private static final Comparator<OperacionArchivada> ORDEN = Comparator.comparing(OperacionArchivada::fecha)
+			.thenComparingLong(OperacionArchivada::codigo);
+
+	@Value("${archivo.operaciones.directorio:}")
+	private String directorio;
+
+	@Value("${archivo.operaciones.meses-retencion:24}")
+	private int mesesRetencion;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private SegmentoArchivoRepo segmentoArchivoRepo;
+
+	@Autowired
+	private HorizonteArchivoRepo horizonteArchivoRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final AtomicBoolean archivando = new AtomicBoolean();
+
+	@PostConstruct
+	void iniciar() {
+		// Un directorio relativo o temporal se pierde al cambiar de instancia o
+		// reiniciar, y con él las únicas copias de las operaciones archivadas
+		if (!StringUtils.hasText(directorio) || !Paths.get(directorio).isAbsolute()) {
+			throw new IllegalStateException("archivo.operaciones.directorio debe ser una ruta absoluta en un "
+					+ "almacenamiento compartido o replicado; valor actual: '" + directorio + "'.");
+		}
+		try {
+			Files.createDirectories(raiz());
+		} catch (IOException e) {
+			throw new IllegalStateException("No se puede crear el directorio del archivo " + directorio + ".", e);
+		}
+		if (!Files.isWritable(raiz())) {
+			throw new IllegalStateException("No se puede escribir en el directorio del archivo " + directorio + ".");
+		}
+	}
+
+	/**
+	 * Obtiene el horizonte del archivo: el primer día cuyas operaciones siguen en
+	 * la tabla. Se lee de la base de datos en cada llamada, así que todas las
+	 * instancias ven el mismo.
+	 *
+	 * @return el horizonte, o {@link #SIN_ARCHIVO} si no se ha archivado nada.
+	 */
+	@Override
+	public LocalDate horizonte() {
+		List<LocalDate> guardado = jdbcTemplate.queryForList(
+				"SELECT fecha FROM dam_horizonte_archivo WHERE id = ?", LocalDate.class, HorizonteArchivo.ID);
+		return guardado.isEmpty() ? horizonteDeSegmentos() : guardado.get(0);
+	}
+
+	/**
+	 * Obtiene el horizonte del archivo con un bloqueo compartido hasta el final
+	 * de la transacción en curso, que impide cerrar más meses mientras tanto.
+	 * Quien contabiliza lo lee así después de bloquear las cuentas, en el mismo
+	 * orden que {@link ContabilizadorLotes}.
+	 *
+	 * @return el horizonte, o {@link #SIN_ARCHIVO} si no se ha archivado nada.
+	 */
+	@Override
+	public LocalDate bloquearHorizonte() {
+		return horizonteArchivoRepo.bloquear().map(HorizonteArchivo::getFecha).orElseGet(this::horizonteDeSegmentos);
+	}
+
+	/**
+	 * Comprueba que se puede contabilizar una operación con la fecha indicada.
+	 * Dentro de una transacción lee el horizonte con {@link #bloquearHorizonte()},
+	 * así que debe llamarse después de bloquear la cuenta; fuera de ellas sirve
+	 * para descartar pronto las fechas cerradas.
+	 *
+	 * @param fecha fecha de la operación.
+	 * @throws IllegalArgumentException si la fecha es anterior al horizonte del
+	 *                                  archivo.
+	 */
+	@Override
+	public void comprobarAbierto(LocalDate fecha) {
+		if (fecha == null) {
+			return;
+		}
+		LocalDate h = TransactionSynchronizationManager.isActualTransactionActive() ? bloquearHorizonte()
+				: horizonte();
+		if (fecha.isBefore(h)) {
+			throw new IllegalArgumentException(
+					"La fecha " + fecha + " pertenece a un periodo cerrado y archivado.");
+		}
+	}
+
+	/**
+	 * Horizonte de las instalaciones que archivaron antes de guardarlo en
+	 * {@link HorizonteArchivo}: el mes siguiente al último archivado. La
+	 * siguiente pasada del archivado lo guarda.
+	 */
+	private LocalDate horizonteDeSegmentos() {
+		return segmentoArchivoRepo.findUltimoMes().map(mes -> mes.plusMonths(1)).orElse(SIN_ARCHIVO);
+	}
+
+	/**
+	 * Archiva las operaciones anteriores al primer día del mes de hace
+	 * {@code archivo.operaciones.meses-retencion} meses. Primero se cierran esos
+	 * meses y después se recorren las cuentas por bloques de
+	 * {@value #CUENTAS_POR_BLOQUE}, cada uno en su propia transacción. Un bloque
+	 * que falla conserva sus operaciones en la tabla y se archiva en la
+	 * siguiente pasada.
+	 *
+	 * @return el nuevo horizonte, los ficheros escritos y las operaciones
+	 *         archivadas.
+	 * @throws IllegalStateException si ya hay un archivado en curso.
+	 */
+	@Override
+	@Scheduled(cron = "${archivo.operaciones.cron:-}")
+	public ResultadoArchivado archivar() {
+		if (!archivando.compareAndSet(false, true)) {
+			throw new IllegalStateException("Ya hay un archivado de operaciones en curso.");
+		}
+		long inicio = System.currentTimeMillis();
+		try {
+			// Primero se cierran los meses, en su propia transacción: espera a las
+			// contabilizaciones que ya leyeron el horizonte anterior
+			LocalDate objetivo = LocalDate.now().withDayOfMonth(1).minusMonths(mesesRetencion);
+			LocalDate actual = horizonte();
+			transactionTemplate.executeWithoutResult(estado -> jdbcTemplate.update(AVANZAR_HORIZONTE,
+					objetivo.isAfter(actual) ? objetivo : actual));
+			Files.createDirectories(raiz());
+
+			int ficheros = 0;
+			long operaciones = 0;
+			int fallidos = 0;
+			String ultima = "";
+			List<String> bloque;
+			do {
+				bloque = jdbcTemplate.queryForList(
+						"SELECT numero_cuenta FROM dam_cuenta_bancaria WHERE numero_cuenta > ? ORDER BY numero_cuenta LIMIT ?",
+						String.class, ultima, CUENTAS_POR_BLOQUE);
+				if (bloque.isEmpty()) {
+					break;
+				}
+				List<String> cuentas = bloque;
+				List<Path> escritos = new ArrayList<>();
+				try {
+					operaciones += transactionTemplate.execute(estado -> archivar(cuentas, objetivo, escritos));
+					ficheros += escritos.size();
+				} catch (RuntimeException e) {
+					fallidos++;
+					log.error("No se pudieron archivar las operaciones de las cuentas {} a {}", cuentas.get(0),
+							cuentas.get(cuentas.size() - 1), e);
+					borrar(escritos);
+				}
+				ultima = bloque.get(bloque.size() - 1);
+			} while (bloque.size() == CUENTAS_POR_BLOQUE);
+
+			long ms = System.currentTimeMillis() - inicio;
+			log.info("Archivadas {} operaciones anteriores a {} en {} ficheros ({} bloques fallidos) en {} ms",
+					operaciones, objetivo, ficheros, fallidos, ms);
+			return new ResultadoArchivado(objetivo, ficheros, operaciones, fallidos, ms);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			archivando.set(false);
+		}
+	}
+
+	/**
+	 * Archiva en la transacción en curso las operaciones anteriores al horizonte
+	 * de un bloque de cuentas y devuelve cuántas se han archivado. Los ficheros se
+	 * añaden a {@code escritos} antes de crearlos.
+	 */
+	private long archivar(List<String> bloque, LocalDate horizonte, List<Path> escritos) {
+		// Los meses ya están cerrados; el bloqueo espera a las operaciones que los
+		// comprobaron antes del cierre y aparta a quien borre operaciones o cuentas.
+		// Va antes de cualquier lectura sin bloqueo: en REPEATABLE READ la primera
+		// fija la foto de la transacción, y una operación confirmada entre esa
+		// lectura y el bloqueo contaría en el saldo pero no en lo sumado después
+		Map<String, Long> saldos = new HashMap<>();
+		for (Object[] fila : cuentaBancRepo.bloquearSaldos(bloque)) {
+			saldos.put((String) fila[0], ((Number) fila[1]).longValue());
+		}
+		if (saldos.isEmpty()) {
+			return 0;
+		}
+		String marcas = String.join(", ", Collections.nCopies(saldos.size(), "?"));
+		List<Object> argumentos = new ArrayList<>(saldos.keySet());
+		argumentos.add(horizonte);
+
+		NavigableMap<LocalDate, NavigableMap<String, List<OperacionArchivada>>> meses = new TreeMap<>();
+		Map<String, OperacionArchivada> ultimas = new HashMap<>();
+		jdbcTemplate.query("SELECT id, cuenta_id, descripcion, tipo, fecha, cantidad_centimos, "
+				+ "num_cuenta_transferencia, id_operacion_anulada FROM dam_operacion "
+				+ "WHERE cuenta_id IN (" + marcas + ") AND fecha < ? ORDER BY cuenta_id, fecha, id", rs -> {
+					OperacionArchivada op = new OperacionArchivada(rs.getLong(1), rs.getString(2), rs.getString(3),
+							rs.getObject(5, LocalDate.class), TipoOperacion.valueOf(rs.getString(4)), rs.getLong(6),
+							rs.getString(7), rs.getObject(8, Long.class));
+					meses.computeIfAbsent(op.fecha().withDayOfMonth(1), k -> new TreeMap<>())
+							.computeIfAbsent(op.numeroCuenta(), k -> new ArrayList<>()).add(op);
+					ultimas.put(op.numeroCuenta(), op);
+				}, argumentos.toArray());
+		if (meses.isEmpty()) {
+			return 0;
+		}
+
+		LocalDate hoy = LocalDate.now();
+		List<Object[]> segmentos = new ArrayList<>(meses.size());
+		long archivadas = 0;
+		try {
+			for (Map.Entry<LocalDate, NavigableMap<String, List<OperacionArchivada>>> mes : meses.entrySet()) {
+				Path carpeta = raiz().resolve(mes.getKey().format(FORMATO_MES));
+				Files.createDirectories(carpeta);
+				Path fichero = carpeta.resolve("segmento-" + UUID.randomUUID() + ".gz");
+				escritos.add(fichero);
+				FicheroArchivo.escribir(fichero, mes.getValue());
+
+				int operaciones = 0;
+				boolean transferencias = false;
+				for (List<OperacionArchivada> deCuenta : mes.getValue().values()) {
+					operaciones += deCuenta.size();
+					transferencias |= deCuenta.stream().anyMatch(op -> op.numCuentaTransferencia() != null);
+				}
+				archivadas += operaciones;
+				segmentos.add(new Object[] { raiz().relativize(fichero).toString().replace('\\', '/'),
+						mes.getKey(), mes.getValue().firstKey(), mes.getValue().lastKey(), operaciones,
+						transferencias, hoy });
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		List<Object[]> descartes = new ArrayList<>(ultimas.size());
+		List<Object[]> instantaneas = new ArrayList<>(ultimas.size());
+		for (OperacionArchivada op : ultimas.values()) {
+			String cuenta = op.numeroCuenta();
+			long saldo = Dinero.restar(saldos.get(cuenta),
+					operacionesRepo.sumarImportesDesde(cuenta, op.fecha(), op.codigo()));
+			descartes.add(new Object[] { cuenta, op.fecha(), op.fecha(), op.codigo() });
+			instantaneas.add(new Object[] { op.codigo(), cuenta, op.fecha(), saldo });
+		}
+
+		jdbcTemplate.batchUpdate("INSERT INTO dam_segmento_archivo (fichero, mes, primera_cuenta, ultima_cuenta, "
+				+ "operaciones, transferencias, fecha_archivo) VALUES (?, ?, ?, ?, ?, ?, ?)", segmentos);
+		jdbcTemplate.batchUpdate("DELETE FROM dam_saldo_instantanea WHERE cuenta_id = ? "
+				+ "AND (fecha < ? OR (fecha = ? AND id_operacion <= ?))", descartes);
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO dam_saldo_instantanea (id_operacion, cuenta_id, fecha, saldo_centimos) VALUES (?, ?, ?, ?)",
+				instantaneas);
+		int borradas = jdbcTemplate.update(
+				"DELETE FROM dam_operacion WHERE cuenta_id IN (" + marcas + ") AND fecha < ?", argumentos.toArray());
+		if (borradas != archivadas) {
+			throw new IllegalStateException("Se han archivado " + archivadas + " operaciones pero se borrarían "
+					+ borradas + "; se deshace el bloque.");
+		}
+		return archivadas;
+	}
+
+	/**
+	 * Obtiene operaciones archivadas de una cuenta anteriores a un punto de su
+	 * historial, de la más reciente a la más antigua, leyendo solo los meses
+	 * necesarios.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación del punto, o {@code null} para
+	 *                     empezar por la más reciente.
+	 * @param codigo       código de la operación del punto, excluida.
+	 * @param limite       número máximo de operaciones.
+	 * @return las operaciones encontradas.
+	 */
+	@Override
+	public List<OperacionResumen> historialAnterior(String numeroCuenta, LocalDate fecha, long codigo, int limite) {
+		List<OperacionResumen> resultado = new ArrayList<>();
+		for (List<SegmentoArchivo> delMes : segmentos(numeroCuenta, null, fecha).descendingMap().values()) {
+			List<OperacionArchivada> operaciones = leer(numeroCuenta, delMes);
+			for (int i = operaciones.size() - 1; i >= 0 && resultado.size() < limite; i--) {
+				OperacionArchivada op = operaciones.get(i);
+				if (fecha == null || antes(op, fecha, codigo)) {
+					resultado.add(op.resumen());
+				}
+			}
+			if (resultado.size() >= limite) {
+				break;
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Recorre las operaciones archivadas de una cuenta entre dos fechas, de la
+	 * más antigua a la más reciente. La memoria usada es la de un mes de la
+	 * cuenta.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        fecha inicial incluida, o {@code null} para no acotar.
+	 * @param hasta        fecha final incluida, o {@code null} para no acotar.
+	 * @param destino      recibe cada operación.
+	 */
+	@Override
+	public void recorrer(String numeroCuenta, LocalDate desde, LocalDate hasta, Consumer<OperacionResumen> destino) {
+		for (List<SegmentoArchivo> delMes : segmentos(numeroCuenta, desde, hasta).values()) {
+			for (OperacionArchivada op : leer(numeroCuenta, delMes)) {
+				if ((desde == null || !op.fecha().isBefore(desde)) && (hasta == null || !op.fecha().isAfter(hasta))) {
+					destino.accept(op.resumen());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Suma la variación del saldo de las operaciones archivadas de una cuenta
+	 * entre dos puntos de su historial. Si el rango empieza en el horizonte o
+	 * después no lee nada.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desdeFecha   fecha de la operación inicial, excluida, o
+	 *                     {@code null} para empezar por la primera.
+	 * @param desdeCodigo  código de la operación inicial.
+	 * @param hastaFecha   fecha de la operación final, incluida, o {@code null}
+	 *                     para llegar hasta la última.
+	 * @param hastaCodigo  código de la operación final.
+	 * @return la variación del saldo, en céntimos.
+	 */
+	@Override
+	public long sumarImportes(String numeroCuenta, LocalDate desdeFecha, long desdeCodigo, LocalDate hastaFecha,
+			long hastaCodigo) {
+		long suma = 0;
+		for (Map.Entry<LocalDate, List<SegmentoArchivo>> mes : segmentos(numeroCuenta, desdeFecha, hastaFecha)
+				.entrySet()) {
+			// Los meses que quedan dentro del rango se suman con el índice de sus ficheros
+			LocalDate inicio = mes.getKey();
+			if ((desdeFecha == null || desdeFecha.isBefore(inicio))
+					&& (hastaFecha == null || !hastaFecha.isBefore(inicio.plusMonths(1)))) {
+				suma = Dinero.sumar(suma, neto(numeroCuenta, mes.getValue()));
+				continue;
+			}
+			for (OperacionArchivada op : leer(numeroCuenta, mes.getValue())) {
+				if ((desdeFecha == null || !antes(op, desdeFecha, desdeCodigo) && !es(op, desdeFecha, desdeCodigo))
+						&& (hastaFecha == null || antes(op, hastaFecha, hastaCodigo) || es(op, hastaFecha, hastaCodigo))) {
+					suma = Dinero.sumar(suma, op.tipo().importe(op.centimos()));
+				}
+			}
+		}
+		return suma;
+	}
+
+	/**
+	 * Indica si alguna operación archivada de una cuenta es una transferencia.
+	 * Solo se abren los ficheros marcados con transferencias.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return {@code true} si la cuenta tiene alguna transferencia archivada.
+	 */
+	@Override
+	public boolean tieneTransferencias(String numeroCuenta) {
+		for (List<SegmentoArchivo> delMes : segmentos(numeroCuenta, null, null).values()) {
+			List<SegmentoArchivo> conTransferencias = delMes.stream().filter(SegmentoArchivo::isTransferencias)
+					.toList();
+			if (!conTransferencias.isEmpty() && leer(numeroCuenta, conTransferencias).stream()
+					.anyMatch(op -> op.numCuentaTransferencia() != null)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Busca una operación archivada de una cuenta leyendo solo los ficheros de su
+	 * mes.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación.
+	 * @param codigo       código de la operación.
+	 * @return la operación, o vacío si no está archivada.
+	 */
+	@Override
+	public Optional<OperacionResumen> buscar(String numeroCuenta, LocalDate fecha, long codigo) {
+		for (List<SegmentoArchivo> delMes : segmentos(numeroCuenta, fecha, fecha).values()) {
+			for (OperacionArchivada op : leer(numeroCuenta, delMes)) {
+				if (es(op, fecha, codigo)) {
+					return Optional.of(op.resumen());
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Deja de leer las operaciones archivadas de una cuenta que se va a borrar,
+	 * en la transacción en curso. Los ficheros que las contienen se comparten
+	 * con otras cuentas y no se reescriben; se marca el IBAN en
+	 * {@link CuentaBorradaArchivo} para que una cuenta que se dé de alta después
+	 * con el mismo IBAN no herede su historial.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 */
+	@Override
+	public void olvidarCuenta(String numeroCuenta) {
+		if (segmentos(numeroCuenta, null, null).isEmpty()) {
+			return;
+		}
+		jdbcTemplate.update(OLVIDAR_CUENTA, numeroCuenta, LocalDate.now());
+	}
+
+	/**
+	 * Busca los ficheros de una cuenta de los meses entre dos fechas, agrupados
+	 * por mes. Los meses desde el horizonte no se buscan.
+	 */
+	private NavigableMap<LocalDate, List<SegmentoArchivo>> segmentos(String numeroCuenta, LocalDate desde,
+			LocalDate hasta) {
+		NavigableMap<LocalDate, List<SegmentoArchivo>> meses = new TreeMap<>();
+		LocalDate h = horizonte();
+		if (h.equals(SIN_ARCHIVO) || (desde != null && !desde.isBefore(h))) {
+			return meses;
+		}
+		LocalDate mesDesde = desde == null ? SIN_ARCHIVO : desde.withDayOfMonth(1);
+		LocalDate mesHasta = hasta == null || !hasta.isBefore(h) ? h.minusMonths(1) : hasta.withDayOfMonth(1);
+		for (SegmentoArchivo s : segmentoArchivoRepo.findDeCuenta(numeroCuenta, mesDesde, mesHasta)) {
+			meses.computeIfAbsent(s.getMes(), k -> new ArrayList<>()).add(s);
+		}
+		return meses;
+	}
+
+	/**
+	 * Lee las operaciones de una cuenta en los ficheros de un mes, en orden de
+	 * fecha y código.
+	 */
+	private List<OperacionArchivada> leer(String numeroCuenta, List<SegmentoArchivo> delMes) {
+		List<OperacionArchivada> operaciones = new ArrayList<>();
+		try {
+			for (SegmentoArchivo s : delMes) {
+				operaciones.addAll(FicheroArchivo.leer(raiz().resolve(s.getFichero()), numeroCuenta));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (delMes.size() > 1) {
+			operaciones.sort(ORDEN);
+		}
+		return operaciones;
+	}
+
+	private long neto(String numeroCuenta, List<SegmentoArchivo> delMes) {
+		long neto = 0;
+		try {
+			for (SegmentoArchivo s : delMes) {
+				neto = Dinero.sumar(neto, FicheroArchivo.leerNeto(raiz().resolve(s.getFichero()), numeroCuenta));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return neto;
+	}
+
+	private static boolean antes(OperacionArchivada op, LocalDate fecha, long codigo) {
+		return op.fecha().isBefore(fecha) || (op.fecha().equals(fecha) && op.codigo() < codigo);
+	}
+
+	private static boolean es(OperacionArchivada op, LocalDate fecha, long codigo) {
+		return op.fecha().equals(fecha) && op.codigo() == codigo;
+	}
+
+	private Path raiz() {
+		return Paths.get(directorio);
+	}
+
+	private static void borrar(List<Path> ficheros) {
+		for (Path fichero : ficheros) {
+			try {
+				Files.deleteIfExists(fichero);
+			} catch (IOException e) {
+				log.warn("No se pudo borrar el fichero de archivo {}", fichero, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Borrador de edición de los titulares de una cuenta bancaria.
+ * 
+ * Solo guarda los identificadores de los clientes, nunca entidades, y queda
+ * ligado a la versión de titulares de la cuenta con la que se abrió: si otra
+ * edición de la cuenta se confirma entretanto, el borrador deja de ser válido y
+ * no se puede confirmar. Las contabilizaciones no lo invalidan.
+ * 
+ * Las instancias las crea y gestiona {@link BorradorCuentaStore}.
+ * 
+ * @author Jesús
+ */
+public class BorradorCuenta {
+
+	private final String id;
+	private final String numeroCuenta;
+	private final int versionTitulares;
+	private final Set<Long> clienteIds;
+	private volatile long ultimoAcceso;
+
+	BorradorCuenta(String id, String numeroCuenta, int versionTitulares, Collection<Long> clienteIds, long ahora) {
+		this.id = id;
+		this.numeroCuenta = numeroCuenta;
+		this.versionTitulares = versionTitulares;
+		this.clienteIds = new LinkedHashSet<>(clienteIds);
+		this.ultimoAcceso = ahora;
+	}
+
+	/**
+	 * @return el identificador del borrador.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return el número de la cuenta que se está editando.
+	 */
+	public String getNumeroCuenta() {
+		return numeroCuenta;
+	}
+
+	/**
+	 * @return la versión de titulares de la cuenta cuando se abrió el borrador.
+	 */
+	public int getVersionTitulares() {
+		return versionTitulares;
+	}
+
+	/**
+	 * Devuelve una copia de los identificadores de los titulares del borrador.
+	 * 
+	 * @return los identificadores de los clientes titulares.
+	 */
+	public synchronized Set<Long> getClienteIds() {
+		return Set.copyOf(clienteIds);
+	}
+
+	synchronized boolean anyadir(Long clienteId) {
+		return clienteIds.add(clienteId);
+	}
+
+	synchronized boolean quitar(Long clienteId) {
+		return clienteIds.remove(clienteId);
+	}
+
+	synchronized int numeroClientes() {
+		return clienteIds.size();
+	}
+
+	long getUltimoAcceso() {
+		return ultimoAcceso;
+	}
+
+	void tocar(long ahora) {
+		ultimoAcceso = ahora;
+	}
+}
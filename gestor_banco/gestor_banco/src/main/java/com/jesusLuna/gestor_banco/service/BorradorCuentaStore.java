@@ -0,0 +1,162 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Almacén en memoria de los borradores de edición de titulares de cuentas
+ * ({@link BorradorCuenta}).
+ * 
+ * Sustituye a las listas de entidades {@code Cliente} que antes se guardaban en
+ * la {@code HttpSession}: cada borrador ocupa unas decenas de bytes por
+ * titular, caduca tras {@value #TTL_MINUTOS} minutos sin uso y el número total
+ * de borradores está acotado. Al llegar al límite se descartan primero los
+ * caducados y después los menos usados recientemente.
+ * 
+ * Los borradores viven en la memoria de esta instancia: la aplicación se
+ * despliega en un solo nodo, o con afinidad de sesión si hay varios. Un
+ * borrador perdido por un reinicio o por otra instancia solo obliga a volver a
+ * abrir la edición, porque nada se guarda hasta confirmarlo.
+ * 
+ * @author Jesús
+ */
+@Component
+public class BorradorCuentaStore {
+
+	/** Minutos sin uso tras los que un borrador caduca. */
+	static final long TTL_MINUTOS = 30;
+
+	/** Número máximo de borradores abiertos a la vez. */
+	static final int MAX_BORRADORES = 1000;
+
+	/** Número máximo de titulares que puede contener un borrador. */
+	static final int MAX_CLIENTES_POR_BORRADOR = 200;
+
+	private static final long TTL_MILLIS = TTL_MINUTOS * 60_000L;
+
+	private final Map<String, BorradorCuenta> borradores = new ConcurrentHashMap<>();
+
+	/**
+	 * Abre un borrador nuevo para una cuenta.
+	 *
+	 * @param numeroCuenta     Número de la cuenta que se va a editar.
+	 * @param versionTitulares Versión de titulares actual de la cuenta.
+	 * @param clienteIds       Titulares actuales de la cuenta.
+	 * @return El borrador creado.
+	 */
+	public BorradorCuenta crear(String numeroCuenta, int versionTitulares, Collection<Long> clienteIds) {
+		if (clienteIds.size() > MAX_CLIENTES_POR_BORRADOR) {
+			throw new IllegalArgumentException(
+					"La cuenta supera el máximo de " + MAX_CLIENTES_POR_BORRADOR + " titulares editables.");
+		}
+		long ahora = System.currentTimeMillis();
+		liberarEspacio(ahora);
+		BorradorCuenta borrador = new BorradorCuenta(UUID.randomUUID().toString(), numeroCuenta, versionTitulares,
+				clienteIds, ahora);
+		borradores.put(borrador.getId(), borrador);
+		return borrador;
+	}
+
+	/**
+	 * Recupera un borrador vigente de la cuenta indicada con la versión indicada.
+	 *
+	 * @param id               Identificador del borrador (puede ser nulo).
+	 * @param numeroCuenta     Número de la cuenta editada.
+	 * @param versionTitulares Versión de titulares actual de la cuenta.
+	 * @return El borrador, o {@code null} si no existe, ha caducado, pertenece a
+	 *         otra cuenta o la cuenta ha cambiado de versión de titulares.
+	 */
+	public BorradorCuenta obtener(String id, String numeroCuenta, int versionTitulares) {
+		BorradorCuenta borrador = obtener(id, numeroCuenta);
+		if (borrador != null && borrador.getVersionTitulares() != versionTitulares) {
+			borradores.remove(id);
+			return null;
+		}
+		return borrador;
+	}
+
+	/**
+	 * Recupera un borrador vigente de la cuenta indicada, sin comprobar la versión de titulares.
+	 *
+	 * @param id           Identificador del borrador (puede ser nulo).
+	 * @param numeroCuenta Número de la cuenta editada.
+	 * @return El borrador, o {@code null} si no existe, ha caducado o pertenece a
+	 *         otra cuenta.
+	 */
+	public BorradorCuenta obtener(String id, String numeroCuenta) {
+		if (id == null) {
+			return null;
+		}
+		BorradorCuenta borrador = borradores.get(id);
+		if (borrador == null || !borrador.getNumeroCuenta().equals(numeroCuenta)) {
+			return null;
+		}
+		long ahora = System.currentTimeMillis();
+		if (ahora - borrador.getUltimoAcceso() > TTL_MILLIS) {
+			borradores.remove(id);
+			return null;
+		}
+		borrador.tocar(ahora);
+		return borrador;
+	}
+
+	/**
+	 * Añade un titular al borrador.
+	 *
+	 * @param borrador  Borrador a modificar.
+	 * @param clienteId Cliente a añadir.
+	 * @return {@code false} si el cliente ya estaba en el borrador.
+	 */
+	public boolean anyadirCliente(BorradorCuenta borrador, Long clienteId) {
+		if (borrador.numeroClientes() >= MAX_CLIENTES_POR_BORRADOR) {
+			throw new IllegalArgumentException(
+					"No se pueden asignar más de " + MAX_CLIENTES_POR_BORRADOR + " titulares a una cuenta.");
+		}
+		return borrador.anyadir(clienteId);
+	}
+
+	/**
+	 * Quita un titular del borrador.
+	 *
+	 * @param borrador  Borrador a modificar.
+	 * @param clienteId Cliente a quitar.
+	 * @return {@code false} si el cliente no estaba en el borrador.
+	 */
+	public boolean quitarCliente(BorradorCuenta borrador, Long clienteId) {
+		return borrador.quitar(clienteId);
+	}
+
+	/**
+	 * Descarta un borrador, normalmente tras confirmarlo.
+	 *
+	 * @param id Identificador del borrador.
+	 */
+	public void descartar(String id) {
+		if (id != null) {
+			borradores.remove(id);
+		}
+	}
+
+	/**
+	 * @return el número de borradores abiertos.
+	 */
+	public int tamanyo() {
+		return borradores.size();
+	}
+
+	private void liberarEspacio(long ahora) {
+		if (borradores.size() < MAX_BORRADORES) {
+			return;
+		}
+		borradores.values().removeIf(b -> ahora - b.getUltimoAcceso() > TTL_MILLIS);
+		while (borradores.size() >= MAX_BORRADORES) {
+			borradores.values().stream().min(Comparator.comparingLong(BorradorCuenta::getUltimoAcceso))
+					.ifPresent(b -> borradores.remove(b.getId()));
+		}
+	}
+}
@@ -1,8 +1,12 @@
 package com.jesusLuna.gestor_banco.service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import com.jesusLuna.gestor_banco.dto.ClienteIdentificacion;
+import com.jesusLuna.gestor_banco.dto.ClienteResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoTypeahead;
 import com.jesusLuna.gestor_banco.entity.Cliente;
 
 
@@ -14,10 +18,19 @@ public interface ClienteService {
 
 	public Cliente obtenerPorId(long id);
 
-	public List<Cliente> obtenerClientesExcludeCuentaBancaria(String numCuenta);
+	public Long obtenerIdPorNif(String nif);
+
+	public List<ClienteResumen> obtenerResumenClientes(Collection<Long> ids);
+
+	public List<Long> obtenerIdsClientesCuentaBancaria(String numCuenta);
+
+	public List<ClienteIdentificacion> obtenerClientesExcludeCuentaBancaria(String numCuenta, String despuesDeNif,
+			int limite);
 
 	public List<Cliente> obtenerClientesCuentaBancaria(String numCuenta);
 
+	public ResultadoTypeahead buscarClientesTypeahead(String prefijo, String numeroCuentaExcluida, int pagina);
+
 	public List<Cliente> buscarClientesConOrden(String nombre, String apellido, String email, String numeroContacto,
 			String dni, String ordenarPor, String ordenTipo);
 
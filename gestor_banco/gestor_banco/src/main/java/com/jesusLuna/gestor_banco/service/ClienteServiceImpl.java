@@ -1,16 +1,23 @@
 package com.jesusLuna.gestor_banco.service;
 
 import java.text.Collator;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import com.jesusLuna.gestor_banco.dto.ClienteIdentificacion;
+import com.jesusLuna.gestor_banco.dto.ClienteResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoTypeahead;
 import com.jesusLuna.gestor_banco.entity.Cliente;
 import com.jesusLuna.gestor_banco.exception.ClienteNoEncontradoException;
 import com.jesusLuna.gestor_banco.exception.ClienteYaExistenteException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
 import com.jesusLuna.gestor_banco.repository.ClienteRepo;
 
 /**
@@ -19,9 +26,18 @@ import com.jesusLuna.gestor_banco.repository.ClienteRepo;
 @Service
 public class ClienteServiceImpl implements ClienteService {
 
+	/** Tamaño máximo de página de los listados paginados de clientes. */
+	private static final int LIMITE_MAXIMO_PAGINA = 100;
+
+	/** Tamaño de página del buscador incremental de clientes. */
+	private static final int TAMANYO_PAGINA_TYPEAHEAD = 20;
+
 	@Autowired
 	private ClienteRepo clienteRepo;
 
+	@Autowired
+	private ClienteTypeaheadCache typeaheadCache;
+
 	/**
 	 * Obtiene todos los clientes registrados.
 	 * 
@@ -55,6 +71,86 @@ public class ClienteServiceImpl implements ClienteService {
 		return clienteRepo.findByNif(nif);
 	}
 
+	/**
+	 * Obtiene el identificador de un cliente a partir de su NIF, sin cargar la
+	 * entidad.
+	 * 
+	 * @param nif NIF del cliente.
+	 * @return identificador del cliente o null si no existe.
+	 */
+	@Override
+	public Long obtenerIdPorNif(String nif) {
+		return clienteRepo.findIdByNif(nif);
+	}
+
+	/**
+	 * Obtiene la proyección ligera de los clientes indicados, ordenada por NIF.
+	 * 
+	 * @param ids identificadores de los clientes.
+	 * @return lista de clientes encontrados.
+	 */
+	@Override
+	public List<ClienteResumen> obtenerResumenClientes(Collection<Long> ids) {
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+		return clienteRepo.findResumenByIdIn(ids);
+	}
+
+	/**
+	 * Obtiene los identificadores de los titulares de una cuenta bancaria.
+	 * 
+	 * @param numCuenta número de cuenta bancaria.
+	 * @return identificadores de los clientes asociados.
+	 */
+	@Override
+	public List<Long> obtenerIdsClientesCuentaBancaria(String numCuenta) {
+		return clienteRepo.findIdsClientesByNumeroCuenta(numCuenta);
+	}
+
+	/**
+	 * Busca clientes cuyo NIF, apellidos o email empiecen por el prefijo indicado.
+	 * La primera página de los prefijos cortos se sirve desde
+	 * {@link ClienteTypeaheadCache}.
+	 * 
+	 * @param prefijo               texto introducido por el usuario.
+	 * @param numeroCuentaExcluida  cuenta cuyos titulares no deben aparecer (puede
+	 *                              ser null).
+	 * @param pagina                página solicitada, empezando en 0.
+	 * @return página de clientes coincidentes.
+	 * @throws ParametroBusquedaException si el prefijo está vacío o la página es
+	 *                                    negativa.
+	 */
+	@Override
+	public ResultadoTypeahead buscarClientesTypeahead(String prefijo, String numeroCuentaExcluida, int pagina) {
+		String prefijoNormalizado = prefijo == null ? "" : prefijo.trim();
+		if (prefijoNormalizado.isEmpty()) {
+			throw new ParametroBusquedaException("Debe indicar al menos un carácter para buscar clientes.");
+		}
+		if (pagina < 0) {
+			throw new ParametroBusquedaException("La página no puede ser negativa.");
+		}
+
+		boolean cacheable = typeaheadCache.esCacheable(prefijoNormalizado, pagina);
+		if (cacheable) {
+			ResultadoTypeahead cacheado = typeaheadCache.obtener(prefijoNormalizado, numeroCuentaExcluida);
+			if (cacheado != null) {
+				return cacheado;
+			}
+		}
+
+		Slice<ClienteResumen> slice = clienteRepo.buscarTypeahead(ClienteRepo.escaparLike(prefijoNormalizado),
+				numeroCuentaExcluida,
+				PageRequest.of(pagina, TAMANYO_PAGINA_TYPEAHEAD));
+		ResultadoTypeahead resultado = new ResultadoTypeahead(List.copyOf(slice.getContent()), pagina,
+				slice.hasNext());
+
+		if (cacheable) {
+			typeaheadCache.guardar(prefijoNormalizado, numeroCuentaExcluida, resultado);
+		}
+		return resultado;
+	}
+
 	/**
 	 * Busca clientes por varios parámetros y ordena el resultado según se
 	 * especifique.
@@ -129,6 +225,7 @@ public class ClienteServiceImpl implements ClienteService {
 		}
 
 		clienteRepo.save(cliente);
+		typeaheadCache.invalidar();
 	}
 
 	/**
@@ -144,6 +241,7 @@ public class ClienteServiceImpl implements ClienteService {
 		}
 
 		clienteRepo.save(cliente);
+		typeaheadCache.invalidar();
 	}
 
 	/**
@@ -157,6 +255,7 @@ public class ClienteServiceImpl implements ClienteService {
 		Cliente cliente = clienteRepo.findByNif(nif);
 		if (cliente != null) {
 			clienteRepo.delete(cliente);
+			typeaheadCache.invalidar();
 		} else {
 			throw new ClienteNoEncontradoException("Cliente no encontrado");
 		}
@@ -174,14 +273,24 @@ public class ClienteServiceImpl implements ClienteService {
 	}
 
 	/**
-	 * Obtiene los clientes que no están asociados a una cuenta bancaria.
+	 * Obtiene una página de los clientes que no están asociados a una cuenta
+	 * bancaria, ordenados por NIF.
 	 * 
-	 * @param numCuenta número de cuenta bancaria.
+	 * @param numCuenta    número de cuenta bancaria.
+	 * @param despuesDeNif último NIF de la página anterior (null para la primera).
+	 * @param limite       tamaño de página, entre 1 y {@value #LIMITE_MAXIMO_PAGINA}.
 	 * @return lista de clientes no asociados.
+	 * @throws ParametroBusquedaException si el tamaño de página no es válido.
 	 */
 	@Override
-	public List<Cliente> obtenerClientesExcludeCuentaBancaria(String numCuenta) {
-		return clienteRepo.findClientesExcludeNumeroCuenta(numCuenta);
+	public List<ClienteIdentificacion> obtenerClientesExcludeCuentaBancaria(String numCuenta, String despuesDeNif,
+			int limite) {
+		if (limite < 1 || limite > LIMITE_MAXIMO_PAGINA) {
+			throw new ParametroBusquedaException(
+					"El tamaño de página debe estar entre 1 y " + LIMITE_MAXIMO_PAGINA + ".");
+		}
+		return clienteRepo.findClientesExcludeNumeroCuenta(numCuenta, despuesDeNif == null ? "" : despuesDeNif,
+				limite);
 	}
 
 	/**
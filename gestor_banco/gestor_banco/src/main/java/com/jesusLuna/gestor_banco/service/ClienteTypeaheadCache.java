@@ -0,0 +1,101 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.jesusLuna.gestor_banco.dto.ResultadoTypeahead;
+
+/**
+ * Caché en memoria, pequeña y acotada, de las primeras páginas del buscador
+ * incremental de clientes.
+ * 
+ * Los prefijos cortos ("1", "ga", "ma"...) son los que más se repiten mientras
+ * el usuario escribe y también los que más filas recorren, así que se guardan
+ * unos segundos con política LRU. Cualquier alta, modificación o baja de
+ * clientes, o cambio de titulares de una cuenta, invalida la caché completa.
+ * 
+ * @author Jesús
+ */
+@Component
+public class ClienteTypeaheadCache {
+
+	/** Número máximo de prefijos cacheados. */
+	private static final int CAPACIDAD_MAXIMA = 256;
+
+	/** Tiempo de vida de cada entrada, en milisegundos. */
+	private static final long TTL_MILLIS = 30_000L;
+
+	/** Longitud máxima del prefijo para considerarlo "caliente" y cachearlo. */
+	private static final int LONGITUD_MAXIMA_PREFIJO = 4;
+
+	private final Map<String, Entrada> entradas = new LinkedHashMap<>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+			return size() > CAPACIDAD_MAXIMA;
+		}
+	};
+
+	/**
+	 * Indica si la búsqueda merece pasar por la caché: solo la primera página de
+	 * prefijos cortos.
+	 *
+	 * @param prefijo Prefijo normalizado.
+	 * @param pagina  Página solicitada.
+	 * @return {@code true} si la búsqueda es cacheable.
+	 */
+	public boolean esCacheable(String prefijo, int pagina) {
+		return pagina == 0 && prefijo.length() <= LONGITUD_MAXIMA_PREFIJO;
+	}
+
+	/**
+	 * Devuelve el resultado cacheado para la búsqueda o {@code null} si no existe o
+	 * ha caducado.
+	 *
+	 * @param prefijo      Prefijo normalizado.
+	 * @param numeroCuenta Cuenta cuyos titulares se excluyen (puede ser nula).
+	 * @return El resultado cacheado o {@code null}.
+	 */
+	public synchronized ResultadoTypeahead obtener(String prefijo, String numeroCuenta) {
+		String clave = clave(prefijo, numeroCuenta);
+		Entrada entrada = entradas.get(clave);
+		if (entrada == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entrada.creadaEn > TTL_MILLIS) {
+			entradas.remove(clave);
+			return null;
+		}
+		return entrada.resultado;
+	}
+
+	/**
+	 * Guarda el resultado de una búsqueda.
+	 *
+	 * @param prefijo      Prefijo normalizado.
+	 * @param numeroCuenta Cuenta cuyos titulares se excluyen (puede ser nula).
+	 * @param resultado    Resultado a cachear.
+	 */
+	public synchronized void guardar(String prefijo, String numeroCuenta, ResultadoTypeahead resultado) {
+		entradas.put(clave(prefijo, numeroCuenta), new Entrada(resultado, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Vacía la caché. Se llama cuando cambian los datos de clientes o los titulares
+	 * de alguna cuenta.
+	 */
+	public synchronized void invalidar() {
+		entradas.clear();
+	}
+
+	private static String clave(String prefijo, String numeroCuenta) {
+		return prefijo.toLowerCase(Locale.ROOT) + '|' + (numeroCuenta == null ? "" : numeroCuenta);
+	}
+
+	private record Entrada(ResultadoTypeahead resultado, long creadaEn) {
+	}
+}
@@ -0,0 +1,15 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.jesusLuna.gestor_banco.entity.Operacion;
+
+public interface ColaContabilizacionService {
+
+	public boolean isActiva();
+
+	public CompletableFuture<Operacion> encolar(String numeroCuenta, Operacion operacion);
+
+	public Operacion contabilizar(String numeroCuenta, Operacion operacion);
+
+}
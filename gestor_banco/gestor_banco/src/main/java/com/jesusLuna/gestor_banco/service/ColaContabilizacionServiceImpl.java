@@ -0,0 +1,247 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Contabilización de operaciones a través de colas de un solo escritor.
+ *
+ * Las cuentas con mucho tráfico simultáneo (típicamente las de empresa) hacen
+ * que las transacciones de {@link ContabilizacionService#contabilizar} esperen
+ * en fila por el bloqueo de la misma fila. Con las colas activas
+ * ({@code contabilizacion.colas.activas=true}), cada cuenta se asigna por su IBAN
+ * a uno de {@code contabilizacion.colas.hilos} carriles, y un único hilo por
+ * carril contabiliza sus operaciones: toma las que haya en espera, hasta
+ * {@value #MAX_LOTE}, y las confirma juntas en una transacción con
+ * {@link ContabilizadorLotes}, con un {@code UPDATE} por cuenta y un
+ * {@code INSERT} en lote. Las operaciones de una cuenta nunca compiten entre
+ * sí por el bloqueo, y cuanto más tráfico hay, más operaciones entran en cada
+ * confirmación.
+ *
+ * El bloqueo de la fila se sigue tomando dentro de cada lote, así que las
+ * colas conviven con la contabilización directa y con otros nodos.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class ColaContabilizacionServiceImpl implements ColaContabilizacionService {
+
+	/** Operaciones que se confirman como mucho en una misma transacción. */
+	static final int MAX_LOTE = 100;
+
+	/** Operaciones que pueden esperar en cada carril antes de bloquear al que encola. */
+	static final int MAX_EN_COLA = 10_000;
+
+	@Value("${contabilizacion.colas.activas:false}")
+	private boolean activa;
+
+	@Value("${contabilizacion.colas.hilos:4}")
+	private int hilos;
+
+	@Autowired
+	private ContabilizadorLotes contabilizadorLotes;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private Carril[] carriles;
+
+	private final AtomicLong lotesConfirmados = new AtomicLong();
+
+	@PostConstruct
+	void arrancar() {
+		if (!activa) {
+			return;
+		}
+		carriles = new Carril[hilos];
+		for (int i = 0; i < hilos; i++) {
+			carriles[i] = new Carril("contabilizacion-" + (i + 1));
+			carriles[i].hilo.start();
+		}
+	}
+
+	@PreDestroy
+	void detener() {
+		if (carriles == null) {
+			return;
+		}
+		for (Carril carril : carriles) {
+			carril.hilo.interrupt();
+		}
+	}
+
+	/**
+	 * @return {@code true} si las operaciones deben contabilizarse a través de
+	 *         las colas.
+	 */
+	@Override
+	public boolean isActiva() {
+		return activa;
+	}
+
+	/**
+	 * Encola una operación en el carril de su cuenta.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param operacion    la operación, con tipo, cantidad, fecha y descripción.
+	 * @return un futuro con la operación contabilizada, sin la cuenta cargada; se
+	 *         completa con {@link CuentaNoEncontradaException} o
+	 *         {@link SaldoInsuficienteException} si se rechaza.
+	 * @throws IllegalArgumentException si la cantidad no es positiva, falta el
+	 *                                  tipo, la fecha o la descripción, la
+	 *                                  descripción supera 255 caracteres o la
+	 *                                  fecha es de un periodo archivado.
+	 * @throws IllegalStateException    si las colas no están activas.
+	 */
+	@Override
+	public CompletableFuture<Operacion> encolar(String numeroCuenta, Operacion operacion) {
+		if (carriles == null) {
+			throw new IllegalStateException("Las colas de contabilización no están activas.");
+		}
+		if (operacion.getCantidad() == null || !operacion.getCantidad().esPositivo()) {
+			throw new IllegalArgumentException("La cantidad debe ser mayor que 0.");
+		}
+		// Una operación incompleta haría fallar el lote entero al insertarla
+		if (operacion.getTipo() == null || operacion.getFecha() == null || operacion.getDescripcion() == null
+				|| operacion.getDescripcion().isBlank()) {
+			throw new IllegalArgumentException("La operación debe tener tipo, fecha y descripción.");
+		}
+		if (operacion.getDescripcion().length() > 255) {
+			throw new IllegalArgumentException("La descripción no puede superar 255 caracteres.");
+		}
+		archivoOperacionesService.comprobarAbierto(operacion.getFecha());
+		Peticion peticion = new Peticion(Apunte.de(numeroCuenta, operacion), new CompletableFuture<>());
+		try {
+			carriles[Math.floorMod(numeroCuenta.hashCode(), carriles.length)].cola.put(peticion);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrumpido al encolar la operación.", e);
+		}
+		return peticion.resultado();
+	}
+
+	/**
+	 * Encola una operación y espera a que se contabilice.
+	 *
+	 * No puede llamarse dentro de una transacción: la operación se confirma en la
+	 * del carril, no en la de quien espera, y la espera retendría una conexión
+	 * que el carril puede necesitar para confirmar el lote.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param operacion    la operación.
+	 * @return la operación contabilizada, sin la cuenta cargada.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 * @throws SaldoInsuficienteException  si es un cargo y la cuenta no tiene
+	 *                                     saldo suficiente.
+	 * @throws IllegalStateException       si hay una transacción en curso.
+	 */
+	@Override
+	public Operacion contabilizar(String numeroCuenta, Operacion operacion) {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException(
+					"No se puede esperar a la cola de contabilización dentro de una transacción.");
+		}
+		try {
+			return encolar(numeroCuenta, operacion).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException causa) {
+				throw causa;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return las transacciones confirmadas por los carriles desde el arranque.
+	 */
+	long getLotesConfirmados() {
+		return lotesConfirmados.get();
+	}
+
+	private void procesar(List<Peticion> lote) {
+		List<Apunte> apuntes = new ArrayList<>(lote.size());
+		for (Peticion peticion : lote) {
+			apuntes.add(peticion.apunte());
+		}
+		try {
+			transactionTemplate.execute(estado -> contabilizadorLotes.contabilizar(apuntes));
+			lotesConfirmados.incrementAndGet();
+		} catch (RuntimeException e) {
+			log.error("Fallo al contabilizar un lote de {} operaciones", lote.size(), e);
+			for (Peticion peticion : lote) {
+				peticion.resultado().completeExceptionally(e);
+			}
+			return;
+		}
+		// Los resultados se entregan después de confirmar
+		for (Peticion peticion : lote) {
+			Apunte apunte = peticion.apunte();
+			if (apunte.getRechazo() != null) {
+				peticion.resultado().completeExceptionally(apunte.getRechazo());
+			} else {
+				peticion.resultado().complete(apunte.aOperacion());
+			}
+		}
+	}
+
+	private record Peticion(Apunte apunte, CompletableFuture<Operacion> resultado) {
+	}
+
+	/**
+	 * Cola y hilo escritor de un grupo de cuentas.
+	 */
+	private final class Carril implements Runnable {
+
+		private final BlockingQueue<Peticion> cola = new LinkedBlockingQueue<>(MAX_EN_COLA);
+
+		private final Thread hilo;
+
+		Carril(String nombre) {
+			hilo = new Thread(this, nombre);
+			hilo.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			List<Peticion> lote = new ArrayList<>(MAX_LOTE);
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					lote.add(cola.take());
+					cola.drainTo(lote, MAX_LOTE - 1);
+					procesar(lote);
+					lote.clear();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			IllegalStateException detenida = new IllegalStateException("La cola de contabilización se ha detenido.");
+			cola.drainTo(lote);
+			for (Peticion peticion : lote) {
+				peticion.resultado().completeExceptionally(detenida);
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.List;
+
+import com.jesusLuna.gestor_banco.dto.ResultadoCargaApuntes;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+
+public interface ContabilizacionService {
+
+	public Operacion contabilizar(String numeroCuenta, Operacion operacion);
+
+	public List<Operacion> transferir(String cuentaOrigen, String cuentaDestino, Dinero cantidad, String descripcion,
+			LocalDate fecha);
+
+	public Operacion anular(long codigo);
+
+	public boolean esCuentaInterna(String numeroCuenta);
+
+	public ResultadoCargaApuntes contabilizarFichero(Reader fichero) throws IOException;
+
+}
@@ -0,0 +1,411 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.dto.ErrorLineaCarga;
+import com.jesusLuna.gestor_banco.dto.ResultadoCargaApuntes;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.OperacionNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+import com.jesusLuna.gestor_banco.methods.Methods;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación del servicio de contabilización. Junto con
+ * {@link ContabilizadorLotes}, al que delega los lotes, es el único punto por
+ * el que una operación modifica el saldo de una cuenta.
+ * 
+ * Cada operación se contabiliza en una transacción corta con dos sentencias:
+ * un {@code UPDATE} condicional del saldo y el {@code INSERT} del apunte. La
+ * comprobación de saldo la hace la propia base de datos dentro del
+ * {@code UPDATE}, de modo que no hace falta leer la cuenta ni reintentar por
+ * conflictos de versión.
+ * 
+ * Los ficheros de apuntes se contabilizan por bloques de
+ * {@value #TAMANYO_BLOQUE} líneas con {@link ContabilizadorLotes}, cada uno en
+ * su propia transacción.
+ * 
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class ContabilizacionServiceImpl implements ContabilizacionService {
+
+	/** Líneas de un fichero de apuntes que se contabilizan en cada transacción. */
+	static final int TAMANYO_BLOQUE = 1_000;
+
+	private static final int LONGITUD_MAXIMA_DESCRIPCION = 255;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private ContabilizadorLotes contabilizadorLotes;
+
+	@Autowired
+	private SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	private ResumenOperacionesService resumenOperacionesService;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	/**
+	 * Aplica una operación al saldo de la cuenta y la registra.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param operacion    la operación a contabilizar, con tipo y cantidad.
+	 * @return la operación guardada.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 * @throws SaldoInsuficienteException  si es un cargo y la cuenta no tiene
+	 *                                     saldo suficiente.
+	 */
+	@Override
+	@Transactional
+	public Operacion contabilizar(String numeroCuenta, Operacion operacion) {
+		validarCantidad(operacion.getCantidad());
+		aplicar(numeroCuenta, operacion.getTipo(), operacion.getCantidad().getCentimos());
+		archivoOperacionesService.comprobarAbierto(operacion.getFecha());
+		Operacion guardada = registrar(numeroCuenta, operacion);
+		resumenOperacionesService.sumar(List.of(guardada));
+		return guardada;
+	}
+
+	/**
+	 * Transfiere dinero entre dos cuentas del banco como un único movimiento: el
+	 * cargo en origen, el abono en destino y los dos apuntes se confirman o se
+	 * deshacen juntos.
+	 * 
+	 * Los dos {@code UPDATE} se ejecutan en orden de IBAN, no en orden
+	 * origen-destino. Así dos transferencias opuestas entre las mismas cuentas
+	 * bloquean las filas en el mismo orden y no pueden interbloquearse.
+	 * 
+	 * @param cuentaOrigen  IBAN de la cuenta que envía el dinero.
+	 * @param cuentaDestino IBAN de la cuenta que lo recibe.
+	 * @param cantidad      cantidad a transferir (positiva).
+	 * @param descripcion   descripción de los dos apuntes.
+	 * @param fecha         fecha de los dos apuntes.
+	 * @return los apuntes de salida (origen) y de entrada (destino), en ese orden.
+	 * @throws CuentaNoEncontradaException si alguna de las cuentas no existe.
+	 * @throws SaldoInsuficienteException  si la cuenta de origen no tiene saldo
+	 *                                     suficiente.
+	 */
+	@Override
+	@Transactional
+	public List<Operacion> transferir(String cuentaOrigen, String cuentaDestino, Dinero cantidad, String descripcion,
+			LocalDate fecha) {
+		validarCantidad(cantidad);
+		long centimos = cantidad.getCentimos();
+		if (cuentaOrigen.equals(cuentaDestino)) {
+			throw new IllegalArgumentException("La cuenta de origen y la de destino deben ser distintas.");
+		}
+
+		if (cuentaOrigen.compareTo(cuentaDestino) < 0) {
+			aplicar(cuentaOrigen, TipoOperacion.RetiradaTransferencia, centimos);
+			aplicar(cuentaDestino, TipoOperacion.EntradaTransferencia, centimos);
+		} else {
+			aplicar(cuentaDestino, TipoOperacion.EntradaTransferencia, centimos);
+			aplicar(cuentaOrigen, TipoOperacion.RetiradaTransferencia, centimos);
+		}
+		archivoOperacionesService.comprobarAbierto(fecha);
+
+		Operacion salida = registrar(cuentaOrigen,
+				apunte(TipoOperacion.RetiradaTransferencia, cantidad, descripcion, fecha, cuentaDestino));
+		Operacion entrada = registrar(cuentaDestino,
+				apunte(TipoOperacion.EntradaTransferencia, cantidad, descripcion, fecha, cuentaOrigen));
+		List<Operacion> apuntes = List.of(salida, entrada);
+		resumenOperacionesService.sumar(apuntes);
+		return apuntes;
+	}
+
+	/**
+	 * Anula una operación con un apunte de compensación: el tipo contrario, la
+	 * misma cantidad y contrapartida, fecha de hoy y el código de la original en
+	 * {@code codigoAnulada}. El saldo se corrige con el mismo {@code UPDATE}
+	 * condicional que cualquier otra operación, y la original no se modifica ni
+	 * se borra, de modo que el historial, las instantáneas de saldo anteriores y
+	 * los resúmenes siguen siendo válidos.
+	 * 
+	 * La operación es idempotente: si ya estaba anulada, devuelve la anulación
+	 * existente sin tocar el saldo. Bloquear antes la cuenta serializa las
+	 * anulaciones simultáneas de una misma operación, y el índice único sobre
+	 * {@code codigoAnulada} impide en cualquier caso una segunda anulación.
+	 * 
+	 * Solo se anula el apunte indicado; en una transferencia interna la otra pata
+	 * se anula por separado.
+	 * 
+	 * @param codigo código de la operación a anular.
+	 * @return el apunte de anulación.
+	 * @throws OperacionNoEncontradaException si la operación no existe.
+	 * @throws IllegalArgumentException      si la operación es a su vez una
+	 *                                       anulación.
+	 * @throws SaldoInsuficienteException    si anular un abono dejaría la cuenta
+	 *                                       en negativo.
+	 */
+	@Override
+	@Transactional
+	public Operacion anular(long codigo) {
+		Operacion original = operacionesRepo.findById(codigo).orElseThrow(() -> new OperacionNoEncontradaException(
+				"No se puede anular, la operación con el ID " + codigo + " no fue encontrada."));
+		if (original.getCodigoAnulada() != null) {
+			throw new IllegalArgumentException("Una anulación no se puede anular.");
+		}
+		String numeroCuenta = original.getCuentaBancaria().getNumeroCuenta();
+
+		cuentaBancRepo.bloquearSaldos(List.of(numeroCuenta));
+		Optional<Operacion> existente = operacionesRepo.findByCodigoAnulada(codigo);
+		if (existente.isPresent()) {
+			return existente.get();
+		}
+
+		TipoOperacion tipo = original.getTipo().opuesto();
+		aplicar(numeroCuenta, tipo, original.getCantidad().getCentimos());
+		Operacion anulacion = apunte(tipo, original.getCantidad(), descripcionAnulacion(original), LocalDate.now(),
+				original.getNumCuentaTransferencia());
+		anulacion.setCodigoAnulada(codigo);
+		Operacion guardada = registrar(numeroCuenta, anulacion);
+		resumenOperacionesService.sumar(List.of(guardada));
+		return guardada;
+	}
+
+	private static String descripcionAnulacion(Operacion original) {
+		String descripcion = "Anulación: " + original.getDescripcion();
+		return descripcion.length() > LONGITUD_MAXIMA_DESCRIPCION
+				? descripcion.substring(0, LONGITUD_MAXIMA_DESCRIPCION)
+				: descripcion;
+	}
+
+	/**
+	 * Indica si un IBAN corresponde a una cuenta de este banco.
+	 * 
+	 * @param numeroCuenta el IBAN a comprobar.
+	 * @return true si la cuenta existe.
+	 */
+	@Override
+	public boolean esCuentaInterna(String numeroCuenta) {
+		return numeroCuenta != null && cuentaBancRepo.existsById(numeroCuenta);
+	}
+
+	/**
+	 * Contabiliza un fichero de ingresos y retiradas, una línea por apunte con el
+	 * formato {@code IBAN;TIPO;IMPORTE;FECHA;DESCRIPCION}, donde el tipo es
+	 * {@code IngresarDinero} o {@code RetirarDinero}, el importe va en euros y la
+	 * fecha en formato ISO ({@code 2024-05-31}). Se ignoran las líneas vacías y
+	 * las que empiezan por {@code #}.
+	 * 
+	 * El fichero se lee por bloques sin cargarlo entero. En cada bloque se
+	 * bloquean a la vez todas sus cuentas, lo que comprueba también cuáles
+	 * existen, y los apuntes se aplican en el orden del fichero sobre el saldo
+	 * bloqueado: una retirada que dejaría la cuenta en negativo se rechaza igual
+	 * que en {@link #contabilizar(String, Operacion)}, aunque un ingreso posterior
+	 * la cubriera. Después se actualiza cada cuenta una sola vez con el neto de
+	 * sus apuntes aceptados y estos se insertan en lotes.
+	 * 
+	 * Las líneas rechazadas no impiden contabilizar las demás. Si un bloque falla
+	 * por un error de la base de datos, se deshace entero y todas sus líneas
+	 * aparecen como rechazadas.
+	 * 
+	 * @param fichero el contenido del fichero.
+	 * @return las líneas contabilizadas y los errores de cada línea rechazada.
+	 * @throws IOException si falla la lectura del fichero.
+	 */
+	@Override
+	public ResultadoCargaApuntes contabilizarFichero(Reader fichero) throws IOException {
+		List<ErrorLineaCarga> errores = new ArrayList<>();
+		Set<String> cuentasAfectadas = new HashSet<>();
+		long leidas = 0;
+		long contabilizadas = 0;
+		long numeroLinea = 0;
+
+		BufferedReader lector = new BufferedReader(fichero);
+		List<Apunte> bloque = new ArrayList<>(TAMANYO_BLOQUE);
+		String linea;
+		do {
+			linea = lector.readLine();
+			if (linea != null) {
+				numeroLinea++;
+				String contenido = linea.strip();
+				if (contenido.isEmpty() || contenido.startsWith("#")) {
+					continue;
+				}
+				leidas++;
+				try {
+					Apunte apunte = leerApunte(numeroLinea, contenido);
+					archivoOperacionesService.comprobarAbierto(apunte.getFecha());
+					bloque.add(apunte);
+				} catch (IllegalArgumentException e) {
+					errores.add(new ErrorLineaCarga(numeroLinea, e.getMessage()));
+				}
+			}
+			if (bloque.size() == TAMANYO_BLOQUE || (linea == null && !bloque.isEmpty())) {
+				contabilizadas += contabilizarBloque(bloque, errores, cuentasAfectadas);
+				bloque.clear();
+			}
+		} while (linea != null);
+
+		// Los errores de formato se detectan al leer y los de saldo al cerrar cada bloque
+		errores.sort(Comparator.comparingLong(ErrorLineaCarga::getLinea));
+		return new ResultadoCargaApuntes(leidas, contabilizadas, cuentasAfectadas.size(), errores);
+	}
+
+	/**
+	 * Contabiliza un bloque de apuntes en una transacción y devuelve cuántos se han
+	 * aceptado. Los rechazos se añaden a {@code errores} solo si la transacción se
+	 * confirma.
+	 */
+	private int contabilizarBloque(List<Apunte> bloque, List<ErrorLineaCarga> errores,
+			Set<String> cuentasAfectadas) {
+		try {
+			cuentasAfectadas.addAll(transactionTemplate.execute(estado -> contabilizadorLotes.contabilizar(bloque)));
+		} catch (RuntimeException e) {
+			log.error("Fallo al contabilizar el bloque de apuntes de las líneas {} a {}", bloque.get(0).getLinea(),
+					bloque.get(bloque.size() - 1).getLinea(), e);
+			for (Apunte apunte : bloque) {
+				errores.add(new ErrorLineaCarga(apunte.getLinea(), "No se pudo contabilizar el bloque de la línea."));
+			}
+			return 0;
+		}
+		int contabilizados = 0;
+		for (Apunte apunte : bloque) {
+			if (apunte.getRechazo() == null) {
+				contabilizados++;
+			} else {
+				errores.add(new ErrorLineaCarga(apunte.getLinea(), apunte.getRechazo().getMessage()));
+			}
+		}
+		return contabilizados;
+	}
+
+	/**
+	 * Interpreta una línea del fichero de apuntes.
+	 * 
+	 * @throws IllegalArgumentException con el motivo si la línea no es válida.
+	 */
+	private static Apunte leerApunte(long linea, String contenido) {
+		String[] campos = contenido.split(";", 5);
+		if (campos.length != 5) {
+			throw new IllegalArgumentException("Se esperaban 5 campos separados por ';'.");
+		}
+		String numeroCuenta = campos[0].replaceAll("\\s+", "").toUpperCase();
+		if (!ibanValido(numeroCuenta)) {
+			throw new IllegalArgumentException("El IBAN no es válido: " + campos[0].strip());
+		}
+
+		TipoOperacion tipo;
+		try {
+			tipo = TipoOperacion.valueOf(campos[1].strip());
+		} catch (IllegalArgumentException e) {
+			tipo = null;
+		}
+		if (tipo != TipoOperacion.IngresarDinero && tipo != TipoOperacion.RetirarDinero) {
+			throw new IllegalArgumentException("El tipo debe ser IngresarDinero o RetirarDinero.");
+		}
+
+		Dinero cantidad = Dinero.parse(campos[2]);
+		if (!cantidad.esPositivo()) {
+			throw new IllegalArgumentException("La cantidad debe ser mayor que 0.");
+		}
+
+		LocalDate fecha;
+		try {
+			fecha = LocalDate.parse(campos[3].strip());
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Fecha no válida: " + campos[3].strip());
+		}
+		if (fecha.isAfter(LocalDate.now())) {
+			throw new IllegalArgumentException("La fecha de operación no puede ser futura.");
+		}
+
+		String descripcion = campos[4].strip();
+		if (descripcion.isEmpty() || descripcion.length() > LONGITUD_MAXIMA_DESCRIPCION) {
+			throw new IllegalArgumentException(
+					"La descripción no puede estar vacía ni superar " + LONGITUD_MAXIMA_DESCRIPCION + " caracteres.");
+		}
+		return new Apunte(linea, numeroCuenta, tipo, cantidad.getCentimos(), fecha, descripcion, null);
+	}
+
+	private static boolean ibanValido(String iban) {
+		try {
+			return Methods.validarIBAN(iban);
+		} catch (NumberFormatException e) {
+			// Caracteres que no son letras ni dígitos
+			return false;
+		}
+	}
+
+	private static void validarCantidad(Dinero cantidad) {
+		if (cantidad == null || !cantidad.esPositivo()) {
+			throw new IllegalArgumentException("La cantidad debe ser mayor que 0.");
+		}
+	}
+
+	/**
+	 * Modifica el saldo según el tipo de operación con un único {@code UPDATE}.
+	 * Trabaja con céntimos en un {@code long} para no crear objetos.
+	 */
+	private void aplicar(String numeroCuenta, TipoOperacion tipo, long centimos) {
+		int filas = switch (tipo) {
+		case IngresarDinero, EntradaTransferencia -> cuentaBancRepo.abonar(numeroCuenta, centimos);
+		case RetirarDinero, RetiradaTransferencia -> cuentaBancRepo.cargar(numeroCuenta, centimos);
+		};
+
+		if (filas == 0) {
+			if (!cuentaBancRepo.existsById(numeroCuenta)) {
+				throw new CuentaNoEncontradaException("Cuenta bancaria no encontrada: " + numeroCuenta);
+			}
+			throw new SaldoInsuficienteException("Saldo insuficiente para realizar la operación.");
+		}
+	}
+
+	/**
+	 * Inserta el apunte de la operación en la cuenta indicada. Si tiene fecha
+	 * pasada, descarta las instantáneas de saldo que quedan detrás. Quien lo
+	 * llama suma después todos sus apuntes a los resúmenes de una vez.
+	 */
+	private Operacion registrar(String numeroCuenta, Operacion operacion) {
+		// Referencia sin consulta: solo hace falta la clave para el apunte
+		operacion.setCuentaBancaria(cuentaBancRepo.getReferenceById(numeroCuenta));
+		Operacion guardada = operacionesRepo.save(operacion);
+		saldoHistoricoService.invalidar(numeroCuenta, guardada.getFecha(), guardada.getCodigo());
+		return guardada;
+	}
+
+	private static Operacion apunte(TipoOperacion tipo, Dinero cantidad, String descripcion, LocalDate fecha,
+			String contrapartida) {
+		Operacion o = new Operacion();
+		o.setTipo(tipo);
+		o.setCantidad(cantidad);
+		o.setDescripcion(descripcion);
+		o.setFecha(fecha);
+		o.setNumCuentaTransferencia(contrapartida);
+		return o;
+	}
+}
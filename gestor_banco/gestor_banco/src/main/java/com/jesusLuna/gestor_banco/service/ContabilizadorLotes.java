@@ -0,0 +1,275 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Contabiliza lotes de apuntes con un número fijo de sentencias, sea cual sea
+ * el tamaño del lote: un {@code SELECT ... FOR UPDATE} de todas sus cuentas, un
+ * {@code UPDATE} por cuenta con el neto de sus apuntes, el {@code INSERT} de
+ * los apuntes y un {@code UPDATE} por fila de los resúmenes de operaciones,
+ * estos tres últimos en lotes JDBC.
+ *
+ * Lo usan la carga de ficheros de {@link ContabilizacionServiceImpl} y las
+ * colas de {@link ColaContabilizacionServiceImpl}. Siempre debe llamarse
+ * dentro de una transacción.
+ *
+ * @author Jesús
+ */
+@Component
+public class ContabilizadorLotes {
+
+	private static final Comparator<Apunte> ORDEN_HISTORIAL = Comparator.comparing(Apunte::getFecha)
+			.thenComparingLong(Apunte::getCodigo);
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	private ResumenOperacionesService resumenOperacionesService;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${spring.jpa.properties.hibernate.id.optimizer.pooled.preferred:}")
+	private String optimizadorIds;
+
+	/**
+	 * Transacción aparte para reservar identificadores cuando la secuencia es una
+	 * tabla, como hace Hibernate; {@code null} si es una secuencia nativa.
+	 */
+	private TransactionTemplate reservaIds;
+
+	@PostConstruct
+	void iniciar() {
+		// Con otro optimizador JPA usaría los identificadores anteriores a cada
+		// valor de la secuencia y chocaría con los de los lotes
+		if (!"pooled-lo".equals(optimizadorIds)) {
+			throw new IllegalStateException("Los apuntes en lotes reservan los identificadores como el optimizador "
+					+ "pooled-lo: falta hibernate.id.optimizer.pooled.preferred=pooled-lo.");
+		}
+		if (esTablaSecuencia()) {
+			reservaIds = new TransactionTemplate(transactionManager);
+			reservaIds.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		}
+	}
+
+	/**
+	 * Contabiliza un lote de apuntes en la transacción en curso.
+	 *
+	 * Las cuentas del lote se bloquean a la vez, en orden de IBAN como en las
+	 * transferencias, lo que comprueba también cuáles existen. Los apuntes se
+	 * aplican en orden sobre el saldo bloqueado: un cargo que dejaría la cuenta en
+	 * negativo se rechaza igual que en
+	 * {@link ContabilizacionService#contabilizar(String, Operacion)}, aunque un
+	 * abono posterior del lote lo cubriera. Los apuntes rechazados no afectan al
+	 * resto, salvo a los que dependen de ellos ({@link Apunte#setCondicion}), que
+	 * se rechazan también. Así los cargos y los abonos de un lote de
+	 * transferencias se contabilizan en una sola llamada y suman juntos a los
+	 * resúmenes.
+	 *
+	 * Después de las cuentas se bloquea el horizonte del archivo, que no puede
+	 * avanzar hasta que termine la transacción; los apuntes con fecha anterior se
+	 * rechazan.
+	 *
+	 * @param apuntes apuntes a contabilizar; a cada uno se le asigna su código o
+	 *                el motivo del rechazo ({@link CuentaNoEncontradaException},
+	 *                {@link SaldoInsuficienteException} o
+	 *                {@link IllegalArgumentException} si la fecha está
+	 *                archivada).
+	 * @return las cuentas cuyo saldo ha cambiado.
+	 */
+	Set<String> contabilizar(List<Apunte> apuntes) {
+		Set<String> numerosCuenta = new TreeSet<>();
+		for (Apunte apunte : apuntes) {
+			numerosCuenta.add(apunte.getNumeroCuenta());
+		}
+		Map<String, Long> saldos = new HashMap<>();
+		Map<String, TipoCuenta> tiposCuenta = new HashMap<>();
+		for (Object[] fila : cuentaBancRepo.bloquearSaldos(numerosCuenta)) {
+			saldos.put((String) fila[0], ((Number) fila[1]).longValue());
+			tiposCuenta.put((String) fila[0], TipoCuenta.valueOf(fila[2].toString()));
+		}
+		LocalDate horizonte = archivoOperacionesService.bloquearHorizonte();
+
+		Map<String, Long> netos = new TreeMap<>();
+		List<Apunte> aceptados = new ArrayList<>(apuntes.size());
+		for (Apunte apunte : apuntes) {
+			if (apunte.getCondicion() != null && apunte.getCondicion().getRechazo() != null) {
+				apunte.rechazar(apunte.getCondicion().getRechazo());
+				continue;
+			}
+			if (apunte.getFecha().isBefore(horizonte)) {
+				apunte.rechazar(new IllegalArgumentException(
+						"La fecha " + apunte.getFecha() + " pertenece a un periodo cerrado y archivado."));
+				continue;
+			}
+			Long saldo = saldos.get(apunte.getNumeroCuenta());
+			if (saldo == null) {
+				apunte.rechazar(
+						new CuentaNoEncontradaException("Cuenta bancaria no encontrada: " + apunte.getNumeroCuenta()));
+				continue;
+			}
+			long nuevoSaldo = Dinero.sumar(saldo, apunte.importe());
+			if (nuevoSaldo < 0) {
+				apunte.rechazar(new SaldoInsuficienteException("Saldo insuficiente para realizar la operación."));
+				continue;
+			}
+			saldos.put(apunte.getNumeroCuenta(), nuevoSaldo);
+			netos.merge(apunte.getNumeroCuenta(), apunte.importe(), Dinero::sumar);
+			aceptados.add(apunte);
+		}
+
+		aplicarNetos(netos);
+		insertar(aceptados);
+		invalidarInstantaneas(aceptados);
+		sumarResumenes(aceptados, tiposCuenta);
+		return netos.keySet();
+	}
+
+	/**
+	 * Actualiza el saldo de cada cuenta con el neto de sus apuntes, un único
+	 * {@code UPDATE} por cuenta enviados juntos en un lote JDBC. Las cuentas ya
+	 * están bloqueadas y los netos comprobados, pero el {@code UPDATE} sigue
+	 * siendo condicional, igual que {@link CuentaBancariaRepo#cargar}. Un neto de
+	 * 0 también incrementa la versión, porque la cuenta tiene apuntes nuevos.
+	 */
+	private void aplicarNetos(Map<String, Long> netos) {
+		if (netos.isEmpty()) {
+			return;
+		}
+		List<Object[]> filas = new ArrayList<>(netos.size());
+		for (Map.Entry<String, Long> neto : netos.entrySet()) {
+			filas.add(new Object[] { neto.getValue(), neto.getKey(), neto.getValue() });
+		}
+		int[] actualizadas = jdbcTemplate.batchUpdate("UPDATE dam_cuenta_bancaria "
+				+ "SET saldo_centimos = saldo_centimos + ?, version = version + 1 "
+				+ "WHERE numero_cuenta = ? AND saldo_centimos + ? >= 0", filas);
+		for (int i = 0; i < actualizadas.length; i++) {
+			// SUCCESS_NO_INFO: el driver agrupó el lote y no informa de filas por sentencia
+			if (actualizadas[i] == 0) {
+				throw new IllegalStateException("La cuenta " + filas.get(i)[1] + " cambió durante la contabilización.");
+			}
+		}
+	}
+
+	/**
+	 * Descarta las instantáneas de saldo que quedan detrás de los apuntes con
+	 * fecha pasada, una sola vez por cuenta desde su apunte más antiguo.
+	 */
+	private void invalidarInstantaneas(List<Apunte> apuntes) {
+		LocalDate hoy = LocalDate.now();
+		Map<String, Apunte> primeros = new HashMap<>();
+		for (Apunte apunte : apuntes) {
+			if (apunte.getFecha().isBefore(hoy)) {
+				primeros.merge(apunte.getNumeroCuenta(), apunte, (a, b) -> ORDEN_HISTORIAL.compare(a, b) <= 0 ? a : b);
+			}
+		}
+		for (Apunte primero : primeros.values()) {
+			saldoHistoricoService.invalidar(primero.getNumeroCuenta(), primero.getFecha(), primero.getCodigo());
+		}
+	}
+
+	/**
+	 * Suma los apuntes a los resúmenes de operaciones, acumulados antes por fila.
+	 */
+	private void sumarResumenes(List<Apunte> apuntes, Map<String, TipoCuenta> tiposCuenta) {
+		IncrementosResumen incrementos = new IncrementosResumen();
+		for (Apunte apunte : apuntes) {
+			incrementos.sumar(apunte.getNumeroCuenta(), tiposCuenta.get(apunte.getNumeroCuenta()), apunte.getFecha(),
+					apunte.getTipo(), 1, apunte.getCentimos());
+		}
+		resumenOperacionesService.sumar(incrementos);
+	}
+
+	/**
+	 * Inserta los apuntes con un {@code INSERT} en lotes JDBC, sin pasar por el
+	 * contexto de persistencia. Los identificadores salen de la secuencia
+	 * {@code dam_operacion_seq} de {@link Operacion} por bloques de
+	 * {@value Operacion#BLOQUE_IDS}, igual que con el optimizador
+	 * {@code pooled-lo} de Hibernate: cada valor leído es el primero de un bloque
+	 * que nadie más usa, así que no chocan con los de las operaciones guardadas
+	 * con JPA.
+	 */
+	private void insertar(List<Apunte> apuntes) {
+		if (apuntes.isEmpty()) {
+			return;
+		}
+		List<Object[]> filas = new ArrayList<>(apuntes.size());
+		long siguiente = 0;
+		long finBloque = 0;
+		for (Apunte apunte : apuntes) {
+			if (siguiente == finBloque) {
+				siguiente = reservarBloqueIds();
+				finBloque = siguiente + Operacion.BLOQUE_IDS;
+			}
+			apunte.setCodigo(siguiente++);
+			filas.add(new Object[] { apunte.getCodigo(), apunte.getDescripcion(), apunte.getTipo().name(),
+					apunte.getFecha(), apunte.getCentimos(), apunte.getContrapartida(), apunte.getNumeroCuenta() });
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, "
+				+ "num_cuenta_transferencia, cuenta_id) VALUES (?, ?, ?, ?, ?, ?, ?)", filas);
+	}
+
+	/**
+	 * Reserva un bloque de identificadores y devuelve el primero. Las secuencias
+	 * nativas no son transaccionales y se leen en la transacción del lote. En
+	 * MySQL, que no tiene secuencias, Hibernate la emula con una tabla de una
+	 * fila ({@code next_val}), que se avanza igual que lo hace él: en una
+	 * transacción aparte, para no retener la fila hasta que se confirme el lote.
+	 */
+	private long reservarBloqueIds() {
+		if (reservaIds == null) {
+			return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR dam_operacion_seq", Long.class);
+		}
+		return reservaIds.execute(estado -> {
+			Long inicio = jdbcTemplate.queryForObject("SELECT next_val FROM dam_operacion_seq FOR UPDATE", Long.class);
+			jdbcTemplate.update("UPDATE dam_operacion_seq SET next_val = ? WHERE next_val = ?",
+					inicio + Operacion.BLOQUE_IDS, inicio);
+			return inicio;
+		});
+	}
+
+	private boolean esTablaSecuencia() {
+		try {
+			jdbcTemplate.queryForList("SELECT next_val FROM dam_operacion_seq WHERE 1 = 0");
+			return true;
+		} catch (DataAccessException e) {
+			return false;
+		}
+	}
+}
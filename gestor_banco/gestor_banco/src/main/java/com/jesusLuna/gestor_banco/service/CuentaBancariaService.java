@@ -1,7 +1,12 @@
 package com.jesusLuna.gestor_banco.service;
 
 import java.util.List;
+import java.util.Set;
 
+import com.jesusLuna.gestor_banco.dto.CuentaActividad;
+import com.jesusLuna.gestor_banco.dto.CuentaResumen;
+import com.jesusLuna.gestor_banco.dto.ModoBusquedaIban;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
 import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
 
 
@@ -9,15 +14,21 @@ public interface CuentaBancariaService {
 
 	public List<CuentaBancaria> obtenerCuentasBancarias();
 
+	public PaginaKeyset<CuentaResumen> obtenerPaginaCuentas(String cursor, int tamanyo);
+
+	public List<CuentaActividad> obtenerCuentasConActividadDeCliente(String nif);
+
 	public CuentaBancaria obtenerPorNumeroCuenta(String numeroCuenta);
 
-	public List<CuentaBancaria> buscarCuentas(String numeroCuenta, String tipoCuentaStr, String ordenarPor,
-			String ordenTipo);
+	public List<CuentaBancaria> buscarCuentas(String numeroCuenta, ModoBusquedaIban modo, String tipoCuentaStr,
+			String ordenarPor, String ordenTipo);
 
 	public void insertarCuentaBancaria(CuentaBancaria cb);
 
 	public void actualizarCuentaBancaria(CuentaBancaria cb);
 
+	public void actualizarCuentaYTitulares(CuentaBancaria datos, int versionEsperada, Set<Long> idsTitulares);
+
 	public void eliminarCuentaBancariaPorNumCuenta(String numCuenta);
 
 }
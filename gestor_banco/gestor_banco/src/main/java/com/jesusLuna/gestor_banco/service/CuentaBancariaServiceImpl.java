@@ -2,13 +2,29 @@ package com.jesusLuna.gestor_banco.service;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.jesusLuna.gestor_banco.dto.CuentaActividad;
+import com.jesusLuna.gestor_banco.dto.CuentaResumen;
+import com.jesusLuna.gestor_banco.dto.ModoBusquedaIban;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
+import com.jesusLuna.gestor_banco.entity.Cliente;
 import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.exception.ClienteNoEncontradoException;
 import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+import com.jesusLuna.gestor_banco.methods.CursorKeyset;
+import com.jesusLuna.gestor_banco.repository.ClienteRepo;
 import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.SaldoInstantaneaRepo;
+
+import jakarta.persistence.OptimisticLockException;
 
 
 /**
@@ -21,9 +37,30 @@ import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
 @Service
 public class CuentaBancariaServiceImpl implements CuentaBancariaService {
 
+	/** Tamaño máximo de página del listado de cuentas. */
+	private static final int TAMANYO_MAXIMO_PAGINA = 200;
+
 	@Autowired
 	private CuentaBancariaRepo cuentaBancRepo;
 
+	@Autowired
+	private ClienteRepo clienteRepo;
+
+	@Autowired
+	private ClienteTypeaheadCache typeaheadCache;
+
+	@Autowired
+	private ExtractoCache extractoCache;
+
+	@Autowired
+	private SaldoInstantaneaRepo saldoInstantaneaRepo;
+
+	@Autowired
+	private ResumenOperacionesService resumenOperacionesService;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
 	/**
 	 * Obtiene todas las cuentas bancarias almacenadas en la base de datos.
 	 * 
@@ -34,6 +71,63 @@ public class CuentaBancariaServiceImpl implements CuentaBancariaService {
 		return cuentaBancRepo.findAll();
 	}
 
+	/**
+	 * Obtiene una página del listado de cuentas, de la más reciente a la más
+	 * antigua, usando paginación por clave sobre (fecha de creación, IBAN).
+	 * 
+	 * @param cursor  cursor devuelto en la página anterior, o null para la
+	 *                primera.
+	 * @param tamanyo número de cuentas por página.
+	 * @return la página de cuentas con el cursor de la siguiente.
+	 * @throws ParametroBusquedaException si el cursor o el tamaño no son válidos.
+	 */
+	@Override
+	public PaginaKeyset<CuentaResumen> obtenerPaginaCuentas(String cursor, int tamanyo) {
+		if (tamanyo < 1 || tamanyo > TAMANYO_MAXIMO_PAGINA) {
+			throw new ParametroBusquedaException(
+					"El tamaño de página debe estar entre 1 y " + TAMANYO_MAXIMO_PAGINA + ".");
+		}
+
+		// Se pide una fila de más para saber si existe una página siguiente
+		Limit limite = Limit.of(tamanyo + 1);
+		List<CuentaResumen> cuentas;
+		if (cursor == null || cursor.isBlank()) {
+			cuentas = cuentaBancRepo.findPrimeraPaginaResumen(limite);
+		} else {
+			cuentas = cuentaBancRepo.findPaginaResumenDespuesDe(CursorKeyset.fecha(cursor),
+					CursorKeyset.desempate(cursor), limite);
+		}
+
+		boolean hayMas = cuentas.size() > tamanyo;
+		if (hayMas) {
+			cuentas = cuentas.subList(0, tamanyo);
+		}
+		String siguiente = null;
+		if (hayMas) {
+			CuentaResumen ultima = cuentas.get(cuentas.size() - 1);
+			siguiente = CursorKeyset.codificar(ultima.getFechaCreacion(), ultima.getNumeroCuenta());
+		}
+		return new PaginaKeyset<>(cuentas, hayMas, siguiente);
+	}
+
+	/**
+	 * Obtiene las cuentas de un cliente con su número de operaciones y su última
+	 * actividad. Solo si no hay ninguna cuenta se hace una segunda consulta para
+	 * distinguir un cliente sin cuentas de uno inexistente.
+	 * 
+	 * @param nif NIF del cliente.
+	 * @return las cuentas del cliente con su actividad.
+	 * @throws ClienteNoEncontradoException si no existe un cliente con ese NIF.
+	 */
+	@Override
+	public List<CuentaActividad> obtenerCuentasConActividadDeCliente(String nif) {
+		List<CuentaActividad> cuentas = cuentaBancRepo.findActividadCuentasByNifCliente(nif);
+		if (cuentas.isEmpty() && !clienteRepo.existsByNif(nif)) {
+			throw new ClienteNoEncontradoException("Cliente no encontrado con el NIF: " + nif);
+		}
+		return cuentas;
+	}
+
 	/**
 	 * Busca una cuenta bancaria por su número de cuenta.
 	 * 
@@ -51,24 +145,50 @@ public class CuentaBancariaServiceImpl implements CuentaBancariaService {
 	 * Busca cuentas bancarias filtrando por número de cuenta y tipo de cuenta, y
 	 * permite ordenar por fecha de creación.
 	 * 
+	 * El número de cuenta se compara según {@code modo}: exacto y prefijo usan la
+	 * clave primaria, sufijo usa el índice del número invertido y solo
+	 * {@link ModoBusquedaIban#CONTIENE} recorre la tabla completa.
+	 * 
 	 * @param numeroCuenta  número de cuenta parcial o completo a buscar (puede ser
 	 *                      null).
+	 * @param modo          forma de comparar el número de cuenta (null equivale a
+	 *                      {@link ModoBusquedaIban#AUTOMATICO}).
 	 * @param tipoCuentaStr tipo de cuenta en formato String (puede ser null).
 	 * @param ordenarPor    campo por el cual se desea ordenar (ej.
 	 *                      "fechaCreacion").
 	 * @param ordenTipo     tipo de orden ("ASC" para ascendente o "DESC" para
 	 *                      descendente).
 	 * @return una lista de cuentas que cumplen con los criterios de búsqueda.
+	 * @throws ParametroBusquedaException si el número de cuenta contiene
+	 *                                    caracteres no válidos.
 	 */
 	@Override
-	public List<CuentaBancaria> buscarCuentas(String numeroCuenta, String tipoCuentaStr, String ordenarPor,
-			String ordenTipo) {
+	public List<CuentaBancaria> buscarCuentas(String numeroCuenta, ModoBusquedaIban modo, String tipoCuentaStr,
+			String ordenarPor, String ordenTipo) {
 		CuentaBancaria.TipoCuenta tipoCuenta = null;
 		if (tipoCuentaStr != null && !tipoCuentaStr.isEmpty()) {
 			tipoCuenta = CuentaBancaria.TipoCuenta.valueOf(tipoCuentaStr);
 		}
 
-		List<CuentaBancaria> cuentas = cuentaBancRepo.buscarCuentas(numeroCuenta, tipoCuenta);
+		List<CuentaBancaria> cuentas;
+		String fragmento = normalizarFragmentoIban(numeroCuenta);
+		if (fragmento == null) {
+			cuentas = cuentaBancRepo.buscarCuentas(tipoCuenta);
+		} else {
+			switch (resolverModo(fragmento, modo)) {
+			case EXACTO:
+				cuentas = cuentaBancRepo.buscarPorIbanExacto(fragmento, tipoCuenta);
+				break;
+			case PREFIJO:
+				cuentas = cuentaBancRepo.buscarPorPrefijoIban(fragmento + "%", tipoCuenta);
+				break;
+			case SUFIJO:
+				cuentas = cuentaBancRepo.buscarPorSufijoIban(CuentaBancaria.invertir(fragmento) + "%", tipoCuenta);
+				break;
+			default:
+				cuentas = cuentaBancRepo.buscarPorFragmentoIban("%" + fragmento + "%", tipoCuenta);
+			}
+		}
 
 		if ("fechaCreacion".equals(ordenarPor)) {
 			if ("ASC".equalsIgnoreCase(ordenTipo)) {
@@ -81,6 +201,38 @@ public class CuentaBancariaServiceImpl implements CuentaBancariaService {
 		return cuentas;
 	}
 
+	/**
+	 * Quita los espacios del fragmento de IBAN y lo pasa a mayúsculas. Solo se
+	 * admiten letras y dígitos, de modo que el fragmento nunca lleva comodines de
+	 * {@code LIKE}.
+	 */
+	private static String normalizarFragmentoIban(String numeroCuenta) {
+		if (numeroCuenta == null) {
+			return null;
+		}
+		String fragmento = numeroCuenta.replaceAll("\\s", "").toUpperCase();
+		if (fragmento.isEmpty()) {
+			return null;
+		}
+		if (!fragmento.matches("[A-Z0-9]+")) {
+			throw new ParametroBusquedaException("El número de cuenta solo puede contener letras y dígitos.");
+		}
+		return fragmento;
+	}
+
+	/**
+	 * En modo automático, un fragmento que empieza por el código de país se busca
+	 * por prefijo y cualquier otro por sufijo.
+	 */
+	private static ModoBusquedaIban resolverModo(String fragmento, ModoBusquedaIban modo) {
+		if (modo != null && modo != ModoBusquedaIban.AUTOMATICO) {
+			return modo;
+		}
+		boolean empiezaPorPais = fragmento.length() >= 2 && Character.isLetter(fragmento.charAt(0))
+				&& Character.isLetter(fragmento.charAt(1));
+		return empiezaPorPais ? ModoBusquedaIban.PREFIJO : ModoBusquedaIban.SUFIJO;
+	}
+
 	/**
 	 * Inserta una nueva cuenta bancaria en la base de datos.
 	 * 
@@ -89,6 +241,7 @@ public class CuentaBancariaServiceImpl implements CuentaBancariaService {
 	@Override
 	public void insertarCuentaBancaria(CuentaBancaria cb) {
 		cuentaBancRepo.save(cb);
+		typeaheadCache.invalidar();
 	}
 
 	/**
@@ -104,19 +257,74 @@ public class CuentaBancariaServiceImpl implements CuentaBancariaService {
 			throw new CuentaNoEncontradaException("Cuenta bancaria no encontrada");
 		}
 		cuentaBancRepo.save(cb);
+		typeaheadCache.invalidar();
+	}
+
+	/**
+	 * Actualiza los datos de una cuenta y aplica la lista definitiva de titulares
+	 * de un borrador de edición, todo en una única transacción. Solo se cargan los
+	 * clientes que se añaden; los que se quitan se eliminan de la relación sin
+	 * tocar el resto.
+	 * 
+	 * El saldo no se edita: solo lo cambian las contabilizaciones. La cuenta se
+	 * bloquea y se compara su versión de titulares, no la de la fila, que cambia
+	 * con cada contabilización.
+	 * 
+	 * @param datos           cuenta con el tipo y la fecha de creación editados.
+	 * @param versionEsperada versión de titulares de la cuenta cuando se abrió el
+	 *                        borrador.
+	 * @param idsTitulares    identificadores de los titulares finales.
+	 * @throws CuentaNoEncontradaException si no existe la cuenta.
+	 * @throws OptimisticLockException     si la cuenta ha cambiado desde que se
+	 *                                     abrió el borrador.
+	 */
+	@Override
+	@Transactional
+	public void actualizarCuentaYTitulares(CuentaBancaria datos, int versionEsperada, Set<Long> idsTitulares) {
+		CuentaBancaria cuenta = cuentaBancRepo.bloquearParaEditar(datos.getNumeroCuenta())
+				.orElseThrow(() -> new CuentaNoEncontradaException("Cuenta bancaria no encontrada"));
+		if (cuenta.getVersionTitulares() != versionEsperada) {
+			throw new OptimisticLockException("La cuenta ha sido modificada por otro usuario mientras se editaba.");
+		}
+
+		if (cuenta.getTipoCuenta() != datos.getTipoCuenta()) {
+			resumenOperacionesService.cambiarTipoCuenta(cuenta.getNumeroCuenta(), datos.getTipoCuenta());
+		}
+		cuenta.setTipoCuenta(datos.getTipoCuenta());
+		cuenta.setFechaCreacion(datos.getFechaCreacion());
+		cuenta.setVersionTitulares(versionEsperada + 1);
+
+		List<Cliente> titulares = cuenta.getMisClientes();
+		titulares.removeIf(c -> !idsTitulares.contains(c.getId()));
+		Set<Long> yaTitulares = titulares.stream().map(Cliente::getId).collect(Collectors.toSet());
+		List<Long> nuevos = idsTitulares.stream().filter(id -> !yaTitulares.contains(id)).toList();
+		if (!nuevos.isEmpty()) {
+			titulares.addAll(clienteRepo.findAllById(nuevos));
+		}
+		typeaheadCache.invalidar();
 	}
 
 	/**
 	 * Elimina una cuenta bancaria dado su número de cuenta.
 	 * 
+	 * Sus operaciones se descuentan de los resúmenes de su tipo de cuenta y las
+	 * archivadas dejan de leerse.
+	 * 
 	 * @param numCuenta el número de cuenta a eliminar.
 	 * @throws CuentaNoEncontradaException si no se encuentra la cuenta.
 	 */
 	@Override
+	@Transactional
 	public void eliminarCuentaBancariaPorNumCuenta(String numCuenta) {
 		if (!cuentaBancRepo.existsById(numCuenta)) {
 			throw new CuentaNoEncontradaException("Cuenta bancaria no encontrada");
 		}
+		resumenOperacionesService.descontarCuenta(numCuenta);
 		cuentaBancRepo.deleteById(numCuenta);
+		typeaheadCache.invalidar();
+		// Un alta posterior con el mismo IBAN empezaría de nuevo en la versión 0
+		extractoCache.invalidar(numCuenta);
+		saldoInstantaneaRepo.borrarDeCuenta(numCuenta);
+		archivoOperacionesService.olvidarCuenta(numCuenta);
 	}
 }
@@ -0,0 +1,19 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+
+public interface ExportacionService {
+
+	public TrabajoExportacion solicitar(String numeroCuenta, LocalDate desde, LocalDate hasta);
+
+	public TrabajoExportacion obtener(String id);
+
+	public TrabajoExportacion obtenerCompletado(String id);
+
+	public FileChannel abrirExtracto(TrabajoExportacion trabajo) throws IOException;
+
+	public void purgarCaducadas();
+
+}
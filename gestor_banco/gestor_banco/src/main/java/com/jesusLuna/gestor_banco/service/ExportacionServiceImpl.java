@@ -0,0 +1,243 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ExportacionNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ExportacionRechazadaException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación del servicio de exportaciones asíncronas.
+ *
+ * Los extractos se generan en un ejecutor propio de {@value #HILOS} hilos con
+ * una cola de como mucho {@value #MAX_EN_COLA} trabajos. Como cada hilo usa una
+ * sola conexión mientras genera el PDF, las exportaciones nunca ocupan más de
+ * {@value #HILOS} conexiones del pool y el resto queda libre para las
+ * peticiones interactivas; si la cola está llena la solicitud se rechaza en
+ * lugar de esperar.
+ *
+ * Los extractos generados se guardan en {@link ExtractoCache} con la versión de
+ * la cuenta: si se pide de nuevo el mismo extracto y la cuenta no ha tenido
+ * movimientos, el trabajo se da por completado sin generar nada. Los trabajos
+ * terminados se olvidan pasados {@value #TTL_MINUTOS} minutos; sus ficheros
+ * los gestiona la caché.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class ExportacionServiceImpl implements ExportacionService {
+
+	/** Hilos que generan extractos a la vez. */
+	static final int HILOS = 2;
+
+	/** Trabajos que pueden esperar turno. */
+	static final int MAX_EN_COLA = 20;
+
+	/** Minutos que se conserva un trabajo terminado. */
+	static final long TTL_MINUTOS = 60;
+
+	private static final long TTL_MILLIS = TTL_MINUTOS * 60_000L;
+
+	@Autowired
+	private ExtractoPdfService extractoPdfService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ExtractoCache extractoCache;
+
+	private final Map<String, TrabajoExportacion> trabajos = new ConcurrentHashMap<>();
+
+	private final ThreadPoolExecutor ejecutor = crearEjecutor();
+
+	private static ThreadPoolExecutor crearEjecutor() {
+		AtomicInteger contador = new AtomicInteger();
+		return new ThreadPoolExecutor(HILOS, HILOS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_EN_COLA),
+				tarea -> {
+					Thread hilo = new Thread(tarea, "exportacion-" + contador.incrementAndGet());
+					hilo.setDaemon(true);
+					return hilo;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@PreDestroy
+	void detener() {
+		ejecutor.shutdownNow();
+	}
+
+	/**
+	 * Encola la exportación del extracto de una cuenta, o la da por completada si
+	 * el extracto ya está en la caché para la versión actual de la cuenta.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        fecha inicial incluida, o {@code null}.
+	 * @param hasta        fecha final incluida, o {@code null}.
+	 * @return el trabajo creado.
+	 * @throws CuentaNoEncontradaException    si la cuenta no existe.
+	 * @throws ParametroBusquedaException     si el rango de fechas no es válido.
+	 * @throws ExportacionRechazadaException si ya hay demasiadas exportaciones
+	 *                                        en espera.
+	 */
+	@Override
+	public TrabajoExportacion solicitar(String numeroCuenta, LocalDate desde, LocalDate hasta) {
+		if (desde != null && hasta != null && desde.isAfter(hasta)) {
+			throw new ParametroBusquedaException("La fecha inicial no puede ser posterior a la final.");
+		}
+		int version = cuentaBancRepo.findVersionByNumeroCuenta(numeroCuenta)
+				.orElseThrow(() -> new CuentaNoEncontradaException("No existe la cuenta " + numeroCuenta + "."));
+		long ahora = System.currentTimeMillis();
+		TrabajoExportacion trabajo = new TrabajoExportacion(UUID.randomUUID().toString(), numeroCuenta, ahora);
+
+		// El extracto se genera con la misma fecha de expedición con la que se busca
+		LocalDate expedicion = LocalDate.now();
+		String clave = ExtractoCache.clave(numeroCuenta, ExtractoCache.FORMATO_PDF, desde, hasta, expedicion,
+				version);
+		Path enCache = extractoCache.obtener(clave);
+		if (enCache != null) {
+			trabajo.completar(clave, enCache, ahora);
+			trabajos.put(trabajo.getId(), trabajo);
+			return trabajo;
+		}
+
+		trabajos.put(trabajo.getId(), trabajo);
+		try {
+			ejecutor.execute(() -> ejecutar(trabajo, desde, hasta, expedicion));
+		} catch (RejectedExecutionException e) {
+			trabajos.remove(trabajo.getId());
+			throw new ExportacionRechazadaException(
+					"Hay demasiadas exportaciones en curso. Inténtalo de nuevo en unos minutos.");
+		}
+		return trabajo;
+	}
+
+	private void ejecutar(TrabajoExportacion trabajo, LocalDate desde, LocalDate hasta, LocalDate expedicion) {
+		Path temporal = null;
+		try {
+			temporal = extractoCache.crearTemporal();
+			trabajo.empezar(operacionesRepo.contarExtracto(trabajo.getNumeroCuenta(), desde, hasta));
+			int version;
+			try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal))) {
+				version = extractoPdfService.generarExtracto(trabajo.getNumeroCuenta(), desde, hasta, expedicion,
+						salida, trabajo::avanzar);
+			}
+			// La clave usa la versión leída junto con las operaciones, no la de la solicitud
+			String clave = ExtractoCache.clave(trabajo.getNumeroCuenta(), ExtractoCache.FORMATO_PDF, desde, hasta,
+					expedicion, version);
+			trabajo.completar(clave, extractoCache.guardar(clave, temporal), System.currentTimeMillis());
+		} catch (Exception e) {
+			log.error("Fallo en la exportación {} de la cuenta {}", trabajo.getId(), trabajo.getNumeroCuenta(), e);
+			if (temporal != null) {
+				borrar(temporal);
+			}
+			trabajo.fallar("No se pudo generar el extracto.", System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Devuelve un trabajo para consultar su progreso.
+	 *
+	 * @param id identificador del trabajo.
+	 * @return el trabajo.
+	 * @throws ExportacionNoEncontradaException si no existe o ha caducado.
+	 */
+	@Override
+	public TrabajoExportacion obtener(String id) {
+		TrabajoExportacion trabajo = id == null ? null : trabajos.get(id);
+		if (trabajo == null) {
+			throw new ExportacionNoEncontradaException("La exportación no existe o ha caducado.");
+		}
+		return trabajo;
+	}
+
+	/**
+	 * Devuelve un trabajo completado cuyo extracto sigue en la caché, listo para
+	 * descargar.
+	 *
+	 * @param id identificador del trabajo.
+	 * @return el trabajo.
+	 * @throws ExportacionNoEncontradaException si no existe, ha caducado, aún no
+	 *                                          ha terminado bien o su extracto
+	 *                                          ya ha salido de la caché.
+	 */
+	@Override
+	public TrabajoExportacion obtenerCompletado(String id) {
+		TrabajoExportacion trabajo = obtener(id);
+		if (trabajo.getEstado() != TrabajoExportacion.Estado.COMPLETADO) {
+			throw new ExportacionNoEncontradaException("La exportación todavía no está disponible.");
+		}
+		if (extractoCache.obtener(trabajo.getClave()) == null) {
+			throw new ExportacionNoEncontradaException("La exportación ha caducado. Vuelve a solicitarla.");
+		}
+		return trabajo;
+	}
+
+	/**
+	 * Abre el extracto de un trabajo completado para descargarlo. El canal sigue
+	 * siendo válido aunque el extracto salga de la caché mientras se envía.
+	 *
+	 * @param trabajo trabajo completado.
+	 * @return un canal de lectura del extracto, que debe cerrar quien lo pide.
+	 * @throws ExportacionNoEncontradaException si el extracto ya ha salido de la
+	 *                                          caché.
+	 * @throws IOException                      si no se puede abrir el fichero.
+	 */
+	@Override
+	public FileChannel abrirExtracto(TrabajoExportacion trabajo) throws IOException {
+		FileChannel canal = extractoCache.abrir(trabajo.getClave());
+		if (canal == null) {
+			throw new ExportacionNoEncontradaException("La exportación ha caducado. Vuelve a solicitarla.");
+		}
+		return canal;
+	}
+
+	/**
+	 * Olvida los trabajos terminados hace más de {@value #TTL_MINUTOS} minutos.
+	 * Sus extractos siguen en la caché mientras no se necesite el espacio.
+	 */
+	@Override
+	@Scheduled(fixedDelay = 10, initialDelay = 10, timeUnit = TimeUnit.MINUTES)
+	public void purgarCaducadas() {
+		purgarCaducadas(System.currentTimeMillis());
+	}
+
+	void purgarCaducadas(long ahora) {
+		trabajos.values().removeIf(t -> t.isTerminado() && ahora - t.getTerminadoEn() > TTL_MILLIS);
+	}
+
+	private static void borrar(Path fichero) {
+		try {
+			Files.deleteIfExists(fichero);
+		} catch (IOException e) {
+			log.warn("No se pudo borrar el fichero temporal {}", fichero, e);
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caché en disco de los extractos generados.
+ *
+ * Cada extracto se guarda con una clave formada por el IBAN de la cuenta y un
+ * resumen del formato, el rango de fechas, la fecha de expedición impresa en
+ * el documento y la versión de la cuenta. Como toda operación contabilizada
+ * incrementa la versión y la fecha de expedición cambia cada día, un extracto
+ * de la caché nunca queda obsoleto: tras un movimiento o al cambiar de día la
+ * clave cambia, la entrada antigua deja de pedirse y acaba saliendo por
+ * antigüedad. Solo al borrar una cuenta, cuyo
+ * IBAN podría volver a darse de alta con la versión inicial, hay que invalidar
+ * sus extractos. El espacio ocupado está acotado; al superarlo se borran
+ * primero los extractos usados hace más tiempo.
+ *
+ * La clave sirve también de {@code ETag} de la descarga.
+ *
+ * @author Jesús
+ */
+@Component
+@Slf4j
+public class ExtractoCache {
+
+	/** Formato de los extractos en PDF. */
+	public static final String FORMATO_PDF = "pdf";
+
+	private static final String EXTENSION = ".extracto";
+
+	private static final String PREFIJO_TEMPORAL = "generando-";
+
+	private final Path directorio;
+
+	private final long tamanyoMaximo;
+
+	/** Tamaño en bytes de cada extracto, del usado hace más tiempo al más reciente. */
+	private final LinkedHashMap<String, Long> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long tamanyoTotal;
+
+	@Autowired
+	public ExtractoCache(@Value("${extracto.cache.directorio:${java.io.tmpdir}/gestor_banco/extractos}") String directorio,
+			@Value("${extracto.cache.tamanyo-maximo:536870912}") long tamanyoMaximo) {
+		this(Paths.get(directorio), tamanyoMaximo);
+	}
+
+	/**
+	 * Abre la caché sobre un directorio, recuperando los extractos que ya tuviera
+	 * y borrando los temporales que quedaran a medias.
+	 *
+	 * @param directorio    directorio de la caché.
+	 * @param tamanyoMaximo bytes máximos que pueden ocupar los extractos.
+	 */
+	ExtractoCache(Path directorio, long tamanyoMaximo) {
+		this.directorio = directorio;
+		this.tamanyoMaximo = tamanyoMaximo;
+		try {
+			Files.createDirectories(directorio);
+			List<Path> existentes = new ArrayList<>();
+			try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(directorio)) {
+				for (Path fichero : ficheros) {
+					String nombre = fichero.getFileName().toString();
+					if (nombre.endsWith(EXTENSION)) {
+						existentes.add(fichero);
+					} else if (nombre.startsWith(PREFIJO_TEMPORAL)) {
+						Files.deleteIfExists(fichero);
+					}
+				}
+			}
+			existentes.sort(Comparator.comparingLong(ExtractoCache::ultimaModificacion));
+			for (Path fichero : existentes) {
+				String nombre = fichero.getFileName().toString();
+				registrar(nombre.substring(0, nombre.length() - EXTENSION.length()), Files.size(fichero));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Calcula la clave de un extracto.
+	 *
+	 * @param numeroCuenta IBAN de la cuenta.
+	 * @param formato      formato del extracto.
+	 * @param desde        fecha inicial, o {@code null}.
+	 * @param hasta        fecha final, o {@code null}.
+	 * @param expedicion   fecha de expedición impresa en el extracto.
+	 * @param version      versión de la cuenta con la que se generó.
+	 * @return la clave: el IBAN seguido del resumen en hexadecimal.
+	 */
+	public static String clave(String numeroCuenta, String formato, LocalDate desde, LocalDate hasta,
+			LocalDate expedicion, long version) {
+		String texto = formato + '|' + desde + '|' + hasta + '|' + expedicion + '|' + version;
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			return numeroCuenta + '-' + HexFormat.of().formatHex(sha.digest(texto.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Busca un extracto y lo marca como usado.
+	 *
+	 * @param clave clave del extracto.
+	 * @return el fichero del extracto, o {@code null} si no está en la caché.
+	 */
+	public synchronized Path obtener(String clave) {
+		if (clave == null || entradas.get(clave) == null) {
+			return null;
+		}
+		Path fichero = ruta(clave);
+		if (!Files.exists(fichero)) {
+			tamanyoTotal -= entradas.remove(clave);
+			return null;
+		}
+		return fichero;
+	}
+
+	/**
+	 * Abre un extracto para enviarlo y lo marca como usado.
+	 *
+	 * El fichero se abre con la caché bloqueada, así que no puede descartarse
+	 * entre la búsqueda y la apertura. Si se descarta después, el borrado solo
+	 * quita el nombre del directorio: el canal abierto sigue leyendo el extracto
+	 * completo hasta que se cierra.
+	 *
+	 * @param clave clave del extracto.
+	 * @return un canal de lectura del extracto, que debe cerrar quien lo pide, o
+	 *         {@code null} si no está en la caché.
+	 * @throws IOException si no se puede abrir el fichero.
+	 */
+	public synchronized FileChannel abrir(String clave) throws IOException {
+		Path fichero = obtener(clave);
+		return fichero == null ? null : FileChannel.open(fichero, StandardOpenOption.READ);
+	}
+
+	/**
+	 * Crea un fichero temporal en el directorio de la caché donde generar un
+	 * extracto, para poder guardarlo después con un simple renombrado.
+	 *
+	 * @return el fichero temporal, vacío.
+	 * @throws IOException si no se puede crear.
+	 */
+	public Path crearTemporal() throws IOException {
+		return Files.createTempFile(directorio, PREFIJO_TEMPORAL, ".tmp");
+	}
+
+	/**
+	 * Guarda en la caché un extracto recién generado y descarta los usados hace
+	 * más tiempo si se supera el tamaño máximo.
+	 *
+	 * @param clave    clave del extracto.
+	 * @param temporal fichero generado con {@link #crearTemporal()}.
+	 * @return el fichero del extracto dentro de la caché.
+	 * @throws IOException si no se puede mover el fichero.
+	 */
+	public Path guardar(String clave, Path temporal) throws IOException {
+		Path fichero = ruta(clave);
+		long tamanyo = Files.size(temporal);
+		Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		synchronized (this) {
+			registrar(clave, tamanyo);
+		}
+		return fichero;
+	}
+
+	/**
+	 * Borra todos los extractos de una cuenta.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 */
+	public synchronized void invalidar(String numeroCuenta) {
+		String prefijo = numeroCuenta + '-';
+		Iterator<Map.Entry<String, Long>> it = entradas.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Long> entrada = it.next();
+			if (entrada.getKey().startsWith(prefijo)) {
+				tamanyoTotal -= entrada.getValue();
+				it.remove();
+				borrar(entrada.getKey());
+			}
+		}
+	}
+
+	/**
+	 * @return los bytes que ocupan los extractos de la caché.
+	 */
+	public synchronized long tamanyoTotal() {
+		return tamanyoTotal;
+	}
+
+	private void registrar(String clave, long tamanyo) {
+		Long anterior = entradas.put(clave, tamanyo);
+		tamanyoTotal += tamanyo - (anterior == null ? 0 : anterior);
+		Iterator<Map.Entry<String, Long>> it = entradas.entrySet().iterator();
+		while (tamanyoTotal > tamanyoMaximo && it.hasNext()) {
+			Map.Entry<String, Long> masAntigua = it.next();
+			// El extracto recién guardado se conserva aunque supere el máximo por sí solo
+			if (masAntigua.getKey().equals(clave)) {
+				continue;
+			}
+			tamanyoTotal -= masAntigua.getValue();
+			it.remove();
+			borrar(masAntigua.getKey());
+		}
+	}
+
+	private void borrar(String clave) {
+		try {
+			Files.deleteIfExists(ruta(clave));
+		} catch (IOException e) {
+			log.warn("No se pudo borrar el extracto {} de la caché", clave, e);
+		}
+	}
+
+	private Path ruta(String clave) {
+		return directorio.resolve(clave + EXTENSION);
+	}
+
+	private static long ultimaModificacion(Path fichero) {
+		try {
+			return Files.getLastModifiedTime(fichero).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+}
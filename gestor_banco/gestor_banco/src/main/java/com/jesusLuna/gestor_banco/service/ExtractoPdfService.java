@@ -0,0 +1,14 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.function.LongConsumer;
+
+public interface ExtractoPdfService {
+
+	public int generarExtracto(String numeroCuenta, OutputStream salida);
+
+	public int generarExtracto(String numeroCuenta, LocalDate desde, LocalDate hasta, LocalDate expedicion,
+			OutputStream salida, LongConsumer progreso);
+
+}
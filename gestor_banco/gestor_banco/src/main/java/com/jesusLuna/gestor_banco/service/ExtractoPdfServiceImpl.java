@@ -0,0 +1,171 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.UnitValue;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+/**
+ * Implementación del servicio de extractos en PDF.
+ *
+ * Las operaciones se leen del cursor de la base de datos y se escriben en una
+ * tabla de iText en modo de tabla grande: cada {@link #FILAS_POR_BLOQUE} filas
+ * la tabla se vuelca al documento y sus celdas se liberan. La memoria usada es
+ * la misma para diez operaciones que para millones.
+ *
+ * La columna de saldo parte del saldo anterior al periodo, que se obtiene de
+ * {@link SaldoHistoricoService} sin recorrer el historial previo, y se va
+ * acumulando fila a fila. Las operaciones anteriores al horizonte de
+ * {@link ArchivoOperacionesService} se leen del archivo, mes a mes, y se
+ * escriben antes que las de la tabla.
+ *
+ * @author Jesús
+ */
+@Service
+public class ExtractoPdfServiceImpl implements ExtractoPdfService {
+
+	/** Filas que se acumulan en la tabla antes de volcarlas al documento. */
+	static final int FILAS_POR_BLOQUE = 500;
+
+	private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	/**
+	 * Escribe en la salida el extracto en PDF de todas las operaciones de una
+	 * cuenta, en orden cronológico. La columna de cuenta destino solo se incluye
+	 * si la cuenta tiene alguna transferencia.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param salida       flujo donde se escribe el PDF; se cierra al terminar.
+	 * @return la versión de la cuenta que refleja el extracto.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public int generarExtracto(String numeroCuenta, OutputStream salida) {
+		return generarExtracto(numeroCuenta, null, null, LocalDate.now(), salida, filas -> {
+		});
+	}
+
+	/**
+	 * Escribe en la salida el extracto en PDF de las operaciones de una cuenta
+	 * entre dos fechas, informando del número de operaciones escritas cada vez
+	 * que se vuelca un bloque y al terminar.
+	 *
+	 * La versión de la cuenta se lee en la misma transacción que las
+	 * operaciones, así que identifica exactamente el historial que contiene el
+	 * extracto y sirve de clave para guardarlo en {@link ExtractoCache}.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        fecha inicial incluida, o {@code null}.
+	 * @param hasta        fecha final incluida, o {@code null}.
+	 * @param expedicion   fecha de expedición que se imprime en el extracto.
+	 * @param salida       flujo donde se escribe el PDF; se cierra al terminar.
+	 * @param progreso     recibe el número de operaciones escritas hasta el
+	 *                     momento.
+	 * @return la versión de la cuenta que refleja el extracto.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public int generarExtracto(String numeroCuenta, LocalDate desde, LocalDate hasta, LocalDate expedicion,
+			OutputStream salida, LongConsumer progreso) {
+		int version = cuentaBancRepo.findVersionByNumeroCuenta(numeroCuenta)
+				.orElseThrow(() -> new CuentaNoEncontradaException("No existe la cuenta " + numeroCuenta + "."));
+		boolean contieneTransferencias = operacionesRepo
+				.existsByCuentaBancariaNumeroCuentaAndNumCuentaTransferenciaIsNotNull(numeroCuenta)
+				|| (desde == null || desde.isBefore(archivoOperacionesService.horizonte()))
+						&& archivoOperacionesService.tieneTransferencias(numeroCuenta);
+		long saldo = desde != null ? saldoHistoricoService.saldoTras(numeroCuenta, desde.minusDays(1), Long.MAX_VALUE)
+				: saldoHistoricoService.saldoInicial(numeroCuenta);
+
+		Document document = new Document(new PdfDocument(new PdfWriter(salida)));
+		try (Stream<OperacionResumen> operaciones = operacionesRepo.streamExtracto(numeroCuenta, desde, hasta)) {
+			document.add(new Paragraph("Listado de Operaciones para cuenta: " + numeroCuenta).setBold()
+					.setFontSize(14));
+			document.add(new Paragraph("Fecha de expedición: " + expedicion.format(FORMATO_FECHA))
+					.setItalic());
+			if (desde != null || hasta != null) {
+				document.add(new Paragraph("Periodo: " + (desde != null ? desde.format(FORMATO_FECHA) : "inicio")
+						+ " - " + (hasta != null ? hasta.format(FORMATO_FECHA) : "hoy")).setItalic());
+			}
+			document.add(new Paragraph(" "));
+
+			Table table = crearTabla(contieneTransferencias);
+			// En modo tabla grande la tabla se añade antes de tener filas
+			document.add(table);
+
+			// Las operaciones archivadas van delante de las que siguen en la tabla
+			long[] estado = { saldo, 0 };
+			Consumer<OperacionResumen> fila = op -> {
+				table.addCell(String.valueOf(op.getCodigo()));
+				table.addCell(op.getFecha().format(FORMATO_FECHA));
+				table.addCell(op.getTipo().name());
+				table.addCell(op.getCantidad() + " €");
+				if (contieneTransferencias) {
+					table.addCell(op.getNumCuentaTransferencia() != null ? op.getNumCuentaTransferencia() : "-");
+				}
+				estado[0] = Dinero.sumar(estado[0], op.getTipo().importe(op.getCantidad().getCentimos()));
+				table.addCell(Dinero.deCentimos(estado[0]) + " €");
+				if (++estado[1] % FILAS_POR_BLOQUE == 0) {
+					table.flush();
+					progreso.accept(estado[1]);
+				}
+			};
+			archivoOperacionesService.recorrer(numeroCuenta, desde, hasta, fila);
+			operaciones.forEachOrdered(fila);
+			table.complete();
+			progreso.accept(estado[1]);
+		} finally {
+			document.close();
+		}
+		return version;
+	}
+
+	private static Table crearTabla(boolean contieneTransferencias) {
+		Table table;
+		if (contieneTransferencias) {
+			table = new Table(UnitValue.createPercentArray(new float[] { 2, 4, 4, 3, 5, 3 }), true);
+		} else {
+			table = new Table(UnitValue.createPercentArray(new float[] { 2, 4, 4, 3, 3 }), true);
+		}
+		table.addHeaderCell("Código");
+		table.addHeaderCell("Fecha");
+		table.addHeaderCell("Tipo");
+		table.addHeaderCell("Cantidad");
+		if (contieneTransferencias) {
+			table.addHeaderCell("Cuenta destino");
+		}
+		table.addHeaderCell("Saldo");
+		return table;
+	}
+}
@@ -0,0 +1,258 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+/**
+ * Formato de los ficheros del archivo de operaciones.
+ *
+ * Un fichero guarda las operaciones de un mes de varias cuentas, comprimido
+ * con GZIP. Empieza por un índice con el IBAN, el número de operaciones, la
+ * variación del saldo en el mes y el tamaño en bytes de los datos de cada
+ * cuenta, de modo que al leer una cuenta se saltan los datos de las demás sin
+ * decodificarlos, y para sumar un mes entero basta con el índice. Las
+ * operaciones de cada cuenta van en orden de fecha y código; el código, el día
+ * y la cantidad se guardan como diferencia con la operación anterior en enteros
+ * de longitud variable, que para operaciones consecutivas del mismo mes ocupan
+ * uno o dos bytes.
+ *
+ * @author Jesús
+ */
+final class FicheroArchivo {
+
+	private static final int MAGIA = 0x4F504152;
+
+	private static final byte VERSION = 1;
+
+	private static final int CON_CONTRAPARTE = 1;
+
+	private static final int ANULACION = 2;
+
+	private static final TipoOperacion[] TIPOS = TipoOperacion.values();
+
+	/** Operación guardada en el archivo. */
+	record OperacionArchivada(long codigo, String numeroCuenta, String descripcion, LocalDate fecha,
+			TipoOperacion tipo, long centimos, String numCuentaTransferencia, Long codigoAnulada) {
+
+		OperacionResumen resumen() {
+			return new OperacionResumen(codigo, numeroCuenta, descripcion, fecha, tipo, Dinero.deCentimos(centimos),
+					numCuentaTransferencia);
+		}
+	}
+
+	private FicheroArchivo() {
+	}
+
+	/**
+	 * Escribe un fichero nuevo y lo sincroniza con el disco antes de cerrarlo.
+	 *
+	 * @param fichero     ruta del fichero; no debe existir.
+	 * @param operaciones operaciones de cada cuenta, en orden de IBAN y, dentro de
+	 *                    cada cuenta, de fecha y código.
+	 * @throws IOException si no se puede escribir.
+	 */
+	static void escribir(Path fichero, Map<String, List<OperacionArchivada>> operaciones) throws IOException {
+		List<byte[]> datos = new ArrayList<>(operaciones.size());
+		for (List<OperacionArchivada> deCuenta : operaciones.values()) {
+			datos.add(codificar(deCuenta));
+		}
+
+		try (FileOutputStream fos = new FileOutputStream(Files.createFile(fichero).toFile())) {
+			GZIPOutputStream gzip = new GZIPOutputStream(fos, 1 << 16);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip, 1 << 16));
+			out.writeInt(MAGIA);
+			out.writeByte(VERSION);
+			out.writeInt(operaciones.size());
+			int i = 0;
+			for (Map.Entry<String, List<OperacionArchivada>> e : operaciones.entrySet()) {
+				long neto = 0;
+				for (OperacionArchivada op : e.getValue()) {
+					neto = Dinero.sumar(neto, op.tipo().importe(op.centimos()));
+				}
+				out.writeUTF(e.getKey());
+				out.writeInt(e.getValue().size());
+				out.writeLong(neto);
+				out.writeInt(datos.get(i++).length);
+			}
+			for (byte[] d : datos) {
+				out.write(d);
+			}
+			out.flush();
+			gzip.finish();
+			fos.getChannel().force(true);
+			out.close();
+		}
+	}
+
+	/**
+	 * Lee las operaciones de una cuenta.
+	 *
+	 * @param fichero      ruta del fichero.
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return sus operaciones, en orden de fecha y código; vacía si el fichero
+	 *         no tiene ninguna de la cuenta.
+	 * @throws IOException si no se puede leer o el formato no es válido.
+	 */
+	static List<OperacionArchivada> leer(Path fichero, String numeroCuenta) throws IOException {
+		try (InputStream is = Files.newInputStream(fichero)) {
+			DataInputStream in = abrir(fichero, is);
+			int cuentas = in.readInt();
+			long saltar = 0;
+			int operaciones = -1;
+			for (int i = 0; i < cuentas; i++) {
+				String cuenta = in.readUTF();
+				int n = in.readInt();
+				in.readLong();
+				int tamanyo = in.readInt();
+				if (operaciones < 0) {
+					if (cuenta.equals(numeroCuenta)) {
+						operaciones = n;
+					} else {
+						saltar += tamanyo;
+					}
+				}
+			}
+			if (operaciones < 0) {
+				return List.of();
+			}
+			in.skipNBytes(saltar);
+			return decodificar(in, numeroCuenta, operaciones);
+		} catch (EOFException e) {
+			throw new IOException("El fichero " + fichero + " está incompleto.", e);
+		}
+	}
+
+	/**
+	 * Lee del índice la variación del saldo de una cuenta en el mes, sin
+	 * decodificar sus operaciones.
+	 *
+	 * @param fichero      ruta del fichero.
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return la variación del saldo, en céntimos; 0 si el fichero no tiene
+	 *         operaciones de la cuenta.
+	 * @throws IOException si no se puede leer o el formato no es válido.
+	 */
+	static long leerNeto(Path fichero, String numeroCuenta) throws IOException {
+		try (InputStream is = Files.newInputStream(fichero)) {
+			DataInputStream in = abrir(fichero, is);
+			int cuentas = in.readInt();
+			for (int i = 0; i < cuentas; i++) {
+				String cuenta = in.readUTF();
+				in.readInt();
+				long neto = in.readLong();
+				in.readInt();
+				if (cuenta.equals(numeroCuenta)) {
+					return neto;
+				}
+			}
+			return 0;
+		} catch (EOFException e) {
+			throw new IOException("El fichero " + fichero + " está incompleto.", e);
+		}
+	}
+
+	private static DataInputStream abrir(Path fichero, InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(is, 1 << 16), 1 << 16));
+		if (in.readInt() != MAGIA || in.readByte() != VERSION) {
+			throw new IOException("El fichero " + fichero + " no es un fichero del archivo de operaciones.");
+		}
+		return in;
+	}
+
+	private static byte[] codificar(List<OperacionArchivada> operaciones) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(operaciones.size() * 24);
+		DataOutputStream out = new DataOutputStream(bytes);
+		long codigo = 0;
+		long dia = 0;
+		long centimos = 0;
+		for (OperacionArchivada op : operaciones) {
+			escribirVariable(out, op.codigo() - codigo);
+			escribirVariable(out, op.fecha().toEpochDay() - dia);
+			out.writeByte(op.tipo().ordinal());
+			escribirVariable(out, op.centimos() - centimos);
+			out.writeUTF(op.descripcion());
+			int marcas = (op.numCuentaTransferencia() != null ? CON_CONTRAPARTE : 0)
+					| (op.codigoAnulada() != null ? ANULACION : 0);
+			out.writeByte(marcas);
+			if (op.numCuentaTransferencia() != null) {
+				out.writeUTF(op.numCuentaTransferencia());
+			}
+			if (op.codigoAnulada() != null) {
+				escribirVariable(out, op.codigoAnulada() - op.codigo());
+			}
+			codigo = op.codigo();
+			dia = op.fecha().toEpochDay();
+			centimos = op.centimos();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static List<OperacionArchivada> decodificar(DataInputStream in, String numeroCuenta, int operaciones)
+			throws IOException {
+		List<OperacionArchivada> resultado = new ArrayList<>(operaciones);
+		long codigo = 0;
+		long dia = 0;
+		long centimos = 0;
+		for (int i = 0; i < operaciones; i++) {
+			codigo += leerVariable(in);
+			dia += leerVariable(in);
+			TipoOperacion tipo = TIPOS[in.readUnsignedByte()];
+			centimos += leerVariable(in);
+			String descripcion = in.readUTF();
+			int marcas = in.readUnsignedByte();
+			String contraparte = (marcas & CON_CONTRAPARTE) != 0 ? in.readUTF() : null;
+			Long anulada = (marcas & ANULACION) != 0 ? codigo + leerVariable(in) : null;
+			resultado.add(new OperacionArchivada(codigo, numeroCuenta, descripcion, LocalDate.ofEpochDay(dia), tipo,
+					centimos, contraparte, anulada));
+		}
+		return resultado;
+	}
+
+	/**
+	 * Escribe un entero con signo en codificación zigzag de longitud variable:
+	 * siete bits por byte, los valores pequeños de cualquier signo en pocos bytes.
+	 */
+	private static void escribirVariable(OutputStream out, long valor) throws IOException {
+		long v = (valor << 1) ^ (valor >> 63);
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	private static long leerVariable(DataInputStream in) throws IOException {
+		long v = 0;
+		int desplazamiento = 0;
+		int b;
+		do {
+			if (desplazamiento > 63) {
+				throw new IOException("Entero de longitud variable no válido.");
+			}
+			b = in.readUnsignedByte();
+			v |= (long) (b & 0x7F) << desplazamiento;
+			desplazamiento += 7;
+		} while ((b & 0x80) != 0);
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
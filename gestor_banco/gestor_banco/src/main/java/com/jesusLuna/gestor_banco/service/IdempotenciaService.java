@@ -0,0 +1,11 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.util.function.Supplier;
+
+public interface IdempotenciaService {
+
+	public String ejecutarUnaVez(String clave, String peticion, Supplier<String> accion);
+
+	public void purgarCaducadas();
+
+}
@@ -0,0 +1,251 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.entity.ClaveIdempotencia;
+import com.jesusLuna.gestor_banco.exception.ClaveIdempotenciaReutilizadaException;
+import com.jesusLuna.gestor_banco.exception.OperacionEnCursoException;
+import com.jesusLuna.gestor_banco.repository.ClaveIdempotenciaRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación del servicio de idempotencia. Garantiza que un envío con una
+ * clave dada se ejecuta como mucho una vez y que los reintentos devuelven el
+ * resultado original.
+ * 
+ * Hay dos niveles:
+ * <ul>
+ * <li>Una caché en memoria con el resultado (o el envío en curso) de cada
+ * clave reciente. Los duplicados que llegan a este mismo nodo esperan al
+ * primero sin tocar la base de datos.</li>
+ * <li>La tabla {@code dam_clave_idempotencia}, cuya fila se inserta en la misma
+ * transacción que la operación. Si el duplicado llega a otro nodo, su
+ * {@code INSERT} choca con la clave primaria y devuelve el resultado
+ * guardado.</li>
+ * </ul>
+ * Los envíos que fallan no se guardan, de modo que pueden reintentarse.
+ * 
+ * La clave la genera el cliente, así que se guarda junto con una huella del
+ * usuario y los datos del envío. Un reintento solo recibe el resultado original
+ * si su huella coincide; si la clave llega con otros datos se rechaza, en lugar
+ * de descartar en silencio la nueva operación.
+ * 
+ * @author Jesús
+ */
+@Slf4j
+@Service
+public class IdempotenciaServiceImpl implements IdempotenciaService {
+
+	/** Tiempo durante el que una clave protege frente a reintentos. */
+	private static final long TTL_HORAS = 24;
+
+	/** Tiempo durante el que un resultado se sirve desde memoria. */
+	private static final long TTL_CACHE_MILLIS = 10 * 60_000L;
+
+	/** Tiempo máximo que un duplicado espera a que termine el envío original. */
+	private static final long ESPERA_MAXIMA_SEGUNDOS = 30;
+
+	@Autowired
+	private ClaveIdempotenciaRepo claveRepo;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * Número máximo de claves en la caché en memoria. Al superarlo se quitan las
+	 * terminadas más antiguas hasta dejarla al 90 %; siguen protegidas por la base
+	 * de datos.
+	 */
+	@Value("${idempotencia.cache.capacidad:10000}")
+	private int capacidadCache;
+
+	private final Map<String, Entrada> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Ejecuta la acción una sola vez por clave. La acción se ejecuta dentro de la
+	 * misma transacción que guarda la clave, así que sus cambios y la clave se
+	 * confirman o se deshacen juntos.
+	 * 
+	 * @param clave    clave de idempotencia enviada por el cliente.
+	 * @param peticion el usuario y los datos del envío; un reintento con la misma
+	 *                 clave debe traer exactamente los mismos.
+	 * @param accion   acción a ejecutar; devuelve el resultado que se guardará.
+	 * @return el resultado de la acción, o el del envío original si es un
+	 *         reintento.
+	 * @throws IllegalArgumentException              si la clave no es válida.
+	 * @throws ClaveIdempotenciaReutilizadaException si la clave ya se usó con
+	 *                                               otro usuario u otros datos.
+	 * @throws OperacionEnCursoException             si el envío original no
+	 *                                               termina a tiempo.
+	 */
+	@Override
+	public String ejecutarUnaVez(String clave, String peticion, Supplier<String> accion) {
+		validarClave(clave);
+		String huella = huella(peticion);
+
+		Entrada propia = new Entrada(new CompletableFuture<>(), huella,
+				System.currentTimeMillis() + TTL_CACHE_MILLIS);
+		Entrada actual = cache.compute(clave, (k, e) -> e == null || e.caducada() ? propia : e);
+		if (actual != propia) {
+			comprobarHuella(actual.huella, huella);
+			return esperar(actual.resultado);
+		}
+
+		try {
+			String resultado = ejecutarEnBaseDeDatos(clave, huella, accion);
+			propia.resultado.complete(resultado);
+			limpiarCache();
+			return resultado;
+		} catch (RuntimeException e) {
+			// Un fallo no se recuerda: el siguiente intento vuelve a ejecutar la acción
+			cache.remove(clave, propia);
+			propia.resultado.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private String ejecutarEnBaseDeDatos(String clave, String huella, Supplier<String> accion) {
+		for (int intento = 0; intento < 2; intento++) {
+			try {
+				return transactionTemplate.execute(estado -> {
+					LocalDateTime ahora = LocalDateTime.now();
+					Optional<ClaveIdempotencia> guardada = claveRepo.findById(clave)
+							.filter(k -> !k.getExpiraEn().isBefore(ahora));
+					if (guardada.isPresent()) {
+						comprobarHuella(guardada.get().getHuella(), huella);
+						return guardada.get().getResultado();
+					}
+					claveRepo.borrarSiCaducada(clave, ahora);
+					claveRepo.reservar(clave, huella, ahora, ahora.plusHours(TTL_HORAS));
+					String resultado = accion.get();
+					claveRepo.completar(clave, resultado);
+					return resultado;
+				});
+			} catch (DataIntegrityViolationException e) {
+				// Otro nodo ha confirmado la misma clave mientras esperábamos
+				Optional<ClaveIdempotencia> guardada = transactionTemplate
+						.execute(estado -> claveRepo.findById(clave));
+				if (guardada.isPresent()) {
+					comprobarHuella(guardada.get().getHuella(), huella);
+					return guardada.get().getResultado();
+				}
+			}
+		}
+		throw new OperacionEnCursoException("La operación ya se está procesando, inténtalo de nuevo.");
+	}
+
+	private static String esperar(CompletableFuture<String> resultado) {
+		try {
+			return resultado.get(ESPERA_MAXIMA_SEGUNDOS, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException causa) {
+				throw causa;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new OperacionEnCursoException("La operación ya se está procesando, inténtalo de nuevo.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperacionEnCursoException("La operación ya se está procesando, inténtalo de nuevo.");
+		}
+	}
+
+	private static void validarClave(String clave) {
+		if (clave == null || !clave.matches("[A-Za-z0-9_-]{8,64}")) {
+			throw new IllegalArgumentException("La clave de idempotencia no es válida.");
+		}
+	}
+
+	private static String huella(String peticion) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(sha.digest(peticion.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Rechaza un reintento cuya huella no es la del envío original. Las claves
+	 * guardadas antes de existir la huella no la tienen y se aceptan.
+	 */
+	private static void comprobarHuella(String guardada, String huella) {
+		if (guardada != null && !Objects.equals(guardada, huella)) {
+			throw new ClaveIdempotenciaReutilizadaException(
+					"La clave de idempotencia ya se usó con otra operación; genera una nueva.");
+		}
+	}
+
+	/**
+	 * Mantiene la caché en memoria dentro de su capacidad. Primero quita los
+	 * resultados caducados y, si no basta, los terminados más antiguos hasta
+	 * dejarla al 90 %. Las entradas en curso nunca se quitan, porque los duplicados
+	 * que llegan a este nodo las esperan.
+	 */
+	private void limpiarCache() {
+		if (cache.size() <= capacidadCache) {
+			return;
+		}
+		cache.values().removeIf(e -> e.resultado.isDone() && e.caducada());
+		int sobrantes = cache.size() - capacidadCache * 9 / 10;
+		if (sobrantes <= 0) {
+			return;
+		}
+		cache.entrySet().stream()
+				.filter(e -> e.getValue().resultado.isDone())
+				.sorted(Comparator.comparingLong(e -> e.getValue().expiraEn()))
+				.limit(sobrantes)
+				.toList()
+				.forEach(e -> cache.remove(e.getKey(), e.getValue()));
+	}
+
+	/**
+	 * @return el número de claves en la caché en memoria.
+	 */
+	int getTamanyoCache() {
+		return cache.size();
+	}
+
+	/**
+	 * Elimina de la base de datos las claves caducadas. Se ejecuta cada hora.
+	 */
+	@Override
+	@Transactional
+	@Scheduled(fixedDelay = 60, initialDelay = 60, timeUnit = TimeUnit.MINUTES)
+	public void purgarCaducadas() {
+		int borradas = claveRepo.borrarCaducadas(LocalDateTime.now());
+		if (borradas > 0) {
+			log.info("Eliminadas {} claves de idempotencia caducadas", borradas);
+		}
+	}
+
+	private record Entrada(CompletableFuture<String> resultado, String huella, long expiraEn) {
+
+		boolean caducada() {
+			return System.currentTimeMillis() > expiraEn;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.ResumenCuentaDia;
+import com.jesusLuna.gestor_banco.entity.ResumenTipoCuentaDia;
+
+/**
+ * Incrementos pendientes de aplicar a los resúmenes de operaciones, acumulados
+ * por fila: un lote con cien apuntes de la misma cuenta y día se aplica con una
+ * única sentencia.
+ *
+ * Las filas se recorren en el orden de la clave primaria de cada tabla, que
+ * guarda los enumerados por su nombre, así que dos transacciones que
+ * incrementan las mismas filas las bloquean en el mismo orden y no pueden
+ * interbloquearse.
+ *
+ * @see ResumenOperacionesService#sumar(IncrementosResumen)
+ * @author Jesús
+ */
+public class IncrementosResumen {
+
+	/**
+	 * Franjas en las que se reparten las cuentas de un mismo tipo.
+	 *
+	 * @see ResumenTipoCuentaDia
+	 */
+	static final int FRANJAS = 16;
+
+	/** Clave de una fila de {@link ResumenCuentaDia}. */
+	record FilaCuenta(String cuenta, LocalDate fecha, TipoOperacion tipo) {
+	}
+
+	/** Clave de una fila de {@link ResumenTipoCuentaDia}. */
+	record FilaTipoCuenta(TipoCuenta clase, LocalDate fecha, int franja, TipoOperacion tipo) {
+	}
+
+	private static final Comparator<FilaCuenta> ORDEN_CUENTA = Comparator.comparing(FilaCuenta::cuenta)
+			.thenComparing(FilaCuenta::fecha).thenComparing(f -> f.tipo().name());
+
+	private static final Comparator<FilaTipoCuenta> ORDEN_TIPO_CUENTA = Comparator
+			.comparing((FilaTipoCuenta f) -> f.clase().name()).thenComparing(FilaTipoCuenta::fecha)
+			.thenComparingInt(FilaTipoCuenta::franja).thenComparing(f -> f.tipo().name());
+
+	/** Número de operaciones y céntimos a sumar en cada fila por cuenta. */
+	final Map<FilaCuenta, long[]> cuentas = new TreeMap<>(ORDEN_CUENTA);
+
+	/** Número de operaciones y céntimos a sumar en cada fila por tipo de cuenta. */
+	final Map<FilaTipoCuenta, long[]> tiposCuenta = new TreeMap<>(ORDEN_TIPO_CUENTA);
+
+	/**
+	 * Acumula operaciones de una cuenta en su fila por cuenta y en la de su tipo
+	 * de cuenta.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param tipoCuenta   el tipo de la cuenta.
+	 * @param fecha        fecha de las operaciones.
+	 * @param tipo         tipo de las operaciones.
+	 * @param operaciones  número de operaciones; negativo para descontarlas.
+	 * @param centimos     suma de sus cantidades; negativa para descontarlas.
+	 */
+	public void sumar(String numeroCuenta, TipoCuenta tipoCuenta, LocalDate fecha, TipoOperacion tipo,
+			long operaciones, long centimos) {
+		sumarCuenta(numeroCuenta, fecha, tipo, operaciones, centimos);
+		sumarTipoCuenta(numeroCuenta, tipoCuenta, fecha, tipo, operaciones, centimos);
+	}
+
+	void sumarCuenta(String numeroCuenta, LocalDate fecha, TipoOperacion tipo, long operaciones, long centimos) {
+		acumular(cuentas.computeIfAbsent(new FilaCuenta(numeroCuenta, fecha, tipo), k -> new long[2]), operaciones,
+				centimos);
+	}
+
+	void sumarTipoCuenta(String numeroCuenta, TipoCuenta tipoCuenta, LocalDate fecha, TipoOperacion tipo,
+			long operaciones, long centimos) {
+		sumarFranja(tipoCuenta, fecha, franja(numeroCuenta), tipo, operaciones, centimos);
+	}
+
+	void sumarFranja(TipoCuenta tipoCuenta, LocalDate fecha, int franja, TipoOperacion tipo, long operaciones,
+			long centimos) {
+		acumular(tiposCuenta.computeIfAbsent(new FilaTipoCuenta(tipoCuenta, fecha, franja, tipo), k -> new long[2]),
+				operaciones, centimos);
+	}
+
+	/**
+	 * @return {@code true} si no hay nada que aplicar.
+	 */
+	public boolean isEmpty() {
+		return cuentas.isEmpty() && tiposCuenta.isEmpty();
+	}
+
+	/**
+	 * Franja de una cuenta en los resúmenes por tipo de cuenta, según el hash de
+	 * su IBAN, que el contrato de {@link String#hashCode()} fija.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return un valor entre 0 y {@value #FRANJAS} - 1.
+	 */
+	static int franja(String numeroCuenta) {
+		return Math.floorMod(numeroCuenta.hashCode(), FRANJAS);
+	}
+
+	private static void acumular(long[] acumulado, long operaciones, long centimos) {
+		acumulado[0] += operaciones;
+		acumulado[1] = Dinero.sumar(acumulado[1], centimos);
+	}
+}
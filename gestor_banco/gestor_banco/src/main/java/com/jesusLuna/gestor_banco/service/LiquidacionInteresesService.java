@@ -0,0 +1,15 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.dto.EstadoLiquidacion;
+
+public interface LiquidacionInteresesService {
+
+	public EstadoLiquidacion liquidar(LocalDate mes);
+
+	public EstadoLiquidacion liquidarMesAnterior();
+
+	public EstadoLiquidacion obtenerEstado(LocalDate mes);
+
+}
@@ -0,0 +1,425 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.dto.EstadoLiquidacion;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.ParticionLiquidacion;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.ParticionLiquidacionRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación de la liquidación mensual de intereses de las cuentas de
+ * ahorro.
+ *
+ * Los intereses de un mes se calculan sobre el saldo al cierre de cada día,
+ * al tipo anual {@code intereses.ahorro.tasa-anual} (en porcentaje) con base
+ * real/365, y se abonan el primer día del mes siguiente. Los días anteriores
+ * a la apertura de la cuenta no cuentan.
+ *
+ * Las cuentas de ahorro se reparten en {@code intereses.liquidacion.particiones}
+ * rangos consecutivos de IBAN con el mismo número de cuentas, que se liquidan
+ * en paralelo en {@code intereses.liquidacion.hilos} hilos. Cada partición
+ * avanza por bloques de {@value #CUENTAS_POR_BLOQUE} cuentas, cada uno en su
+ * propia transacción: bloquea las cuentas, reconstruye sus saldos diarios con
+ * una sola consulta agrupada sobre las operaciones, abona los intereses con
+ * {@link ContabilizadorLotes} y guarda en {@link ParticionLiquidacion} la
+ * última cuenta liquidada. Si la pasada se interrumpe, la siguiente reanuda
+ * cada partición donde se quedó; una partición terminada no se vuelve a
+ * liquidar. Un bloque que pierde un interbloqueo o agota la espera de un
+ * bloqueo frente a la contabilización se deshace y se reintenta hasta
+ * {@value #INTENTOS_POR_BLOQUE} veces antes de abandonar la partición.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class LiquidacionInteresesServiceImpl implements LiquidacionInteresesService {
+
+	/** Cuentas que se liquidan en cada transacción. */
+	private static final int CUENTAS_POR_BLOQUE = 200;
+
+	/** Veces que se intenta un bloque que falla por un bloqueo. */
+	private static final int INTENTOS_POR_BLOQUE = 5;
+
+	/** Espera antes del segundo intento de un bloque; crece con cada intento. */
+	private static final long ESPERA_REINTENTO_MS = 50;
+
+	/** Porcentaje por días del año: la tasa anual se divide entre 100 y 365. */
+	private static final BigDecimal BASE = BigDecimal.valueOf(36_500);
+
+	private static final DateTimeFormatter FORMATO_MES = DateTimeFormatter.ofPattern("yyyy-MM");
+
+	@Value("${intereses.ahorro.tasa-anual:0.50}")
+	private BigDecimal tasaAnual;
+
+	@Value("${intereses.liquidacion.particiones:16}")
+	private int particiones;
+
+	@Value("${intereses.liquidacion.hilos:4}")
+	private int hilos;
+
+	@Autowired
+	private ParticionLiquidacionRepo particionLiquidacionRepo;
+
+	@Autowired
+	private ContabilizadorLotes contabilizadorLotes;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final AtomicBoolean liquidando = new AtomicBoolean();
+
+	/**
+	 * Liquida los intereses de un mes terminado. Si ya hay una pasada anterior
+	 * del mes, solo liquida las cuentas que le faltaron.
+	 *
+	 * @param mes cualquier día del mes a liquidar.
+	 * @return el avance de la liquidación al terminar la pasada; las
+	 *         particiones que fallan quedan sin terminar.
+	 * @throws IllegalArgumentException si el mes no ha terminado o está
+	 *                                  archivado.
+	 * @throws IllegalStateException    si ya hay una liquidación en curso.
+	 */
+	@Override
+	public EstadoLiquidacion liquidar(LocalDate mes) {
+		LocalDate inicioMes = mes.withDayOfMonth(1);
+		if (inicioMes.plusMonths(1).isAfter(LocalDate.now())) {
+			throw new IllegalArgumentException("Solo se pueden liquidar meses terminados.");
+		}
+		if (inicioMes.isBefore(archivoOperacionesService.horizonte())) {
+			throw new IllegalArgumentException(
+					"El mes " + inicioMes.format(FORMATO_MES) + " pertenece a un periodo cerrado y archivado.");
+		}
+		if (!liquidando.compareAndSet(false, true)) {
+			throw new IllegalStateException("Ya hay una liquidación de intereses en curso.");
+		}
+		long inicio = System.currentTimeMillis();
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		try {
+			Map<Integer, Future<Long>> resultados = new LinkedHashMap<>();
+			for (ParticionLiquidacion p : preparar(inicioMes)) {
+				if (!p.isTerminada()) {
+					int particion = p.getParticion();
+					resultados.put(particion, ejecutor.submit(() -> liquidarParticion(inicioMes, particion)));
+				}
+			}
+
+			int fallidas = 0;
+			for (Map.Entry<Integer, Future<Long>> r : resultados.entrySet()) {
+				try {
+					r.getValue().get();
+				} catch (ExecutionException e) {
+					fallidas++;
+					log.error("No se pudo liquidar la partición {} de los intereses de {}", r.getKey(),
+							inicioMes.format(FORMATO_MES), e.getCause());
+				}
+			}
+			EstadoLiquidacion estado = obtenerEstado(inicioMes);
+			log.info("Intereses de {} liquidados: {} de {} cuentas, {} abonos por {} ({} particiones fallidas) "
+					+ "en {} ms, {} cuentas/s", inicioMes.format(FORMATO_MES), estado.getCuentas(),
+					estado.getTotalCuentas(), estado.getAbonos(), estado.getIntereses(), fallidas,
+					System.currentTimeMillis() - inicio, Math.round(estado.getCuentasPorSegundo()));
+			return estado;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Liquidación de intereses interrumpida.", e);
+		} finally {
+			ejecutor.shutdownNow();
+			liquidando.set(false);
+		}
+	}
+
+	/**
+	 * Liquida los intereses del mes anterior. Se ejecuta según
+	 * {@code intereses.liquidacion.cron}.
+	 *
+	 * @return el avance de la liquidación al terminar la pasada.
+	 */
+	@Override
+	@Scheduled(cron = "${intereses.liquidacion.cron:-}")
+	public EstadoLiquidacion liquidarMesAnterior() {
+		return liquidar(LocalDate.now().withDayOfMonth(1).minusMonths(1));
+	}
+
+	/**
+	 * Obtiene el avance de la liquidación de un mes a partir de los puntos de
+	 * control de sus particiones, también mientras se está liquidando.
+	 *
+	 * @param mes cualquier día del mes.
+	 * @return el avance; sin particiones si el mes no se ha empezado a liquidar.
+	 */
+	@Override
+	public EstadoLiquidacion obtenerEstado(LocalDate mes) {
+		LocalDate inicioMes = mes.withDayOfMonth(1);
+		List<ParticionLiquidacion> lista = particionLiquidacionRepo.findByMesOrderByParticion(inicioMes);
+		long totalCuentas = 0;
+		long cuentas = 0;
+		long abonos = 0;
+		Dinero intereses = Dinero.CERO;
+		int terminadas = 0;
+		LocalDateTime primera = null;
+		LocalDateTime ultima = null;
+		for (ParticionLiquidacion p : lista) {
+			totalCuentas += p.getTotalCuentas();
+			cuentas += p.getCuentas();
+			abonos += p.getAbonos();
+			intereses = intereses.sumar(p.getIntereses());
+			terminadas += p.isTerminada() ? 1 : 0;
+			primera = primera == null || p.getInicio().isBefore(primera) ? p.getInicio() : primera;
+			ultima = ultima == null || p.getActualizacion().isAfter(ultima) ? p.getActualizacion() : ultima;
+		}
+		double segundos = primera == null ? 0 : Duration.between(primera, ultima).toMillis() / 1000.0;
+		return new EstadoLiquidacion(inicioMes, totalCuentas, cuentas, abonos, intereses, terminadas,
+				segundos > 0 ? cuentas / segundos : 0, lista);
+	}
+
+	/**
+	 * Devuelve las particiones del mes y, si es la primera pasada, las calcula.
+	 * Si otra instancia las calcula a la vez, la clave primaria rechaza las
+	 * segundas y se usan las suyas.
+	 */
+	private List<ParticionLiquidacion> preparar(LocalDate mes) {
+		List<ParticionLiquidacion> existentes = particionLiquidacionRepo.findByMesOrderByParticion(mes);
+		if (!existentes.isEmpty()) {
+			log.info("Se reanuda la liquidación de intereses de {}", mes.format(FORMATO_MES));
+			return existentes;
+		}
+		try {
+			transactionTemplate
+					.executeWithoutResult(estado -> particionLiquidacionRepo.saveAllAndFlush(particionar(mes)));
+		} catch (DataIntegrityViolationException e) {
+			log.info("Las particiones de la liquidación de {} ya se habían creado", mes.format(FORMATO_MES));
+		}
+		return particionLiquidacionRepo.findByMesOrderByParticion(mes);
+	}
+
+	/**
+	 * Reparte las cuentas de ahorro en rangos consecutivos de IBAN con el mismo
+	 * número de cuentas. Los límites se toman recorriendo una sola vez el índice
+	 * {@code idx_cuenta_tipo_numero}, sin leer las filas de las cuentas.
+	 */
+	private List<ParticionLiquidacion> particionar(LocalDate mes) {
+		String ahorro = TipoCuenta.AHORRO.name();
+		long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dam_cuenta_bancaria WHERE tipo_cuenta = ?",
+				Long.class, ahorro);
+		int numero = (int) Math.max(1, Math.min(particiones, total));
+		long porParticion = Math.max(1, (total + numero - 1) / numero);
+		List<String> limites = new ArrayList<>(numero - 1);
+		long[] leidas = { 0 };
+		jdbcTemplate.query("SELECT numero_cuenta FROM dam_cuenta_bancaria WHERE tipo_cuenta = ? ORDER BY numero_cuenta",
+				rs -> {
+					if (++leidas[0] % porParticion == 0 && limites.size() < numero - 1) {
+						limites.add(rs.getString(1));
+					}
+				}, ahorro);
+
+		LocalDateTime ahora = LocalDateTime.now();
+		List<ParticionLiquidacion> lista = new ArrayList<>(limites.size() + 1);
+		for (int i = 0; i <= limites.size(); i++) {
+			String desde = i == 0 ? "" : limites.get(i - 1);
+			String hasta = i < limites.size() ? limites.get(i) : null;
+			long cuentas = hasta != null ? porParticion : total - porParticion * limites.size();
+			lista.add(new ParticionLiquidacion(mes, i, desde, hasta, null, cuentas, 0, 0, Dinero.CERO, false, ahora,
+					ahora));
+		}
+		return lista;
+	}
+
+	/**
+	 * Liquida una partición bloque a bloque hasta terminarla y devuelve las
+	 * cuentas liquidadas en esta pasada.
+	 */
+	private long liquidarParticion(LocalDate mes, int particion) {
+		long inicio = System.currentTimeMillis();
+		long cuentas = 0;
+		int liquidadas;
+		do {
+			liquidadas = liquidarBloqueConReintentos(mes, particion);
+			cuentas += liquidadas;
+		} while (liquidadas == CUENTAS_POR_BLOQUE);
+		log.info("Partición {} de los intereses de {} liquidada: {} cuentas en {} ms", particion,
+				mes.format(FORMATO_MES), cuentas, System.currentTimeMillis() - inicio);
+		return cuentas;
+	}
+
+	/**
+	 * Liquida el siguiente bloque de una partición en su propia transacción. Si
+	 * falla por un bloqueo, la transacción se ha deshecho sin mover el punto de
+	 * control, así que basta con volver a ejecutarla.
+	 */
+	private int liquidarBloqueConReintentos(LocalDate mes, int particion) {
+		for (int intento = 1;; intento++) {
+			try {
+				return transactionTemplate.execute(estado -> liquidarBloque(mes, particion));
+			} catch (PessimisticLockingFailureException e) {
+				if (intento == INTENTOS_POR_BLOQUE) {
+					throw e;
+				}
+				log.warn("Bloqueo al liquidar la partición {} de los intereses de {} (intento {} de {}): {}",
+						particion, mes.format(FORMATO_MES), intento, INTENTOS_POR_BLOQUE, e.getMessage());
+				try {
+					Thread.sleep(ESPERA_REINTENTO_MS * intento);
+				} catch (InterruptedException interrupcion) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Liquidación de intereses interrumpida.", interrupcion);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Liquida en la transacción en curso el siguiente bloque de cuentas de una
+	 * partición y avanza su punto de control. La fila de la partición se
+	 * bloquea primero, así que dos pasadas simultáneas no liquidan el mismo
+	 * bloque. Devuelve las cuentas leídas; menos de
+	 * {@value #CUENTAS_POR_BLOQUE} indica que la partición ha terminado.
+	 */
+	private int liquidarBloque(LocalDate mes, int particion) {
+		Map<String, Object> punto = jdbcTemplate.queryForMap("SELECT desde, hasta, ultima_cuenta, terminada "
+				+ "FROM dam_particion_liquidacion WHERE mes = ? AND particion = ? FOR UPDATE", mes, particion);
+		if (Boolean.TRUE.equals(punto.get("terminada"))) {
+			return 0;
+		}
+		String ultima = (String) (punto.get("ultima_cuenta") != null ? punto.get("ultima_cuenta") : punto.get("desde"));
+		String hasta = (String) punto.get("hasta");
+
+		List<Object> argumentos = new ArrayList<>(List.of(TipoCuenta.AHORRO.name(), ultima));
+		if (hasta != null) {
+			argumentos.add(hasta);
+		}
+		argumentos.add(CUENTAS_POR_BLOQUE);
+		// Las cuentas se leen ya bloqueadas, en orden de IBAN como en
+		// bloquearSaldos: en REPEATABLE READ la primera lectura sin bloqueo fija la
+		// foto de la transacción, y una operación confirmada entre ella y el
+		// bloqueo contaría en el saldo pero no en los netos diarios
+		Map<String, LocalDate> aperturas = new LinkedHashMap<>();
+		Map<String, Long> saldos = new HashMap<>();
+		jdbcTemplate.query("SELECT numero_cuenta, fecha_creacion, saldo_centimos FROM dam_cuenta_bancaria "
+				+ "WHERE tipo_cuenta = ? AND numero_cuenta > ?" + (hasta != null ? " AND numero_cuenta <= ?" : "")
+				+ " ORDER BY numero_cuenta LIMIT ? FOR UPDATE", rs -> {
+					aperturas.put(rs.getString(1), rs.getObject(2, LocalDate.class));
+					saldos.put(rs.getString(1), rs.getLong(3));
+				}, argumentos.toArray());
+
+		List<Apunte> apuntes = new ArrayList<>();
+		if (!aperturas.isEmpty()) {
+			Map<String, Map<LocalDate, Long>> netos = netosDiarios(saldos.keySet(), mes);
+			String descripcion = "Intereses " + mes.format(FORMATO_MES);
+			for (Map.Entry<String, Long> saldo : saldos.entrySet()) {
+				String cuenta = saldo.getKey();
+				long centimos = intereses(mes, saldo.getValue(), netos.getOrDefault(cuenta, Map.of()),
+						aperturas.get(cuenta));
+				if (centimos > 0) {
+					apuntes.add(new Apunte(0, cuenta, TipoOperacion.IngresarDinero, centimos, mes.plusMonths(1),
+							descripcion, null));
+				}
+			}
+			contabilizadorLotes.contabilizar(apuntes);
+		}
+
+		long abonos = 0;
+		long total = 0;
+		for (Apunte apunte : apuntes) {
+			if (apunte.getRechazo() == null) {
+				abonos++;
+				total = Dinero.sumar(total, apunte.getCentimos());
+			}
+		}
+		String nuevaUltima = ultima;
+		for (String cuenta : aperturas.keySet()) {
+			nuevaUltima = cuenta;
+		}
+		jdbcTemplate.update("UPDATE dam_particion_liquidacion SET ultima_cuenta = ?, cuentas = cuentas + ?, "
+				+ "abonos = abonos + ?, intereses_centimos = intereses_centimos + ?, terminada = ?, actualizacion = ? "
+				+ "WHERE mes = ? AND particion = ?", nuevaUltima, aperturas.size(), abonos, total,
+				aperturas.size() < CUENTAS_POR_BLOQUE, LocalDateTime.now(), mes, particion);
+		return aperturas.size();
+	}
+
+	/**
+	 * Suma la variación del saldo de cada cuenta por día desde el primer día del
+	 * mes, con una consulta agrupada sobre el índice
+	 * {@code idx_operacion_cuenta_fecha_id}.
+	 */
+	private Map<String, Map<LocalDate, Long>> netosDiarios(Iterable<String> cuentas, LocalDate mes) {
+		List<Object> argumentos = new ArrayList<>();
+		cuentas.forEach(argumentos::add);
+		if (argumentos.isEmpty()) {
+			return Map.of();
+		}
+		String marcas = String.join(", ", Collections.nCopies(argumentos.size(), "?"));
+		argumentos.add(mes);
+		Map<String, Map<LocalDate, Long>> netos = new HashMap<>();
+		jdbcTemplate.query("SELECT o.cuenta_id, o.fecha, SUM(" + OperacionesRepo.IMPORTE + ") FROM dam_operacion o "
+				+ "WHERE o.cuenta_id IN (" + marcas + ") AND o.fecha >= ? GROUP BY o.cuenta_id, o.fecha", rs -> {
+					netos.computeIfAbsent(rs.getString(1), c -> new HashMap<>())
+							.put(rs.getObject(2, LocalDate.class), rs.getLong(3));
+				}, argumentos.toArray());
+		return netos;
+	}
+
+	/**
+	 * Calcula los intereses de un mes de una cuenta. El saldo al cierre del
+	 * último día se obtiene deshaciendo desde el saldo actual las operaciones
+	 * posteriores; después se recorre el mes hacia atrás deshaciendo las de cada
+	 * día.
+	 *
+	 * @param mes      primer día del mes.
+	 * @param saldo    saldo actual de la cuenta bloqueada, en céntimos.
+	 * @param netos    variación del saldo de cada día desde el inicio del mes.
+	 * @param apertura fecha de creación de la cuenta, o {@code null}.
+	 * @return los intereses en céntimos, redondeados al céntimo.
+	 */
+	private long intereses(LocalDate mes, long saldo, Map<LocalDate, Long> netos, LocalDate apertura) {
+		LocalDate fin = mes.plusMonths(1).minusDays(1);
+		for (Map.Entry<LocalDate, Long> neto : netos.entrySet()) {
+			if (neto.getKey().isAfter(fin)) {
+				saldo = Dinero.restar(saldo, neto.getValue());
+			}
+		}
+		long sumaSaldos = 0;
+		for (LocalDate dia = fin; !dia.isBefore(mes) && (apertura == null || !dia.isBefore(apertura)); dia = dia
+				.minusDays(1)) {
+			sumaSaldos = Dinero.sumar(sumaSaldos, saldo);
+			saldo = Dinero.restar(saldo, netos.getOrDefault(dia, 0L));
+		}
+		return BigDecimal.valueOf(sumaSaldos).multiply(tasaAnual).divide(BASE, 0, RoundingMode.HALF_EVEN)
+				.longValueExact();
+	}
+}
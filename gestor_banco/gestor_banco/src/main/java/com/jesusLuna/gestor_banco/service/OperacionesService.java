@@ -3,17 +3,23 @@ package com.jesusLuna.gestor_banco.service;
 import java.util.Date;
 import java.util.List;
 
+import com.jesusLuna.gestor_banco.dto.FiltroOperaciones;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
 import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
 
 
 public interface OperacionesService {
 
-	public List<Operacion> obtenerOperaciones();
+	public PaginaKeyset<OperacionResumen> obtenerActividad(TipoOperacion tipo, String cursor, int tamanyo);
+
+	public PaginaKeyset<OperacionResumen> obtenerHistorialCuenta(String numeroCuenta, String cursor, int tamanyo);
+
+	public PaginaKeyset<OperacionResumen> buscarOperaciones(FiltroOperaciones filtro, String cursor, int tamanyo);
 
 	public Operacion obtenerPorCodigo(long id);
 
 	public void insertarOperaciones(Operacion o);
 
-	public void eliminarOperacion(long codigo);
-
 }
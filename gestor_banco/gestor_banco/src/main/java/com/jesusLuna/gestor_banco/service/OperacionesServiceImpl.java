@@ -1,15 +1,26 @@
 package com.jesusLuna.gestor_banco.service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.jesusLuna.gestor_banco.dto.FiltroOperaciones;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
+import com.jesusLuna.gestor_banco.entity.Dinero;
 import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
 import com.jesusLuna.gestor_banco.exception.OperacionNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+import com.jesusLuna.gestor_banco.methods.CursorKeyset;
 import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
 
 
@@ -23,17 +34,222 @@ import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
 @Service
 public class OperacionesServiceImpl implements OperacionesService {
 
+	/** Tamaño máximo de página del historial de operaciones. */
+	private static final int TAMANYO_MAXIMO_PAGINA = 200;
+
 	@Autowired
 	private OperacionesRepo operacionesRepo;
 
+	@Autowired
+	private SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	/**
+	 * Obtiene una página de la actividad de todas las cuentas, de la operación
+	 * más reciente a la más antigua, con paginación por clave sobre (fecha,
+	 * código). Cada página es una consulta sobre un índice que empieza por la
+	 * fecha, o por el tipo si se filtra, y devuelve proyecciones con el IBAN de la
+	 * cuenta sin cargar entidades. No incluye las operaciones archivadas.
+	 * 
+	 * @param tipo    tipo de operación, o null para todos.
+	 * @param cursor  cursor devuelto en la página anterior, o null para la
+	 *                primera.
+	 * @param tamanyo número de operaciones por página.
+	 * @return la página de operaciones con el cursor de la siguiente.
+	 * @throws ParametroBusquedaException si el cursor o el tamaño no son válidos.
+	 */
+	@Override
+	public PaginaKeyset<OperacionResumen> obtenerActividad(TipoOperacion tipo, String cursor, int tamanyo) {
+		validarTamanyo(tamanyo);
+
+		// Se pide una fila de más para saber si existe una página siguiente
+		Limit limite = Limit.of(tamanyo + 1);
+		List<OperacionResumen> operaciones;
+		if (cursor == null || cursor.isBlank()) {
+			operaciones = tipo == null ? operacionesRepo.findActividadPrimeraPagina(limite)
+					: operacionesRepo.findActividadPorTipoPrimeraPagina(tipo, limite);
+		} else {
+			LocalDate fecha = CursorKeyset.fecha(cursor);
+			long codigo = codigoCursor(cursor);
+			operaciones = tipo == null ? operacionesRepo.findActividadDespuesDe(fecha, codigo, limite)
+					: operacionesRepo.findActividadPorTipoDespuesDe(tipo, fecha, codigo, limite);
+		}
+		return paginar(operaciones, tamanyo);
+	}
+
+	/**
+	 * Obtiene una página del historial de operaciones de una cuenta, de la más
+	 * reciente a la más antigua, con paginación por clave sobre (fecha, código).
+	 * El coste y la memoria por página no dependen del tamaño del historial.
+	 * 
+	 * Cada operación lleva el saldo de la cuenta tras ella. Solo se calcula el de
+	 * la primera operación de la página, a partir de la instantánea de saldo más
+	 * cercana; los demás se obtienen deshaciendo las operaciones de la página.
+	 * 
+	 * Al llegar al horizonte de {@link ArchivoOperacionesService} el historial
+	 * sigue con las operaciones archivadas, con el mismo cursor.
+	 * 
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param cursor       cursor devuelto en la página anterior, o null para la
+	 *                     primera.
+	 * @param tamanyo      número de operaciones por página.
+	 * @return la página de operaciones con el cursor de la siguiente.
+	 * @throws ParametroBusquedaException si el cursor o el tamaño no son válidos.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public PaginaKeyset<OperacionResumen> obtenerHistorialCuenta(String numeroCuenta, String cursor, int tamanyo) {
+		validarTamanyo(tamanyo);
+
+		// Se pide una fila de más para saber si existe una página siguiente
+		Limit limite = Limit.of(tamanyo + 1);
+		List<OperacionResumen> operaciones;
+		LocalDate fecha = null;
+		long codigo = 0;
+		if (cursor == null || cursor.isBlank()) {
+			operaciones = operacionesRepo.findHistorialPrimeraPagina(numeroCuenta, limite);
+		} else {
+			fecha = CursorKeyset.fecha(cursor);
+			codigo = codigoCursor(cursor);
+			operaciones = operacionesRepo.findHistorialDespuesDe(numeroCuenta, fecha, codigo, limite);
+		}
+		// Solo se acude al archivo cuando la página llega más atrás del horizonte
+		if (operaciones.size() <= tamanyo
+				|| operaciones.get(tamanyo).getFecha().isBefore(archivoOperacionesService.horizonte())) {
+			operaciones = completarConArchivo(numeroCuenta, operaciones, fecha, codigo, tamanyo + 1);
+		}
+		PaginaKeyset<OperacionResumen> pagina = paginar(operaciones, tamanyo);
+		anotarSaldos(numeroCuenta, pagina.getElementos());
+		return pagina;
+	}
+
+	/**
+	 * Mezcla una página del historial con las operaciones archivadas anteriores
+	 * al cursor, en el mismo orden, y se queda con las {@code limite} primeras.
+	 */
+	private List<OperacionResumen> completarConArchivo(String numeroCuenta, List<OperacionResumen> operaciones,
+			LocalDate fecha, long codigo, int limite) {
+		List<OperacionResumen> archivadas = archivoOperacionesService.historialAnterior(numeroCuenta, fecha, codigo,
+				limite);
+		if (archivadas.isEmpty()) {
+			return operaciones;
+		}
+		List<OperacionResumen> todas = new ArrayList<>(operaciones);
+		todas.addAll(archivadas);
+		todas.sort(Comparator.comparing(OperacionResumen::getFecha).thenComparingLong(OperacionResumen::getCodigo)
+				.reversed());
+		return todas.subList(0, Math.min(limite, todas.size()));
+	}
+
+	/**
+	 * Informa el saldo tras cada operación de una página del historial, ordenada
+	 * de la más reciente a la más antigua.
+	 */
+	private void anotarSaldos(String numeroCuenta, List<OperacionResumen> operaciones) {
+		if (operaciones.isEmpty()) {
+			return;
+		}
+		OperacionResumen primera = operaciones.get(0);
+		long saldo = saldoHistoricoService.saldoTras(numeroCuenta, primera.getFecha(), primera.getCodigo());
+		for (OperacionResumen op : operaciones) {
+			op.setSaldo(Dinero.deCentimos(saldo));
+			saldo = Dinero.restar(saldo, op.getTipo().importe(op.getCantidad().getCentimos()));
+		}
+	}
+
 	/**
-	 * Obtiene la lista de todas las operaciones ordenadas por fecha descendente.
+	 * Busca operaciones por cuenta, tipos, rango de fechas, rango de cantidades y
+	 * cuenta de la contraparte, de la más reciente a la más antigua. Solo los
+	 * criterios informados se trasladan a la consulta, que pagina por clave sobre
+	 * (fecha, código) igual que el historial.
 	 * 
-	 * @return una lista de operaciones ordenadas por fecha (más reciente primero)
+	 * @param filtro  criterios de búsqueda; los campos nulos no filtran.
+	 * @param cursor  cursor devuelto en la página anterior, o null para la
+	 *                primera.
+	 * @param tamanyo número de operaciones por página.
+	 * @return la página de operaciones con el cursor de la siguiente.
+	 * @throws ParametroBusquedaException si algún criterio, el cursor o el tamaño
+	 *                                    no son válidos.
 	 */
 	@Override
-	public List<Operacion> obtenerOperaciones() {
-		return operacionesRepo.findAll(Sort.by(Sort.Direction.DESC, "fecha"));
+	public PaginaKeyset<OperacionResumen> buscarOperaciones(FiltroOperaciones filtro, String cursor, int tamanyo) {
+		validarTamanyo(tamanyo);
+		FiltroOperaciones normalizado = FiltroOperaciones.builder()
+				.numeroCuenta(normalizarIban(filtro.getNumeroCuenta()))
+				.cuentaContraparte(normalizarIban(filtro.getCuentaContraparte()))
+				.tipos(filtro.getTipos())
+				.fechaDesde(filtro.getFechaDesde())
+				.fechaHasta(filtro.getFechaHasta())
+				.cantidadMinima(filtro.getCantidadMinima())
+				.cantidadMaxima(filtro.getCantidadMaxima())
+				.build();
+		if (normalizado.getFechaDesde() != null && normalizado.getFechaHasta() != null
+				&& normalizado.getFechaDesde().isAfter(normalizado.getFechaHasta())) {
+			throw new ParametroBusquedaException("La fecha inicial no puede ser posterior a la final.");
+		}
+		if (normalizado.getCantidadMinima() != null && normalizado.getCantidadMaxima() != null
+				&& normalizado.getCantidadMinima().compareTo(normalizado.getCantidadMaxima()) > 0) {
+			throw new ParametroBusquedaException("La cantidad mínima no puede ser mayor que la máxima.");
+		}
+
+		List<OperacionResumen> operaciones;
+		if (cursor == null || cursor.isBlank()) {
+			operaciones = operacionesRepo.buscarOperaciones(normalizado, null, 0, tamanyo + 1);
+		} else {
+			operaciones = operacionesRepo.buscarOperaciones(normalizado, CursorKeyset.fecha(cursor),
+					codigoCursor(cursor), tamanyo + 1);
+		}
+		return paginar(operaciones, tamanyo);
+	}
+
+	private static void validarTamanyo(int tamanyo) {
+		if (tamanyo < 1 || tamanyo > TAMANYO_MAXIMO_PAGINA) {
+			throw new ParametroBusquedaException(
+					"El tamaño de página debe estar entre 1 y " + TAMANYO_MAXIMO_PAGINA + ".");
+		}
+	}
+
+	private static long codigoCursor(String cursor) {
+		try {
+			return Long.parseLong(CursorKeyset.desempate(cursor));
+		} catch (NumberFormatException e) {
+			throw new ParametroBusquedaException("Cursor de paginación no válido.");
+		}
+	}
+
+	/**
+	 * Recorta la fila de más pedida a la consulta y calcula el cursor de la página
+	 * siguiente.
+	 */
+	private static PaginaKeyset<OperacionResumen> paginar(List<OperacionResumen> operaciones, int tamanyo) {
+		boolean hayMas = operaciones.size() > tamanyo;
+		String siguiente = null;
+		if (hayMas) {
+			operaciones = operaciones.subList(0, tamanyo);
+			OperacionResumen ultima = operaciones.get(operaciones.size() - 1);
+			siguiente = CursorKeyset.codificar(ultima.getFecha(), String.valueOf(ultima.getCodigo()));
+		}
+		return new PaginaKeyset<>(operaciones, hayMas, siguiente);
+	}
+
+	/**
+	 * Quita los espacios y pasa a mayúsculas un IBAN de búsqueda. Devuelve
+	 * {@code null} si no se ha indicado.
+	 */
+	private static String normalizarIban(String iban) {
+		if (iban == null) {
+			return null;
+		}
+		String normalizado = iban.replaceAll("\\s", "").toUpperCase();
+		if (normalizado.isEmpty()) {
+			return null;
+		}
+		if (!normalizado.matches("[A-Z0-9]+")) {
+			throw new ParametroBusquedaException("El número de cuenta solo puede contener letras y dígitos.");
+		}
+		return normalizado;
 	}
 
 	/**
@@ -62,21 +278,4 @@ public class OperacionesServiceImpl implements OperacionesService {
 	public void insertarOperaciones(Operacion o) {
 		operacionesRepo.save(o);
 	}
-
-	/**
-	 * Elimina una operación de la base de datos por su identificador.
-	 * 
-	 * @param codigo el ID de la operación a eliminar
-	 * @throws OperacionNoEncontradaException si no se encuentra la operación
-	 */
-	@Override
-	public void eliminarOperacion(long codigo) {
-		Optional<Operacion> operacion = operacionesRepo.findById(codigo);
-		if (operacion.isPresent()) {
-			operacionesRepo.deleteById(codigo);
-		} else {
-			throw new OperacionNoEncontradaException(
-					"No se puede eliminar, la operación con el ID " + codigo + " no fue encontrada.");
-		}
-	}
 }
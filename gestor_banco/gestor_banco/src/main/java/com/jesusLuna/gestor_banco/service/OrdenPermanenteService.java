@@ -0,0 +1,22 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.jesusLuna.gestor_banco.dto.ResultadoOrdenes;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente.Periodicidad;
+
+public interface OrdenPermanenteService {
+
+	public OrdenPermanente crear(String cuentaOrigen, String cuentaDestino, Dinero cantidad, String concepto,
+			Periodicidad periodicidad, LocalDate fechaInicio, LocalDate fechaFin);
+
+	public List<OrdenPermanente> obtenerOrdenes(String cuentaOrigen);
+
+	public void cancelar(String cuentaOrigen, long id);
+
+	public ResultadoOrdenes ejecutarVencidas();
+
+}
@@ -0,0 +1,458 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.dto.ResultadoOrdenes;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente.Periodicidad;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.OrdenPermanenteNoEncontradaException;
+import com.jesusLuna.gestor_banco.methods.Methods;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OrdenPermanenteRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación de las órdenes permanentes y de su planificador.
+ *
+ * Cada pasada ejecuta las órdenes con {@code proximaEjecucion} hasta hoy en
+ * {@code ordenes.permanentes.hilos} hilos. Cada hilo repite dos transacciones
+ * cortas hasta que no quedan órdenes vencidas libres:
+ * <ol>
+ * <li>Reserva: toma por el índice {@code idx_orden_proxima_ejecucion} hasta
+ * {@value #ORDENES_POR_LOTE} órdenes vencidas sin reserva vigente, con
+ * {@code FOR UPDATE}, y les pone una reserva propia que vence a los
+ * {@code ordenes.permanentes.reserva-minutos} minutos.</li>
+ * <li>Ejecución: vuelve a bloquear las órdenes que siguen teniendo esa reserva
+ * y siguen vencidas, contabiliza los cargos y los abonos con
+ * {@link ContabilizadorLotes} y avanza la próxima ejecución de cada orden en la
+ * misma transacción.</li>
+ * </ol>
+ * Como los apuntes y el avance de la fecha se confirman juntos, una ejecución
+ * no se repite aunque la aplicación caiga a mitad de lote: si cae, la reserva
+ * vence y otra pasada, de esta instancia o de otra, ejecuta el lote entero. La
+ * comprobación de la reserva al bloquear descarta las órdenes que otra
+ * instancia ha vuelto a reservar entretanto o que se han cancelado.
+ *
+ * Una orden con varias fechas atrasadas se ejecuta una vez por fecha en la
+ * misma pasada, porque al terminar su lote vuelve a estar vencida y libre.
+ *
+ * Un lote que pierde un interbloqueo o agota la espera de un bloqueo se
+ * reintenta hasta {@value #INTENTOS_POR_LOTE} veces. Si aun así falla, se
+ * libera su reserva para que lo ejecute la siguiente pasada, y esta ya no lo
+ * vuelve a tomar.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class OrdenPermanenteServiceImpl implements OrdenPermanenteService {
+
+	/** Órdenes que se reservan y ejecutan en cada transacción. */
+	private static final int ORDENES_POR_LOTE = 200;
+
+	/** Veces que se intenta un lote que falla por un bloqueo. */
+	private static final int INTENTOS_POR_LOTE = 5;
+
+	/** Espera antes del segundo intento de un lote; crece con cada intento. */
+	private static final long ESPERA_REINTENTO_MS = 50;
+
+	@Value("${ordenes.permanentes.hilos:4}")
+	private int hilos;
+
+	@Value("${ordenes.permanentes.reserva-minutos:10}")
+	private int reservaMinutos;
+
+	@Autowired
+	private OrdenPermanenteRepo ordenPermanenteRepo;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private ContabilizadorLotes contabilizadorLotes;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	/** Nombre de esta instancia en las reservas, para saber quién las tiene. */
+	private final String instancia = nombreInstancia();
+
+	private final AtomicBoolean ejecutando = new AtomicBoolean();
+
+	/**
+	 * Da de alta una orden permanente. La primera ejecución es la fecha de
+	 * inicio.
+	 *
+	 * @param cuentaOrigen  IBAN de la cuenta del banco que paga.
+	 * @param cuentaDestino IBAN de la cuenta que cobra, del banco o externa.
+	 * @param cantidad      cantidad de cada transferencia.
+	 * @param concepto      concepto de los apuntes.
+	 * @param periodicidad  cada cuánto se repite.
+	 * @param fechaInicio   fecha de la primera ejecución; hoy o posterior.
+	 * @param fechaFin      última fecha posible, o {@code null}.
+	 * @return la orden guardada.
+	 * @throws CuentaNoEncontradaException si la cuenta de origen no existe.
+	 * @throws IllegalArgumentException    si algún dato no es válido.
+	 */
+	@Override
+	@Transactional
+	public OrdenPermanente crear(String cuentaOrigen, String cuentaDestino, Dinero cantidad, String concepto,
+			Periodicidad periodicidad, LocalDate fechaInicio, LocalDate fechaFin) {
+		if (cuentaOrigen == null || !cuentaBancRepo.existsById(cuentaOrigen)) {
+			throw new CuentaNoEncontradaException("Cuenta bancaria no encontrada: " + cuentaOrigen);
+		}
+		if (cuentaDestino == null || !ibanValido(cuentaDestino)) {
+			throw new IllegalArgumentException("El IBAN de destino no es válido.");
+		}
+		if (cuentaOrigen.equals(cuentaDestino)) {
+			throw new IllegalArgumentException("La cuenta de origen y la de destino deben ser distintas.");
+		}
+		if (cantidad == null || !cantidad.esPositivo()) {
+			throw new IllegalArgumentException("La cantidad debe ser mayor que 0.");
+		}
+		if (concepto == null || concepto.isBlank() || concepto.length() > 255) {
+			throw new IllegalArgumentException("El concepto es obligatorio y no puede superar 255 caracteres.");
+		}
+		if (periodicidad == null) {
+			throw new IllegalArgumentException("La periodicidad es obligatoria.");
+		}
+		if (fechaInicio == null || fechaInicio.isBefore(LocalDate.now())) {
+			throw new IllegalArgumentException("La fecha de inicio no puede ser anterior a hoy.");
+		}
+		if (fechaFin != null && fechaFin.isBefore(fechaInicio)) {
+			throw new IllegalArgumentException("La fecha de fin no puede ser anterior a la de inicio.");
+		}
+
+		OrdenPermanente orden = new OrdenPermanente(null, cuentaOrigen, cuentaDestino, cantidad, concepto.strip(),
+				periodicidad, fechaInicio, fechaFin, 0, fechaInicio, null, null, null);
+		return ordenPermanenteRepo.save(orden);
+	}
+
+	/**
+	 * Obtiene las órdenes que paga una cuenta, incluidas las terminadas.
+	 *
+	 * @param cuentaOrigen IBAN de la cuenta.
+	 * @return sus órdenes, de la más antigua a la más reciente.
+	 */
+	@Override
+	public List<OrdenPermanente> obtenerOrdenes(String cuentaOrigen) {
+		return ordenPermanenteRepo.findByCuentaOrigenOrderById(cuentaOrigen);
+	}
+
+	/**
+	 * Cancela una orden: deja de ejecutarse, pero se conserva con sus
+	 * ejecuciones pasadas.
+	 *
+	 * @param cuentaOrigen IBAN de la cuenta que la paga.
+	 * @param id           identificador de la orden.
+	 * @throws OrdenPermanenteNoEncontradaException si la orden no existe o no es
+	 *                                              de la cuenta.
+	 */
+	@Override
+	@Transactional
+	public void cancelar(String cuentaOrigen, long id) {
+		if (ordenPermanenteRepo.cancelar(id, cuentaOrigen) == 0) {
+			throw new OrdenPermanenteNoEncontradaException("Orden permanente no encontrada: " + id);
+		}
+	}
+
+	/**
+	 * Ejecuta las órdenes vencidas hasta hoy. Se ejecuta según
+	 * {@code ordenes.permanentes.cron}; varias instancias de la aplicación
+	 * pueden ejecutarlo a la vez y se reparten las órdenes.
+	 *
+	 * @return lo ejecutado en esta pasada.
+	 * @throws IllegalStateException si ya hay una pasada en curso en esta
+	 *                               instancia.
+	 */
+	@Override
+	@Scheduled(cron = "${ordenes.permanentes.cron:-}")
+	public ResultadoOrdenes ejecutarVencidas() {
+		if (!ejecutando.compareAndSet(false, true)) {
+			throw new IllegalStateException("Ya hay una ejecución de órdenes permanentes en curso.");
+		}
+		long inicio = System.currentTimeMillis();
+		LocalDate hoy = LocalDate.now();
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		Set<Long> fallidas = ConcurrentHashMap.newKeySet();
+		try {
+			List<Future<long[]>> trabajadores = new ArrayList<>(hilos);
+			for (int i = 0; i < hilos; i++) {
+				trabajadores.add(ejecutor.submit(() -> trabajar(hoy, fallidas)));
+			}
+
+			long[] totales = new long[4];
+			for (Future<long[]> trabajador : trabajadores) {
+				try {
+					long[] parcial = trabajador.get();
+					for (int i = 0; i < totales.length; i++) {
+						totales[i] += parcial[i];
+					}
+				} catch (ExecutionException e) {
+					log.error("Un hilo de las órdenes permanentes terminó con error", e.getCause());
+				}
+			}
+			long milisegundos = System.currentTimeMillis() - inicio;
+			log.info("Órdenes permanentes ejecutadas: {} contabilizadas, {} rechazadas en {} lotes "
+					+ "({} fallidos) en {} ms", totales[0], totales[1], totales[2], totales[3], milisegundos);
+			return new ResultadoOrdenes(totales[0], totales[1], (int) totales[2], (int) totales[3], milisegundos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Ejecución de órdenes permanentes interrumpida.", e);
+		} finally {
+			ejecutor.shutdownNow();
+			ejecutando.set(false);
+		}
+	}
+
+	/**
+	 * Reserva y ejecuta lotes hasta que no quedan órdenes vencidas libres.
+	 * Devuelve las ejecuciones contabilizadas, las rechazadas, los lotes y los
+	 * lotes fallidos. Las órdenes de un lote fallido se liberan y se anotan en
+	 * {@code fallidas}, que ningún hilo de esta pasada vuelve a reservar.
+	 */
+	private long[] trabajar(LocalDate hoy, Set<Long> fallidas) {
+		long[] totales = new long[4];
+		while (true) {
+			String reserva = instancia + "/" + UUID.randomUUID();
+			List<Long> ids = transactionTemplate.execute(estado -> reservar(hoy, reserva, fallidas));
+			if (ids.isEmpty()) {
+				return totales;
+			}
+			totales[2]++;
+			try {
+				long[] lote = ejecutarLoteConReintentos(ids, reserva, hoy);
+				totales[0] += lote[0];
+				totales[1] += lote[1];
+			} catch (RuntimeException e) {
+				totales[3]++;
+				fallidas.addAll(ids);
+				log.error("No se pudo ejecutar el lote de órdenes permanentes {} a {}; se reintentará en la "
+						+ "siguiente pasada", ids.get(0), ids.get(ids.size() - 1), e);
+				liberar(ids, reserva);
+			}
+		}
+	}
+
+	/**
+	 * Ejecuta un lote en su propia transacción. Si falla por un bloqueo, la
+	 * transacción se ha deshecho y las órdenes siguen reservadas por este hilo,
+	 * así que basta con volver a ejecutarla.
+	 */
+	private long[] ejecutarLoteConReintentos(List<Long> ids, String reserva, LocalDate hoy) {
+		for (int intento = 1;; intento++) {
+			try {
+				return transactionTemplate.execute(estado -> ejecutarLote(ids, reserva, hoy));
+			} catch (PessimisticLockingFailureException e) {
+				if (intento == INTENTOS_POR_LOTE) {
+					throw e;
+				}
+				log.warn("Bloqueo al ejecutar el lote de órdenes permanentes {} a {} (intento {} de {}): {}",
+						ids.get(0), ids.get(ids.size() - 1), intento, INTENTOS_POR_LOTE, e.getMessage());
+				try {
+					Thread.sleep(ESPERA_REINTENTO_MS * intento);
+				} catch (InterruptedException interrupcion) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Ejecución de órdenes permanentes interrumpida.", interrupcion);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Quita la reserva de las órdenes de un lote fallido que aún la conservan.
+	 * Si tampoco se puede, la reserva vencerá por sí sola.
+	 */
+	private void liberar(List<Long> ids, String reserva) {
+		List<Object> argumentos = new ArrayList<>(ids);
+		argumentos.add(reserva);
+		try {
+			jdbcTemplate.update("UPDATE dam_orden_permanente SET bloqueada_por = NULL, bloqueada_hasta = NULL "
+					+ "WHERE id IN (" + marcas(ids.size()) + ") AND bloqueada_por = ?", argumentos.toArray());
+		} catch (RuntimeException e) {
+			log.warn("No se pudo liberar la reserva {} de las órdenes permanentes", reserva, e);
+		}
+	}
+
+	/**
+	 * Reserva en la transacción en curso el siguiente lote de órdenes vencidas
+	 * sin reserva vigente. El {@code FOR UPDATE} hace esperar a los demás hilos
+	 * e instancias hasta que la reserva se confirma, y entonces ya no ven esas
+	 * órdenes como libres. Las órdenes de {@code excluidas} no se reservan.
+	 */
+	private List<Long> reservar(LocalDate hoy, String reserva, Set<Long> excluidas) {
+		LocalDateTime ahora = LocalDateTime.now();
+		List<Object> filtro = new ArrayList<>(excluidas.size() + 3);
+		filtro.add(hoy);
+		filtro.add(ahora);
+		filtro.addAll(excluidas);
+		filtro.add(ORDENES_POR_LOTE);
+		List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM dam_orden_permanente "
+				+ "WHERE proxima_ejecucion <= ? AND (bloqueada_hasta IS NULL OR bloqueada_hasta < ?) "
+				+ (filtro.size() > 3 ? "AND id NOT IN (" + marcas(filtro.size() - 3) + ") " : "")
+				+ "ORDER BY proxima_ejecucion, id LIMIT ? FOR UPDATE", Long.class, filtro.toArray());
+		if (!ids.isEmpty()) {
+			List<Object> argumentos = new ArrayList<>(ids.size() + 2);
+			argumentos.add(reserva);
+			argumentos.add(ahora.plusMinutes(reservaMinutos));
+			argumentos.addAll(ids);
+			jdbcTemplate.update("UPDATE dam_orden_permanente SET bloqueada_por = ?, bloqueada_hasta = ? WHERE id IN ("
+					+ marcas(ids.size()) + ")", argumentos.toArray());
+		}
+		return ids;
+	}
+
+	/**
+	 * Ejecuta en la transacción en curso las órdenes de un lote que siguen
+	 * teniendo la reserva indicada y siguen vencidas. Todas las cuentas del lote
+	 * se bloquean a la vez en orden de IBAN antes de contabilizar, para que dos
+	 * lotes simultáneos no se interbloqueen entre los cargos y los abonos. Los
+	 * apuntes llevan la fecha prevista de la orden, o la de hoy si esa fecha ya
+	 * está archivada. Devuelve las ejecuciones contabilizadas y las rechazadas.
+	 */
+	private long[] ejecutarLote(List<Long> ids, String reserva, LocalDate hoy) {
+		List<Object> argumentos = new ArrayList<>(ids);
+		argumentos.add(reserva);
+		argumentos.add(hoy);
+		List<OrdenPermanente> ordenes = jdbcTemplate.query("SELECT id, cuenta_origen, cuenta_destino, "
+				+ "cantidad_centimos, concepto, periodicidad, fecha_inicio, fecha_fin, ejecuciones, proxima_ejecucion "
+				+ "FROM dam_orden_permanente WHERE id IN (" + marcas(ids.size()) + ") AND bloqueada_por = ? "
+				+ "AND proxima_ejecucion <= ? ORDER BY id FOR UPDATE",
+				(rs, fila) -> new OrdenPermanente(rs.getLong(1), rs.getString(2), rs.getString(3),
+						Dinero.deCentimos(rs.getLong(4)), rs.getString(5), Periodicidad.valueOf(rs.getString(6)),
+						rs.getObject(7, LocalDate.class), rs.getObject(8, LocalDate.class), rs.getInt(9),
+						rs.getObject(10, LocalDate.class), null, reserva, null),
+				argumentos.toArray());
+
+		long[] resultado = new long[2];
+		if (!ordenes.isEmpty()) {
+			Set<String> cuentas = new TreeSet<>();
+			for (OrdenPermanente orden : ordenes) {
+				cuentas.add(orden.getCuentaOrigen());
+				cuentas.add(orden.getCuentaDestino());
+			}
+			Set<String> internas = new HashSet<>();
+			for (Object[] fila : cuentaBancRepo.bloquearSaldos(cuentas)) {
+				internas.add((String) fila[0]);
+			}
+
+			// Cargos y abonos en una sola llamada, para que sumen a los resúmenes en
+			// un único lote en orden de clave; cada abono depende de su cargo
+			LocalDate horizonte = archivoOperacionesService.bloquearHorizonte();
+			List<Apunte> apuntes = new ArrayList<>(ordenes.size() * 2);
+			List<Apunte> abonos = new ArrayList<>(ordenes.size());
+			for (OrdenPermanente orden : ordenes) {
+				LocalDate fecha = orden.getProximaEjecucion().isBefore(horizonte) ? hoy : orden.getProximaEjecucion();
+				apuntes.add(new Apunte(orden.getId(), orden.getCuentaOrigen(), TipoOperacion.RetiradaTransferencia,
+						orden.getCantidad().getCentimos(), fecha, orden.getConcepto(), orden.getCuentaDestino()));
+			}
+			for (int i = 0; i < ordenes.size(); i++) {
+				OrdenPermanente orden = ordenes.get(i);
+				if (internas.contains(orden.getCuentaDestino())) {
+					Apunte cargo = apuntes.get(i);
+					Apunte abono = new Apunte(orden.getId(), orden.getCuentaDestino(),
+							TipoOperacion.EntradaTransferencia, cargo.getCentimos(), cargo.getFecha(),
+							orden.getConcepto(), orden.getCuentaOrigen());
+					abono.setCondicion(cargo);
+					abonos.add(abono);
+				}
+			}
+			apuntes.addAll(abonos);
+			contabilizadorLotes.contabilizar(apuntes);
+
+			List<Object[]> filas = new ArrayList<>(ordenes.size());
+			for (int i = 0; i < ordenes.size(); i++) {
+				OrdenPermanente orden = ordenes.get(i);
+				Apunte cargo = apuntes.get(i);
+				if (cargo.getRechazo() == null) {
+					resultado[0]++;
+				} else {
+					resultado[1]++;
+				}
+				int ejecuciones = orden.getEjecuciones() + 1;
+				filas.add(new Object[] { ejecuciones, orden.fechaEjecucion(ejecuciones),
+						cargo.getRechazo() == null ? null : cargo.getRechazo().getMessage(), orden.getId() });
+			}
+			for (Apunte abono : abonos) {
+				if (abono.getRechazo() != null && abono.getCondicion().getRechazo() == null) {
+					throw new IllegalStateException("No se pudo abonar la orden permanente " + abono.getLinea() + ".",
+							abono.getRechazo());
+				}
+			}
+			jdbcTemplate.batchUpdate("UPDATE dam_orden_permanente SET ejecuciones = ?, proxima_ejecucion = ?, "
+					+ "ultimo_rechazo = ? WHERE id = ?", filas);
+		}
+
+		argumentos = new ArrayList<>(ids);
+		argumentos.add(reserva);
+		jdbcTemplate.update("UPDATE dam_orden_permanente SET bloqueada_por = NULL, bloqueada_hasta = NULL "
+				+ "WHERE id IN (" + marcas(ids.size()) + ") AND bloqueada_por = ?", argumentos.toArray());
+		return resultado;
+	}
+
+	private static String marcas(int numero) {
+		return String.join(", ", Collections.nCopies(numero, "?"));
+	}
+
+	private static boolean ibanValido(String iban) {
+		try {
+			return Methods.validarIBAN(iban);
+		} catch (NumberFormatException e) {
+			// Caracteres que no son letras ni dígitos
+			return false;
+		}
+	}
+
+	/**
+	 * Nombre del equipo más un sufijo aleatorio, para distinguir dos instancias
+	 * en el mismo equipo. Cabe con el identificador de la reserva en la columna
+	 * {@code Bloqueada_Por}.
+	 */
+	private static String nombreInstancia() {
+		String equipo;
+		try {
+			equipo = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			equipo = "desconocido";
+		}
+		if (equipo.length() > 18) {
+			equipo = equipo.substring(0, 18);
+		}
+		return equipo + "-" + UUID.randomUUID().toString().substring(0, 8);
+	}
+}
@@ -0,0 +1,30 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.jesusLuna.gestor_banco.dto.AgrupacionResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoReconstruccion;
+import com.jesusLuna.gestor_banco.dto.ResumenOperaciones;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+
+public interface ResumenOperacionesService {
+
+	public List<ResumenOperaciones> obtenerResumenCuenta(String numeroCuenta, LocalDate desde, LocalDate hasta,
+			AgrupacionResumen agrupacion);
+
+	public List<ResumenOperaciones> obtenerResumenTiposCuenta(TipoCuenta tipoCuenta, LocalDate desde, LocalDate hasta,
+			AgrupacionResumen agrupacion);
+
+	public void sumar(List<Operacion> operaciones);
+
+	public void sumar(IncrementosResumen incrementos);
+
+	public void cambiarTipoCuenta(String numeroCuenta, TipoCuenta tipoCuenta);
+
+	public void descontarCuenta(String numeroCuenta);
+
+	public ResultadoReconstruccion reconstruir();
+
+}
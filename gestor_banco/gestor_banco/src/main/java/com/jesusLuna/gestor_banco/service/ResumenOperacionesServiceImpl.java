@@ -0,0 +1,497 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.dto.AgrupacionResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoReconstruccion;
+import com.jesusLuna.gestor_banco.dto.ResumenOperaciones;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.ResumenCuentaDia;
+import com.jesusLuna.gestor_banco.entity.ResumenTipoCuentaDia;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenTipoCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.service.IncrementosResumen.FilaCuenta;
+import com.jesusLuna.gestor_banco.service.IncrementosResumen.FilaTipoCuenta;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación del servicio de resúmenes de operaciones.
+ *
+ * Cada operación que se contabiliza suma en la misma transacción a dos filas:
+ * la de su cuenta, día y tipo ({@link ResumenCuentaDia}) y la del tipo de su
+ * cuenta ({@link ResumenTipoCuentaDia}). Cada suma es un
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE} que inserta la fila o incrementa
+ * sus contadores sin leerlos, y todas las de una transacción se envían en un
+ * único lote JDBC en orden de clave. Las consultas de los informes leen
+ * únicamente estas filas, y los totales mensuales suman los días del mes.
+ *
+ * Quien modifica el saldo de una cuenta debe sumar sus operaciones con
+ * {@link #sumar(List)} o {@link #sumar(IncrementosResumen)} después de
+ * modificarlo, con la fila de la cuenta ya bloqueada, y una sola vez por
+ * transacción: dos sumas separadas podrían bloquear las filas por tipo de
+ * cuenta en distinto orden que otra transacción.
+ *
+ * {@link #reconstruir()} vuelve a calcular los resúmenes a partir de las
+ * operaciones, por bloques de cuentas en paralelo, sin detener la
+ * contabilización de las demás cuentas.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class ResumenOperacionesServiceImpl implements ResumenOperacionesService {
+
+	/** Días que puede abarcar como mucho una consulta de resúmenes. */
+	static final int MAX_DIAS_CONSULTA = 3_660;
+
+	/** Filas que se envían en cada lote JDBC. */
+	private static final int FILAS_POR_LOTE = 1_000;
+
+	/** Cuentas de cada bloque que se reconstruye en su propia transacción. */
+	private static final int CUENTAS_POR_BLOQUE = 500;
+
+	private static final String SUMAR_CUENTA = "INSERT INTO dam_resumen_cuenta_dia "
+			+ "(cuenta_id, fecha, tipo, num_operaciones, total_centimos) VALUES (?, ?, ?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE num_operaciones = num_operaciones + VALUES(num_operaciones), "
+			+ "total_centimos = total_centimos + VALUES(total_centimos)";
+
+	private static final String SUMAR_TIPO_CUENTA = "INSERT INTO dam_resumen_tipo_cuenta_dia "
+			+ "(tipo_cuenta, fecha, franja, tipo, num_operaciones, total_centimos) VALUES (?, ?, ?, ?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE num_operaciones = num_operaciones + VALUES(num_operaciones), "
+			+ "total_centimos = total_centimos + VALUES(total_centimos)";
+
+	/**
+	 * Las filas por cuenta, con el tipo actual de su cuenta, y las filas por tipo
+	 * de cuenta con signo contrario, desde una fecha. Al ser una sola sentencia
+	 * las dos tablas se leen en el mismo instante, y lo que queda al sumarlas por
+	 * fila es lo que se ha desviado cada fila por tipo de cuenta.
+	 */
+	private static final String DESVIOS_TIPO_CUENTA = "SELECT c.tipo_cuenta, r.fecha, r.cuenta_id, 0, r.tipo, "
+			+ "r.num_operaciones, r.total_centimos FROM dam_resumen_cuenta_dia r "
+			+ "JOIN dam_cuenta_bancaria c ON c.numero_cuenta = r.cuenta_id WHERE r.fecha >= ? "
+			+ "UNION ALL SELECT t.tipo_cuenta, t.fecha, NULL, t.franja, t.tipo, -t.num_operaciones, "
+			+ "-t.total_centimos FROM dam_resumen_tipo_cuenta_dia t WHERE t.fecha >= ?";
+
+	/** Orden de los totales devueltos: periodo, tipo de cuenta y tipo de operación. */
+	private static final Comparator<ResumenOperaciones> ORDEN_RESUMEN = Comparator
+			.comparing(ResumenOperaciones::getPeriodo)
+			.thenComparing(ResumenOperaciones::getTipoCuenta, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparing(ResumenOperaciones::getTipo);
+
+	@Value("${resumenes.reconstruccion.hilos:4}")
+	private int hilos;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private ResumenCuentaDiaRepo resumenCuentaDiaRepo;
+
+	@Autowired
+	private ResumenTipoCuentaDiaRepo resumenTipoCuentaDiaRepo;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final AtomicBoolean reconstruyendo = new AtomicBoolean();
+
+	/**
+	 * Obtiene los totales de las operaciones de una cuenta en un periodo.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param desde        primer día, incluido.
+	 * @param hasta        último día, incluido.
+	 * @param agrupacion   periodo de cada total; por días si es {@code null}.
+	 * @return un total por periodo y tipo de operación con movimientos, en orden
+	 *         de periodo.
+	 * @throws ParametroBusquedaException si falta algún parámetro o el periodo no
+	 *                                    es válido.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<ResumenOperaciones> obtenerResumenCuenta(String numeroCuenta, LocalDate desde, LocalDate hasta,
+			AgrupacionResumen agrupacion) {
+		if (numeroCuenta == null || numeroCuenta.isBlank()) {
+			throw new ParametroBusquedaException("Debe indicarse la cuenta del resumen.");
+		}
+		validarPeriodo(desde, hasta);
+		AgrupacionResumen agrupar = agrupacion == null ? AgrupacionResumen.DIA : agrupacion;
+
+		Map<ResumenOperaciones, long[]> totales = new TreeMap<>(ORDEN_RESUMEN);
+		for (ResumenCuentaDia r : resumenCuentaDiaRepo.findByCuentaAndFechaBetween(numeroCuenta, desde, hasta)) {
+			acumular(totales, agrupar.periodo(r.getFecha()), null, r.getTipo(), r.getNumOperaciones(),
+					r.getTotal().getCentimos());
+		}
+		return resultado(totales);
+	}
+
+	/**
+	 * Obtiene los totales de las operaciones de las cuentas de un tipo, o de
+	 * cada tipo, en un periodo.
+	 *
+	 * @param tipoCuenta el tipo de cuenta; si es {@code null}, todos por separado.
+	 * @param desde      primer día, incluido.
+	 * @param hasta      último día, incluido.
+	 * @param agrupacion periodo de cada total; por días si es {@code null}.
+	 * @return un total por periodo, tipo de cuenta y tipo de operación con
+	 *         movimientos, en orden de periodo.
+	 * @throws ParametroBusquedaException si el periodo no es válido.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<ResumenOperaciones> obtenerResumenTiposCuenta(TipoCuenta tipoCuenta, LocalDate desde,
+			LocalDate hasta, AgrupacionResumen agrupacion) {
+		validarPeriodo(desde, hasta);
+		AgrupacionResumen agrupar = agrupacion == null ? AgrupacionResumen.DIA : agrupacion;
+
+		Map<ResumenOperaciones, long[]> totales = new TreeMap<>(ORDEN_RESUMEN);
+		// Un rango de la clave por tipo, en lugar de recorrer la tabla filtrando por fecha
+		for (TipoCuenta clase : tipoCuenta == null ? TipoCuenta.values() : new TipoCuenta[] { tipoCuenta }) {
+			for (ResumenTipoCuentaDia r : resumenTipoCuentaDiaRepo.findByClaseAndFechaBetween(clase, desde, hasta)) {
+				acumular(totales, agrupar.periodo(r.getFecha()), clase, r.getTipo(), r.getNumOperaciones(),
+						r.getTotal().getCentimos());
+			}
+		}
+		return resultado(totales);
+	}
+
+	/**
+	 * Suma operaciones recién contabilizadas a los resúmenes, tomando el tipo de
+	 * cada cuenta de su propia fila. Debe llamarse una sola vez dentro de la
+	 * transacción que las contabiliza, con todas sus operaciones: las dos patas
+	 * de una transferencia se suman juntas.
+	 *
+	 * @param operaciones las operaciones, con su cuenta.
+	 * @throws CuentaNoEncontradaException si la cuenta de alguna ya no existe.
+	 */
+	@Override
+	public void sumar(List<Operacion> operaciones) {
+		TreeSet<String> numeros = new TreeSet<>();
+		for (Operacion o : operaciones) {
+			numeros.add(o.getCuentaBancaria().getNumeroCuenta());
+		}
+		Map<String, TipoCuenta> tiposCuenta = new HashMap<>();
+		jdbcTemplate.query("SELECT numero_cuenta, tipo_cuenta FROM dam_cuenta_bancaria WHERE numero_cuenta IN ("
+				+ marcas(numeros.size()) + ")", rs -> {
+					tiposCuenta.put(rs.getString(1), TipoCuenta.valueOf(rs.getString(2)));
+				}, numeros.toArray());
+
+		IncrementosResumen incrementos = new IncrementosResumen();
+		for (Operacion o : operaciones) {
+			String numeroCuenta = o.getCuentaBancaria().getNumeroCuenta();
+			TipoCuenta tipoCuenta = tiposCuenta.get(numeroCuenta);
+			if (tipoCuenta == null) {
+				throw new CuentaNoEncontradaException("Cuenta bancaria no encontrada: " + numeroCuenta);
+			}
+			incrementos.sumar(numeroCuenta, tipoCuenta, o.getFecha(), o.getTipo(), 1, o.getCantidad().getCentimos());
+		}
+		sumar(incrementos);
+	}
+
+	/**
+	 * Aplica a los resúmenes los incrementos acumulados, con un
+	 * {@code INSERT ... ON DUPLICATE KEY UPDATE} por fila enviados en lotes JDBC
+	 * en orden de clave. Debe llamarse dentro de la transacción que contabiliza
+	 * las operaciones.
+	 *
+	 * @param incrementos los incrementos por fila.
+	 */
+	@Override
+	public void sumar(IncrementosResumen incrementos) {
+		List<Object[]> filas = new ArrayList<>(incrementos.cuentas.size());
+		for (Map.Entry<FilaCuenta, long[]> e : incrementos.cuentas.entrySet()) {
+			FilaCuenta f = e.getKey();
+			long[] v = e.getValue();
+			if (v[0] != 0 || v[1] != 0) {
+				filas.add(new Object[] { f.cuenta(), f.fecha(), f.tipo().name(), v[0], v[1] });
+			}
+		}
+		ejecutar(SUMAR_CUENTA, filas);
+
+		filas = new ArrayList<>(incrementos.tiposCuenta.size());
+		for (Map.Entry<FilaTipoCuenta, long[]> e : incrementos.tiposCuenta.entrySet()) {
+			FilaTipoCuenta f = e.getKey();
+			long[] v = e.getValue();
+			if (v[0] != 0 || v[1] != 0) {
+				filas.add(new Object[] { f.clase().name(), f.fecha(), f.franja(), f.tipo().name(), v[0], v[1] });
+			}
+		}
+		ejecutar(SUMAR_TIPO_CUENTA, filas);
+	}
+
+	/**
+	 * Pasa los totales de una cuenta del resumen de su tipo actual al del nuevo.
+	 * Bloquea la cuenta, así que debe llamarse en la transacción que cambia su
+	 * tipo, antes de guardarla.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param tipoCuenta   el nuevo tipo de la cuenta.
+	 */
+	@Override
+	@Transactional
+	public void cambiarTipoCuenta(String numeroCuenta, TipoCuenta tipoCuenta) {
+		TipoCuenta anterior = bloquear(numeroCuenta);
+		if (anterior == null || anterior == tipoCuenta) {
+			return;
+		}
+		IncrementosResumen traspaso = new IncrementosResumen();
+		jdbcTemplate.query("SELECT fecha, tipo, num_operaciones, total_centimos FROM dam_resumen_cuenta_dia "
+				+ "WHERE cuenta_id = ?", rs -> {
+					LocalDate fecha = rs.getObject(1, LocalDate.class);
+					TipoOperacion tipo = TipoOperacion.valueOf(rs.getString(2));
+					traspaso.sumarTipoCuenta(numeroCuenta, anterior, fecha, tipo, -rs.getLong(3), -rs.getLong(4));
+					traspaso.sumarTipoCuenta(numeroCuenta, tipoCuenta, fecha, tipo, rs.getLong(3), rs.getLong(4));
+				}, numeroCuenta);
+		sumar(traspaso);
+	}
+
+	/**
+	 * Descuenta los totales de una cuenta del resumen de su tipo y elimina los
+	 * suyos. Bloquea la cuenta, así que debe llamarse en la transacción que la
+	 * elimina, antes de eliminarla.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 */
+	@Override
+	@Transactional
+	public void descontarCuenta(String numeroCuenta) {
+		TipoCuenta tipoCuenta = bloquear(numeroCuenta);
+		if (tipoCuenta == null) {
+			return;
+		}
+		IncrementosResumen descuento = new IncrementosResumen();
+		jdbcTemplate.query("SELECT fecha, tipo, num_operaciones, total_centimos FROM dam_resumen_cuenta_dia "
+				+ "WHERE cuenta_id = ?", rs -> {
+					descuento.sumarTipoCuenta(numeroCuenta, tipoCuenta, rs.getObject(1, LocalDate.class),
+							TipoOperacion.valueOf(rs.getString(2)), -rs.getLong(3), -rs.getLong(4));
+				}, numeroCuenta);
+		sumar(descuento);
+		jdbcTemplate.update("DELETE FROM dam_resumen_cuenta_dia WHERE cuenta_id = ?", numeroCuenta);
+	}
+
+	/**
+	 * Vuelve a calcular los resúmenes a partir de las operaciones.
+	 *
+	 * Las cuentas se recorren una sola vez por la clave primaria, en bloques de
+	 * {@value #CUENTAS_POR_BLOQUE}, y los bloques se reconstruyen en paralelo en
+	 * {@code resumenes.reconstruccion.hilos} hilos, cada uno en su propia
+	 * transacción corta. Un bloque bloquea sus cuentas, en orden de IBAN como las
+	 * transferencias, sustituye sus filas por cuenta por las calculadas desde las
+	 * operaciones y pasa la diferencia a las filas por tipo de cuenta con el
+	 * mismo incremento que la contabilización; las demás cuentas siguen
+	 * contabilizando mientras tanto.
+	 *
+	 * Al final se concilian las filas por tipo de cuenta con las filas por
+	 * cuenta, para corregir las que se hubieran desviado por su cuenta. Una
+	 * partición que falla conserva sus resúmenes anteriores y no impide
+	 * reconstruir las demás. Los días anteriores al horizonte de
+	 * {@link ArchivoOperacionesService} ya no tienen operaciones en la tabla y
+	 * conservan los resúmenes que tenían al archivarse.
+	 *
+	 * @return las particiones reconstruidas y las filas escritas.
+	 * @throws IllegalStateException si ya hay una reconstrucción en curso.
+	 */
+	@Override
+	@Scheduled(cron = "${resumenes.reconstruccion.cron:-}")
+	public ResultadoReconstruccion reconstruir() {
+		if (!reconstruyendo.compareAndSet(false, true)) {
+			throw new IllegalStateException("Ya hay una reconstrucción de los resúmenes en curso.");
+		}
+		long inicio = System.currentTimeMillis();
+		LocalDate horizonte = archivoOperacionesService.horizonte();
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		try {
+			List<Future<Integer>> resultados = new ArrayList<>();
+			String ultima = "";
+			List<String> bloque;
+			do {
+				bloque = jdbcTemplate.queryForList(
+						"SELECT numero_cuenta FROM dam_cuenta_bancaria WHERE numero_cuenta > ? ORDER BY numero_cuenta LIMIT ?",
+						String.class, ultima, CUENTAS_POR_BLOQUE);
+				if (!bloque.isEmpty()) {
+					List<String> cuentas = bloque;
+					ultima = cuentas.get(cuentas.size() - 1);
+					resultados.add(ejecutor
+							.submit(() -> transactionTemplate.execute(estado -> reconstruir(cuentas, horizonte))));
+				}
+			} while (bloque.size() == CUENTAS_POR_BLOQUE);
+
+			int fallidas = 0;
+			long filas = 0;
+			for (Future<Integer> resultado : resultados) {
+				try {
+					filas += resultado.get();
+				} catch (ExecutionException e) {
+					fallidas++;
+					log.error("No se pudieron reconstruir los resúmenes de un bloque de cuentas", e.getCause());
+				}
+			}
+
+			long corregidas = 0;
+			try {
+				corregidas = transactionTemplate.execute(estado -> conciliar(horizonte));
+			} catch (RuntimeException e) {
+				fallidas++;
+				log.error("No se pudieron conciliar los resúmenes por tipo de cuenta", e);
+			}
+			long ms = System.currentTimeMillis() - inicio;
+			log.info("Resúmenes de operaciones reconstruidos: {} particiones ({} fallidas), {} filas por cuenta y "
+					+ "{} por tipo de cuenta corregidas en {} ms", resultados.size(), fallidas, filas, corregidas, ms);
+			return new ResultadoReconstruccion(resultados.size(), fallidas, filas, corregidas, ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Reconstrucción de los resúmenes interrumpida.", e);
+		} finally {
+			ejecutor.shutdownNow();
+			reconstruyendo.set(false);
+		}
+	}
+
+	/**
+	 * Reconstruye los resúmenes de un bloque de cuentas desde el horizonte del
+	 * archivo en la transacción en curso y devuelve el número de filas por cuenta
+	 * escritas. Las filas por tipo de cuenta no se borran: se les resta lo que
+	 * sumaban las filas por cuenta anteriores y se les suma lo recalculado.
+	 */
+	private int reconstruir(List<String> bloque, LocalDate horizonte) {
+		Map<String, TipoCuenta> tiposCuenta = new HashMap<>();
+		for (Object[] fila : cuentaBancRepo.bloquearSaldos(bloque)) {
+			tiposCuenta.put((String) fila[0], TipoCuenta.valueOf(fila[2].toString()));
+		}
+		if (tiposCuenta.isEmpty()) {
+			return 0;
+		}
+		List<Object> argumentos = new ArrayList<>(tiposCuenta.keySet());
+		argumentos.add(horizonte);
+		Object[] cuentas = argumentos.toArray();
+		String marcas = marcas(tiposCuenta.size());
+
+		IncrementosResumen cambios = new IncrementosResumen();
+		jdbcTemplate.query("SELECT cuenta_id, fecha, tipo, num_operaciones, total_centimos "
+				+ "FROM dam_resumen_cuenta_dia WHERE cuenta_id IN (" + marcas + ") AND fecha >= ?", rs -> {
+					String cuenta = rs.getString(1);
+					cambios.sumarTipoCuenta(cuenta, tiposCuenta.get(cuenta), rs.getObject(2, LocalDate.class),
+							TipoOperacion.valueOf(rs.getString(3)), -rs.getLong(4), -rs.getLong(5));
+				}, cuentas);
+		jdbcTemplate.update("DELETE FROM dam_resumen_cuenta_dia WHERE cuenta_id IN (" + marcas + ") AND fecha >= ?",
+				cuentas);
+		jdbcTemplate.query("SELECT cuenta_id, fecha, tipo, COUNT(*), SUM(cantidad_centimos) FROM dam_operacion "
+				+ "WHERE cuenta_id IN (" + marcas + ") AND fecha >= ? GROUP BY cuenta_id, fecha, tipo", rs -> {
+					String cuenta = rs.getString(1);
+					cambios.sumar(cuenta, tiposCuenta.get(cuenta), rs.getObject(2, LocalDate.class),
+							TipoOperacion.valueOf(rs.getString(3)), rs.getLong(4), rs.getLong(5));
+				}, cuentas);
+		sumar(cambios);
+		return cambios.cuentas.size();
+	}
+
+	/**
+	 * Corrige en la transacción en curso las filas por tipo de cuenta desde el
+	 * horizonte que no coinciden con la suma de las filas por cuenta, y devuelve
+	 * cuántas ha corregido. Las correcciones son incrementos, así que las
+	 * operaciones contabilizadas después de la lectura se suman igualmente.
+	 */
+	private long conciliar(LocalDate horizonte) {
+		IncrementosResumen desvios = new IncrementosResumen();
+		jdbcTemplate.query(DESVIOS_TIPO_CUENTA, rs -> {
+			String cuenta = rs.getString(3);
+			desvios.sumarFranja(TipoCuenta.valueOf(rs.getString(1)), rs.getObject(2, LocalDate.class),
+					cuenta == null ? rs.getInt(4) : IncrementosResumen.franja(cuenta),
+					TipoOperacion.valueOf(rs.getString(5)), rs.getLong(6), rs.getLong(7));
+		}, horizonte, horizonte);
+		desvios.tiposCuenta.values().removeIf(v -> v[0] == 0 && v[1] == 0);
+		sumar(desvios);
+		return desvios.tiposCuenta.size();
+	}
+
+	/**
+	 * Ejecuta una sentencia por fila en lotes JDBC, en el orden de la lista.
+	 */
+	private void ejecutar(String sentencia, List<Object[]> filas) {
+		for (int i = 0; i < filas.size(); i += FILAS_POR_LOTE) {
+			jdbcTemplate.batchUpdate(sentencia, filas.subList(i, Math.min(i + FILAS_POR_LOTE, filas.size())));
+		}
+	}
+
+	/**
+	 * Bloquea una cuenta y devuelve su tipo, o {@code null} si no existe.
+	 */
+	private TipoCuenta bloquear(String numeroCuenta) {
+		List<Object[]> bloqueada = cuentaBancRepo.bloquearSaldos(List.of(numeroCuenta));
+		return bloqueada.isEmpty() ? null : TipoCuenta.valueOf(bloqueada.get(0)[2].toString());
+	}
+
+	private static String marcas(int numero) {
+		return String.join(", ", Collections.nCopies(numero, "?"));
+	}
+
+	private static void validarPeriodo(LocalDate desde, LocalDate hasta) {
+		if (desde == null || hasta == null) {
+			throw new ParametroBusquedaException("Deben indicarse las fechas de inicio y fin del resumen.");
+		}
+		if (desde.isAfter(hasta)) {
+			throw new ParametroBusquedaException("La fecha de inicio no puede ser posterior a la de fin.");
+		}
+		if (ChronoUnit.DAYS.between(desde, hasta) >= MAX_DIAS_CONSULTA) {
+			throw new ParametroBusquedaException(
+					"El periodo del resumen no puede superar " + MAX_DIAS_CONSULTA + " días.");
+		}
+	}
+
+	private static void acumular(Map<ResumenOperaciones, long[]> totales, LocalDate periodo, TipoCuenta tipoCuenta,
+			TipoOperacion tipo, long operaciones, long centimos) {
+		ResumenOperaciones clave = new ResumenOperaciones(periodo, tipoCuenta, tipo, 0, null);
+		long[] total = totales.computeIfAbsent(clave, k -> new long[2]);
+		total[0] += operaciones;
+		total[1] = Dinero.sumar(total[1], centimos);
+	}
+
+	/** Totales con movimientos, sin los que han quedado a 0 al descontar. */
+	private static List<ResumenOperaciones> resultado(Map<ResumenOperaciones, long[]> totales) {
+		List<ResumenOperaciones> resultado = new ArrayList<>(totales.size());
+		for (Map.Entry<ResumenOperaciones, long[]> e : totales.entrySet()) {
+			if (e.getValue()[0] != 0) {
+				ResumenOperaciones r = e.getKey();
+				r.setNumOperaciones(e.getValue()[0]);
+				r.setTotal(Dinero.deCentimos(e.getValue()[1]));
+				resultado.add(r);
+			}
+		}
+		return resultado;
+	}
+}
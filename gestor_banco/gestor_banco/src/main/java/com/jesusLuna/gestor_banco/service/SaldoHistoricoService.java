@@ -0,0 +1,21 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.time.LocalDate;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+
+public interface SaldoHistoricoService {
+
+	public Dinero obtenerSaldoAFecha(String numeroCuenta, LocalDate fecha);
+
+	public long saldoTras(String numeroCuenta, LocalDate fecha, long codigo);
+
+	public long saldoInicial(String numeroCuenta);
+
+	public void invalidar(String numeroCuenta, LocalDate fecha, long codigo);
+
+	public int generarInstantaneas(String numeroCuenta);
+
+	public void generarInstantaneas();
+
+}
@@ -0,0 +1,338 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.SaldoInstantanea;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.SaldoInstantaneaRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación del servicio de saldos históricos.
+ *
+ * El saldo de una cuenta en cualquier punto de su historial se obtiene a partir
+ * de la {@link SaldoInstantanea} más cercana, sumando o restando solo las
+ * operaciones que las separan: una búsqueda en el índice de instantáneas y un
+ * recorrido corto del índice de operaciones, sea cual sea el tamaño del
+ * historial. Si la cuenta aún no tiene instantáneas se parte del saldo actual.
+ * Los tramos anteriores al horizonte de {@link ArchivoOperacionesService} se
+ * suman desde el archivo, que deja una instantánea tras la última operación
+ * archivada de cada cuenta.
+ *
+ * Las instantáneas se generan de madrugada sobre los días ya cerrados, cada
+ * {@code saldos.instantaneas.operaciones} operaciones y, si
+ * {@code saldos.instantaneas.fin-de-dia} está activo, también al final de cada
+ * día con movimientos. Como las operaciones de hoy nunca quedan cubiertas, solo
+ * una operación con fecha pasada invalida instantáneas; quien la contabiliza
+ * debe llamar a {@link #invalidar(String, LocalDate, long)} en la misma
+ * transacción, después de modificar el saldo de la cuenta.
+ *
+ * @author Jesús
+ */
+@Service
+@Slf4j
+public class SaldoHistoricoServiceImpl implements SaldoHistoricoService {
+
+	/** Cuentas que se leen de cada vez al generar las instantáneas de todas. */
+	private static final int CUENTAS_POR_CONSULTA = 500;
+
+	/** Operaciones que se leen del cursor de cada vez al generar instantáneas. */
+	private static final int FILAS_POR_LECTURA = 500;
+
+	private static final Limit UNA = Limit.of(1);
+
+	@Value("${saldos.instantaneas.operaciones:500}")
+	private int operacionesPorInstantanea;
+
+	@Value("${saldos.instantaneas.fin-de-dia:false}")
+	private boolean finDeDia;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private SaldoInstantaneaRepo saldoInstantaneaRepo;
+
+	@Autowired
+	private ArchivoOperacionesService archivoOperacionesService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * Obtiene el saldo de una cuenta al cierre de un día.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        el día.
+	 * @return el saldo tras la última operación de ese día o de los anteriores.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 * @throws ParametroBusquedaException  si no se indica la fecha.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public Dinero obtenerSaldoAFecha(String numeroCuenta, LocalDate fecha) {
+		if (fecha == null) {
+			throw new ParametroBusquedaException("Debe indicarse la fecha del saldo.");
+		}
+		return Dinero.deCentimos(saldoTras(numeroCuenta, fecha, Long.MAX_VALUE));
+	}
+
+	/**
+	 * Calcula el saldo de una cuenta inmediatamente después de una operación de
+	 * su historial, ordenado por (fecha, código). La operación no tiene por qué
+	 * existir: con {@code Long.MAX_VALUE} se obtiene el saldo al cierre del día.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación.
+	 * @param codigo       código de la operación.
+	 * @return el saldo, en céntimos.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long saldoTras(String numeroCuenta, LocalDate fecha, long codigo) {
+		List<SaldoInstantanea> anterior = saldoInstantaneaRepo.findAnterior(numeroCuenta, fecha, codigo, UNA);
+		if (!anterior.isEmpty()) {
+			SaldoInstantanea s = anterior.get(0);
+			return Dinero.sumar(s.getSaldo().getCentimos(),
+					Dinero.sumar(operacionesRepo.sumarImportesEntre(numeroCuenta, s.getFecha(), s.getCodigoOperacion(),
+							fecha, codigo),
+							archivoOperacionesService.sumarImportes(numeroCuenta, s.getFecha(),
+									s.getCodigoOperacion(), fecha, codigo)));
+		}
+		List<SaldoInstantanea> posterior = saldoInstantaneaRepo.findPosterior(numeroCuenta, fecha, codigo, UNA);
+		if (!posterior.isEmpty()) {
+			SaldoInstantanea s = posterior.get(0);
+			return Dinero.restar(s.getSaldo().getCentimos(),
+					Dinero.sumar(operacionesRepo.sumarImportesEntre(numeroCuenta, fecha, codigo, s.getFecha(),
+							s.getCodigoOperacion()),
+							archivoOperacionesService.sumarImportes(numeroCuenta, fecha, codigo, s.getFecha(),
+									s.getCodigoOperacion())));
+		}
+		return Dinero.restar(saldoActual(numeroCuenta),
+				Dinero.sumar(operacionesRepo.sumarImportesDesde(numeroCuenta, fecha, codigo),
+						archivoOperacionesService.sumarImportes(numeroCuenta, fecha, codigo, null, 0)));
+	}
+
+	/**
+	 * Calcula el saldo de una cuenta antes de su primera operación.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return el saldo, en céntimos.
+	 * @throws CuentaNoEncontradaException si la cuenta no existe.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long saldoInicial(String numeroCuenta) {
+		Optional<SaldoInstantanea> primera = saldoInstantaneaRepo
+				.findFirstByNumeroCuentaOrderByFechaAscCodigoOperacionAsc(numeroCuenta);
+		if (primera.isPresent()) {
+			SaldoInstantanea s = primera.get();
+			return Dinero.restar(s.getSaldo().getCentimos(),
+					Dinero.sumar(operacionesRepo.sumarImportesHasta(numeroCuenta, s.getFecha(), s.getCodigoOperacion()),
+							archivoOperacionesService.sumarImportes(numeroCuenta, null, 0, s.getFecha(),
+									s.getCodigoOperacion())));
+		}
+		return Dinero.restar(saldoActual(numeroCuenta), Dinero.sumar(operacionesRepo.sumarImportes(numeroCuenta),
+				archivoOperacionesService.sumarImportes(numeroCuenta, null, 0, null, 0)));
+	}
+
+	/**
+	 * Descarta las instantáneas de una cuenta que deja de ser válidas una
+	 * operación insertada o eliminada en el punto indicado de su historial. Las
+	 * operaciones de hoy nunca tienen instantáneas, así que para ellas no se
+	 * ejecuta ninguna sentencia.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @param fecha        fecha de la operación.
+	 * @param codigo       código de la operación.
+	 */
+	@Override
+	@Transactional
+	public void invalidar(String numeroCuenta, LocalDate fecha, long codigo) {
+		if (fecha.isBefore(LocalDate.now())) {
+			saldoInstantaneaRepo.borrarDesde(numeroCuenta, fecha, codigo);
+		}
+	}
+
+	/**
+	 * Genera las instantáneas pendientes de una cuenta, desde su última
+	 * instantánea hasta el cierre de ayer, en una transacción.
+	 *
+	 * @param numeroCuenta el IBAN de la cuenta.
+	 * @return el número de instantáneas generadas; 0 si la cuenta no existe.
+	 */
+	@Override
+	public int generarInstantaneas(String numeroCuenta) {
+		return transactionTemplate.execute(estado -> generar(numeroCuenta));
+	}
+
+	/**
+	 * Genera las instantáneas pendientes de todas las cuentas, cada una en su
+	 * propia transacción. Un fallo en una cuenta no impide seguir con las demás.
+	 */
+	@Override
+	@Scheduled(cron = "${saldos.instantaneas.cron:0 30 0 * * *}")
+	public void generarInstantaneas() {
+		long inicio = System.currentTimeMillis();
+		int cuentas = 0;
+		long generadas = 0;
+		String ultima = "";
+		List<String> bloque;
+		do {
+			bloque = jdbcTemplate.queryForList(
+					"SELECT numero_cuenta FROM dam_cuenta_bancaria WHERE numero_cuenta > ? ORDER BY numero_cuenta LIMIT ?",
+					String.class, ultima, CUENTAS_POR_CONSULTA);
+			for (String numeroCuenta : bloque) {
+				try {
+					generadas += generarInstantaneas(numeroCuenta);
+				} catch (RuntimeException e) {
+					log.error("No se pudieron generar las instantáneas de saldo de la cuenta {}", numeroCuenta, e);
+				}
+				ultima = numeroCuenta;
+				cuentas++;
+			}
+		} while (bloque.size() == CUENTAS_POR_CONSULTA);
+		log.info("Generadas {} instantáneas de saldo de {} cuentas en {} ms", generadas, cuentas,
+				System.currentTimeMillis() - inicio);
+	}
+
+	/**
+	 * Recorre las operaciones de la cuenta posteriores a su última instantánea y
+	 * anteriores a hoy, y guarda el saldo en los puntos que tocan.
+	 *
+	 * La cuenta se bloquea mientras tanto, de modo que ninguna operación puede
+	 * contabilizarse a la vez. El saldo de cada instantánea se calcula desde el
+	 * saldo actual de la cuenta, restando las operaciones de hoy y las que la
+	 * siguen en el recorrido, así que nunca arrastra el error de una instantánea
+	 * anterior.
+	 */
+	private int generar(String numeroCuenta) {
+		List<Object[]> bloqueada = cuentaBancRepo.bloquearSaldos(List.of(numeroCuenta));
+		if (bloqueada.isEmpty()) {
+			return 0;
+		}
+		LocalDate hoy = LocalDate.now();
+		long saldoCierre = Dinero.restar(((Number) bloqueada.get(0)[1]).longValue(),
+				operacionesRepo.sumarImportesDesde(numeroCuenta, hoy.minusDays(1), Long.MAX_VALUE));
+
+		Recorrido recorrido = new Recorrido();
+		Optional<SaldoInstantanea> ultima = saldoInstantaneaRepo
+				.findFirstByNumeroCuentaOrderByFechaDescCodigoOperacionDesc(numeroCuenta);
+		if (ultima.isPresent()) {
+			SaldoInstantanea s = ultima.get();
+			jdbcTemplate.query("SELECT id, fecha, tipo, cantidad_centimos FROM dam_operacion "
+					+ "WHERE cuenta_id = ? AND fecha < ? AND fecha >= ? AND (fecha > ? OR (fecha = ? AND id > ?)) "
+					+ "ORDER BY fecha, id", ps -> {
+						ps.setFetchSize(FILAS_POR_LECTURA);
+						ps.setString(1, numeroCuenta);
+						ps.setObject(2, hoy);
+						ps.setObject(3, s.getFecha());
+						ps.setObject(4, s.getFecha());
+						ps.setObject(5, s.getFecha());
+						ps.setLong(6, s.getCodigoOperacion());
+					}, recorrido);
+		} else {
+			jdbcTemplate.query("SELECT id, fecha, tipo, cantidad_centimos FROM dam_operacion "
+					+ "WHERE cuenta_id = ? AND fecha < ? ORDER BY fecha, id", ps -> {
+						ps.setFetchSize(FILAS_POR_LECTURA);
+						ps.setString(1, numeroCuenta);
+						ps.setObject(2, hoy);
+					}, recorrido);
+		}
+		recorrido.terminar();
+
+		List<Object[]> filas = new ArrayList<>(recorrido.posiciones.size());
+		for (Posicion p : recorrido.posiciones) {
+			long saldo = Dinero.restar(saldoCierre, Dinero.restar(recorrido.acumulado, p.acumulado()));
+			filas.add(new Object[] { p.codigo(), numeroCuenta, p.fecha(), saldo });
+		}
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO dam_saldo_instantanea (id_operacion, cuenta_id, fecha, saldo_centimos) VALUES (?, ?, ?, ?)",
+				filas);
+		return filas.size();
+	}
+
+	private long saldoActual(String numeroCuenta) {
+		return cuentaBancRepo.findById(numeroCuenta).map(CuentaBancaria::getSaldo)
+				.orElseThrow(() -> new CuentaNoEncontradaException("No existe la cuenta " + numeroCuenta + "."))
+				.getCentimos();
+	}
+
+	/** Punto del recorrido donde se toma una instantánea. */
+	private record Posicion(long codigo, LocalDate fecha, long acumulado) {
+	}
+
+	/**
+	 * Acumula la variación del saldo a lo largo del recorrido y marca los puntos
+	 * donde se toman instantáneas: cada {@link #operacionesPorInstantanea}
+	 * operaciones y, con {@link #finDeDia}, en la última operación de cada día.
+	 */
+	private final class Recorrido implements RowCallbackHandler {
+
+		private final List<Posicion> posiciones = new ArrayList<>();
+
+		private long acumulado;
+
+		private int pendientes;
+
+		private long ultimoCodigo;
+
+		private LocalDate ultimaFecha;
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			long codigo = rs.getLong(1);
+			LocalDate fecha = rs.getDate(2).toLocalDate();
+			if (finDeDia && pendientes > 0 && !fecha.equals(ultimaFecha)) {
+				marcar();
+			}
+			acumulado = Dinero.sumar(acumulado, TipoOperacion.valueOf(rs.getString(3)).importe(rs.getLong(4)));
+			ultimoCodigo = codigo;
+			ultimaFecha = fecha;
+			if (++pendientes >= operacionesPorInstantanea) {
+				marcar();
+			}
+		}
+
+		/** El recorrido termina antes de hoy, así que el último día está cerrado. */
+		void terminar() {
+			if (finDeDia && pendientes > 0) {
+				marcar();
+			}
+		}
+
+		private void marcar() {
+			posiciones.add(new Posicion(ultimoCodigo, ultimaFecha, acumulado));
+			pendientes = 0;
+		}
+	}
+}
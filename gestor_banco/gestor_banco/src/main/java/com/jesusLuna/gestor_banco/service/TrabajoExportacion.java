@@ -0,0 +1,139 @@
+package com.jesusLuna.gestor_banco.service;
+
+import java.nio.file.Path;
+
+/**
+ * Trabajo de exportación a PDF del extracto de una cuenta.
+ *
+ * Lo crea {@link ExportacionServiceImpl} al recibir la solicitud y lo actualiza
+ * el hilo que genera el PDF; los campos que cambian durante la ejecución son
+ * volátiles para que las consultas de progreso vean siempre el último valor.
+ *
+ * @author Jesús
+ */
+public class TrabajoExportacion {
+
+	/**
+	 * Estados por los que pasa un trabajo de exportación.
+	 */
+	public enum Estado {
+		PENDIENTE, EN_CURSO, COMPLETADO, FALLIDO
+	}
+
+	private final String id;
+	private final String numeroCuenta;
+	private final long creadoEn;
+	private volatile Estado estado = Estado.PENDIENTE;
+	private volatile long filasTotales;
+	private volatile long filasProcesadas;
+	private volatile String error;
+	private volatile String clave;
+	private volatile Path fichero;
+	private volatile long terminadoEn;
+
+	TrabajoExportacion(String id, String numeroCuenta, long ahora) {
+		this.id = id;
+		this.numeroCuenta = numeroCuenta;
+		this.creadoEn = ahora;
+	}
+
+	/**
+	 * @return el identificador del trabajo.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return el número de la cuenta exportada.
+	 */
+	public String getNumeroCuenta() {
+		return numeroCuenta;
+	}
+
+	/**
+	 * @return el instante de creación, en milisegundos.
+	 */
+	public long getCreadoEn() {
+		return creadoEn;
+	}
+
+	/**
+	 * @return el estado actual del trabajo.
+	 */
+	public Estado getEstado() {
+		return estado;
+	}
+
+	/**
+	 * @return el número de operaciones de la cuenta al empezar la exportación.
+	 */
+	public long getFilasTotales() {
+		return filasTotales;
+	}
+
+	/**
+	 * @return el número de operaciones ya escritas en el PDF.
+	 */
+	public long getFilasProcesadas() {
+		return filasProcesadas;
+	}
+
+	/**
+	 * @return el motivo del fallo, o {@code null}.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return la clave del extracto en {@link ExtractoCache}, o {@code null} si no
+	 *         ha terminado.
+	 */
+	public String getClave() {
+		return clave;
+	}
+
+	/**
+	 * @return el fichero generado, o {@code null} si no ha terminado.
+	 */
+	public Path getFichero() {
+		return fichero;
+	}
+
+	/**
+	 * @return el instante en que terminó, o 0 si sigue pendiente o en curso.
+	 */
+	public long getTerminadoEn() {
+		return terminadoEn;
+	}
+
+	/**
+	 * @return {@code true} si el trabajo ha completado o ha fallado.
+	 */
+	public boolean isTerminado() {
+		return terminadoEn != 0;
+	}
+
+	void empezar(long filasTotales) {
+		this.filasTotales = filasTotales;
+		this.estado = Estado.EN_CURSO;
+	}
+
+	void avanzar(long filasProcesadas) {
+		this.filasProcesadas = filasProcesadas;
+	}
+
+	void completar(String clave, Path fichero, long ahora) {
+		this.clave = clave;
+		this.fichero = fichero;
+		this.estado = Estado.COMPLETADO;
+		this.terminadoEn = ahora;
+	}
+
+	void fallar(String error, long ahora) {
+		this.error = error;
+		this.estado = Estado.FALLIDO;
+		this.terminadoEn = ahora;
+	}
+}
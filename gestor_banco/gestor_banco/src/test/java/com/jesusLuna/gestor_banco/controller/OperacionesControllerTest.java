@@ -0,0 +1,136 @@
+package com.jesusLuna.gestor_banco.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.methods.Cifrado;
+import com.jesusLuna.gestor_banco.repository.ClaveIdempotenciaRepo;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+/**
+ * Pruebas de los puntos de entrada de operaciones con las colas de
+ * contabilización activas y un pool de conexiones pequeño, como el que se
+ * agota si una petición espera a la cola reteniendo su conexión.
+ */
+@SpringBootTest(properties = { "contabilizacion.colas.activas=true", "contabilizacion.colas.hilos=1",
+		"spring.datasource.hikari.maximum-pool-size=2", "spring.datasource.hikari.connection-timeout=10000" })
+@AutoConfigureMockMvc
+class OperacionesControllerTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ClaveIdempotenciaRepo claveRepo;
+
+	@BeforeEach
+	void crearCuenta() {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(IBAN);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now());
+		c.setSaldo(Dinero.CERO);
+		cuentaBancRepo.save(c);
+	}
+
+	@AfterEach
+	void limpiar() {
+		claveRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	@Test
+	void enviosConClaveSimultaneosNoAgotanLasConexionesConColas() throws Exception {
+		String numCuenta = Cifrado.cifrar(IBAN);
+		int envios = 12;
+		int claves = 6;
+		ExecutorService ejecutor = Executors.newFixedThreadPool(envios);
+		try {
+			List<Future<String>> redirecciones = new ArrayList<>();
+			for (int i = 0; i < envios; i++) {
+				// Cada clave se envía dos veces con los mismos datos, como un reintento
+				int n = i % claves;
+				redirecciones.add(ejecutor.submit(() -> mockMvc.perform(post("/addOperacion")
+						.with(user("cliente").roles("User")).param("numCuenta", numCuenta)
+						.param("tipo", "IngresarDinero").param("cantidad", "10.00")
+						.param("fecha", LocalDate.now().toString()).param("descripcion", "Ingreso " + n)
+						.param("claveIdempotencia", "clave-concurrente-" + n)).andReturn().getResponse()
+						.getRedirectedUrl()));
+			}
+			for (Future<String> redireccion : redirecciones) {
+				String url = redireccion.get();
+				assertTrue(url != null && url.startsWith("/showOperacionesView"), "Envío fallido: " + url);
+			}
+		} finally {
+			ejecutor.shutdownNow();
+		}
+
+		assertEquals(claves, operacionesRepo.count());
+		assertEquals(claves * 1_000, cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo().getCentimos());
+	}
+
+	@Test
+	void soloUnAdministradorBuscaEnTodasLasCuentas() throws Exception {
+		mockMvc.perform(get("/api/operaciones/buscar").with(user("cliente").roles("User")))
+				.andExpect(status().isForbidden());
+		mockMvc.perform(get("/api/operaciones/buscar").with(user("admin").roles("Admin")))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void laBusquedaDeUnaCuentaRecibeElIbanCifrado() throws Exception {
+		mockMvc.perform(get("/api/operaciones/buscar").param("numCuenta", Cifrado.cifrar(IBAN))
+				.with(user("cliente").roles("User"))).andExpect(status().isOk());
+		mockMvc.perform(get("/api/operaciones/buscar").param("numCuenta", IBAN).with(user("cliente").roles("User")))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void soloUnAdministradorCargaFicherosDeApuntes() throws Exception {
+		MockMultipartFile fichero = new MockMultipartFile("fichero", "apuntes.txt", "text/plain",
+				(IBAN + ";IngresarDinero;100.00;" + LocalDate.now() + ";Carga").getBytes(StandardCharsets.UTF_8));
+
+		mockMvc.perform(multipart("/api/operaciones/carga").file(fichero).with(user("cliente").roles("User")))
+				.andExpect(status().isForbidden());
+		assertEquals(0, operacionesRepo.count());
+
+		mockMvc.perform(multipart("/api/operaciones/carga").file(fichero).with(user("admin").roles("Admin")))
+				.andExpect(status().isOk());
+		assertEquals(10_000, cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo().getCentimos());
+	}
+}
@@ -0,0 +1,45 @@
+package com.jesusLuna.gestor_banco.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.boot.test.json.JacksonTester;
+import org.springframework.boot.test.json.JsonContent;
+
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+/**
+ * Pruebas del JSON de las páginas del historial, que la vista de operaciones
+ * pinta tal cual al cargar más filas: los importes deben llegar como el mismo
+ * texto que muestran las filas generadas en el servidor.
+ */
+@JsonTest
+class OperacionResumenJsonTest {
+
+	@Autowired
+	private JacksonTester<PaginaKeyset<OperacionResumen>> json;
+
+	@Test
+	void losImportesSeEscribenComoTextoConDosDecimales() throws IOException {
+		OperacionResumen op = new OperacionResumen(7, "ES2121000418450200051331", "Nómina",
+				LocalDate.of(2025, 3, 1), TipoOperacion.IngresarDinero, Dinero.deCentimos(125_050),
+				null, Dinero.deCentimos(-7));
+		JsonContent<PaginaKeyset<OperacionResumen>> contenido = json
+				.write(new PaginaKeyset<>(List.of(op), false, null));
+
+		assertThat(contenido).extractingJsonPathStringValue("$.elementos[0].cantidad").isEqualTo("1250.50");
+		assertThat(contenido).extractingJsonPathStringValue("$.elementos[0].saldo").isEqualTo("-0.07");
+
+		OperacionResumen leida = json.parseObject(contenido.getJson()).getElementos().get(0);
+		assertEquals(Dinero.deCentimos(125_050), leida.getCantidad());
+		assertEquals(Dinero.deCentimos(-7), leida.getSaldo());
+	}
+}
@@ -0,0 +1,36 @@
+package com.jesusLuna.gestor_banco.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class DineroTest {
+
+	@Test
+	void parseAdmiteComaYPuntoConHastaDosDecimales() {
+		assertEquals(1250, Dinero.parse("12.5").getCentimos());
+		assertEquals(1250, Dinero.parse("12,50").getCentimos());
+		assertEquals(-7, Dinero.parse("-0.07").getCentimos());
+		assertThrows(IllegalArgumentException.class, () -> Dinero.parse("1.005"));
+		assertThrows(IllegalArgumentException.class, () -> Dinero.parse("abc"));
+	}
+
+	@Test
+	void toStringSiempreConDosDecimales() {
+		assertEquals("12.50", Dinero.deCentimos(1250).toString());
+		assertEquals("-0.07", Dinero.deCentimos(-7).toString());
+		assertEquals("0.00", Dinero.CERO.toString());
+	}
+
+	@Test
+	void sumarMuchosCentimosEsExacto() {
+		// Con float, sumar 0.10 un millón de veces no da 100000.00
+		long total = 0;
+		for (int i = 0; i < 1_000_000; i++) {
+			total = Dinero.sumar(total, 10);
+		}
+		assertEquals("100000.00", Dinero.deCentimos(total).toString());
+		assertThrows(ArithmeticException.class, () -> Dinero.sumar(Long.MAX_VALUE, 1));
+	}
+}
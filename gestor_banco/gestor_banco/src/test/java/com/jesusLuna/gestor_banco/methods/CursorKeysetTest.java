@@ -0,0 +1,36 @@
+package com.jesusLuna.gestor_banco.methods;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+
+class CursorKeysetTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+
+	@Test
+	void elCursorNoLlevaElIbanEnClaro() {
+		String cursor = CursorKeyset.codificar(LocalDate.of(2024, 3, 1), IBAN);
+
+		String decodificado = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.ISO_8859_1);
+		assertFalse(decodificado.contains(IBAN));
+		assertEquals(LocalDate.of(2024, 3, 1), CursorKeyset.fecha(cursor));
+		assertEquals(IBAN, CursorKeyset.desempate(cursor));
+	}
+
+	@Test
+	void unCursorManipuladoSeRechaza() {
+		String enClaro = Base64.getUrlEncoder().encodeToString(("2024-03-01|" + IBAN).getBytes(StandardCharsets.UTF_8));
+
+		assertThrows(ParametroBusquedaException.class, () -> CursorKeyset.fecha(enClaro));
+		assertThrows(ParametroBusquedaException.class, () -> CursorKeyset.desempate("no-es-un-cursor"));
+	}
+}
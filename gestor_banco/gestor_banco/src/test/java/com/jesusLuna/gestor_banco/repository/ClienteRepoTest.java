@@ -0,0 +1,137 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import com.jesusLuna.gestor_banco.dto.ClienteIdentificacion;
+import com.jesusLuna.gestor_banco.dto.ClienteResumen;
+import com.jesusLuna.gestor_banco.entity.Cliente;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ClienteRepoTest {
+
+	private static final int NUM_CLIENTES = 1500;
+	private static final int TAMANYO_PAGINA = 50;
+	private static final String IBAN = "ES0000000000000000000001";
+
+	@Autowired
+	private TestEntityManager em;
+
+	@Autowired
+	private ClienteRepo clienteRepo;
+
+	private Set<String> titulares;
+
+	@BeforeEach
+	void sembrarDatos() {
+		List<Cliente> clientes = new ArrayList<>();
+		for (int i = 0; i < NUM_CLIENTES; i++) {
+			Cliente c = new Cliente();
+			c.setNif(String.format("%08dA", i));
+			c.setNombre("Nombre" + i);
+			c.setApellidos("Apellido" + i);
+			c.setAnyoNacimiento(1980);
+			c.setDireccion("Calle " + i);
+			c.setEmail("cliente" + i + "@banco.es");
+			c.setNumeroContacto(String.format("6%08d", i));
+			em.persist(c);
+			clientes.add(c);
+		}
+
+		// Uno de cada diez clientes es titular de la cuenta
+		List<Cliente> duenyos = new ArrayList<>();
+		titulares = new HashSet<>();
+		for (int i = 0; i < NUM_CLIENTES; i += 10) {
+			duenyos.add(clientes.get(i));
+			titulares.add(clientes.get(i).getNif());
+		}
+		CuentaBancaria cuenta = new CuentaBancaria();
+		cuenta.setNumeroCuenta(IBAN);
+		cuenta.setTipoCuenta(CuentaBancaria.TipoCuenta.CORRIENTE);
+		cuenta.setFechaCreacion(LocalDate.of(2020, 1, 1));
+		cuenta.setMisClientes(duenyos);
+		em.persist(cuenta);
+		em.flush();
+		em.clear();
+	}
+
+	@Test
+	void recorreClientesNoAsignadosConUnaConsultaPorPagina() {
+		Statistics estadisticas = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class)
+				.getStatistics();
+		estadisticas.clear();
+
+		List<String> vistos = new ArrayList<>();
+		String despuesDeNif = "";
+		int paginas = 0;
+		long inicio = System.nanoTime();
+		while (true) {
+			List<ClienteIdentificacion> pagina = clienteRepo.findClientesExcludeNumeroCuenta(IBAN, despuesDeNif,
+					TAMANYO_PAGINA);
+			if (pagina.isEmpty()) {
+				break;
+			}
+			paginas++;
+			for (ClienteIdentificacion c : pagina) {
+				assertFalse(titulares.contains(c.getNif()), "Un titular no debe aparecer: " + c.getNif());
+				vistos.add(c.getNif());
+			}
+			despuesDeNif = pagina.get(pagina.size() - 1).getNif();
+		}
+		long milis = (System.nanoTime() - inicio) / 1_000_000;
+
+		assertEquals(NUM_CLIENTES - titulares.size(), vistos.size());
+		assertEquals(vistos.stream().sorted().toList(), vistos, "Las páginas deben venir ordenadas por NIF");
+		// Una sentencia por página más la de la última página vacía, sin cargar entidades
+		assertEquals(paginas + 1, estadisticas.getPrepareStatementCount());
+		assertEquals(0, estadisticas.getEntityLoadCount());
+		assertTrue(milis < 5_000, "Recorrer " + paginas + " páginas ha tardado " + milis + " ms");
+	}
+
+	@Test
+	void elTypeaheadBuscaLosComodinesComoTexto() {
+		Cliente conGuion = new Cliente();
+		conGuion.setNif("90000001A");
+		conGuion.setNombre("Ana");
+		conGuion.setApellidos("Lopez");
+		conGuion.setAnyoNacimiento(1990);
+		conGuion.setDireccion("Calle Mayor");
+		conGuion.setEmail("ana_lopez@banco.es");
+		conGuion.setNumeroContacto("700000001");
+		em.persist(conGuion);
+		Cliente sinGuion = new Cliente();
+		sinGuion.setNif("90000002A");
+		sinGuion.setNombre("Ana");
+		sinGuion.setApellidos("Lopez");
+		sinGuion.setAnyoNacimiento(1990);
+		sinGuion.setDireccion("Calle Mayor");
+		sinGuion.setEmail("anaxlopez@banco.es");
+		sinGuion.setNumeroContacto("700000002");
+		em.persist(sinGuion);
+		em.flush();
+
+		List<String> emails = clienteRepo
+				.buscarTypeahead(ClienteRepo.escaparLike("ana_"), null, PageRequest.of(0, TAMANYO_PAGINA)).stream()
+				.map(ClienteResumen::getEmail).toList();
+		assertEquals(List.of("ana_lopez@banco.es"), emails);
+		assertTrue(clienteRepo.buscarTypeahead(ClienteRepo.escaparLike("%"), null, PageRequest.of(0, TAMANYO_PAGINA))
+				.isEmpty());
+	}
+}
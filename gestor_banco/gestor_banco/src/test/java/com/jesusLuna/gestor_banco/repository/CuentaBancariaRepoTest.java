@@ -0,0 +1,208 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import com.jesusLuna.gestor_banco.dto.CuentaActividad;
+import com.jesusLuna.gestor_banco.dto.CuentaResumen;
+import com.jesusLuna.gestor_banco.entity.Cliente;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CuentaBancariaRepoTest {
+
+	private static final int TAMANYO_PAGINA = 50;
+
+	@Autowired
+	private TestEntityManager em;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	/**
+	 * Inserta las cuentas directamente en SQL: a partir de unos miles de filas
+	 * persistir entidades una a una domina el tiempo de la prueba.
+	 */
+	private void sembrarCuentas(int numCuentas) {
+		em.getEntityManager()
+				.createNativeQuery("INSERT INTO dam_cuenta_bancaria (numero_cuenta, tipo_cuenta, fecha_creacion, saldo_centimos, version, "
+						+ "version_titulares) "
+						+ "SELECT 'ES' || LPAD(CAST(x AS VARCHAR), 22, '0'), "
+						+ "CASE MOD(x, 3) WHEN 0 THEN 'AHORRO' WHEN 1 THEN 'CORRIENTE' ELSE 'EMPRESARIAL' END, "
+						+ "DATEADD(DAY, -MOD(x, 3650), CURRENT_DATE), MOD(x, 10000) * 100, 0, 0 FROM SYSTEM_RANGE(1, ?)")
+				.setParameter(1, numCuentas).executeUpdate();
+	}
+
+	private Statistics estadisticas() {
+		Statistics stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class)
+				.getStatistics();
+		stats.clear();
+		return stats;
+	}
+
+	private List<CuentaResumen> recorrerListado() {
+		List<CuentaResumen> vistas = new ArrayList<>();
+		List<CuentaResumen> pagina = cuentaBancRepo.findPrimeraPaginaResumen(Limit.of(TAMANYO_PAGINA));
+		while (!pagina.isEmpty()) {
+			vistas.addAll(pagina);
+			CuentaResumen ultima = pagina.get(pagina.size() - 1);
+			pagina = cuentaBancRepo.findPaginaResumenDespuesDe(ultima.getFechaCreacion(), ultima.getNumeroCuenta(),
+					Limit.of(TAMANYO_PAGINA));
+		}
+		return vistas;
+	}
+
+	@Test
+	void listadoPaginadoRecorreTodasLasCuentasEnOrdenSinCargarEntidades() {
+		sembrarCuentas(1000);
+		em.clear();
+		Statistics stats = estadisticas();
+
+		List<CuentaResumen> vistas = recorrerListado();
+
+		assertEquals(1000, vistas.size());
+		for (int i = 1; i < vistas.size(); i++) {
+			CuentaResumen anterior = vistas.get(i - 1);
+			CuentaResumen actual = vistas.get(i);
+			int cmp = actual.getFechaCreacion().compareTo(anterior.getFechaCreacion());
+			assertTrue(cmp < 0 || (cmp == 0 && actual.getNumeroCuenta().compareTo(anterior.getNumeroCuenta()) < 0),
+					"El listado debe ir de la cuenta más reciente a la más antigua");
+		}
+		assertTrue(!vistas.get(0).getFechaCreacion().isBefore(LocalDate.now().minusDays(1)));
+		// Una consulta por página (más la final vacía) y ninguna entidad cargada
+		assertEquals(1000 / TAMANYO_PAGINA + 1, stats.getPrepareStatementCount());
+		assertEquals(0, stats.getEntityLoadCount());
+	}
+
+	private void persistirCuenta(String numeroCuenta, TipoCuenta tipo) {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(numeroCuenta);
+		c.setTipoCuenta(tipo);
+		c.setFechaCreacion(LocalDate.now());
+		em.persist(c);
+	}
+
+	@Test
+	void busquedaPorFragmentoDeIbanUsaPrefijoSufijoYTipo() {
+		persistirCuenta("ES9121000418450200051332", TipoCuenta.AHORRO);
+		persistirCuenta("ES7921000813610123456789", TipoCuenta.CORRIENTE);
+		persistirCuenta("FR1420041010050500013M02606", TipoCuenta.AHORRO);
+		em.flush();
+		em.clear();
+
+		assertEquals(List.of("ES9121000418450200051332"), numeros(cuentaBancRepo.buscarPorSufijoIban(
+				CuentaBancaria.invertir("51332") + "%", null)));
+		assertEquals(2, cuentaBancRepo.buscarPorPrefijoIban("ES%", null).size());
+		assertEquals(List.of("ES7921000813610123456789"),
+				numeros(cuentaBancRepo.buscarPorPrefijoIban("ES%", TipoCuenta.CORRIENTE)));
+		assertTrue(cuentaBancRepo.buscarPorSufijoIban(CuentaBancaria.invertir("6789") + "%", TipoCuenta.AHORRO)
+				.isEmpty());
+		assertEquals(1, cuentaBancRepo.buscarPorIbanExacto("FR1420041010050500013M02606", TipoCuenta.AHORRO).size());
+		assertEquals(2, cuentaBancRepo.buscarPorFragmentoIban("%2100%", null).size());
+	}
+
+	@Test
+	void cuentasDeClienteConActividadEnUnaConsulta() {
+		Cliente cliente = new Cliente();
+		cliente.setNif("12345678Z");
+		cliente.setNombre("Ana");
+		cliente.setApellidos("Pérez");
+		cliente.setAnyoNacimiento(1985);
+		cliente.setDireccion("Calle Mayor 1");
+		cliente.setEmail("ana@banco.es");
+		cliente.setNumeroContacto("600000000");
+		em.persist(cliente);
+
+		CuentaBancaria conOperaciones = new CuentaBancaria();
+		conOperaciones.setNumeroCuenta("ES9121000418450200051332");
+		conOperaciones.setTipoCuenta(TipoCuenta.AHORRO);
+		conOperaciones.setFechaCreacion(LocalDate.now().minusYears(1));
+		conOperaciones.setMisClientes(List.of(cliente));
+		em.persist(conOperaciones);
+
+		CuentaBancaria sinOperaciones = new CuentaBancaria();
+		sinOperaciones.setNumeroCuenta("ES7921000813610123456789");
+		sinOperaciones.setTipoCuenta(TipoCuenta.CORRIENTE);
+		sinOperaciones.setFechaCreacion(LocalDate.now());
+		sinOperaciones.setMisClientes(List.of(cliente));
+		em.persist(sinOperaciones);
+
+		for (int i = 1; i <= 3; i++) {
+			Operacion o = new Operacion();
+			o.setDescripcion("Ingreso " + i);
+			o.setTipo(TipoOperacion.IngresarDinero);
+			o.setFecha(LocalDate.now().minusDays(10 - i));
+			o.setCantidad(Dinero.deCentimos(1000L * i));
+			o.setCuentaBancaria(conOperaciones);
+			em.persist(o);
+		}
+		em.flush();
+		em.clear();
+		Statistics stats = estadisticas();
+
+		List<CuentaActividad> cuentas = cuentaBancRepo.findActividadCuentasByNifCliente("12345678Z");
+
+		assertEquals(2, cuentas.size());
+		assertEquals("ES7921000813610123456789", cuentas.get(0).getNumeroCuenta());
+		assertEquals(0, cuentas.get(0).getNumeroOperaciones());
+		assertNull(cuentas.get(0).getUltimaActividad());
+		assertEquals(3, cuentas.get(1).getNumeroOperaciones());
+		assertEquals(LocalDate.now().minusDays(7), cuentas.get(1).getUltimaActividad());
+		assertEquals(1, stats.getPrepareStatementCount());
+		assertEquals(0, stats.getEntityLoadCount());
+	}
+
+	private static List<String> numeros(List<CuentaBancaria> cuentas) {
+		return cuentas.stream().map(CuentaBancaria::getNumeroCuenta).toList();
+	}
+
+	/**
+	 * Prueba de rendimiento con un millón de cuentas. Se ejecuta con
+	 * {@code -Dbenchmark=true}.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkListadoUnMillonDeCuentas() {
+		sembrarCuentas(1_000_000);
+		em.clear();
+		Statistics stats = estadisticas();
+
+		long inicio = System.nanoTime();
+		List<CuentaResumen> primera = cuentaBancRepo.findPrimeraPaginaResumen(Limit.of(TAMANYO_PAGINA));
+		long primeraNs = System.nanoTime() - inicio;
+
+		// Saltamos a mitad del listado y medimos una página profunda
+		CuentaResumen ultima = primera.get(primera.size() - 1);
+		for (int i = 0; i < 200; i++) {
+			List<CuentaResumen> pagina = cuentaBancRepo.findPaginaResumenDespuesDe(ultima.getFechaCreacion(),
+					ultima.getNumeroCuenta(), Limit.of(TAMANYO_PAGINA));
+			ultima = pagina.get(pagina.size() - 1);
+		}
+		inicio = System.nanoTime();
+		cuentaBancRepo.findPaginaResumenDespuesDe(ultima.getFechaCreacion(), ultima.getNumeroCuenta(),
+				Limit.of(TAMANYO_PAGINA));
+		long profundaNs = System.nanoTime() - inicio;
+
+		System.out.printf("Listado de cuentas (1M): primera página %.2f ms, página 201 %.2f ms%n", primeraNs / 1e6,
+				profundaNs / 1e6);
+		assertEquals(0, stats.getEntityLoadCount());
+	}
+}
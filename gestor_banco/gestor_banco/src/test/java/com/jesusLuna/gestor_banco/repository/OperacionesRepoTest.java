@@ -0,0 +1,268 @@
+package com.jesusLuna.gestor_banco.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import com.jesusLuna.gestor_banco.dto.FiltroOperaciones;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+
+@DataJpaTest(properties = { "spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50", "spring.jpa.properties.hibernate.order_inserts=true",
+		"spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=pooled-lo" })
+class OperacionesRepoTest {
+
+	private static final int TAMANYO_PAGINA = 50;
+
+	@Autowired
+	private TestEntityManager em;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	private CuentaBancaria persistirCuenta(String numeroCuenta) {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(numeroCuenta);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now().minusYears(1));
+		em.persist(c);
+		return c;
+	}
+
+	private void persistirOperaciones(CuentaBancaria cuenta, int numOperaciones) {
+		for (int i = 0; i < numOperaciones; i++) {
+			Operacion o = new Operacion();
+			o.setDescripcion("Ingreso " + i);
+			o.setTipo(TipoOperacion.IngresarDinero);
+			// Varias operaciones por día para que el desempate por código importe
+			o.setFecha(LocalDate.now().minusDays(i / 7));
+			o.setCantidad(Dinero.deCentimos(100L + i));
+			o.setCuentaBancaria(cuenta);
+			em.persist(o);
+		}
+	}
+
+	private Statistics estadisticas() {
+		Statistics stats = em.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class)
+				.getStatistics();
+		stats.clear();
+		return stats;
+	}
+
+	@Test
+	void historialPaginadoRecorreLaCuentaEnOrdenSinCargarEntidades() {
+		CuentaBancaria cuenta = persistirCuenta("ES9121000418450200051332");
+		persistirOperaciones(cuenta, 230);
+		// Las operaciones de otra cuenta no deben aparecer en el historial
+		persistirOperaciones(persistirCuenta("ES7921000813610123456789"), 40);
+		em.flush();
+		em.clear();
+		Statistics stats = estadisticas();
+
+		List<OperacionResumen> historial = new ArrayList<>();
+		List<OperacionResumen> pagina = operacionesRepo.findHistorialPrimeraPagina(cuenta.getNumeroCuenta(),
+				Limit.of(TAMANYO_PAGINA));
+		while (!pagina.isEmpty()) {
+			historial.addAll(pagina);
+			OperacionResumen ultima = pagina.get(pagina.size() - 1);
+			pagina = operacionesRepo.findHistorialDespuesDe(cuenta.getNumeroCuenta(), ultima.getFecha(),
+					ultima.getCodigo(), Limit.of(TAMANYO_PAGINA));
+		}
+
+		assertEquals(230, historial.size());
+		for (int i = 1; i < historial.size(); i++) {
+			OperacionResumen anterior = historial.get(i - 1);
+			OperacionResumen actual = historial.get(i);
+			int cmp = actual.getFecha().compareTo(anterior.getFecha());
+			assertTrue(cmp < 0 || (cmp == 0 && actual.getCodigo() < anterior.getCodigo()),
+					"El historial debe ir de la operación más reciente a la más antigua");
+		}
+		// Una consulta por página (más la final vacía) y ninguna entidad cargada
+		assertEquals((230 + TAMANYO_PAGINA - 1) / TAMANYO_PAGINA + 1, stats.getPrepareStatementCount());
+		assertEquals(0, stats.getEntityLoadCount());
+	}
+
+	@Test
+	void actividadPaginadaRecorreTodasLasCuentasSinCargarEntidades() {
+		CuentaBancaria cuenta = persistirCuenta("ES9121000418450200051332");
+		CuentaBancaria otra = persistirCuenta("ES7921000813610123456789");
+		persistirOperaciones(cuenta, 130);
+		persistirOperaciones(otra, 40);
+		persistirOperacion(otra, TipoOperacion.RetirarDinero, LocalDate.now().minusDays(3), 2_000, null);
+		persistirOperacion(cuenta, TipoOperacion.RetirarDinero, LocalDate.now().minusDays(9), 3_000, null);
+		em.flush();
+		em.clear();
+		Statistics stats = estadisticas();
+
+		List<OperacionResumen> actividad = new ArrayList<>();
+		List<OperacionResumen> pagina = operacionesRepo.findActividadPrimeraPagina(Limit.of(TAMANYO_PAGINA));
+		while (!pagina.isEmpty()) {
+			actividad.addAll(pagina);
+			OperacionResumen ultima = pagina.get(pagina.size() - 1);
+			pagina = operacionesRepo.findActividadDespuesDe(ultima.getFecha(), ultima.getCodigo(),
+					Limit.of(TAMANYO_PAGINA));
+		}
+
+		assertEquals(172, actividad.size());
+		assertEquals(172, actividad.stream().map(OperacionResumen::getCodigo).distinct().count());
+		for (int i = 1; i < actividad.size(); i++) {
+			OperacionResumen anterior = actividad.get(i - 1);
+			OperacionResumen actual = actividad.get(i);
+			int cmp = actual.getFecha().compareTo(anterior.getFecha());
+			assertTrue(cmp < 0 || (cmp == 0 && actual.getCodigo() < anterior.getCodigo()),
+					"La actividad debe ir de la operación más reciente a la más antigua");
+		}
+		assertEquals(Set.of(cuenta.getNumeroCuenta(), otra.getNumeroCuenta()),
+				Set.copyOf(actividad.stream().map(OperacionResumen::getNumeroCuenta).toList()));
+		assertEquals(0, stats.getEntityLoadCount());
+
+		List<OperacionResumen> retiradas = operacionesRepo.findActividadPorTipoPrimeraPagina(TipoOperacion.RetirarDinero,
+				Limit.of(1));
+		assertEquals(otra.getNumeroCuenta(), retiradas.get(0).getNumeroCuenta());
+		retiradas = operacionesRepo.findActividadPorTipoDespuesDe(TipoOperacion.RetirarDinero,
+				retiradas.get(0).getFecha(), retiradas.get(0).getCodigo(), Limit.of(TAMANYO_PAGINA));
+		assertEquals(List.of(cuenta.getNumeroCuenta()),
+				retiradas.stream().map(OperacionResumen::getNumeroCuenta).toList());
+	}
+
+	private void persistirOperacion(CuentaBancaria cuenta, TipoOperacion tipo, LocalDate fecha, long centimos,
+			String contraparte) {
+		Operacion o = new Operacion();
+		o.setDescripcion(tipo.getNombre());
+		o.setTipo(tipo);
+		o.setFecha(fecha);
+		o.setCantidad(Dinero.deCentimos(centimos));
+		o.setNumCuentaTransferencia(contraparte);
+		o.setCuentaBancaria(cuenta);
+		em.persist(o);
+	}
+
+	@Test
+	void busquedaCombinaSoloLosCriteriosInformados() {
+		String contraparte = "FR1420041010050500013M02606";
+		LocalDate hoy = LocalDate.now();
+		CuentaBancaria cuenta = persistirCuenta("ES9121000418450200051332");
+		CuentaBancaria otra = persistirCuenta("ES7921000813610123456789");
+		persistirOperacion(cuenta, TipoOperacion.IngresarDinero, hoy.minusDays(30), 5_000, null);
+		persistirOperacion(cuenta, TipoOperacion.RetiradaTransferencia, hoy.minusDays(20), 12_000, contraparte);
+		persistirOperacion(cuenta, TipoOperacion.EntradaTransferencia, hoy.minusDays(10), 30_000, contraparte);
+		persistirOperacion(cuenta, TipoOperacion.RetirarDinero, hoy.minusDays(5), 2_000, null);
+		persistirOperacion(otra, TipoOperacion.RetiradaTransferencia, hoy.minusDays(15), 12_000, contraparte);
+		em.flush();
+		em.clear();
+
+		assertEquals(5, buscar(FiltroOperaciones.builder().build()).size());
+		assertEquals(4, buscar(FiltroOperaciones.builder().numeroCuenta(cuenta.getNumeroCuenta()).build()).size());
+		assertEquals(3, buscar(FiltroOperaciones.builder().cuentaContraparte(contraparte).build()).size());
+
+		List<OperacionResumen> transferencias = buscar(FiltroOperaciones.builder()
+				.numeroCuenta(cuenta.getNumeroCuenta())
+				.tipos(Set.of(TipoOperacion.EntradaTransferencia, TipoOperacion.RetiradaTransferencia)).build());
+		assertEquals(List.of(TipoOperacion.EntradaTransferencia, TipoOperacion.RetiradaTransferencia),
+				transferencias.stream().map(OperacionResumen::getTipo).toList());
+		assertEquals(cuenta.getNumeroCuenta(), transferencias.get(0).getNumeroCuenta());
+
+		List<OperacionResumen> rango = buscar(FiltroOperaciones.builder().fechaDesde(hoy.minusDays(25))
+				.fechaHasta(hoy.minusDays(8)).cantidadMinima(Dinero.deCentimos(10_000))
+				.cantidadMaxima(Dinero.deCentimos(20_000)).build());
+		assertEquals(List.of(otra.getNumeroCuenta(), cuenta.getNumeroCuenta()),
+				rango.stream().map(OperacionResumen::getNumeroCuenta).toList());
+	}
+
+	private List<OperacionResumen> buscar(FiltroOperaciones filtro) {
+		return operacionesRepo.buscarOperaciones(filtro, null, 0, TAMANYO_PAGINA);
+	}
+
+	@Test
+	void busquedaPaginadaRecorreTodosLosResultadosEnOrden() {
+		CuentaBancaria cuenta = persistirCuenta("ES9121000418450200051332");
+		persistirOperaciones(cuenta, 120);
+		em.flush();
+		em.clear();
+		FiltroOperaciones filtro = FiltroOperaciones.builder().numeroCuenta(cuenta.getNumeroCuenta())
+				.tipos(Set.of(TipoOperacion.IngresarDinero)).build();
+
+		List<OperacionResumen> resultados = new ArrayList<>();
+		List<OperacionResumen> pagina = operacionesRepo.buscarOperaciones(filtro, null, 0, TAMANYO_PAGINA);
+		while (!pagina.isEmpty()) {
+			resultados.addAll(pagina);
+			OperacionResumen ultima = pagina.get(pagina.size() - 1);
+			pagina = operacionesRepo.buscarOperaciones(filtro, ultima.getFecha(), ultima.getCodigo(), TAMANYO_PAGINA);
+		}
+
+		assertEquals(120, resultados.size());
+		assertEquals(120, resultados.stream().map(OperacionResumen::getCodigo).distinct().count());
+	}
+
+	@Test
+	void insercionMasivaSeEnviaEnLotesJdbc() {
+		CuentaBancaria cuenta = persistirCuenta("ES9121000418450200051332");
+		em.flush();
+		Statistics stats = estadisticas();
+
+		persistirOperaciones(cuenta, 500);
+		em.flush();
+
+		assertEquals(500, stats.getEntityInsertCount());
+		// Con IDENTITY cada INSERT se ejecutaría por separado en el persist
+		assertTrue(stats.getPrepareStatementCount() <= 30,
+				"Sentencias preparadas: " + stats.getPrepareStatementCount());
+	}
+
+	/**
+	 * Mide la inserción de operaciones a través de JPA, en bloques de mil con
+	 * vaciado del contexto entre bloques. Solo se ejecuta con
+	 * {@code -Dbenchmark=true}; el número de operaciones se ajusta con
+	 * {@code -Dbenchmark.insercion} (cien mil por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkInsercionOperaciones() {
+		int numOperaciones = Integer.getInteger("benchmark.insercion", 100_000);
+		CuentaBancaria cuenta = persistirCuenta("ES9121000418450200051332");
+		em.flush();
+
+		long inicio = System.nanoTime();
+		List<Operacion> bloque = new ArrayList<>();
+		for (int i = 0; i < numOperaciones; i++) {
+			Operacion o = new Operacion();
+			o.setDescripcion("Ingreso " + i);
+			o.setTipo(TipoOperacion.IngresarDinero);
+			o.setFecha(LocalDate.now().minusDays(i % 365));
+			o.setCantidad(Dinero.deCentimos(100L + i));
+			o.setCuentaBancaria(cuenta);
+			bloque.add(o);
+			if (bloque.size() == 1_000) {
+				operacionesRepo.saveAll(bloque);
+				em.flush();
+				em.clear();
+				cuenta = em.find(CuentaBancaria.class, cuenta.getNumeroCuenta());
+				bloque.clear();
+			}
+		}
+		operacionesRepo.saveAll(bloque);
+		em.flush();
+		long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+		System.out.printf("Inserción de %d operaciones: %d ms, %.0f filas/s%n", numOperaciones, ms,
+				numOperaciones * 1000.0 / Math.max(ms, 1));
+	}
+}
@@ -0,0 +1,333 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import com.jesusLuna.gestor_banco.dto.AgrupacionResumen;
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
+import com.jesusLuna.gestor_banco.dto.ResultadoArchivado;
+import com.jesusLuna.gestor_banco.dto.ResumenOperaciones;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenTipoCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.repository.SaldoInstantaneaRepo;
+import com.jesusLuna.gestor_banco.repository.SegmentoArchivoRepo;
+
+/**
+ * Pruebas del archivo de operaciones: después de archivar, el historial, los
+ * saldos históricos, los extractos y los resúmenes deben ser los mismos que
+ * antes. Cada bloque se archiva en su propia transacción, por eso la prueba no
+ * se ejecuta dentro de la transacción que abre {@code @DataJpaTest} por
+ * defecto.
+ */
+@DataJpaTest(showSql = false, properties = { "archivo.operaciones.meses-retencion=2",
+		"archivo.operaciones.directorio=${user.dir}/target/archivo-test", "saldos.instantaneas.operaciones=10" })
+@Import({ ArchivoOperacionesServiceImpl.class, SaldoHistoricoServiceImpl.class, OperacionesServiceImpl.class,
+		ContabilizacionServiceImpl.class, ContabilizadorLotes.class, ResumenOperacionesServiceImpl.class,
+		ExtractoPdfServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ArchivoOperacionesServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+	private static final String OTRA = "ES6421000418450200051333";
+	private static final long SALDO_APERTURA = 100_000;
+	private static final int DIAS = 240;
+
+	@Autowired
+	private ArchivoOperacionesServiceImpl archivoOperacionesService;
+
+	@Autowired
+	private SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	private OperacionesService operacionesService;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private ResumenOperacionesService resumenOperacionesService;
+
+	@Autowired
+	private ExtractoPdfService extractoPdfService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private SaldoInstantaneaRepo saldoInstantaneaRepo;
+
+	@Autowired
+	private SegmentoArchivoRepo segmentoArchivoRepo;
+
+	@Autowired
+	private ResumenCuentaDiaRepo resumenCuentaDiaRepo;
+
+	@Autowired
+	private ResumenTipoCuentaDiaRepo resumenTipoCuentaDiaRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void crearCuentasConHistorial() {
+		crearCuenta(IBAN);
+		crearCuenta(OTRA);
+		Random aleatorio = new Random(47);
+		for (int i = 0; i < 150; i++) {
+			TipoOperacion tipo = aleatorio.nextInt(3) == 0 ? TipoOperacion.RetirarDinero
+					: TipoOperacion.IngresarDinero;
+			Operacion o = new Operacion();
+			o.setDescripcion(tipo.getNombre());
+			o.setTipo(tipo);
+			o.setFecha(LocalDate.now().minusDays(aleatorio.nextInt(DIAS)));
+			o.setCantidad(Dinero.deCentimos(100 + aleatorio.nextInt(5_000)));
+			contabilizacionService.contabilizar(IBAN, o);
+		}
+		for (int i = 0; i < 20; i++) {
+			contabilizacionService.transferir(IBAN, OTRA, Dinero.deCentimos(100 + aleatorio.nextInt(1_000)),
+					"Transferencia " + i, LocalDate.now().minusDays(aleatorio.nextInt(DIAS)));
+		}
+		saldoHistoricoService.generarInstantaneas();
+	}
+
+	@AfterEach
+	void limpiar() {
+		jdbcTemplate.update("DELETE FROM dam_segmento_archivo");
+		saldoInstantaneaRepo.deleteAllInBatch();
+		resumenCuentaDiaRepo.deleteAllInBatch();
+		resumenTipoCuentaDiaRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+		jdbcTemplate.update("DELETE FROM dam_horizonte_archivo");
+		jdbcTemplate.update("DELETE FROM dam_cuenta_borrada_archivo");
+		FileSystemUtils.deleteRecursively(Paths.get("target/archivo-test").toFile());
+	}
+
+	private void crearCuenta(String iban) {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(iban);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now().minusYears(1));
+		c.setSaldo(Dinero.deCentimos(SALDO_APERTURA));
+		cuentaBancRepo.save(c);
+	}
+
+	private List<OperacionResumen> historial(String iban) {
+		List<OperacionResumen> historial = new ArrayList<>();
+		String cursor = null;
+		do {
+			PaginaKeyset<OperacionResumen> pagina = operacionesService.obtenerHistorialCuenta(iban, cursor, 25);
+			historial.addAll(pagina.getElementos());
+			cursor = pagina.getCursorSiguiente();
+		} while (cursor != null);
+		return historial;
+	}
+
+	private List<Dinero> saldosDiarios(String iban) {
+		List<Dinero> saldos = new ArrayList<>();
+		for (int d = DIAS + 1; d >= 0; d--) {
+			saldos.add(saldoHistoricoService.obtenerSaldoAFecha(iban, LocalDate.now().minusDays(d)));
+		}
+		return saldos;
+	}
+
+	private long filasExtracto(String iban, LocalDate desde, LocalDate hasta) {
+		long[] filas = new long[1];
+		extractoPdfService.generarExtracto(iban, desde, hasta, LocalDate.now(), OutputStream.nullOutputStream(),
+				n -> filas[0] = n);
+		return filas[0];
+	}
+
+	private List<ResumenOperaciones> resumenMensual(String iban) {
+		return resumenOperacionesService.obtenerResumenCuenta(iban, LocalDate.now().minusDays(DIAS + 1),
+				LocalDate.now(), AgrupacionResumen.MES);
+	}
+
+	@Test
+	void lasLecturasSonLasMismasAntesYDespuesDeArchivar() {
+		List<OperacionResumen> historial = historial(IBAN);
+		List<OperacionResumen> historialOtra = historial(OTRA);
+		List<Dinero> saldos = saldosDiarios(IBAN);
+		List<Dinero> saldosOtra = saldosDiarios(OTRA);
+		LocalDate mitad = LocalDate.now().minusDays(DIAS / 2);
+		long extracto = filasExtracto(IBAN, null, null);
+		long extractoParcial = filasExtracto(IBAN, mitad, mitad.plusDays(60));
+		List<ResumenOperaciones> resumen = resumenMensual(IBAN);
+		long total = operacionesRepo.count();
+
+		ResultadoArchivado resultado = archivoOperacionesService.archivar();
+
+		LocalDate horizonte = LocalDate.now().withDayOfMonth(1).minusMonths(2);
+		assertEquals(horizonte, resultado.getHorizonte());
+		assertTrue(resultado.getOperaciones() > 0);
+		assertEquals(total - resultado.getOperaciones(), operacionesRepo.count());
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dam_operacion WHERE fecha < ?",
+				Long.class, horizonte));
+		assertEquals(resultado.getFicheros(), segmentoArchivoRepo.count());
+
+		assertEquals(historial, historial(IBAN));
+		assertEquals(historialOtra, historial(OTRA));
+		assertEquals(saldos, saldosDiarios(IBAN));
+		assertEquals(saldosOtra, saldosDiarios(OTRA));
+		assertEquals(SALDO_APERTURA, saldoHistoricoService.saldoInicial(IBAN));
+		assertEquals(extracto, filasExtracto(IBAN, null, null));
+		assertEquals(extractoParcial, filasExtracto(IBAN, mitad, mitad.plusDays(60)));
+
+		// La reconstrucción ya no ve las operaciones archivadas y conserva sus resúmenes
+		resumenOperacionesService.reconstruir();
+		assertEquals(resumen, resumenMensual(IBAN));
+
+		// El horizonte guardado no depende de los segmentos: no retrocede aunque
+		// falten los del último mes archivado
+		assertTrue(jdbcTemplate.update("DELETE FROM dam_segmento_archivo WHERE mes >= ?",
+				horizonte.minusMonths(1)) > 0);
+		assertEquals(horizonte, archivoOperacionesService.horizonte());
+	}
+
+	@Test
+	void losMesesArchivadosQuedanCerrados() {
+		archivoOperacionesService.archivar();
+		LocalDate horizonte = archivoOperacionesService.horizonte();
+
+		Operacion antigua = new Operacion();
+		antigua.setDescripcion("Ingreso antiguo");
+		antigua.setTipo(TipoOperacion.IngresarDinero);
+		antigua.setFecha(horizonte.minusDays(1));
+		antigua.setCantidad(Dinero.deCentimos(1_000));
+		assertThrows(IllegalArgumentException.class, () -> contabilizacionService.contabilizar(IBAN, antigua));
+
+		// Una segunda pasada no encuentra nada y las operaciones nuevas se contabilizan igual
+		assertEquals(0, archivoOperacionesService.archivar().getOperaciones());
+		List<Dinero> saldos = saldosDiarios(IBAN);
+		antigua.setFecha(horizonte);
+		contabilizacionService.contabilizar(IBAN, antigua);
+		saldoHistoricoService.generarInstantaneas();
+		List<Dinero> tras = saldosDiarios(IBAN);
+		int dia = (int) (horizonte.toEpochDay() - LocalDate.now().minusDays(DIAS + 1).toEpochDay());
+		assertEquals(saldos.subList(0, dia), tras.subList(0, dia));
+		for (int d = dia; d < saldos.size(); d++) {
+			assertEquals(saldos.get(d).sumar(Dinero.deCentimos(1_000)), tras.get(d));
+		}
+	}
+
+	@Test
+	void lasOperacionesArchivadasSeBuscanPorCuentaYFecha() {
+		List<OperacionResumen> historial = historial(IBAN);
+		archivoOperacionesService.archivar();
+		LocalDate horizonte = archivoOperacionesService.horizonte();
+
+		OperacionResumen archivada = historial.stream().filter(op -> op.getFecha().isBefore(horizonte)).findFirst()
+				.orElseThrow();
+		assertFalse(operacionesRepo.existsById(archivada.getCodigo()));
+		assertEquals(archivada.getCodigo(), archivoOperacionesService
+				.buscar(IBAN, archivada.getFecha(), archivada.getCodigo()).orElseThrow().getCodigo());
+		assertTrue(archivoOperacionesService.buscar(OTRA, archivada.getFecha(), archivada.getCodigo()).isEmpty());
+	}
+
+	@Test
+	void unaCuentaNuevaConElIbanDeUnaBorradaNoHeredaSuArchivo() {
+		List<OperacionResumen> historialOtra = historial(OTRA);
+		archivoOperacionesService.archivar();
+
+		// Lo que hace el borrado de la cuenta, sin el resto de servicios
+		archivoOperacionesService.olvidarCuenta(IBAN);
+		jdbcTemplate.update("DELETE FROM dam_saldo_instantanea WHERE cuenta_id = ?", IBAN);
+		jdbcTemplate.update("DELETE FROM dam_operacion WHERE cuenta_id = ?", IBAN);
+		cuentaBancRepo.deleteById(IBAN);
+		crearCuenta(IBAN);
+
+		assertTrue(historial(IBAN).isEmpty());
+		assertEquals(0, filasExtracto(IBAN, null, null));
+		assertFalse(archivoOperacionesService.tieneTransferencias(IBAN));
+		assertEquals(historialOtra, historial(OTRA));
+	}
+
+	@Test
+	void noArrancaSinUnDirectorioAbsoluto() {
+		for (String directorio : new String[] { "", "archivo-operaciones" }) {
+			ArchivoOperacionesServiceImpl servicio = new ArchivoOperacionesServiceImpl();
+			ReflectionTestUtils.setField(servicio, "directorio", directorio);
+			assertThrows(IllegalStateException.class, servicio::iniciar);
+		}
+	}
+
+	/**
+	 * Archiva el historial de una cuenta grande y mide el tamaño de los ficheros
+	 * y el tiempo de un extracto de un mes archivado frente a uno de la tabla.
+	 * Se ejecuta con {@code -Dbenchmark=true}; el número de operaciones se
+	 * ajusta con {@code -Dbenchmark.archivo} (300.000 por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkArchivoCuentaGrande() throws IOException {
+		int numOperaciones = Integer.getInteger("benchmark.archivo", 300_000);
+		saldoInstantaneaRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		jdbcTemplate.update("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, cuenta_id) "
+				+ "SELECT NEXT VALUE FOR dam_operacion_seq, 'Operación ' || MOD(x, 50), "
+				+ "CASE WHEN MOD(x, 3) = 0 THEN 'RetirarDinero' ELSE 'IngresarDinero' END, "
+				+ "DATEADD(DAY, -MOD(x, 1500), CURRENT_DATE), 100 + CAST(RAND() * 100000 AS INT), ? FROM SYSTEM_RANGE(1, ?)",
+				IBAN, numOperaciones);
+
+		long inicio = System.nanoTime();
+		ResultadoArchivado resultado = archivoOperacionesService.archivar();
+		long msArchivar = (System.nanoTime() - inicio) / 1_000_000;
+		long bytes;
+		try (Stream<Path> ficheros = Files.walk(Paths.get("target/archivo-test"))) {
+			bytes = ficheros.filter(Files::isRegularFile).mapToLong(f -> f.toFile().length()).sum();
+		}
+
+		LocalDate antiguo = resultado.getHorizonte().minusMonths(12);
+		LocalDate reciente = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+		filasExtracto(IBAN, antiguo, antiguo.plusMonths(1).minusDays(1));
+		long t0 = System.nanoTime();
+		long filasAntiguo = filasExtracto(IBAN, antiguo, antiguo.plusMonths(1).minusDays(1));
+		long t1 = System.nanoTime();
+		long filasReciente = filasExtracto(IBAN, reciente, reciente.plusMonths(1).minusDays(1));
+		long t2 = System.nanoTime();
+
+		System.out.printf(
+				"Archivo de operaciones: %d de %d operaciones archivadas en %d ficheros, %d ms, %.1f bytes/operación; "
+						+ "extracto de un mes archivado (%d filas) %.1f ms, de un mes en la tabla (%d filas) %.1f ms%n",
+				resultado.getOperaciones(), numOperaciones, resultado.getFicheros(), msArchivar,
+				(double) bytes / Math.max(resultado.getOperaciones(), 1), filasAntiguo, (t1 - t0) / 1e6,
+				filasReciente, (t2 - t1) / 1e6);
+	}
+}
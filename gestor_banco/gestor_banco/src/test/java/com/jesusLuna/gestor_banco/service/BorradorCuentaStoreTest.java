@@ -0,0 +1,57 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class BorradorCuentaStoreTest {
+
+	private static final String IBAN = "ES7600000000000000000001";
+
+	private final BorradorCuentaStore store = new BorradorCuentaStore();
+
+	@Test
+	void acumulaCambiosDeTitularesPorIdentificador() {
+		BorradorCuenta borrador = store.crear(IBAN, 3, List.of(1L, 2L));
+
+		assertTrue(store.anyadirCliente(borrador, 5L));
+		assertFalse(store.anyadirCliente(borrador, 5L));
+		assertTrue(store.quitarCliente(borrador, 1L));
+
+		BorradorCuenta recuperado = store.obtener(borrador.getId(), IBAN, 3);
+		assertNotNull(recuperado);
+		assertEquals(Set.of(2L, 5L), recuperado.getClienteIds());
+	}
+
+	@Test
+	void descartaElBorradorSiCambiaLaVersionOLaCuenta() {
+		BorradorCuenta borrador = store.crear(IBAN, 3, List.of(1L));
+
+		assertNull(store.obtener(borrador.getId(), "ES0000000000000000000000", 3));
+		assertNull(store.obtener(borrador.getId(), IBAN, 4));
+		// Tras detectar la versión obsoleta el borrador ya no existe
+		assertNull(store.obtener(borrador.getId(), IBAN, 3));
+	}
+
+	@Test
+	void respetaLosLimitesDeMemoria() {
+		for (int i = 0; i < BorradorCuentaStore.MAX_BORRADORES + 50; i++) {
+			store.crear(IBAN, 0, List.of());
+		}
+		assertEquals(BorradorCuentaStore.MAX_BORRADORES, store.tamanyo());
+
+		BorradorCuenta borrador = store.crear(IBAN, 0, List.of());
+		for (long id = 0; id < BorradorCuentaStore.MAX_CLIENTES_POR_BORRADOR; id++) {
+			store.anyadirCliente(borrador, id);
+		}
+		assertThrows(IllegalArgumentException.class, () -> store.anyadirCliente(borrador, -1L));
+	}
+}
@@ -0,0 +1,189 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+/**
+ * Pruebas de las colas de contabilización. Los lotes los confirman los hilos
+ * de las colas, por eso la prueba no se ejecuta dentro de la transacción que
+ * abre {@code @DataJpaTest} por defecto.
+ */
+@DataJpaTest(showSql = false, properties = "contabilizacion.colas.activas=true")
+@Import({ ColaContabilizacionServiceImpl.class, ContabilizacionServiceImpl.class, ContabilizadorLotes.class,
+		SaldoHistoricoServiceImpl.class, ResumenOperacionesServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ColaContabilizacionServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+	private static final int HILOS = 16;
+
+	@Autowired
+	private ColaContabilizacionServiceImpl colaContabilizacion;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@BeforeEach
+	void crearCuenta() {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(IBAN);
+		c.setTipoCuenta(TipoCuenta.EMPRESARIAL);
+		c.setFechaCreacion(LocalDate.now());
+		c.setSaldo(Dinero.deCentimos(100_000));
+		cuentaBancRepo.save(c);
+	}
+
+	@AfterEach
+	void limpiar() {
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	private static Operacion operacion(TipoOperacion tipo, long euros) {
+		Operacion o = new Operacion();
+		o.setDescripcion(tipo.name());
+		o.setTipo(tipo);
+		o.setFecha(LocalDate.now());
+		o.setCantidad(Dinero.deCentimos(euros * 100));
+		return o;
+	}
+
+	@Test
+	void retiradasEncoladasNuncaDejanSaldoNegativoYSeConfirmanEnLotes() {
+		long lotesAntes = colaContabilizacion.getLotesConfirmados();
+		// 300 retiradas de 10 contra un saldo de 1000: exactamente 100 deben pasar
+		List<CompletableFuture<Operacion>> futuros = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			futuros.add(colaContabilizacion.encolar(IBAN, operacion(TipoOperacion.RetirarDinero, 10)));
+		}
+
+		int aceptadas = 0;
+		for (CompletableFuture<Operacion> futuro : futuros) {
+			try {
+				assertTrue(futuro.join().getCodigo() > 0);
+				aceptadas++;
+			} catch (CompletionException e) {
+				assertInstanceOf(SaldoInsuficienteException.class, e.getCause());
+			}
+		}
+
+		assertEquals(100, aceptadas);
+		assertEquals(Dinero.CERO, cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(100, operacionesRepo.count());
+		assertTrue(colaContabilizacion.getLotesConfirmados() - lotesAntes < 300);
+	}
+
+	@Test
+	void unaOperacionRechazadaNoAfectaAlRestoDelLote() {
+		CompletableFuture<Operacion> inexistente = colaContabilizacion.encolar("ES7921000813610123456789",
+				operacion(TipoOperacion.IngresarDinero, 5));
+		CompletableFuture<Operacion> valida = colaContabilizacion.encolar(IBAN,
+				operacion(TipoOperacion.IngresarDinero, 5));
+
+		CompletionException e = assertThrows(CompletionException.class,
+				inexistente::join);
+		assertInstanceOf(CuentaNoEncontradaException.class, e.getCause());
+		assertEquals(TipoOperacion.IngresarDinero, valida.join().getTipo());
+		assertEquals(Dinero.deCentimos(100_500), cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+	}
+
+	@Test
+	void unaDescripcionDemasiadoLargaSeRechazaAlEncolar() {
+		Operacion larga = operacion(TipoOperacion.IngresarDinero, 5);
+		larga.setDescripcion("x".repeat(256));
+		assertThrows(IllegalArgumentException.class, () -> colaContabilizacion.encolar(IBAN, larga));
+
+		// El carril de la cuenta sigue contabilizando
+		assertEquals(TipoOperacion.IngresarDinero,
+				colaContabilizacion.encolar(IBAN, operacion(TipoOperacion.IngresarDinero, 5)).join().getTipo());
+		assertEquals(1, operacionesRepo.count());
+	}
+
+	private long medir(int operaciones, BiFunction<String, Operacion, Operacion> contabilizar) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+		try {
+			long inicio = System.nanoTime();
+			List<Future<Operacion>> futuros = new ArrayList<>();
+			for (int i = 0; i < operaciones; i++) {
+				futuros.add(pool.submit(() -> contabilizar.apply(IBAN, operacion(TipoOperacion.IngresarDinero, 1))));
+			}
+			for (Future<Operacion> f : futuros) {
+				f.get();
+			}
+			return (System.nanoTime() - inicio) / 1_000_000;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void cuentaCalienteNoPierdeIngresosPorLasColas() throws Exception {
+		int operaciones = 400;
+
+		medir(operaciones, colaContabilizacion::contabilizar);
+
+		assertEquals(Dinero.deCentimos(100_000 + operaciones * 100L),
+				cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(operaciones, operacionesRepo.count());
+	}
+
+	/**
+	 * Compara la contabilización directa con la de las colas cuando todos los
+	 * hilos escriben en la misma cuenta. Se ejecuta con
+	 * {@code -Dbenchmark=true}; el número de operaciones se ajusta con
+	 * {@code -Dbenchmark.cuentaCaliente} (2.000 por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkCuentaCaliente() throws Exception {
+		int operaciones = Integer.getInteger("benchmark.cuentaCaliente", 2_000);
+
+		long directa = medir(operaciones, contabilizacionService::contabilizar);
+		long encolada = medir(operaciones, colaContabilizacion::contabilizar);
+
+		System.out.printf("Cuenta caliente, %d ingresos con %d hilos: directa %d ms (%.0f/s), colas %d ms (%.0f/s)%n",
+				operaciones, HILOS, directa, operaciones * 1000.0 / Math.max(directa, 1), encolada,
+				operaciones * 1000.0 / Math.max(encolada, 1));
+		assertEquals(Dinero.deCentimos(100_000 + 2L * operaciones * 100),
+				cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(2L * operaciones, operacionesRepo.count());
+	}
+}
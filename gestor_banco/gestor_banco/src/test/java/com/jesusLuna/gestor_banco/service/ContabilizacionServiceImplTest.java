@@ -0,0 +1,353 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.dto.ErrorLineaCarga;
+import com.jesusLuna.gestor_banco.dto.ResultadoCargaApuntes;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.OperacionNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+/**
+ * Pruebas de concurrencia del servicio de contabilización. Cada hilo confirma
+ * su propia transacción, por eso la prueba no se ejecuta dentro de la
+ * transacción que abre {@code @DataJpaTest} por defecto.
+ */
+@DataJpaTest(showSql = false)
+@Import({ ContabilizacionServiceImpl.class, ContabilizadorLotes.class, SaldoHistoricoServiceImpl.class,
+		ResumenOperacionesServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ContabilizacionServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+	private static final int HILOS = 16;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@BeforeEach
+	void crearCuenta() {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(IBAN);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now());
+		c.setSaldo(Dinero.deCentimos(100_000));
+		cuentaBancRepo.save(c);
+	}
+
+	@AfterEach
+	void limpiar() {
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	private static Operacion operacion(TipoOperacion tipo, long euros) {
+		Operacion o = new Operacion();
+		o.setDescripcion(tipo.name());
+		o.setTipo(tipo);
+		o.setFecha(LocalDate.now());
+		o.setCantidad(Dinero.deCentimos(euros * 100));
+		return o;
+	}
+
+	private static <T> List<T> enParalelo(int tareas, Callable<T> tarea) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+		try {
+			List<Future<T>> futuros = new ArrayList<>();
+			for (int i = 0; i < tareas; i++) {
+				futuros.add(pool.submit(tarea));
+			}
+			List<T> resultados = new ArrayList<>();
+			for (Future<T> f : futuros) {
+				resultados.add(f.get());
+			}
+			return resultados;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void retiradasConcurrentesNuncaDejanSaldoNegativo() throws Exception {
+		// 300 retiradas de 10 contra un saldo de 1000: exactamente 100 deben pasar
+		List<Boolean> resultados = enParalelo(300, () -> {
+			try {
+				contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.RetirarDinero, 10));
+				return true;
+			} catch (SaldoInsuficienteException e) {
+				return false;
+			}
+		});
+
+		assertEquals(100, resultados.stream().filter(r -> r).count());
+		assertEquals(Dinero.CERO, cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(100, operacionesRepo.count());
+	}
+
+	@Test
+	void ingresosYRetiradasConcurrentesNoPierdenActualizaciones() throws Exception {
+		enParalelo(400, () -> contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.IngresarDinero, 5)));
+		enParalelo(200, () -> contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.RetirarDinero, 5)));
+
+		assertEquals(Dinero.deCentimos((1000 + 400 * 5 - 200 * 5) * 100),
+				cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(600, operacionesRepo.count());
+	}
+
+	private List<String> crearCuentas(int numero, long saldoEuros) {
+		List<String> ibans = new ArrayList<>();
+		for (int i = 0; i < numero; i++) {
+			CuentaBancaria c = new CuentaBancaria();
+			c.setNumeroCuenta(String.format("ES00%020d", i));
+			c.setTipoCuenta(TipoCuenta.CORRIENTE);
+			c.setFechaCreacion(LocalDate.now());
+			c.setSaldo(Dinero.deCentimos(saldoEuros * 100));
+			cuentaBancRepo.save(c);
+			ibans.add(c.getNumeroCuenta());
+		}
+		return ibans;
+	}
+
+	private long saldoTotal() {
+		return cuentaBancRepo.findAll().stream().mapToLong(c -> c.getSaldo().getCentimos()).sum();
+	}
+
+	@Test
+	void transferenciaSinSaldoNoDejaNingunaPata() {
+		String destino = crearCuentas(1, 0).get(0);
+
+		assertThrows(SaldoInsuficienteException.class,
+				() -> contabilizacionService.transferir(IBAN, destino, Dinero.deCentimos(500_000), "Traspaso",
+						LocalDate.now()));
+
+		assertEquals(Dinero.deCentimos(100_000), cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(Dinero.CERO, cuentaBancRepo.findById(destino).orElseThrow().getSaldo());
+		assertEquals(0, operacionesRepo.count());
+	}
+
+	/**
+	 * N hilos hacen transferencias aleatorias entre M cuentas, incluidas
+	 * transferencias opuestas simultáneas. El dinero total debe conservarse y no
+	 * debe producirse ningún interbloqueo. Para medir el rendimiento se ejecuta
+	 * con {@code -Dbenchmark=true}, que imprime el tiempo, y se sube el número de
+	 * transferencias con {@code -Dbenchmark.transferencias=N}.
+	 */
+	@Test
+	void transferenciasAleatoriasConservanElDineroTotal() throws Exception {
+		List<String> ibans = crearCuentas(10, 100);
+		long totalInicial = saldoTotal();
+		int transferencias = Integer.getInteger("benchmark.transferencias", 400);
+
+		long inicio = System.nanoTime();
+		List<Boolean> resultados = enParalelo(transferencias, () -> {
+			ThreadLocalRandom rnd = ThreadLocalRandom.current();
+			String origen = ibans.get(rnd.nextInt(ibans.size()));
+			String destino = ibans.get(rnd.nextInt(ibans.size()));
+			if (origen.equals(destino)) {
+				return false;
+			}
+			try {
+				// Importes con céntimos: con float el total dejaría de cuadrar
+				contabilizacionService.transferir(origen, destino, Dinero.deCentimos(1 + rnd.nextInt(2000)), "Traspaso",
+						LocalDate.now());
+				return true;
+			} catch (SaldoInsuficienteException e) {
+				return false;
+			}
+		});
+		long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+		long hechas = resultados.stream().filter(r -> r).count();
+		if (Boolean.getBoolean("benchmark")) {
+			System.out.printf("Transferencias: %d de %d con %d hilos en %d ms (%.0f/s)%n", hechas, transferencias,
+					HILOS, ms, hechas * 1000.0 / Math.max(ms, 1));
+		}
+		assertEquals(totalInicial, saldoTotal());
+		assertEquals(hechas * 2, operacionesRepo.count());
+	}
+
+	@Test
+	void cuentaInexistenteNoRegistraOperacion() {
+		assertThrows(CuentaNoEncontradaException.class, () -> contabilizacionService
+				.contabilizar("ES7921000813610123456789", operacion(TipoOperacion.IngresarDinero, 5)));
+		assertEquals(0, operacionesRepo.count());
+	}
+
+	@Test
+	void anularCompensaLaOperacionSinBorrarlaYEsIdempotente() {
+		Operacion ingreso = contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.IngresarDinero, 250));
+
+		Operacion anulacion = contabilizacionService.anular(ingreso.getCodigo());
+		assertEquals(TipoOperacion.RetirarDinero, anulacion.getTipo());
+		assertEquals(ingreso.getCantidad(), anulacion.getCantidad());
+		assertEquals(ingreso.getCodigo(), anulacion.getCodigoAnulada());
+		assertEquals(anulacion.getCodigo(), contabilizacionService.anular(ingreso.getCodigo()).getCodigo());
+
+		assertEquals(Dinero.deCentimos(100_000), cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(2, operacionesRepo.count());
+		assertThrows(IllegalArgumentException.class, () -> contabilizacionService.anular(anulacion.getCodigo()));
+		assertThrows(OperacionNoEncontradaException.class, () -> contabilizacionService.anular(-1));
+	}
+
+	@Test
+	void anularUnIngresoYaGastadoNoDejaSaldoNegativo() {
+		Operacion ingreso = contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.IngresarDinero, 500));
+		contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.RetirarDinero, 1_200));
+
+		assertThrows(SaldoInsuficienteException.class, () -> contabilizacionService.anular(ingreso.getCodigo()));
+		assertEquals(Dinero.deCentimos(30_000), cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(2, operacionesRepo.count());
+	}
+
+	@Test
+	void anulacionesConcurrentesDeLaMismaOperacionSoloCompensanUnaVez() throws Exception {
+		Operacion retirada = contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.RetirarDinero, 100));
+
+		List<Long> anulaciones = enParalelo(HILOS * 2, () -> contabilizacionService.anular(retirada.getCodigo()).getCodigo());
+
+		assertEquals(1, anulaciones.stream().distinct().count());
+		assertEquals(Dinero.deCentimos(100_000), cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+		assertEquals(2, operacionesRepo.count());
+	}
+
+	@Test
+	void ficheroDeApuntesContabilizaLasLineasValidasYInformaDeLasDemas() throws IOException {
+		LocalDate hoy = LocalDate.now();
+		String fichero = String.join("\n",
+				"# IBAN;TIPO;IMPORTE;FECHA;DESCRIPCION",
+				IBAN + ";IngresarDinero;200.50;" + hoy + ";Nómina",
+				IBAN + ";RetirarDinero;2000;" + hoy + ";Sin saldo",
+				"ES7921000813610123456789;IngresarDinero;10;" + hoy + ";Cuenta de otro banco",
+				"ES0000;IngresarDinero;10;" + hoy + ";IBAN erróneo",
+				IBAN + ";Transferir;10;" + hoy + ";Tipo erróneo",
+				IBAN + ";IngresarDinero;diez;" + hoy + ";Importe erróneo",
+				IBAN + ";RetirarDinero;100,25;" + hoy + ";Cajero; con punto y coma",
+				"",
+				IBAN + ";IngresarDinero;5;" + hoy.plusDays(1) + ";Futuro");
+
+		ResultadoCargaApuntes resultado = contabilizacionService.contabilizarFichero(new StringReader(fichero));
+
+		assertEquals(8, resultado.getLineasLeidas());
+		assertEquals(2, resultado.getLineasContabilizadas());
+		assertEquals(1, resultado.getCuentasAfectadas());
+		assertEquals(List.of(3L, 4L, 5L, 6L, 7L, 10L),
+				resultado.getErrores().stream().map(ErrorLineaCarga::getLinea).toList());
+		CuentaBancaria cuenta = cuentaBancRepo.findById(IBAN).orElseThrow();
+		assertEquals(Dinero.deCentimos(100_000 + 20_050 - 10_025), cuenta.getSaldo());
+		// Los dos apuntes se aplican con un único UPDATE
+		assertEquals(1, cuenta.getVersion());
+		assertEquals(2, operacionesRepo.count());
+	}
+
+	/**
+	 * IBAN español válido con el número de cuenta indicado.
+	 */
+	private static String ibanValido(long numero) {
+		String bban = String.format("%020d", numero);
+		int control = 98 - new BigInteger(bban + "142800").mod(BigInteger.valueOf(97)).intValue();
+		return String.format("ES%02d%s", control, bban);
+	}
+
+	/**
+	 * Los apuntes en lotes toman sus identificadores de la misma secuencia que
+	 * las operaciones guardadas con JPA, por bloques: mezclados en paralelo no
+	 * deben repetir ninguno.
+	 */
+	@Test
+	void losLotesYLasOperacionesJpaNoRepitenIdentificadores() throws Exception {
+		int lineas = Operacion.BLOQUE_IDS * 2 + 7;
+		StringBuilder fichero = new StringBuilder();
+		for (int i = 0; i < lineas; i++) {
+			fichero.append(IBAN).append(";IngresarDinero;1;").append(LocalDate.now()).append(";Lote ").append(i)
+					.append('\n');
+		}
+
+		List<Long> resultados = enParalelo(40, () -> {
+			if (ThreadLocalRandom.current().nextBoolean()) {
+				contabilizacionService.contabilizar(IBAN, operacion(TipoOperacion.IngresarDinero, 1));
+				return 1L;
+			}
+			return contabilizacionService.contabilizarFichero(new StringReader(fichero.toString()))
+					.getLineasContabilizadas();
+		});
+
+		long total = resultados.stream().mapToLong(Long::longValue).sum();
+		assertEquals(total, operacionesRepo.count());
+		assertEquals(Dinero.deCentimos(100_000 + total * 100), cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo());
+	}
+
+	/**
+	 * Contabiliza un fichero que ocupa varios bloques, repartido entre varias
+	 * cuentas. Para medir el rendimiento se ejecuta con {@code -Dbenchmark=true},
+	 * que imprime el tiempo, y se sube el número de líneas con
+	 * {@code -Dbenchmark.apuntes=N}.
+	 */
+	@Test
+	void ficheroGrandeSeContabilizaPorBloques() throws IOException {
+		int numCuentas = 200;
+		int lineas = Integer.getInteger("benchmark.apuntes", ContabilizacionServiceImpl.TAMANYO_BLOQUE * 5 / 2);
+		List<String> ibans = new ArrayList<>();
+		for (int i = 0; i < numCuentas; i++) {
+			CuentaBancaria c = new CuentaBancaria();
+			c.setNumeroCuenta(ibanValido(i + 1));
+			c.setTipoCuenta(TipoCuenta.CORRIENTE);
+			c.setFechaCreacion(LocalDate.now());
+			ibans.add(cuentaBancRepo.save(c).getNumeroCuenta());
+		}
+		StringBuilder fichero = new StringBuilder();
+		for (int i = 0; i < lineas; i++) {
+			fichero.append(ibans.get(i % numCuentas)).append(";IngresarDinero;1.01;").append(LocalDate.now())
+					.append(";Apunte ").append(i).append('\n');
+		}
+
+		long inicio = System.nanoTime();
+		ResultadoCargaApuntes resultado = contabilizacionService
+				.contabilizarFichero(new StringReader(fichero.toString()));
+		long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+		if (Boolean.getBoolean("benchmark")) {
+			System.out.printf("Carga de apuntes: %d líneas en %d ms (%.0f líneas/s)%n", lineas, ms,
+					lineas * 1000.0 / Math.max(ms, 1));
+		}
+		assertEquals(lineas, resultado.getLineasContabilizadas());
+		assertEquals(List.of(), resultado.getErrores());
+		assertEquals(numCuentas, resultado.getCuentasAfectadas());
+		assertEquals(100_000 + lineas * 101L, saldoTotal());
+		assertEquals(lineas, operacionesRepo.count());
+	}
+}
@@ -0,0 +1,161 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.ExportacionNoEncontradaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+/**
+ * Pruebas de las exportaciones asíncronas. El PDF se genera en otro hilo, que
+ * solo ve datos confirmados, por eso la prueba no se ejecuta dentro de la
+ * transacción que abre {@code @DataJpaTest} por defecto.
+ */
+@DataJpaTest(properties = "extracto.cache.directorio=target/extractos-test")
+@Import({ ExportacionServiceImpl.class, ExtractoPdfServiceImpl.class, ExtractoCache.class,
+		SaldoHistoricoServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExportacionServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+	private static final int NUM_OPERACIONES = 1_200;
+
+	@Autowired
+	private ExportacionServiceImpl exportacionService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ExtractoCache extractoCache;
+
+	@BeforeEach
+	void crearCuenta() {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(IBAN);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now().minusYears(1));
+		cuentaBancRepo.save(c);
+
+		List<Operacion> operaciones = new ArrayList<>();
+		for (int i = 0; i < NUM_OPERACIONES; i++) {
+			Operacion o = new Operacion();
+			o.setDescripcion("Ingreso " + i);
+			o.setTipo(TipoOperacion.IngresarDinero);
+			o.setFecha(LocalDate.now().minusDays(i % 300));
+			o.setCantidad(Dinero.deCentimos(100L + i));
+			o.setCuentaBancaria(cuentaBancRepo.getReferenceById(IBAN));
+			operaciones.add(o);
+		}
+		operacionesRepo.saveAll(operaciones);
+	}
+
+	@AfterEach
+	void limpiar() {
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+		extractoCache.invalidar(IBAN);
+	}
+
+	private TrabajoExportacion esperar(TrabajoExportacion trabajo) throws InterruptedException {
+		for (int i = 0; i < 600 && !trabajo.isTerminado(); i++) {
+			Thread.sleep(50);
+		}
+		assertTrue(trabajo.isTerminado(), "La exportación no terminó a tiempo");
+		return trabajo;
+	}
+
+	@Test
+	void exportacionGeneraElFicheroEnSegundoPlanEInformaDelProgreso() throws Exception {
+		TrabajoExportacion trabajo = exportacionService.solicitar(IBAN, null, null);
+
+		esperar(trabajo);
+
+		assertEquals(TrabajoExportacion.Estado.COMPLETADO, trabajo.getEstado());
+		assertEquals(NUM_OPERACIONES, trabajo.getFilasTotales());
+		assertEquals(NUM_OPERACIONES, trabajo.getFilasProcesadas());
+		Path fichero = exportacionService.obtenerCompletado(trabajo.getId()).getFichero();
+		byte[] cabecera = Arrays.copyOf(Files.readAllBytes(fichero), 4);
+		assertArrayEquals("%PDF".getBytes(), cabecera);
+	}
+
+	@Test
+	void mismaExportacionSinMovimientosSeSirveDeLaCache() throws Exception {
+		TrabajoExportacion primera = esperar(exportacionService.solicitar(IBAN, null, null));
+
+		TrabajoExportacion segunda = exportacionService.solicitar(IBAN, null, null);
+
+		// Se completa en el momento, sin pasar por el ejecutor
+		assertEquals(TrabajoExportacion.Estado.COMPLETADO, segunda.getEstado());
+		assertEquals(primera.getClave(), segunda.getClave());
+		assertEquals(primera.getFichero(), segunda.getFichero());
+	}
+
+	@Test
+	void unMovimientoOUnRangoDistintoGeneranOtroExtracto() throws Exception {
+		TrabajoExportacion completo = esperar(exportacionService.solicitar(IBAN, null, null));
+		TrabajoExportacion acotado = esperar(
+				exportacionService.solicitar(IBAN, LocalDate.now().minusDays(9), LocalDate.now()));
+		assertNotEquals(completo.getClave(), acotado.getClave());
+		assertEquals(NUM_OPERACIONES * 10 / 300, acotado.getFilasTotales());
+
+		// Cualquier cambio de la cuenta incrementa su versión
+		CuentaBancaria cuenta = cuentaBancRepo.findById(IBAN).orElseThrow();
+		cuenta.setSaldo(Dinero.deCentimos(500));
+		cuentaBancRepo.save(cuenta);
+
+		TrabajoExportacion trasAbono = esperar(exportacionService.solicitar(IBAN, null, null));
+		assertNotEquals(completo.getClave(), trasAbono.getClave());
+		assertEquals(NUM_OPERACIONES, trasAbono.getFilasTotales());
+	}
+
+	@Test
+	void exportacionesCaducadasSeOlvidanPeroSuExtractoSigueEnCache() throws Exception {
+		TrabajoExportacion trabajo = esperar(exportacionService.solicitar(IBAN, null, null));
+		Path fichero = trabajo.getFichero();
+
+		exportacionService.purgarCaducadas(trabajo.getTerminadoEn() + 1);
+		assertEquals(trabajo, exportacionService.obtener(trabajo.getId()));
+
+		exportacionService.purgarCaducadas(
+				trabajo.getTerminadoEn() + ExportacionServiceImpl.TTL_MINUTOS * 60_000L + 1);
+		assertThrows(ExportacionNoEncontradaException.class, () -> exportacionService.obtener(trabajo.getId()));
+		assertTrue(Files.exists(fichero));
+	}
+
+	@Test
+	void cuentaInexistenteSeRechazaAlSolicitar() {
+		assertThrows(CuentaNoEncontradaException.class,
+				() -> exportacionService.solicitar("ES0000000000000000000000", null, null));
+		assertThrows(ExportacionNoEncontradaException.class, () -> exportacionService.obtener("no-existe"));
+	}
+}
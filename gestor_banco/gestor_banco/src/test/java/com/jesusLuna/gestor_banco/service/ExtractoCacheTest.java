@@ -0,0 +1,116 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtractoCacheTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+
+	@TempDir
+	Path directorio;
+
+	private static String guardar(ExtractoCache cache, String clave, int bytes) throws IOException {
+		Path temporal = cache.crearTemporal();
+		Files.write(temporal, new byte[bytes]);
+		cache.guardar(clave, temporal);
+		return clave;
+	}
+
+	private static final LocalDate HOY = LocalDate.of(2024, 6, 3);
+
+	private static String clave(long version) {
+		return ExtractoCache.clave(IBAN, ExtractoCache.FORMATO_PDF, null, null, HOY, version);
+	}
+
+	@Test
+	void laClaveCambiaConLaVersionElRangoYLaExpedicion() {
+		assertEquals(clave(3), clave(3));
+		assertNotEquals(clave(3), clave(4));
+		assertNotEquals(clave(3), ExtractoCache.clave(IBAN, ExtractoCache.FORMATO_PDF, LocalDate.of(2024, 1, 1),
+				null, HOY, 3));
+		// El extracto lleva impresa la fecha de expedición: al día siguiente es otro
+		assertNotEquals(clave(3), ExtractoCache.clave(IBAN, ExtractoCache.FORMATO_PDF, null, null,
+				HOY.plusDays(1), 3));
+		assertTrue(clave(3).startsWith(IBAN + "-"));
+	}
+
+	@Test
+	void alSuperarElTamanyoSeDescartanLosMenosUsados() throws IOException {
+		ExtractoCache cache = new ExtractoCache(directorio, 300);
+		String a = guardar(cache, clave(1), 100);
+		String b = guardar(cache, clave(2), 100);
+		String c = guardar(cache, clave(3), 100);
+		// Usar el primero lo convierte en el más reciente
+		assertNotNull(cache.obtener(a));
+
+		guardar(cache, clave(4), 100);
+
+		assertNull(cache.obtener(b));
+		assertNotNull(cache.obtener(a));
+		assertNotNull(cache.obtener(c));
+		assertEquals(300, cache.tamanyoTotal());
+		assertEquals(3, Files.list(directorio).count());
+	}
+
+	@Test
+	void recuperaLosExtractosAlReabrirYBorraLosTemporales() throws IOException {
+		ExtractoCache cache = new ExtractoCache(directorio, 1_000);
+		String a = guardar(cache, clave(1), 100);
+		Path temporal = cache.crearTemporal();
+
+		ExtractoCache reabierta = new ExtractoCache(directorio, 1_000);
+
+		assertNotNull(reabierta.obtener(a));
+		assertEquals(100, reabierta.tamanyoTotal());
+		assertFalse(Files.exists(temporal));
+	}
+
+	@Test
+	void invalidarBorraSoloLosExtractosDeLaCuenta() throws IOException {
+		ExtractoCache cache = new ExtractoCache(directorio, 1_000);
+		String propia = guardar(cache, clave(1), 100);
+		String ajena = guardar(cache, ExtractoCache.clave("ES7921000813610123456789", ExtractoCache.FORMATO_PDF,
+				null, null, HOY, 1), 100);
+
+		cache.invalidar(IBAN);
+
+		assertNull(cache.obtener(propia));
+		assertNotNull(cache.obtener(ajena));
+		assertEquals(100, cache.tamanyoTotal());
+	}
+
+	@Test
+	void unExtractoAbiertoSeLeeEnteroAunqueSalgaDeLaCache() throws IOException {
+		ExtractoCache cache = new ExtractoCache(directorio, 150);
+		String a = guardar(cache, clave(1), 100);
+
+		try (FileChannel canal = cache.abrir(a)) {
+			// Guardar otro extracto descarta el que se está enviando
+			guardar(cache, clave(2), 100);
+			assertNull(cache.obtener(a));
+			assertNull(cache.abrir(a));
+
+			long leidos = 0;
+			ByteBuffer bloque = ByteBuffer.allocate(64);
+			for (int n = canal.read(bloque); n >= 0; n = canal.read(bloque.clear())) {
+				leidos += n;
+			}
+			assertEquals(100, leidos);
+		}
+	}
+}
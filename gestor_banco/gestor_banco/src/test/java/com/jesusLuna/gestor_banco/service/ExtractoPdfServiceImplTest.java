@@ -0,0 +1,132 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+
+@DataJpaTest
+@Import({ ExtractoPdfServiceImpl.class, SaldoHistoricoServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+class ExtractoPdfServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+
+	@Autowired
+	private TestEntityManager em;
+
+	@Autowired
+	private ExtractoPdfService extractoPdfService;
+
+	private void crearCuenta(String numeroCuenta) {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(numeroCuenta);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now().minusYears(5));
+		em.persist(c);
+		em.flush();
+	}
+
+	/**
+	 * Inserta las operaciones directamente en SQL; una de cada
+	 * {@code cadaTransferencia} es una transferencia (0 para ninguna).
+	 */
+	private void sembrarOperaciones(String numeroCuenta, int numOperaciones, int cadaTransferencia) {
+		em.getEntityManager()
+				.createNativeQuery("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, num_cuenta_transferencia, cuenta_id) "
+						+ "SELECT NEXT VALUE FOR dam_operacion_seq, 'Operación ' || x, "
+						+ "CASE WHEN ?2 > 0 AND MOD(x, ?2) = 0 THEN 'RetiradaTransferencia' ELSE 'IngresarDinero' END, "
+						+ "DATEADD(DAY, -MOD(x, 1500), CURRENT_DATE), 100 + MOD(x, 100000), "
+						+ "CASE WHEN ?2 > 0 AND MOD(x, ?2) = 0 THEN 'ES7921000813610123456789' END, ?3 "
+						+ "FROM SYSTEM_RANGE(1, ?1)")
+				.setParameter(1, numOperaciones).setParameter(2, cadaTransferencia).setParameter(3, numeroCuenta)
+				.executeUpdate();
+	}
+
+	private static PdfDocument leer(byte[] pdf) throws IOException {
+		return new PdfDocument(new PdfReader(new ByteArrayInputStream(pdf)));
+	}
+
+	@Test
+	void extractoIncluyeTodasLasOperacionesEnVariasPaginas() throws IOException {
+		crearCuenta(IBAN);
+		sembrarOperaciones(IBAN, 2_000, 50);
+		em.clear();
+
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		extractoPdfService.generarExtracto(IBAN, salida);
+
+		try (PdfDocument pdf = leer(salida.toByteArray())) {
+			assertTrue(pdf.getNumberOfPages() > 1);
+			String primera = PdfTextExtractor.getTextFromPage(pdf.getFirstPage());
+			assertTrue(primera.contains("Cuenta destino"));
+			StringBuilder texto = new StringBuilder();
+			for (int i = 1; i <= pdf.getNumberOfPages(); i++) {
+				texto.append(PdfTextExtractor.getTextFromPage(pdf.getPage(i)));
+			}
+			// Cada fila lleva su cantidad y su saldo; se cuentan las 2000
+			assertEquals(2 * 2_000, texto.toString().split(" €", -1).length - 1);
+		}
+	}
+
+	@Test
+	void sinTransferenciasNoSeIncluyeLaColumnaDeCuentaDestino() throws IOException {
+		crearCuenta(IBAN);
+		sembrarOperaciones(IBAN, 10, 0);
+		em.clear();
+
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		extractoPdfService.generarExtracto(IBAN, salida);
+
+		try (PdfDocument pdf = leer(salida.toByteArray())) {
+			assertFalse(PdfTextExtractor.getTextFromPage(pdf.getFirstPage()).contains("Cuenta destino"));
+		}
+	}
+
+	@Test
+	void cuentaInexistenteNoGeneraExtracto() {
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		assertThrows(CuentaNoEncontradaException.class, () -> extractoPdfService.generarExtracto(IBAN, salida));
+		assertEquals(0, salida.size());
+	}
+
+	/**
+	 * Prueba de rendimiento del extracto de una cuenta grande. Se ejecuta con
+	 * {@code -Dbenchmark=true}; el número de operaciones se ajusta con
+	 * {@code -Dbenchmark.extracto} (un millón por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkExtractoCuentaGrande() {
+		int numOperaciones = Integer.getInteger("benchmark.extracto", 1_000_000);
+		crearCuenta(IBAN);
+		sembrarOperaciones(IBAN, numOperaciones, 20);
+		em.clear();
+
+		long inicio = System.nanoTime();
+		extractoPdfService.generarExtracto(IBAN, OutputStream.nullOutputStream());
+		long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+		System.out.printf("Extracto PDF (%d operaciones): %d ms, %.0f filas/s%n", numOperaciones, ms,
+				numOperaciones * 1000.0 / Math.max(ms, 1));
+	}
+}
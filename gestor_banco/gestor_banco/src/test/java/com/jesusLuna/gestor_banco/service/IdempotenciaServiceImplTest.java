@@ -0,0 +1,174 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.exception.ClaveIdempotenciaReutilizadaException;
+import com.jesusLuna.gestor_banco.exception.SaldoInsuficienteException;
+import com.jesusLuna.gestor_banco.repository.ClaveIdempotenciaRepo;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+
+@DataJpaTest
+@Import({ IdempotenciaServiceImpl.class, ContabilizacionServiceImpl.class, ContabilizadorLotes.class,
+		SaldoHistoricoServiceImpl.class, ResumenOperacionesServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotenciaServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+
+	@Autowired
+	private IdempotenciaService idempotenciaService;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ClaveIdempotenciaRepo claveRepo;
+
+	@Autowired
+	private AutowireCapableBeanFactory beanFactory;
+
+	@BeforeEach
+	void crearCuenta() {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(IBAN);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now());
+		c.setSaldo(Dinero.deCentimos(10_000));
+		cuentaBancRepo.save(c);
+	}
+
+	@AfterEach
+	void limpiar() {
+		claveRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	private String retirar(long centimos) {
+		Operacion o = new Operacion();
+		o.setDescripcion("Retirada");
+		o.setTipo(TipoOperacion.RetirarDinero);
+		o.setFecha(LocalDate.now());
+		o.setCantidad(Dinero.deCentimos(centimos));
+		return "operacion-" + contabilizacionService.contabilizar(IBAN, o).getCodigo();
+	}
+
+	private static String peticion(String usuario, long centimos) {
+		return usuario + "|" + IBAN + "|" + TipoOperacion.RetirarDinero + "|" + centimos;
+	}
+
+	private Dinero saldo() {
+		return cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo();
+	}
+
+	@Test
+	void duplicadosConcurrentesSeContabilizanUnaSolaVez() throws Exception {
+		String clave = "clave-concurrente-1";
+		ExecutorService pool = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<String>> futuros = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				futuros.add(pool.submit(() -> idempotenciaService.ejecutarUnaVez(clave, peticion("cliente", 1000), () -> retirar(1000))));
+			}
+			String primero = futuros.get(0).get();
+			for (Future<String> f : futuros) {
+				assertEquals(primero, f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(1, operacionesRepo.count());
+		assertEquals(Dinero.deCentimos(9_000), saldo());
+	}
+
+	@Test
+	void reintentoEnOtroNodoDevuelveElResultadoGuardado() {
+		String original = idempotenciaService.ejecutarUnaVez("clave-reintento-1", peticion("cliente", 500), () -> retirar(500));
+
+		// Instancia nueva, con la caché en memoria vacía, como si fuera otro nodo
+		IdempotenciaService otroNodo = beanFactory.createBean(IdempotenciaServiceImpl.class);
+		String reintento = otroNodo.ejecutarUnaVez("clave-reintento-1", peticion("cliente", 500), () -> retirar(500));
+
+		assertEquals(original, reintento);
+		assertEquals(1, operacionesRepo.count());
+		assertEquals(Dinero.deCentimos(9_500), saldo());
+	}
+
+	@Test
+	void envioFallidoNoGuardaLaClave() {
+		assertThrows(SaldoInsuficienteException.class,
+				() -> idempotenciaService.ejecutarUnaVez("clave-fallida-1", peticion("cliente", 1_000_000),
+						() -> retirar(1_000_000)));
+
+		assertEquals(0, claveRepo.count());
+		assertEquals("operacion-", idempotenciaService.ejecutarUnaVez("clave-fallida-1", peticion("cliente", 100),
+				() -> retirar(100))
+				.replaceAll("\\d", ""));
+		assertEquals(Dinero.deCentimos(9_900), saldo());
+	}
+
+	@Test
+	void claveReutilizadaConOtrosDatosSeRechaza() {
+		String original = idempotenciaService.ejecutarUnaVez("clave-reutilizada-1", peticion("cliente", 500),
+				() -> retirar(500));
+
+		assertThrows(ClaveIdempotenciaReutilizadaException.class, () -> idempotenciaService
+				.ejecutarUnaVez("clave-reutilizada-1", peticion("cliente", 900), () -> retirar(900)));
+		IdempotenciaService otroNodo = beanFactory.createBean(IdempotenciaServiceImpl.class);
+		assertThrows(ClaveIdempotenciaReutilizadaException.class, () -> otroNodo
+				.ejecutarUnaVez("clave-reutilizada-1", peticion("otro", 500), () -> retirar(500)));
+
+		assertEquals(original, idempotenciaService.ejecutarUnaVez("clave-reutilizada-1", peticion("cliente", 500),
+				() -> retirar(500)));
+		assertEquals(1, operacionesRepo.count());
+		assertEquals(Dinero.deCentimos(9_500), saldo());
+	}
+
+	@Test
+	void laCacheNoSuperaSuCapacidad() {
+		IdempotenciaServiceImpl nodo = beanFactory.createBean(IdempotenciaServiceImpl.class);
+		ReflectionTestUtils.setField(nodo, "capacidadCache", 50);
+		for (int i = 0; i < 200; i++) {
+			String clave = "clave-capacidad-" + i;
+			nodo.ejecutarUnaVez(clave, peticion("cliente", i), () -> clave);
+		}
+
+		assertTrue(nodo.getTamanyoCache() <= 50);
+		// Las claves que salen de la memoria siguen protegidas por la base de datos
+		assertThrows(ClaveIdempotenciaReutilizadaException.class,
+				() -> nodo.ejecutarUnaVez("clave-capacidad-0", peticion("cliente", 1), () -> "otra"));
+	}
+}
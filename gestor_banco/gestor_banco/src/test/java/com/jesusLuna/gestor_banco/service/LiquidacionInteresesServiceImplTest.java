@@ -0,0 +1,277 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.dto.EstadoLiquidacion;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.entity.ParticionLiquidacion;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.ParticionLiquidacionRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenTipoCuentaDiaRepo;
+
+/**
+ * Pruebas de la liquidación de intereses: los intereses abonados a cada cuenta
+ * deben coincidir con los calculados aquí sobre sus saldos diarios, y una
+ * liquidación repetida o reanudada no debe abonar dos veces la misma cuenta.
+ * Con una tasa del 3,65 % los intereses de un día son la diezmilésima parte
+ * del saldo. La liquidación usa sus propias transacciones, por eso la prueba
+ * no se ejecuta dentro de la transacción que abre {@code @DataJpaTest}.
+ */
+@DataJpaTest(showSql = false, properties = { "intereses.ahorro.tasa-anual=3.65",
+		"intereses.liquidacion.particiones=3", "intereses.liquidacion.hilos=3" })
+@Import({ LiquidacionInteresesServiceImpl.class, ContabilizacionServiceImpl.class, ContabilizadorLotes.class,
+		SaldoHistoricoServiceImpl.class, ResumenOperacionesServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LiquidacionInteresesServiceImplTest {
+
+	private static final int CUENTAS_AHORRO = 25;
+
+	private static final LocalDate MES = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+
+	private static final LocalDate FIN_MES = MES.plusMonths(1).minusDays(1);
+
+	@Autowired
+	private LiquidacionInteresesService liquidacionInteresesService;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ParticionLiquidacionRepo particionLiquidacionRepo;
+
+	@Autowired
+	private ResumenCuentaDiaRepo resumenCuentaDiaRepo;
+
+	@Autowired
+	private ResumenTipoCuentaDiaRepo resumenTipoCuentaDiaRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final Random aleatorio = new Random(49);
+
+	/** Intereses esperados de cada cuenta, en céntimos. */
+	private final Map<String, Long> esperados = new TreeMap<>();
+
+	private final List<String> ahorro = new ArrayList<>();
+
+	@BeforeEach
+	void crearCuentasConOperaciones() {
+		for (int i = 0; i < CUENTAS_AHORRO; i++) {
+			String iban = iban(i);
+			crearCuenta(iban, TipoCuenta.AHORRO, LocalDate.now().minusYears(1), 0);
+			ahorro.add(iban);
+			Map<LocalDate, Long> netos = new HashMap<>();
+			// Una cuenta sin operaciones no cobra intereses
+			int operaciones = i == 0 ? 0 : 1 + aleatorio.nextInt(8);
+			for (int j = 0; j < operaciones; j++) {
+				LocalDate fecha = MES.minusDays(20).plusDays(aleatorio.nextInt(
+						(int) (LocalDate.now().toEpochDay() - MES.minusDays(20).toEpochDay()) + 1));
+				long centimos = 1_000 + aleatorio.nextInt(5_000_000);
+				contabilizar(iban, TipoOperacion.IngresarDinero, centimos, fecha);
+				netos.merge(fecha, centimos, Long::sum);
+			}
+			esperados.put(iban, esperados(netos, null, 0));
+		}
+
+		// Abierta a mitad de mes con saldo inicial: solo cuentan los días desde la apertura
+		String mitad = iban(CUENTAS_AHORRO);
+		crearCuenta(mitad, TipoCuenta.AHORRO, MES.plusDays(14), 7_000_000);
+		ahorro.add(mitad);
+		esperados.put(mitad, esperados(Map.of(), MES.plusDays(14), 7_000_000));
+
+		// Abierta después del mes: no cobra intereses
+		String nueva = iban(CUENTAS_AHORRO + 1);
+		crearCuenta(nueva, TipoCuenta.AHORRO, MES.plusMonths(1), 9_000_000);
+		ahorro.add(nueva);
+		esperados.put(nueva, 0L);
+
+		// Las cuentas corrientes no cobran intereses
+		String corriente = iban(CUENTAS_AHORRO + 2);
+		crearCuenta(corriente, TipoCuenta.CORRIENTE, LocalDate.now().minusYears(1), 0);
+		contabilizar(corriente, TipoOperacion.IngresarDinero, 8_000_000, MES.minusDays(5));
+	}
+
+	@AfterEach
+	void limpiar() {
+		resumenCuentaDiaRepo.deleteAllInBatch();
+		resumenTipoCuentaDiaRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		particionLiquidacionRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	@Test
+	void liquidaLosInteresesDeCadaCuentaUnaSolaVez() {
+		EstadoLiquidacion estado = liquidacionInteresesService.liquidar(MES);
+
+		assertEquals(MES, estado.getMes());
+		assertEquals(3, estado.getParticiones().size());
+		assertEquals(3, estado.getParticionesTerminadas());
+		assertEquals(ahorro.size(), estado.getTotalCuentas());
+		assertEquals(ahorro.size(), estado.getCuentas());
+		assertEquals(esperados.values().stream().filter(c -> c > 0).count(), estado.getAbonos());
+		assertEquals(esperados.values().stream().mapToLong(Long::longValue).sum(),
+				estado.getIntereses().getCentimos());
+		assertEquals(esperados, abonados());
+		assertEquals(0L, abonados().getOrDefault(iban(CUENTAS_AHORRO + 2), 0L));
+
+		// Una segunda pasada no vuelve a abonar nada
+		long operaciones = operacionesRepo.count();
+		EstadoLiquidacion repetida = liquidacionInteresesService.liquidar(MES);
+		assertEquals(operaciones, operacionesRepo.count());
+		assertEquals(estado.getIntereses(), repetida.getIntereses());
+	}
+
+	@Test
+	void reanudaCadaParticionDesdeSuPuntoDeControl() {
+		// Una pasada anterior terminó la partición 0 y se interrumpió a mitad de la 1
+		LocalDateTime ahora = LocalDateTime.now();
+		String limite0 = ahorro.get(8);
+		String checkpoint = ahorro.get(12);
+		String limite1 = ahorro.get(17);
+		particionLiquidacionRepo.saveAll(List.of(
+				new ParticionLiquidacion(MES, 0, "", limite0, limite0, 9, 9, 0, Dinero.CERO, true, ahora, ahora),
+				new ParticionLiquidacion(MES, 1, limite0, limite1, checkpoint, 9, 4, 0, Dinero.CERO, false, ahora,
+						ahora),
+				new ParticionLiquidacion(MES, 2, limite1, null, null, ahorro.size() - 18, 0, 0, Dinero.CERO, false,
+						ahora, ahora)));
+
+		EstadoLiquidacion estado = liquidacionInteresesService.liquidar(MES);
+
+		Map<String, Long> abonados = abonados();
+		for (int i = 0; i < ahorro.size(); i++) {
+			long esperado = i <= 12 ? 0 : esperados.get(ahorro.get(i));
+			assertEquals(esperado, abonados.getOrDefault(ahorro.get(i), 0L), ahorro.get(i));
+		}
+		assertEquals(ahorro.size(), estado.getCuentas());
+		assertEquals(3, estado.getParticionesTerminadas());
+	}
+
+	@Test
+	void soloSeLiquidanMesesTerminados() {
+		assertThrows(IllegalArgumentException.class, () -> liquidacionInteresesService.liquidar(LocalDate.now()));
+		assertTrue(particionLiquidacionRepo.findAll().isEmpty());
+		assertFalse(liquidacionInteresesService.obtenerEstado(MES).getParticionesTerminadas() > 0);
+	}
+
+	/**
+	 * Liquida un mes de muchas cuentas de ahorro y mide el ritmo de la
+	 * liquidación. Se ejecuta con {@code -Dbenchmark=true}; el número de cuentas
+	 * se ajusta con {@code -Dbenchmark.intereses} (50.000 por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkLiquidacionIntereses() {
+		int numCuentas = Integer.getInteger("benchmark.intereses", 50_000);
+		jdbcTemplate.update("INSERT INTO dam_cuenta_bancaria (numero_cuenta, tipo_cuenta, fecha_creacion, "
+				+ "saldo_centimos, version, version_titulares) SELECT 'ES99BENCH' || LPAD(x, 15, '0'), 'AHORRO', "
+				+ "CAST(? AS DATE), 0, 0, 0 "
+				+ "FROM SYSTEM_RANGE(1, ?)", LocalDate.now().minusYears(1), numCuentas);
+		jdbcTemplate.update("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, cuenta_id) "
+				+ "SELECT NEXT VALUE FOR dam_operacion_seq, 'Ingreso', 'IngresarDinero', "
+				+ "DATEADD(DAY, MOD(x, 40), CAST(? AS DATE)), 100 + CAST(RAND() * 100000 AS INT), "
+				+ "'ES99BENCH' || LPAD(MOD(x, CAST(? AS INT)) + 1, 15, '0') "
+				+ "FROM SYSTEM_RANGE(1, ?)", MES.minusDays(10), numCuentas, numCuentas * 4);
+		jdbcTemplate.update("UPDATE dam_cuenta_bancaria c SET saldo_centimos = "
+				+ "(SELECT COALESCE(SUM(o.cantidad_centimos), 0) FROM dam_operacion o WHERE o.cuenta_id = c.numero_cuenta) "
+				+ "WHERE c.numero_cuenta LIKE 'ES99BENCH%'");
+
+		long inicio = System.nanoTime();
+		EstadoLiquidacion estado = liquidacionInteresesService.liquidar(MES);
+		long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+		assertEquals(estado.getTotalCuentas(), estado.getCuentas());
+		System.out.printf("Liquidación de intereses: %d cuentas en %d particiones, %d abonos, %d ms, %.0f cuentas/s%n",
+				estado.getCuentas(), estado.getParticiones().size(), estado.getAbonos(), ms,
+				estado.getCuentas() * 1000.0 / Math.max(ms, 1));
+	}
+
+	/** Intereses abonados a cada cuenta de ahorro, en céntimos. */
+	private Map<String, Long> abonados() {
+		Map<String, Long> abonados = new TreeMap<>();
+		for (String iban : ahorro) {
+			abonados.put(iban, 0L);
+		}
+		jdbcTemplate.query("SELECT cuenta_id, SUM(cantidad_centimos) FROM dam_operacion WHERE descripcion = ? "
+				+ "AND fecha = ? AND tipo = 'IngresarDinero' GROUP BY cuenta_id", rs -> {
+					abonados.put(rs.getString(1), rs.getLong(2));
+				}, "Intereses " + MES.toString().substring(0, 7), MES.plusMonths(1));
+		return abonados;
+	}
+
+	/**
+	 * Calcula los intereses del mes sumando día a día el saldo al cierre, desde
+	 * el saldo de apertura y las operaciones de cada día.
+	 */
+	private static long esperados(Map<LocalDate, Long> netos, LocalDate apertura, long saldoApertura) {
+		long saldo = apertura == null ? 0 : saldoApertura;
+		long suma = 0;
+		for (LocalDate dia = MES.minusDays(30); !dia.isAfter(FIN_MES); dia = dia.plusDays(1)) {
+			saldo += netos.getOrDefault(dia, 0L);
+			if (!dia.isBefore(MES) && (apertura == null || !dia.isBefore(apertura))) {
+				suma += saldo;
+			}
+		}
+		return BigDecimal.valueOf(suma).divide(BigDecimal.valueOf(10_000), 0, RoundingMode.HALF_EVEN).longValue();
+	}
+
+	private static String iban(int i) {
+		return String.format("ES%02d2100041845%010d", i % 100, i);
+	}
+
+	private void crearCuenta(String iban, TipoCuenta tipo, LocalDate apertura, long saldo) {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(iban);
+		c.setTipoCuenta(tipo);
+		c.setFechaCreacion(apertura);
+		c.setSaldo(Dinero.deCentimos(saldo));
+		cuentaBancRepo.save(c);
+	}
+
+	private void contabilizar(String iban, TipoOperacion tipo, long centimos, LocalDate fecha) {
+		Operacion o = new Operacion();
+		o.setDescripcion(tipo.getNombre());
+		o.setTipo(tipo);
+		o.setFecha(fecha);
+		o.setCantidad(Dinero.deCentimos(centimos));
+		contabilizacionService.contabilizar(iban, o);
+	}
+}
@@ -0,0 +1,322 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.dto.ResultadoOrdenes;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente;
+import com.jesusLuna.gestor_banco.entity.OrdenPermanente.Periodicidad;
+import com.jesusLuna.gestor_banco.exception.CuentaNoEncontradaException;
+import com.jesusLuna.gestor_banco.exception.OrdenPermanenteNoEncontradaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.OrdenPermanenteRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenTipoCuentaDiaRepo;
+
+/**
+ * Pruebas del planificador de órdenes permanentes: cada ejecución vencida se
+ * contabiliza una sola vez aunque haya varios hilos y varias instancias a la
+ * vez, las rechazadas también avanzan a la siguiente fecha y las reservas
+ * vigentes de otra instancia se respetan. El planificador usa sus propias
+ * transacciones, por eso la prueba no se ejecuta dentro de la transacción que
+ * abre {@code @DataJpaTest}.
+ */
+@DataJpaTest(showSql = false, properties = { "ordenes.permanentes.hilos=3" })
+@Import({ OrdenPermanenteServiceImpl.class, ContabilizacionServiceImpl.class, ContabilizadorLotes.class,
+		SaldoHistoricoServiceImpl.class, ResumenOperacionesServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrdenPermanenteServiceImplTest {
+
+	private static final String IBAN_EXTERNO = "ES9121000418450200051332";
+
+	private static final LocalDate HOY = LocalDate.now();
+
+	@Autowired
+	private OrdenPermanenteService ordenPermanenteService;
+
+	@Autowired
+	private OrdenPermanenteRepo ordenPermanenteRepo;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ResumenCuentaDiaRepo resumenCuentaDiaRepo;
+
+	@Autowired
+	private ResumenTipoCuentaDiaRepo resumenTipoCuentaDiaRepo;
+
+	@Autowired
+	private AutowireCapableBeanFactory fabrica;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void limpiar() {
+		resumenCuentaDiaRepo.deleteAllInBatch();
+		resumenTipoCuentaDiaRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		ordenPermanenteRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	@Test
+	void dosInstanciasEjecutanCadaOrdenUnaSolaVez() throws Exception {
+		int cuentas = 30;
+		for (int i = 0; i < cuentas; i++) {
+			crearCuenta(iban(i), 10_000);
+		}
+		// Cada cuenta paga 20 órdenes y cobra otras 20, así que su saldo no cambia
+		List<OrdenPermanente> ordenes = new ArrayList<>();
+		for (int i = 0; i < 600; i++) {
+			ordenes.add(orden(iban(i % cuentas), iban((i + 1) % cuentas), 100, Periodicidad.MENSUAL, HOY, null));
+		}
+		ordenes.add(orden(iban(0), IBAN_EXTERNO, 2_500, Periodicidad.MENSUAL, HOY, null));
+		ordenPermanenteRepo.saveAll(ordenes);
+
+		// Una segunda instancia de la aplicación, con su propio nombre en las reservas
+		OrdenPermanenteService otraInstancia = fabrica.createBean(OrdenPermanenteServiceImpl.class);
+		CompletableFuture<ResultadoOrdenes> primera = CompletableFuture
+				.supplyAsync(ordenPermanenteService::ejecutarVencidas);
+		CompletableFuture<ResultadoOrdenes> segunda = CompletableFuture.supplyAsync(otraInstancia::ejecutarVencidas);
+		ResultadoOrdenes a = primera.get();
+		ResultadoOrdenes b = segunda.get();
+
+		assertEquals(601, a.getEjecutadas() + b.getEjecutadas());
+		assertEquals(0, a.getRechazadas() + b.getRechazadas());
+		assertEquals(0, a.getLotesFallidos() + b.getLotesFallidos());
+		assertEquals(600 * 2 + 1, operacionesRepo.count());
+		for (OrdenPermanente orden : ordenPermanenteRepo.findAll()) {
+			assertEquals(1, orden.getEjecuciones());
+			assertEquals(HOY.plusMonths(1), orden.getProximaEjecucion());
+			assertNull(orden.getBloqueadaPor());
+			assertNull(orden.getBloqueadaHasta());
+		}
+		assertEquals(Dinero.deCentimos(7_500), saldo(iban(0)));
+		for (int i = 1; i < cuentas; i++) {
+			assertEquals(Dinero.deCentimos(10_000), saldo(iban(i)));
+		}
+
+		// Nada vuelve a vencer hasta el mes que viene
+		assertEquals(0, ordenPermanenteService.ejecutarVencidas().getEjecutadas());
+		assertEquals(600 * 2 + 1, operacionesRepo.count());
+	}
+
+	@Test
+	void lotesSimultaneosDeCuentasDistintasNoSeInterbloquean() {
+		// Cada orden tiene sus propias cuentas, de tipos variados: los lotes no
+		// comparten cuentas pero sí las filas de los resúmenes por tipo de cuenta
+		int numOrdenes = 900;
+		TipoCuenta[] tipos = TipoCuenta.values();
+		List<OrdenPermanente> ordenes = new ArrayList<>();
+		for (int i = 0; i < numOrdenes; i++) {
+			crearCuenta(iban(2 * i), 1_000, tipos[i % tipos.length]);
+			crearCuenta(iban(2 * i + 1), 0, tipos[(i / tipos.length) % tipos.length]);
+			ordenes.add(orden(iban(2 * i), iban(2 * i + 1), 100 + i, Periodicidad.MENSUAL, HOY, null));
+		}
+		ordenPermanenteRepo.saveAll(ordenes);
+
+		ResultadoOrdenes resultado = ordenPermanenteService.ejecutarVencidas();
+
+		assertEquals(numOrdenes, resultado.getEjecutadas());
+		assertEquals(0, resultado.getLotesFallidos());
+		for (int i = 0; i < numOrdenes; i++) {
+			assertEquals(Dinero.deCentimos(100 + i), saldo(iban(2 * i + 1)));
+		}
+		assertEquals(2L * numOrdenes, jdbcTemplate
+				.queryForObject("SELECT SUM(num_operaciones) FROM dam_resumen_tipo_cuenta_dia", Long.class));
+		assertEquals(2L * numOrdenes, jdbcTemplate
+				.queryForObject("SELECT SUM(num_operaciones) FROM dam_resumen_cuenta_dia", Long.class));
+	}
+
+	@Test
+	void laEjecucionSinSaldoSeRechazaYPasaALaSiguienteFecha() {
+		crearCuenta(iban(0), 500);
+		crearCuenta(iban(1), 0);
+		OrdenPermanente orden = ordenPermanenteRepo
+				.save(orden(iban(0), iban(1), 1_000, Periodicidad.SEMANAL, HOY, null));
+
+		ResultadoOrdenes resultado = ordenPermanenteService.ejecutarVencidas();
+
+		assertEquals(0, resultado.getEjecutadas());
+		assertEquals(1, resultado.getRechazadas());
+		OrdenPermanente rechazada = ordenPermanenteRepo.findById(orden.getId()).orElseThrow();
+		assertEquals(1, rechazada.getEjecuciones());
+		assertEquals(HOY.plusWeeks(1), rechazada.getProximaEjecucion());
+		assertNotNull(rechazada.getUltimoRechazo());
+		assertEquals(0, operacionesRepo.count());
+		assertEquals(Dinero.deCentimos(500), saldo(iban(0)));
+	}
+
+	@Test
+	void recuperaLasFechasAtrasadasSinPerderElDiaDelMes() {
+		crearCuenta(iban(0), 1_000_000);
+		crearCuenta(iban(1), 0);
+		// Una orden del día 31 de hace al menos tres meses: pasa por meses más cortos
+		LocalDate mes = HOY.minusMonths(3);
+		while (mes.lengthOfMonth() != 31) {
+			mes = mes.minusMonths(1);
+		}
+		LocalDate inicio = mes.withDayOfMonth(31);
+		OrdenPermanente mensual = ordenPermanenteRepo
+				.save(orden(iban(0), iban(1), 100, Periodicidad.MENSUAL, inicio, null));
+		// Una orden semanal cuya fecha de fin ya pasó: se ejecuta hace 14 y 7 días y termina
+		OrdenPermanente semanal = ordenPermanenteRepo
+				.save(orden(iban(0), IBAN_EXTERNO, 100, Periodicidad.SEMANAL, HOY.minusDays(14), HOY.minusDays(6)));
+
+		ordenPermanenteService.ejecutarVencidas();
+
+		List<LocalDate> esperadas = new ArrayList<>();
+		for (int i = 0; !inicio.plusMonths(i).isAfter(HOY); i++) {
+			esperadas.add(inicio.plusMonths(i));
+		}
+		assertTrue(esperadas.stream().anyMatch(f -> f.getDayOfMonth() < 31));
+		assertEquals(esperadas, jdbcTemplate.queryForList(
+				"SELECT fecha FROM dam_operacion WHERE cuenta_id = ? ORDER BY fecha", LocalDate.class, iban(1)));
+		OrdenPermanente actualizada = ordenPermanenteRepo.findById(mensual.getId()).orElseThrow();
+		assertEquals(esperadas.size(), actualizada.getEjecuciones());
+		assertEquals(inicio.plusMonths(esperadas.size()), actualizada.getProximaEjecucion());
+
+		OrdenPermanente terminada = ordenPermanenteRepo.findById(semanal.getId()).orElseThrow();
+		assertEquals(2, terminada.getEjecuciones());
+		assertNull(terminada.getProximaEjecucion());
+	}
+
+	@Test
+	void respetaLasReservasVigentesYRecuperaLasVencidas() {
+		crearCuenta(iban(0), 10_000);
+		crearCuenta(iban(1), 0);
+		OrdenPermanente vigente = orden(iban(0), iban(1), 100, Periodicidad.MENSUAL, HOY, null);
+		vigente.setBloqueadaPor("otra-instancia/1");
+		vigente.setBloqueadaHasta(LocalDateTime.now().plusMinutes(5));
+		OrdenPermanente caducada = orden(iban(0), iban(1), 200, Periodicidad.MENSUAL, HOY, null);
+		caducada.setBloqueadaPor("instancia-caida/1");
+		caducada.setBloqueadaHasta(LocalDateTime.now().minusMinutes(1));
+		ordenPermanenteRepo.saveAll(List.of(vigente, caducada));
+		OrdenPermanente cancelada = ordenPermanenteRepo
+				.save(orden(iban(0), iban(1), 400, Periodicidad.MENSUAL, HOY, null));
+		ordenPermanenteService.cancelar(iban(0), cancelada.getId());
+
+		ResultadoOrdenes resultado = ordenPermanenteService.ejecutarVencidas();
+
+		assertEquals(1, resultado.getEjecutadas());
+		assertEquals(Dinero.deCentimos(200), saldo(iban(1)));
+		assertEquals(0, ordenPermanenteRepo.findById(vigente.getId()).orElseThrow().getEjecuciones());
+		OrdenPermanente recuperada = ordenPermanenteRepo.findById(caducada.getId()).orElseThrow();
+		assertEquals(1, recuperada.getEjecuciones());
+		assertNull(recuperada.getBloqueadaPor());
+		assertEquals(0, ordenPermanenteRepo.findById(cancelada.getId()).orElseThrow().getEjecuciones());
+	}
+
+	@Test
+	void validaLasOrdenesNuevas() {
+		crearCuenta(iban(0), 0);
+		Dinero cantidad = Dinero.deCentimos(1_000);
+
+		OrdenPermanente orden = ordenPermanenteService.crear(iban(0), IBAN_EXTERNO, cantidad, " Alquiler ",
+				Periodicidad.MENSUAL, HOY.plusDays(1), null);
+		assertEquals(HOY.plusDays(1), orden.getProximaEjecucion());
+		assertEquals("Alquiler", orden.getConcepto());
+		assertEquals(1, ordenPermanenteService.obtenerOrdenes(iban(0)).size());
+
+		assertThrows(CuentaNoEncontradaException.class, () -> ordenPermanenteService.crear(iban(9), IBAN_EXTERNO,
+				cantidad, "Alquiler", Periodicidad.MENSUAL, HOY, null));
+		assertThrows(IllegalArgumentException.class, () -> ordenPermanenteService.crear(iban(0),
+				"ES0021000418450200051332", cantidad, "Alquiler", Periodicidad.MENSUAL, HOY, null));
+		assertThrows(IllegalArgumentException.class, () -> ordenPermanenteService.crear(iban(0), IBAN_EXTERNO,
+				Dinero.CERO, "Alquiler", Periodicidad.MENSUAL, HOY, null));
+		assertThrows(IllegalArgumentException.class, () -> ordenPermanenteService.crear(iban(0), IBAN_EXTERNO,
+				cantidad, "Alquiler", Periodicidad.MENSUAL, HOY.minusDays(1), null));
+		assertThrows(IllegalArgumentException.class, () -> ordenPermanenteService.crear(iban(0), IBAN_EXTERNO,
+				cantidad, "Alquiler", Periodicidad.MENSUAL, HOY, HOY.minusDays(1)));
+
+		// Solo la cuenta que paga la orden puede cancelarla
+		assertThrows(OrdenPermanenteNoEncontradaException.class,
+				() -> ordenPermanenteService.cancelar(iban(1), orden.getId()));
+		ordenPermanenteService.cancelar(iban(0), orden.getId());
+		assertNull(ordenPermanenteRepo.findById(orden.getId()).orElseThrow().getProximaEjecucion());
+	}
+
+	/**
+	 * Ejecuta muchas órdenes vencidas el mismo día, como a principio de mes, y
+	 * mide el ritmo. Se ejecuta con {@code -Dbenchmark=true}; el número de
+	 * órdenes se ajusta con {@code -Dbenchmark.ordenes} (50.000 por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkOrdenesPrincipioDeMes() {
+		int numOrdenes = Integer.getInteger("benchmark.ordenes", 50_000);
+		int numCuentas = Math.max(2, numOrdenes / 5);
+		jdbcTemplate.update("INSERT INTO dam_cuenta_bancaria (numero_cuenta, tipo_cuenta, fecha_creacion, "
+				+ "saldo_centimos, version, version_titulares) SELECT 'ES99BENCH' || LPAD(x, 15, '0'), 'CORRIENTE', CAST(? AS DATE), "
+				+ "10000000, 0, 0 FROM SYSTEM_RANGE(1, ?)", HOY.minusYears(1), numCuentas);
+		jdbcTemplate.update("INSERT INTO dam_orden_permanente (id, cuenta_origen, cuenta_destino, cantidad_centimos, "
+				+ "concepto, periodicidad, fecha_inicio, ejecuciones, proxima_ejecucion) "
+				+ "SELECT NEXT VALUE FOR dam_orden_permanente_seq, 'ES99BENCH' || LPAD(MOD(x, CAST(? AS INT)) + 1, 15, '0'), "
+				+ "CASE WHEN MOD(x, 4) = 0 THEN ? ELSE 'ES99BENCH' || LPAD(MOD(x + 7, CAST(? AS INT)) + 1, 15, '0') END, "
+				+ "100 + CAST(RAND() * 10000 AS INT), 'Orden', 'MENSUAL', CAST(? AS DATE), 0, CAST(? AS DATE) "
+				+ "FROM SYSTEM_RANGE(1, ?)", numCuentas, IBAN_EXTERNO, numCuentas, HOY, HOY, numOrdenes);
+
+		ResultadoOrdenes resultado = ordenPermanenteService.ejecutarVencidas();
+
+		assertEquals(numOrdenes, resultado.getEjecutadas() + resultado.getRechazadas());
+		System.out.printf("Órdenes permanentes: %d ejecutadas, %d rechazadas en %d lotes, %d ms, %.0f órdenes/s%n",
+				resultado.getEjecutadas(), resultado.getRechazadas(), resultado.getLotes(), resultado.getMilisegundos(),
+				numOrdenes * 1000.0 / Math.max(resultado.getMilisegundos(), 1));
+	}
+
+	private static String iban(int i) {
+		return String.format("ES%02d2100041845%010d", i % 100, i);
+	}
+
+	private static OrdenPermanente orden(String origen, String destino, long centimos, Periodicidad periodicidad,
+			LocalDate inicio, LocalDate fin) {
+		return new OrdenPermanente(null, origen, destino, Dinero.deCentimos(centimos), "Orden", periodicidad, inicio,
+				fin, 0, inicio, null, null, null);
+	}
+
+	private Dinero saldo(String iban) {
+		return cuentaBancRepo.findById(iban).orElseThrow().getSaldo();
+	}
+
+	private void crearCuenta(String iban, long saldo) {
+		crearCuenta(iban, saldo, TipoCuenta.CORRIENTE);
+	}
+
+	private void crearCuenta(String iban, long saldo, TipoCuenta tipoCuenta) {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(iban);
+		c.setTipoCuenta(tipoCuenta);
+		c.setFechaCreacion(HOY.minusYears(1));
+		c.setSaldo(Dinero.deCentimos(saldo));
+		cuentaBancRepo.save(c);
+	}
+}
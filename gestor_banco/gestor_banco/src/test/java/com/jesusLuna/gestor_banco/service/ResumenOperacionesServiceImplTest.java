@@ -0,0 +1,369 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jesusLuna.gestor_banco.dto.AgrupacionResumen;
+import com.jesusLuna.gestor_banco.dto.ResultadoReconstruccion;
+import com.jesusLuna.gestor_banco.dto.ResumenOperaciones;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.exception.ParametroBusquedaException;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenCuentaDiaRepo;
+import com.jesusLuna.gestor_banco.repository.ResumenTipoCuentaDiaRepo;
+
+/**
+ * Pruebas de los resúmenes de operaciones: tras cualquier secuencia de
+ * contabilizaciones, anulaciones y reconstrucciones deben coincidir con los
+ * totales calculados directamente sobre las operaciones. Las reconstrucciones
+ * usan sus propias transacciones, por eso la prueba no se ejecuta dentro de la
+ * transacción que abre {@code @DataJpaTest} por defecto.
+ */
+@DataJpaTest(showSql = false, properties = "resumenes.reconstruccion.hilos=3")
+@Import({ ResumenOperacionesServiceImpl.class, ContabilizacionServiceImpl.class, ContabilizadorLotes.class,
+		SaldoHistoricoServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ResumenOperacionesServiceImplTest {
+
+	private static final String[] IBANS = { "ES2121000418450200051331", "ES9121000418450200051332",
+			"ES6421000418450200051333", "ES3721000418450200051334", "ES1021000418450200051335",
+			"ES8021000418450200051336" };
+
+	private static final int DIAS = 100;
+
+	private static final LocalDate DESDE = LocalDate.now().minusDays(DIAS);
+
+	private static final LocalDate HASTA = LocalDate.now();
+
+	@Autowired
+	private ResumenOperacionesService resumenOperacionesService;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private ResumenCuentaDiaRepo resumenCuentaDiaRepo;
+
+	@Autowired
+	private ResumenTipoCuentaDiaRepo resumenTipoCuentaDiaRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private final Random aleatorio = new Random(45);
+
+	@BeforeEach
+	void crearCuentasConOperaciones() throws IOException {
+		TipoCuenta[] tipos = TipoCuenta.values();
+		for (int i = 0; i < IBANS.length; i++) {
+			CuentaBancaria c = new CuentaBancaria();
+			c.setNumeroCuenta(IBANS[i]);
+			c.setTipoCuenta(tipos[i % tipos.length]);
+			c.setFechaCreacion(LocalDate.now().minusYears(1));
+			c.setSaldo(Dinero.deCentimos(100_000_000));
+			cuentaBancRepo.save(c);
+		}
+		contabilizarAleatorias(150);
+
+		StringBuilder fichero = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			fichero.append(IBANS[aleatorio.nextInt(IBANS.length)])
+					.append(aleatorio.nextBoolean() ? ";IngresarDinero;" : ";RetirarDinero;")
+					.append(1 + aleatorio.nextInt(500)).append(';').append(fechaAleatoria()).append(";Fichero\n");
+		}
+		assertEquals(200, contabilizacionService.contabilizarFichero(new StringReader(fichero.toString()))
+				.getLineasContabilizadas());
+	}
+
+	@AfterEach
+	void limpiar() {
+		resumenCuentaDiaRepo.deleteAllInBatch();
+		resumenTipoCuentaDiaRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	private LocalDate fechaAleatoria() {
+		return LocalDate.now().minusDays(aleatorio.nextInt(DIAS));
+	}
+
+	/** Ingresos, retiradas y transferencias entre las cuentas de la prueba. */
+	private void contabilizarAleatorias(int numero) {
+		for (int i = 0; i < numero; i++) {
+			String iban = IBANS[aleatorio.nextInt(IBANS.length)];
+			long centimos = 100 + aleatorio.nextInt(10_000);
+			switch (aleatorio.nextInt(3)) {
+			case 0 -> contabilizar(iban, TipoOperacion.IngresarDinero, centimos);
+			case 1 -> contabilizar(iban, TipoOperacion.RetirarDinero, centimos);
+			default -> {
+				String destino = IBANS[aleatorio.nextInt(IBANS.length)];
+				if (!destino.equals(iban)) {
+					contabilizacionService.transferir(iban, destino, Dinero.deCentimos(centimos), "Transferencia",
+							fechaAleatoria());
+				}
+			}
+			}
+		}
+	}
+
+	private Operacion contabilizar(String iban, TipoOperacion tipo, long centimos) {
+		Operacion o = new Operacion();
+		o.setDescripcion(tipo.getNombre());
+		o.setTipo(tipo);
+		o.setFecha(fechaAleatoria());
+		o.setCantidad(Dinero.deCentimos(centimos));
+		return contabilizacionService.contabilizar(iban, o);
+	}
+
+	/**
+	 * Totales calculados recorriendo todas las operaciones, con la misma clave
+	 * que {@link #comoMapa(List)}.
+	 */
+	private Map<String, String> esperado(String iban, TipoCuenta tipoCuenta, boolean porTipoCuenta,
+			AgrupacionResumen agrupacion) {
+		Map<String, long[]> totales = new HashMap<>();
+		jdbcTemplate.query("SELECT o.cuenta_id, c.tipo_cuenta, o.fecha, o.tipo, o.cantidad_centimos "
+				+ "FROM dam_operacion o JOIN dam_cuenta_bancaria c ON c.numero_cuenta = o.cuenta_id", rs -> {
+					TipoCuenta clase = TipoCuenta.valueOf(rs.getString(2));
+					if ((iban != null && !iban.equals(rs.getString(1))) || (tipoCuenta != null && tipoCuenta != clase)) {
+						return;
+					}
+					String clave = agrupacion.periodo(rs.getObject(3, LocalDate.class)) + " "
+							+ (porTipoCuenta ? clase : null) + " " + rs.getString(4);
+					long[] total = totales.computeIfAbsent(clave, k -> new long[2]);
+					total[0]++;
+					total[1] += rs.getLong(5);
+				});
+		Map<String, String> resultado = new HashMap<>();
+		totales.forEach((clave, total) -> resultado.put(clave, total[0] + " " + total[1]));
+		return resultado;
+	}
+
+	private static Map<String, String> comoMapa(List<ResumenOperaciones> resumenes) {
+		Map<String, String> resultado = new HashMap<>();
+		for (int i = 0; i < resumenes.size(); i++) {
+			ResumenOperaciones r = resumenes.get(i);
+			if (i > 0) {
+				assertFalse(r.getPeriodo().isBefore(resumenes.get(i - 1).getPeriodo()), "Orden por periodo");
+			}
+			resultado.put(r.getPeriodo() + " " + r.getTipoCuenta() + " " + r.getTipo(),
+					r.getNumOperaciones() + " " + r.getTotal().getCentimos());
+		}
+		return resultado;
+	}
+
+	private void comprobarResumenes() {
+		for (AgrupacionResumen agrupacion : AgrupacionResumen.values()) {
+			for (String iban : IBANS) {
+				assertEquals(esperado(iban, null, false, agrupacion), comoMapa(
+						resumenOperacionesService.obtenerResumenCuenta(iban, DESDE, HASTA, agrupacion)),
+						"Resumen de " + iban + " por " + agrupacion);
+			}
+			assertEquals(esperado(null, null, true, agrupacion),
+					comoMapa(resumenOperacionesService.obtenerResumenTiposCuenta(null, DESDE, HASTA, agrupacion)),
+					"Resumen de todos los tipos de cuenta por " + agrupacion);
+			assertEquals(esperado(null, TipoCuenta.AHORRO, true, agrupacion),
+					comoMapa(resumenOperacionesService.obtenerResumenTiposCuenta(TipoCuenta.AHORRO, DESDE, HASTA,
+							agrupacion)),
+					"Resumen de las cuentas de ahorro por " + agrupacion);
+		}
+	}
+
+	@Test
+	void resumenesCoincidenConLasOperaciones() {
+		comprobarResumenes();
+
+		// Los totales mensuales suman los días del mes
+		LocalDate dia = LocalDate.now().minusDays(1);
+		long operacionesMes = resumenOperacionesService
+				.obtenerResumenCuenta(IBANS[0], dia.withDayOfMonth(1), dia, AgrupacionResumen.DIA).stream()
+				.mapToLong(ResumenOperaciones::getNumOperaciones).sum();
+		assertEquals(operacionesMes,
+				resumenOperacionesService
+						.obtenerResumenCuenta(IBANS[0], dia.withDayOfMonth(1), dia, AgrupacionResumen.MES).stream()
+						.mapToLong(ResumenOperaciones::getNumOperaciones).sum());
+
+		assertThrows(ParametroBusquedaException.class,
+				() -> resumenOperacionesService.obtenerResumenCuenta(IBANS[0], HASTA, DESDE, AgrupacionResumen.DIA));
+		assertThrows(ParametroBusquedaException.class, () -> resumenOperacionesService.obtenerResumenTiposCuenta(null,
+				HASTA.minusYears(20), HASTA, AgrupacionResumen.MES));
+	}
+
+	@Test
+	void anularOperacionesYCambiarTipoDeCuentaMantienenLosResumenes() {
+		for (int i = 0; i < 5; i++) {
+			contabilizacionService.anular(contabilizar(IBANS[1], TipoOperacion.IngresarDinero, 1_000).getCodigo());
+		}
+		long codigo = operacionesRepo.findAll().get(0).getCodigo();
+		contabilizacionService.anular(codigo);
+		comprobarResumenes();
+
+		transactionTemplate.executeWithoutResult(estado -> {
+			resumenOperacionesService.cambiarTipoCuenta(IBANS[2], TipoCuenta.AHORRO);
+			jdbcTemplate.update("UPDATE dam_cuenta_bancaria SET tipo_cuenta = 'AHORRO' WHERE numero_cuenta = ?",
+					IBANS[2]);
+		});
+		comprobarResumenes();
+
+		transactionTemplate.executeWithoutResult(estado -> {
+			resumenOperacionesService.descontarCuenta(IBANS[3]);
+			jdbcTemplate.update("DELETE FROM dam_operacion WHERE cuenta_id = ?", IBANS[3]);
+			jdbcTemplate.update("DELETE FROM dam_cuenta_bancaria WHERE numero_cuenta = ?", IBANS[3]);
+		});
+		comprobarResumenes();
+	}
+
+	@Test
+	void reconstruirCorrigeLosResumenes() {
+		// Resúmenes desviados: filas perdidas, totales erróneos y operaciones que no se sumaron
+		jdbcTemplate.update("DELETE FROM dam_resumen_cuenta_dia WHERE cuenta_id IN (?, ?)", IBANS[0], IBANS[4]);
+		jdbcTemplate.update("UPDATE dam_resumen_cuenta_dia SET num_operaciones = num_operaciones + 3, "
+				+ "total_centimos = total_centimos - 70 WHERE cuenta_id = ?", IBANS[2]);
+		jdbcTemplate.update("UPDATE dam_resumen_tipo_cuenta_dia SET num_operaciones = num_operaciones * 2 "
+				+ "WHERE tipo_cuenta = 'EMPRESARIAL'");
+		jdbcTemplate.update("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, cuenta_id) "
+				+ "SELECT NEXT VALUE FOR dam_operacion_seq, 'Migrada', 'IngresarDinero', "
+				+ "DATEADD(DAY, -MOD(x, 30), CURRENT_DATE), 100 * x, ? FROM SYSTEM_RANGE(1, 40)", IBANS[5]);
+
+		ResultadoReconstruccion resultado = resumenOperacionesService.reconstruir();
+		// Las seis cuentas caben en un bloque
+		assertEquals(1, resultado.getParticiones());
+		assertEquals(0, resultado.getParticionesFallidas());
+		assertEquals(resumenCuentaDiaRepo.count(), resultado.getFilas());
+		assertTrue(resultado.getFilasCorregidas() > 0);
+		comprobarResumenes();
+
+		// Sin cambios en las operaciones, una segunda reconstrucción deja lo mismo
+		// y ya no tiene filas por tipo de cuenta que corregir
+		resultado = resumenOperacionesService.reconstruir();
+		assertEquals(resumenCuentaDiaRepo.count(), resultado.getFilas());
+		assertEquals(0, resultado.getFilasCorregidas());
+		comprobarResumenes();
+	}
+
+	@Test
+	void reconstruirMientrasSeContabiliza() throws Exception {
+		jdbcTemplate.update("DELETE FROM dam_resumen_cuenta_dia");
+		jdbcTemplate.update("DELETE FROM dam_resumen_tipo_cuenta_dia");
+
+		ExecutorService hilos = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> tareas = new ArrayList<>();
+			for (int h = 0; h < 3; h++) {
+				long semilla = h;
+				tareas.add(hilos.submit(() -> {
+					Random r = new Random(semilla);
+					for (int i = 0; i < 100; i++) {
+						Operacion o = new Operacion();
+						o.setDescripcion("Concurrente");
+						o.setTipo(TipoOperacion.IngresarDinero);
+						o.setFecha(LocalDate.now().minusDays(r.nextInt(DIAS)));
+						o.setCantidad(Dinero.deCentimos(1 + r.nextInt(1_000)));
+						contabilizacionService.contabilizar(IBANS[r.nextInt(IBANS.length)], o);
+					}
+				}));
+			}
+			tareas.add(hilos.submit(() -> resumenOperacionesService.reconstruir()));
+			for (Future<?> tarea : tareas) {
+				tarea.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			hilos.shutdownNow();
+		}
+
+		// Las operaciones de la contabilización se suman antes o después de
+		// reconstruir cada bloque, nunca se pierden ni se cuentan dos veces
+		comprobarResumenes();
+		assertTrue(resumenTipoCuentaDiaRepo.count() > 0);
+	}
+
+	/**
+	 * Compara un informe mensual por tipo de cuenta de un año leyendo los
+	 * resúmenes con el mismo informe agrupando las operaciones. Se ejecuta con
+	 * {@code -Dbenchmark=true}; el número de operaciones se ajusta con
+	 * {@code -Dbenchmark.resumenes} (300.000 por defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkInformeMensualPorTipoDeCuenta() {
+		int numOperaciones = Integer.getInteger("benchmark.resumenes", 300_000);
+		jdbcTemplate.update("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, cuenta_id) "
+				+ "SELECT NEXT VALUE FOR dam_operacion_seq, 'Operación ' || x, "
+				+ "CASE MOD(x, 4) WHEN 0 THEN 'IngresarDinero' WHEN 1 THEN 'RetirarDinero' "
+				+ "WHEN 2 THEN 'EntradaTransferencia' ELSE 'RetiradaTransferencia' END, "
+				+ "DATEADD(DAY, -MOD(x, 365), CURRENT_DATE), 100 + MOD(x, 1000), "
+				+ "CASEWHEN(MOD(x, 6) = 0, ?, CASEWHEN(MOD(x, 6) = 1, ?, CASEWHEN(MOD(x, 6) = 2, ?, "
+				+ "CASEWHEN(MOD(x, 6) = 3, ?, CASEWHEN(MOD(x, 6) = 4, ?, ?))))) FROM SYSTEM_RANGE(1, ?)",
+				IBANS[0], IBANS[1], IBANS[2], IBANS[3], IBANS[4], IBANS[5], numOperaciones);
+
+		ResultadoReconstruccion reconstruccion = resumenOperacionesService.reconstruir();
+
+		LocalDate desde = LocalDate.now().minusYears(1);
+		int consultas = 20;
+		long sumaOperaciones = 0;
+		long sumaResumenes = 0;
+		for (int i = 0; i < consultas; i++) {
+			long t0 = System.nanoTime();
+			List<Map<String, Object>> agrupado = jdbcTemplate.queryForList(
+					"SELECT c.tipo_cuenta, YEAR(o.fecha), MONTH(o.fecha), o.tipo, COUNT(*), SUM(o.cantidad_centimos) "
+							+ "FROM dam_operacion o JOIN dam_cuenta_bancaria c ON c.numero_cuenta = o.cuenta_id "
+							+ "WHERE o.fecha >= ? GROUP BY c.tipo_cuenta, YEAR(o.fecha), MONTH(o.fecha), o.tipo",
+					desde);
+			long t1 = System.nanoTime();
+			List<ResumenOperaciones> resumen = resumenOperacionesService.obtenerResumenTiposCuenta(null, desde,
+					LocalDate.now(), AgrupacionResumen.MES);
+			long t2 = System.nanoTime();
+
+			assertEquals(agrupado.size(), resumen.size());
+			sumaOperaciones += t1 - t0;
+			sumaResumenes += t2 - t1;
+		}
+
+		System.out.printf(
+				"Resúmenes de operaciones (%d operaciones, reconstruidos en %d ms): informe mensual agrupando "
+						+ "operaciones %.2f ms, leyendo resúmenes %.2f ms%n",
+				numOperaciones, reconstruccion.getMilisegundos(), sumaOperaciones / 1e6 / consultas,
+				sumaResumenes / 1e6 / consultas);
+	}
+}
@@ -0,0 +1,234 @@
+package com.jesusLuna.gestor_banco.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jesusLuna.gestor_banco.dto.OperacionResumen;
+import com.jesusLuna.gestor_banco.dto.PaginaKeyset;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria;
+import com.jesusLuna.gestor_banco.entity.CuentaBancaria.TipoCuenta;
+import com.jesusLuna.gestor_banco.entity.Dinero;
+import com.jesusLuna.gestor_banco.entity.Operacion;
+import com.jesusLuna.gestor_banco.entity.Operacion.TipoOperacion;
+import com.jesusLuna.gestor_banco.repository.CuentaBancariaRepo;
+import com.jesusLuna.gestor_banco.repository.OperacionesRepo;
+import com.jesusLuna.gestor_banco.repository.SaldoInstantaneaRepo;
+
+/**
+ * Pruebas de los saldos históricos. Las instantáneas se generan en sus propias
+ * transacciones, por eso la prueba no se ejecuta dentro de la transacción que
+ * abre {@code @DataJpaTest} por defecto.
+ */
+@DataJpaTest(showSql = false, properties = "saldos.instantaneas.operaciones=7")
+@Import({ SaldoHistoricoServiceImpl.class, OperacionesServiceImpl.class, ContabilizacionServiceImpl.class,
+		ContabilizadorLotes.class, ResumenOperacionesServiceImpl.class, ArchivoOperacionesServiceImpl.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SaldoHistoricoServiceImplTest {
+
+	private static final String IBAN = "ES9121000418450200051332";
+	private static final long SALDO_APERTURA = 100_000;
+	private static final int DIAS = 60;
+
+	@Autowired
+	private SaldoHistoricoService saldoHistoricoService;
+
+	@Autowired
+	private ContabilizacionService contabilizacionService;
+
+	@Autowired
+	private OperacionesService operacionesService;
+
+	@Autowired
+	private CuentaBancariaRepo cuentaBancRepo;
+
+	@Autowired
+	private OperacionesRepo operacionesRepo;
+
+	@Autowired
+	private SaldoInstantaneaRepo saldoInstantaneaRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/** Operaciones contabilizadas, para calcular los saldos esperados. */
+	private final List<Operacion> contabilizadas = new ArrayList<>();
+
+	@BeforeEach
+	void crearCuentaConHistorial() {
+		CuentaBancaria c = new CuentaBancaria();
+		c.setNumeroCuenta(IBAN);
+		c.setTipoCuenta(TipoCuenta.CORRIENTE);
+		c.setFechaCreacion(LocalDate.now().minusYears(1));
+		// Saldo sin operaciones que lo expliquen, como el de las cuentas migradas
+		c.setSaldo(Dinero.deCentimos(SALDO_APERTURA));
+		cuentaBancRepo.save(c);
+
+		Random aleatorio = new Random(44);
+		for (int i = 0; i < 200; i++) {
+			TipoOperacion tipo = aleatorio.nextInt(3) == 0 ? TipoOperacion.RetirarDinero
+					: TipoOperacion.IngresarDinero;
+			contabilizar(tipo, 100 + aleatorio.nextInt(5_000), LocalDate.now().minusDays(aleatorio.nextInt(DIAS)));
+		}
+	}
+
+	@AfterEach
+	void limpiar() {
+		saldoInstantaneaRepo.deleteAllInBatch();
+		operacionesRepo.deleteAllInBatch();
+		cuentaBancRepo.deleteAllInBatch();
+	}
+
+	private void contabilizar(TipoOperacion tipo, long centimos, LocalDate fecha) {
+		Operacion o = new Operacion();
+		o.setDescripcion(tipo.getNombre());
+		o.setTipo(tipo);
+		o.setFecha(fecha);
+		o.setCantidad(Dinero.deCentimos(centimos));
+		contabilizadas.add(contabilizacionService.contabilizar(IBAN, o));
+	}
+
+	/** Saldo esperado al cierre de un día, sumando todas las operaciones. */
+	private long saldoEsperado(LocalDate fecha) {
+		long saldo = SALDO_APERTURA;
+		for (Operacion o : contabilizadas) {
+			if (!o.getFecha().isAfter(fecha)) {
+				saldo += o.getTipo().importe(o.getCantidad().getCentimos());
+			}
+		}
+		return saldo;
+	}
+
+	private void comprobarTodosLosDias() {
+		for (int d = DIAS + 1; d >= 0; d--) {
+			LocalDate fecha = LocalDate.now().minusDays(d);
+			assertEquals(Dinero.deCentimos(saldoEsperado(fecha)), saldoHistoricoService.obtenerSaldoAFecha(IBAN, fecha),
+					"Saldo a " + fecha);
+		}
+	}
+
+	@Test
+	void saldoAFechaCoincideConElHistorialConYSinInstantaneas() {
+		comprobarTodosLosDias();
+
+		int generadas = saldoHistoricoService.generarInstantaneas(IBAN);
+		assertTrue(generadas > 0);
+		comprobarTodosLosDias();
+		assertEquals(SALDO_APERTURA, saldoHistoricoService.saldoInicial(IBAN));
+
+		// Sin operaciones nuevas en días cerrados no hay nada que generar
+		assertEquals(0, saldoHistoricoService.generarInstantaneas(IBAN));
+	}
+
+	@Test
+	void operacionConFechaPasadaInvalidaLasInstantaneasPosteriores() {
+		saldoHistoricoService.generarInstantaneas(IBAN);
+		long antes = saldoInstantaneaRepo.count();
+
+		contabilizar(TipoOperacion.IngresarDinero, 12_345, LocalDate.now().minusDays(DIAS / 2));
+		assertTrue(saldoInstantaneaRepo.count() < antes);
+		comprobarTodosLosDias();
+
+		// Una operación de hoy no afecta a ninguna instantánea
+		long tras = saldoInstantaneaRepo.count();
+		contabilizar(TipoOperacion.RetirarDinero, 100, LocalDate.now());
+		assertEquals(tras, saldoInstantaneaRepo.count());
+
+		saldoHistoricoService.generarInstantaneas(IBAN);
+		comprobarTodosLosDias();
+	}
+
+	@Test
+	void historialLlevaElSaldoTrasCadaOperacion() {
+		saldoHistoricoService.generarInstantaneas(IBAN);
+
+		List<Operacion> esperadas = new ArrayList<>(contabilizadas);
+		esperadas.sort(Comparator.comparing(Operacion::getFecha).thenComparingLong(Operacion::getCodigo).reversed());
+		long saldo = cuentaBancRepo.findById(IBAN).orElseThrow().getSaldo().getCentimos();
+
+		List<OperacionResumen> historial = new ArrayList<>();
+		String cursor = null;
+		do {
+			PaginaKeyset<OperacionResumen> pagina = operacionesService.obtenerHistorialCuenta(IBAN, cursor, 25);
+			historial.addAll(pagina.getElementos());
+			cursor = pagina.getCursorSiguiente();
+		} while (cursor != null);
+
+		assertEquals(esperadas.size(), historial.size());
+		for (int i = 0; i < historial.size(); i++) {
+			OperacionResumen op = historial.get(i);
+			assertEquals(esperadas.get(i).getCodigo(), op.getCodigo());
+			assertEquals(Dinero.deCentimos(saldo), op.getSaldo(), "Saldo tras la operación " + op.getCodigo());
+			saldo -= op.getTipo().importe(op.getCantidad().getCentimos());
+		}
+		assertEquals(SALDO_APERTURA, saldo);
+	}
+
+	/**
+	 * Compara el saldo histórico calculado con instantáneas con la suma de todo el
+	 * historial en una cuenta grande. Se ejecuta con {@code -Dbenchmark=true}; el
+	 * número de operaciones se ajusta con {@code -Dbenchmark.saldos} (500.000 por
+	 * defecto).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkSaldoHistoricoCuentaGrande() {
+		int numOperaciones = Integer.getInteger("benchmark.saldos", 500_000);
+		contabilizadas.clear();
+		operacionesRepo.deleteAllInBatch();
+		jdbcTemplate.update("INSERT INTO dam_operacion (id, descripcion, tipo, fecha, cantidad_centimos, cuenta_id) "
+				+ "SELECT NEXT VALUE FOR dam_operacion_seq, 'Operación ' || x, "
+				+ "CASE WHEN MOD(x, 3) = 0 THEN 'RetirarDinero' ELSE 'IngresarDinero' END, "
+				+ "DATEADD(DAY, -MOD(x, 1500) - 1, CURRENT_DATE), 100 + MOD(x, 1000), ? FROM SYSTEM_RANGE(1, ?)", IBAN,
+				numOperaciones);
+		jdbcTemplate.update("UPDATE dam_cuenta_bancaria SET saldo_centimos = ? + (SELECT SUM(CASE WHEN tipo = "
+				+ "'IngresarDinero' THEN cantidad_centimos ELSE -cantidad_centimos END) FROM dam_operacion) "
+				+ "WHERE numero_cuenta = ?", SALDO_APERTURA, IBAN);
+
+		long inicio = System.nanoTime();
+		int generadas = saldoHistoricoService.generarInstantaneas(IBAN);
+		long msGenerar = (System.nanoTime() - inicio) / 1_000_000;
+
+		Random aleatorio = new Random(1);
+		int consultas = 200;
+		long sumaCompleta = 0;
+		long sumaInstantaneas = 0;
+		for (int i = 0; i < consultas; i++) {
+			LocalDate fecha = LocalDate.now().minusDays(1 + aleatorio.nextInt(1500));
+
+			long t0 = System.nanoTime();
+			Long completo = jdbcTemplate.queryForObject("SELECT ? + COALESCE(SUM(CASE WHEN tipo = 'IngresarDinero' "
+					+ "THEN cantidad_centimos ELSE -cantidad_centimos END), 0) FROM dam_operacion "
+					+ "WHERE cuenta_id = ? AND fecha <= ?", Long.class, SALDO_APERTURA, IBAN, fecha);
+			long t1 = System.nanoTime();
+			Dinero conInstantaneas = saldoHistoricoService.obtenerSaldoAFecha(IBAN, fecha);
+			long t2 = System.nanoTime();
+
+			assertEquals(Dinero.deCentimos(completo), conInstantaneas);
+			sumaCompleta += t1 - t0;
+			sumaInstantaneas += t2 - t1;
+		}
+
+		System.out.printf(
+				"Saldo histórico (%d operaciones, %d instantáneas generadas en %d ms): suma completa %.2f ms/consulta, "
+						+ "con instantáneas %.2f ms/consulta%n",
+				numOperaciones, generadas, msGenerar, sumaCompleta / 1e6 / consultas,
+				sumaInstantaneas / 1e6 / consultas);
+	}
+}